@@ -21,13 +21,18 @@ import com.graphaware.nlp.annotation.NLPVectorComputationProcess;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.configuration.SettingsConstants;
 import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Tag;
 import com.graphaware.nlp.domain.VectorContainer;
 import com.graphaware.nlp.dsl.request.AnnotationRequest;
+import com.graphaware.nlp.dsl.request.BatchAnnotationRequest;
 import com.graphaware.nlp.dsl.request.ComputeVectorRequest;
 import com.graphaware.nlp.dsl.request.ComputeVectorTrainRequest;
+import com.graphaware.nlp.dsl.request.CsvExportRequest;
 import com.graphaware.nlp.dsl.request.FilterRequest;
 import com.graphaware.nlp.dsl.request.CustomModelsRequest;
 import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.dsl.result.BatchAnnotationResult;
+import com.graphaware.nlp.dsl.result.CsvExportResult;
 import com.graphaware.nlp.dsl.result.TextProcessorItem;
 import com.graphaware.nlp.enrich.Enricher;
 import com.graphaware.nlp.enrich.EnrichmentRegistry;
@@ -38,19 +43,33 @@ import com.graphaware.nlp.event.TextAnnotationEvent;
 import com.graphaware.nlp.extension.NLPExtension;
 import com.graphaware.nlp.language.LanguageManager;
 import com.graphaware.nlp.module.NLPConfiguration;
+import com.graphaware.nlp.persistence.BatchAnnotatedTextWriter;
+import com.graphaware.nlp.persistence.ChunkedAnnotatedTextWriter;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
-import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.export.AnnotatedTextCsvExporter;
 import com.graphaware.nlp.persistence.persisters.Persister;
+import com.graphaware.nlp.persistence.persisters.AnnotatedTextPersister;
+import com.graphaware.nlp.persistence.persisters.TagPersister;
+import com.graphaware.nlp.processor.AnnotationAdmission;
+import com.graphaware.nlp.processor.AnnotationCache;
+import com.graphaware.nlp.processor.TextChunker;
 import com.graphaware.nlp.processor.TextProcessor;
 import com.graphaware.nlp.processor.TextProcessorsManager;
 import com.graphaware.nlp.util.ProcessorUtils;
 import com.graphaware.nlp.util.ServiceLoader;
 import com.graphaware.nlp.vector.SparseVector;
 import com.graphaware.nlp.vector.VectorComputation;
+import com.graphaware.nlp.workflow.input.InputFiles;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.logging.Log;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 public final class NLPManager {
@@ -65,6 +84,10 @@ public final class NLPManager {
 
     private TextProcessorsManager textProcessorsManager;
 
+    private AnnotationCache annotationCache;
+
+    private AnnotationAdmission annotationAdmission;
+
     protected GraphDatabaseService database;
 
     protected DynamicConfiguration configuration;
@@ -105,6 +128,8 @@ public final class NLPManager {
         this.textProcessorsManager = new TextProcessorsManager();
         this.configuration = configuration;
         this.database = database;
+        this.annotationCache = new AnnotationCache(configuration);
+        this.annotationAdmission = new AnnotationAdmission(configuration);
         this.persistenceRegistry = new PersistenceRegistry(database);
         this.enrichmentRegistry = buildAndRegisterEnrichers();
         this.eventDispatcher = new EventDispatcher();
@@ -119,6 +144,28 @@ public final class NLPManager {
         return textProcessorsManager;
     }
 
+    public AnnotationCache getAnnotationCache() {
+        return annotationCache;
+    }
+
+    public AnnotationAdmission getAnnotationAdmission() {
+        return annotationAdmission;
+    }
+
+    /**
+     * Annotates the text once admitted by the bulkhead of the pipeline, see {@link AnnotationAdmission}.
+     */
+    public AnnotatedText annotate(TextProcessor processor, String text, String lang, PipelineSpecification pipelineSpecification) {
+        return annotationAdmission.execute(pipelineSpecification.getName(), () -> annotationCache.annotate(processor, text, lang, pipelineSpecification));
+    }
+
+    /**
+     * Annotates the texts in parallel once admitted by the bulkhead of the pipeline, a call taking a single slot.
+     */
+    public List<AnnotatedText> annotate(TextProcessor processor, List<String> texts, String lang, PipelineSpecification pipelineSpecification) {
+        return annotationAdmission.execute(pipelineSpecification.getName(), () -> annotationCache.annotateTexts(processor, texts, lang, pipelineSpecification));
+    }
+
     public <T extends Persister> T getPersister(Class clazz) {
         return (T) persistenceRegistry.getPersister(clazz);
     }
@@ -128,11 +175,18 @@ public final class NLPManager {
     }
 
     public Node annotateTextAndPersist(AnnotationRequest annotationRequest) {
+        if (annotationRequest.getChunkSize() > 0 && annotationRequest.getText().length() > annotationRequest.getChunkSize()) {
+            return annotateChunksAndPersist(annotationRequest);
+        }
         return annotateTextAndPersist(annotationRequest.getText(), annotationRequest.getId(), annotationRequest.getTextProcessor(),
-                annotationRequest.getPipeline(), annotationRequest.isForce(), annotationRequest.shouldCheckLanguage());
+                annotationRequest.getPipeline(), annotationRequest.isForce(), annotationRequest.shouldCheckLanguage(), annotationRequest.isIncremental());
     }
 
     public Node annotateTextAndPersist(String text, String id, String textProcessor, String pipelineName, boolean force, boolean checkForLanguage) {
+        return annotateTextAndPersist(text, id, textProcessor, pipelineName, force, checkForLanguage, false);
+    }
+
+    public Node annotateTextAndPersist(String text, String id, String textProcessor, String pipelineName, boolean force, boolean checkForLanguage, boolean incremental) {
         String lang = checkTextLanguage(text, checkForLanguage);
         String pipeline = getPipeline(pipelineName);
         PipelineSpecification pipelineSpecification = getConfiguration().loadPipeline(pipeline);
@@ -140,24 +194,187 @@ public final class NLPManager {
             throw new RuntimeException("No pipeline " + pipelineName + " found.");
         }
         TextProcessor processor = textProcessorsManager.getTextProcessor(pipelineSpecification.getTextProcessor());
-        AnnotatedText at = processor.annotateText(text, lang, pipelineSpecification);
+        AnnotatedText at = annotate(processor, text, lang, pipelineSpecification);
 
-        return processAnnotationPersist(id, text, at, pipelineSpecification);
+        return processAnnotationPersist(id, text, at, pipelineSpecification, String.valueOf(System.currentTimeMillis()), incremental);
     }
 
     public Node annotateTextAndPersist(String text, String id, boolean checkForLanguage, PipelineSpecification pipelineSpecification) {
         String lang = checkTextLanguage(text, checkForLanguage);
         TextProcessor processor = textProcessorsManager.getTextProcessor(pipelineSpecification.getTextProcessor());
-        AnnotatedText annotatedText = processor.annotateText(text, lang, pipelineSpecification);
+        AnnotatedText annotatedText = annotate(processor, text, lang, pipelineSpecification);
 
         return processAnnotationPersist(id, text, annotatedText, pipelineSpecification);
     }
 
-    public Node processAnnotationPersist(String id, String text, AnnotatedText annotatedText, PipelineSpecification pipelineSpecification) {
+    /**
+     * Annotates the text of the request in chunks of about chunkSize characters, split on paragraph and sentence
+     * boundaries and annotated in parallel by the threadNumber of the pipeline. The annotated chunks are merged, with
+     * the offsets and sentence numbers of the whole text, and stored as one annotated text, or, with persistChunks,
+     * stored as soon as threadNumber chunks are annotated so that only the annotations of these chunks are held in
+     * memory. Each group of chunks is committed in its own transaction by a {@link ChunkedAnnotatedTextWriter}, outside
+     * of the caller transaction (as the one of a procedure): a failure, or a rollback of the caller, leaves the groups
+     * already committed. Stored chunk by chunk the text replaces any stored one with the same id, so the request cannot be
+     * incremental, it has no snapshot and no {@link NLPEvents#POST_TEXT_ANNOTATION} event is sent, as no AnnotatedText
+     * of the whole text exists.
+     */
+    private Node annotateChunksAndPersist(AnnotationRequest request) {
+        String lang = checkTextLanguage(request.getText(), request.shouldCheckLanguage());
+        String pipeline = getPipeline(request.getPipeline());
+        PipelineSpecification pipelineSpecification = getConfiguration().loadPipeline(pipeline);
+        if (null == pipelineSpecification) {
+            throw new RuntimeException("No pipeline " + request.getPipeline() + " found.");
+        }
+        TextProcessor processor = textProcessorsManager.getTextProcessor(pipelineSpecification.getTextProcessor());
+        List<TextChunker.Chunk> chunks = TextChunker.split(request.getText(), request.getChunkSize());
         String txId = String.valueOf(System.currentTimeMillis());
-        Node annotatedNode = persistAnnotatedText(annotatedText, id, txId);
+        if (!request.isPersistChunks()) {
+            AnnotatedText annotatedText = TextChunker.merge(chunks, annotateChunks(processor, chunks, lang, pipelineSpecification), 0);
+            return processAnnotationPersist(request.getId(), request.getText(), annotatedText, pipelineSpecification, txId, request.isIncremental());
+        }
+
+        AnnotatedTextPersister persister = getPersister(AnnotatedText.class);
+        int window = (int) Math.max(1, pipelineSpecification.getThreadNumber());
+        try (ChunkedAnnotatedTextWriter writer = new ChunkedAnnotatedTextWriter(database, persister, request.getId(), txId, pipelineSpecification.isLeanOccurrences())) {
+            int sentences = 0;
+            for (int from = 0; from < chunks.size(); from += window) {
+                List<TextChunker.Chunk> windowChunks = chunks.subList(from, Math.min(from + window, chunks.size()));
+                AnnotatedText annotatedText = TextChunker.merge(windowChunks, annotateChunks(processor, windowChunks, lang, pipelineSpecification), sentences);
+                writer.append(annotatedText);
+                sentences += annotatedText.getSentences().size();
+            }
+
+            return writer.flush();
+        }
+    }
+
+    private List<AnnotatedText> annotateChunks(TextProcessor processor, List<TextChunker.Chunk> chunks, String lang, PipelineSpecification pipelineSpecification) {
+        List<String> texts = new ArrayList<>(chunks.size());
+        chunks.forEach(chunk -> texts.add(chunk.getText()));
+
+        return annotate(processor, texts, lang, pipelineSpecification);
+    }
+
+    public BatchAnnotationResult annotateTextsAndPersist(BatchAnnotationRequest request) {
+        long start = System.currentTimeMillis();
+        String pipeline = getPipeline(request.getPipeline());
+        PipelineSpecification pipelineSpecification = getConfiguration().loadPipeline(pipeline);
+        if (null == pipelineSpecification) {
+            throw new RuntimeException("No pipeline " + request.getPipeline() + " found.");
+        }
+        TextProcessor processor = textProcessorsManager.getTextProcessor(pipelineSpecification.getTextProcessor());
+        TagPersister tagPersister = getPersister(Tag.class);
+
+        try (BatchAnnotatedTextWriter writer = new BatchAnnotatedTextWriter(database, tagPersister, pipelineSpecification)) {
+            List<AnnotationRequest> documents = request.getDocuments();
+            for (int from = 0; from < documents.size(); from += request.getBatchSize()) {
+                List<AnnotationRequest> documentsBatch = documents.subList(from, Math.min(from + request.getBatchSize(), documents.size()));
+                List<AnnotatedText> annotatedTexts = annotateTexts(processor, documentsBatch, request.isCheckLanguage(), pipelineSpecification);
+                List<BatchAnnotatedTextWriter.Entry> batch = new ArrayList<>();
+                for (int i = 0; i < documentsBatch.size(); i++) {
+                    AnnotationRequest document = documentsBatch.get(i);
+                    batch.add(new BatchAnnotatedTextWriter.Entry(document.getId(), document.getText(), annotatedTexts.get(i)));
+                }
+                writer.write(batch);
+            }
+            writer.flush();
+
+            return new BatchAnnotationResult(writer.getCommittedDocuments(), writer.getCommittedBatches(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Annotates the documents of the request without storing them, the annotated texts are in the order of the
+     * documents.
+     */
+    public List<AnnotatedText> annotateTexts(BatchAnnotationRequest request) {
+        String pipeline = getPipeline(request.getPipeline());
+        PipelineSpecification pipelineSpecification = getConfiguration().loadPipeline(pipeline);
+        if (null == pipelineSpecification) {
+            throw new RuntimeException("No pipeline " + request.getPipeline() + " found.");
+        }
+        TextProcessor processor = textProcessorsManager.getTextProcessor(pipelineSpecification.getTextProcessor());
+
+        return annotateTexts(processor, request.getDocuments(), request.isCheckLanguage(), pipelineSpecification);
+    }
+
+    private List<AnnotatedText> annotateTexts(TextProcessor processor, List<AnnotationRequest> documents, boolean checkLanguage, PipelineSpecification pipelineSpecification) {
+        Map<String, List<Integer>> documentsByLanguage = new LinkedHashMap<>();
+        for (int i = 0; i < documents.size(); i++) {
+            String lang = checkTextLanguage(documents.get(i).getText(), checkLanguage);
+            documentsByLanguage.computeIfAbsent(lang, k -> new ArrayList<>()).add(i);
+        }
+        AnnotatedText[] annotatedTexts = new AnnotatedText[documents.size()];
+        documentsByLanguage.forEach((lang, indexes) -> {
+            List<String> texts = new ArrayList<>(indexes.size());
+            indexes.forEach(i -> texts.add(documents.get(i).getText()));
+            List<AnnotatedText> annotated = annotate(processor, texts, lang, pipelineSpecification);
+            for (int i = 0; i < indexes.size(); i++) {
+                annotatedTexts[indexes.get(i)] = annotated.get(i);
+            }
+        });
+
+        return Arrays.asList(annotatedTexts);
+    }
+
+    public CsvExportResult exportAnnotatedTextsToCsv(CsvExportRequest request) {
+        long start = System.currentTimeMillis();
+        String pipeline = getPipeline(request.getPipeline());
+        PipelineSpecification pipelineSpecification = getConfiguration().loadPipeline(pipeline);
+        if (null == pipelineSpecification) {
+            throw new RuntimeException("No pipeline " + request.getPipeline() + " found.");
+        }
+        TextProcessor processor = textProcessorsManager.getTextProcessor(pipelineSpecification.getTextProcessor());
+        ObjectMapper mapper = new ObjectMapper();
+
+        Path inputFile = InputFiles.resolveExisting(database, request.getInputFile(), "the export");
+        Path outputDirectory = InputFiles.resolveConfined(database, request.getOutputDirectory(), "the export");
+        AnnotatedTextCsvExporter exporter = new AnnotatedTextCsvExporter(outputDirectory.toFile(), configuration);
+        try (BufferedReader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                Map<String, Object> document = mapper.readValue(line, Map.class);
+                if (!document.containsKey("id") || !document.containsKey("text")) {
+                    throw new RuntimeException("Each line of " + request.getInputFile() + " should be a json object with id and text, got : " + line);
+                }
+                String text = String.valueOf(document.get("text"));
+                String lang = checkTextLanguage(text, request.isCheckLanguage());
+                exporter.export(String.valueOf(document.get("id")), annotate(processor, text, lang, pipelineSpecification));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read " + request.getInputFile(), e);
+        } finally {
+            exporter.close();
+        }
+
+        return new CsvExportResult(exporter.getDocuments(), exporter.getTags(), exporter.getPhrases(),
+                System.currentTimeMillis() - start, exporter.getImportCommand(request.getDatabase()));
+    }
+
+    public Node processAnnotationPersist(String id, String text, AnnotatedText annotatedText, PipelineSpecification pipelineSpecification) {
+        return processAnnotationPersist(id, text, annotatedText, pipelineSpecification, String.valueOf(System.currentTimeMillis()));
+    }
+
+    public Node processAnnotationPersist(String id, String text, AnnotatedText annotatedText, PipelineSpecification pipelineSpecification, String txId) {
+        return processAnnotationPersist(id, text, annotatedText, pipelineSpecification, txId, false);
+    }
+
+    public Node processAnnotationPersist(String id, String text, AnnotatedText annotatedText, PipelineSpecification pipelineSpecification, String txId, boolean incremental) {
+        AnnotatedTextPersister persister = getPersister(AnnotatedText.class);
+        boolean leanOccurrences = pipelineSpecification != null && pipelineSpecification.isLeanOccurrences();
+        Node annotatedNode = incremental
+                ? persister.persistIncrementally(annotatedText, id, txId, leanOccurrences)
+                : persister.persist(annotatedText, id, txId, leanOccurrences);
         TextAnnotationEvent event = new TextAnnotationEvent(annotatedNode, annotatedText, id, txId, pipelineSpecification);
         annotatedText.setText(text);
+        if (pipelineSpecification != null && pipelineSpecification.isSnapshot()) {
+            persister.storeSnapshot(annotatedNode, annotatedText);
+        } else {
+            persister.removeSnapshot(annotatedNode);
+        }
         eventDispatcher.notify(NLPEvents.POST_TEXT_ANNOTATION, event);
 
         return annotatedNode;
@@ -194,6 +411,7 @@ public final class NLPManager {
 
     public void removePipeline(String pipeline, String processor) {
         configuration.removePipeline(pipeline, processor);
+        annotationCache.invalidate(pipeline);
     }
 
     public Boolean filter(FilterRequest filterRequest) {
@@ -204,7 +422,7 @@ public final class NLPManager {
         String pipeline = getPipeline(filterRequest.getPipeline());
         PipelineSpecification pipelineSpecification = configuration.loadPipeline(pipeline);
         TextProcessor currentTP = textProcessorsManager.getTextProcessor(pipelineSpecification.getTextProcessor());
-        AnnotatedText annotatedText = currentTP.annotateText(text, lang, pipelineSpecification);
+        AnnotatedText annotatedText = annotate(currentTP, text, lang, pipelineSpecification);
         return annotatedText.filter(filter);
     }
 
@@ -213,13 +431,10 @@ public final class NLPManager {
                 ? getTextProcessorsManager().getDefaultProcessor()
                 : getTextProcessorsManager().getTextProcessor(textProcessor);
 
-        AnnotatedText annotatedText = (AnnotatedText) getPersister(AnnotatedText.class).fromNode(node);
+        AnnotatedTextPersister persister = getPersister(AnnotatedText.class);
+        AnnotatedText annotatedText = persister.fromNode(node);
         processor.sentiment(annotatedText);
-        getPersister(AnnotatedText.class).persist(
-                annotatedText,
-                node.getProperty(configuration.getPropertyKeyFor(Properties.PROPERTY_ID)).toString(),
-                String.valueOf(System.currentTimeMillis())
-        );
+        persister.updateSentiment(node, annotatedText);
     }
 
     public String checkTextLanguage(String text, boolean failIfUnsupported) {
@@ -259,6 +474,7 @@ public final class NLPManager {
             throw new RuntimeException("Pipeline with name " + request.getName() + " already exist");
         }
         configuration.storeCustomPipeline(request);
+        annotationCache.invalidate(request.getName());
     }
 
     public Enricher getEnricher(String name) {
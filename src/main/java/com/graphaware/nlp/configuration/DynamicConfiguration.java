@@ -19,18 +19,23 @@ import org.codehaus.jackson.map.ObjectMapper;
 import com.graphaware.common.kv.GraphKeyValueStore;
 import com.graphaware.nlp.dsl.request.PipelineSpecification;
 import com.graphaware.nlp.dsl.result.WorkflowInstanceItemInfo;
+import com.graphaware.nlp.util.TransactionUtils;
 import com.graphaware.nlp.workflow.WorkflowItem;
+import com.graphaware.nlp.workflow.task.WorkflowTaskCheckpoint;
 import java.io.IOException;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.codehaus.jackson.annotate.JsonTypeInfo;
 
 public class DynamicConfiguration {
@@ -42,44 +47,62 @@ public class DynamicConfiguration {
     public static final String SETTING_KEY_PREFIX = "SETTING_";
     public static final String PIPELINE_KEY_PREFIX = "PIPELINE_";
     public static final String MODEL_KEY_PREFIX = "MODEL_";
+    public static final String WORKFLOW_CHECKPOINT_KEY_PREFIX = "WORKFLOW_CHECKPOINT_";
 
     protected final GraphDatabaseService database;
     protected final GraphKeyValueStore keyValueStore;
     protected Map<String, Object> userProvidedConfiguration;
     protected final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong version = new AtomicLong();
+    private final ThreadLocal<Boolean> uncommittedChange = ThreadLocal.withInitial(() -> false);
+    private volatile boolean stale;
+    private volatile ParsedItems parsedItems;
+    private volatile ResolvedSchema schema;
 
     public DynamicConfiguration(GraphDatabaseService database) {
         this.database = database;
         this.keyValueStore = new GraphKeyValueStore(database);
         mapper.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
         loadUserConfiguration();
+        database.registerTransactionEventHandler(new TransactionEventHandler.Adapter<Object>() {
+            @Override
+            public void afterCommit(TransactionData data, Object state) {
+                transactionClosed();
+            }
+
+            @Override
+            public void afterRollback(TransactionData data, Object state) {
+                transactionClosed();
+            }
+        });
     }
 
     public Label getLabelFor(Label label) {
-        if (!userProvidedConfiguration.containsKey(LABEL_KEY_PREFIX + label.toString())) {
-            return label;
-        }
-
-        return Label.label(userProvidedConfiguration.get(LABEL_KEY_PREFIX + label.toString()).toString());
+        reloadIfStale();
+        return schema.label(label);
     }
 
     public RelationshipType getRelationshipFor(RelationshipType relationship) {
-        if (!userProvidedConfiguration.containsKey(RELATIONSHIP_TYPE_KEY_PREFIX + relationship.name())) {
-            return relationship;
-        }
-
-        return RelationshipType.withName(userProvidedConfiguration.get(RELATIONSHIP_TYPE_KEY_PREFIX + relationship.name()).toString());
+        reloadIfStale();
+        return schema.relationship(relationship);
     }
 
     public String getPropertyKeyFor(String key) {
-        if (!userProvidedConfiguration.containsKey(PROPERTY_KEY_PREFIX + key)) {
-            return key;
-        }
+        reloadIfStale();
+        return schema.property(key);
+    }
 
-        return userProvidedConfiguration.get(PROPERTY_KEY_PREFIX + key).toString();
+    /**
+     * @return the labels, relationship types and property keys resolved from the current configuration, replaced as
+     * a whole when the configuration changes, so a caller can hold it for the duration of an operation
+     */
+    public ResolvedSchema getSchema() {
+        reloadIfStale();
+        return schema;
     }
 
     public Object getSettingValueFor(String key) {
+        reloadIfStale();
         if (!userProvidedConfiguration.containsKey(SETTING_KEY_PREFIX + key)) {
             return key;
         }
@@ -88,6 +111,7 @@ public class DynamicConfiguration {
     }
 
     public boolean hasSettingValue(String key) {
+        reloadIfStale();
         return userProvidedConfiguration.containsKey(SETTING_KEY_PREFIX + key);
     }
 
@@ -117,6 +141,7 @@ public class DynamicConfiguration {
             }
             tx.success();
         }
+        changed();
     }
 
     public void update(String key, Object value) {
@@ -125,6 +150,7 @@ public class DynamicConfiguration {
             tx.success();
         }
         loadUserConfiguration();
+        changed();
     }
 
     public void storeCustomPipeline(PipelineSpecification pipelineSpecification) {
@@ -137,21 +163,12 @@ public class DynamicConfiguration {
         }
     }
 
+    /**
+     * The pipeline specifications and workflow items are parsed once per version of the configuration, the returned
+     * objects are shared and must not be modified.
+     */
     public List<PipelineSpecification> loadCustomPipelines() {
-        List<PipelineSpecification> list = new ArrayList<>();
-        Map<String, Object> config = getAllConfigValuesFromStore();
-        config.keySet().forEach(k -> {
-            if (k.startsWith(PIPELINE_KEY_PREFIX)) {
-                try {
-                    PipelineSpecification pipelineSpecification = mapper.readValue(config.get(k).toString(), PipelineSpecification.class);
-                    list.add(pipelineSpecification);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        });
-
-        return list;
+        return new ArrayList<>(getParsedItems().pipelines.values());
     }
 
     public void storeWorkflowInstanceItem(WorkflowItem item) {
@@ -165,55 +182,65 @@ public class DynamicConfiguration {
     }
 
     public List<WorkflowInstanceItemInfo> loadPipelineInstanceItems(String prefix) {
-        List<WorkflowInstanceItemInfo> list = new ArrayList<>();
-        Map<String, Object> config = getAllConfigValuesFromStore();
-        config.keySet().forEach(k -> {
-            if (k.startsWith(prefix)) {
-                try {
-                    WorkflowInstanceItemInfo pipelineSpecification = mapper.readValue(config.get(k).toString(), WorkflowInstanceItemInfo.class);
-                    list.add(pipelineSpecification);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        });
-        return list;
+        return new ArrayList<>(getParsedItems().getWorkflowItems(prefix));
     }
 
     public PipelineSpecification loadPipeline(String name) {
-        Map<String, Object> config = getAllConfigValuesFromStore();
-        AtomicReference<PipelineSpecification> result = new AtomicReference<>();
-        config.keySet().forEach(k -> {
-            if (k.startsWith(PIPELINE_KEY_PREFIX)) {
-                try {
-                    String s = config.get(k).toString();
-                    PipelineSpecification pipelineSpecification = mapper.readValue(config.get(k).toString(), PipelineSpecification.class);
-                    if (pipelineSpecification.getName().equals(name)) {
-                        result.set(pipelineSpecification);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e.getMessage());
-                }
+        return getParsedItems().pipelines.get(name);
+    }
+
+    public void removePipeline(String name, String textProcessor) {
+        getParsedItems().pipelineKeys.forEach((k, pipelineSpecification) -> {
+            if (pipelineSpecification.getName().equals(name) && pipelineSpecification.getTextProcessor().equals(textProcessor)) {
+                removeKey(STORE_KEY + k);
             }
         });
+    }
 
-        return result.get();
+    /**
+     * @return the version of the configuration, incremented each time it is changed through this object
+     */
+    public long getVersion() {
+        return version.get();
     }
 
-    public void removePipeline(String name, String textProcessor) {
-        Map<String, Object> config = getAllConfigValuesFromStore();
-        config.keySet().forEach(k -> {
-            if (k.startsWith(PIPELINE_KEY_PREFIX)) {
-                try {
-                    PipelineSpecification pipelineSpecification = mapper.readValue(config.get(k).toString(), PipelineSpecification.class);
-                    if (pipelineSpecification.getName().equals(name) && pipelineSpecification.getTextProcessor().equals(textProcessor)) {
-                        removeKey(STORE_KEY + k);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e.getMessage());
-                }
+    /**
+     * Checkpoints are written straight to the store, without reloading the user configuration, since a running task
+     * saves them frequently.
+     */
+    public void storeWorkflowTaskCheckpoint(WorkflowTaskCheckpoint checkpoint) {
+        try {
+            String serialized = mapper.writeValueAsString(checkpoint);
+            try (Transaction tx = database.beginTx()) {
+                keyValueStore.set(STORE_KEY + WORKFLOW_CHECKPOINT_KEY_PREFIX + checkpoint.getTaskName(), serialized);
+                tx.success();
             }
-        });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public WorkflowTaskCheckpoint loadWorkflowTaskCheckpoint(String taskName) {
+        String key = STORE_KEY + WORKFLOW_CHECKPOINT_KEY_PREFIX + taskName;
+        Object serialized = null;
+        try (Transaction tx = database.beginTx()) {
+            if (keyValueStore.hasKey(key)) {
+                serialized = keyValueStore.get(key);
+            }
+            tx.success();
+        }
+        if (serialized == null) {
+            return null;
+        }
+        try {
+            return mapper.readValue(serialized.toString(), WorkflowTaskCheckpoint.class);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void removeWorkflowTaskCheckpoint(String taskName) {
+        removeKey(STORE_KEY + WORKFLOW_CHECKPOINT_KEY_PREFIX + taskName);
     }
 
     public void updateInternalSetting(String key, Object value) {
@@ -222,6 +249,7 @@ public class DynamicConfiguration {
             tx.success();
         }
         loadUserConfiguration();
+        changed();
     }
 
     private void removeKey(String key) {
@@ -231,6 +259,7 @@ public class DynamicConfiguration {
             }
             tx.success();
         }
+        changed();
     }
 
     public Map<String, Object> getAllConfigValuesFromStore() {
@@ -262,6 +291,114 @@ public class DynamicConfiguration {
     }
 
     private void loadUserConfiguration() {
-        userProvidedConfiguration = getAllConfigValuesFromStore();
+        invalidate();
+        Map<String, Object> configuration = getAllConfigValuesFromStore();
+        schema = new ResolvedSchema(configuration);
+        userProvidedConfiguration = configuration;
+    }
+
+    private void invalidate() {
+        version.incrementAndGet();
+        parsedItems = null;
+    }
+
+    /**
+     * To be called after a change of the store. Within the transaction of a caller, as in a procedure, the change is
+     * only committed with it: until then the items read by this thread are not cached, and the caches are dropped
+     * again once the transaction is committed or rolled back, as other threads may have cached the previous store in
+     * the meantime.
+     */
+    private void changed() {
+        invalidate();
+        if (TransactionUtils.isInTransaction(database)) {
+            uncommittedChange.set(true);
+        }
+    }
+
+    private void transactionClosed() {
+        if (uncommittedChange.get()) {
+            uncommittedChange.remove();
+            invalidate();
+            stale = true;
+        }
+    }
+
+    /**
+     * Reloads the user configuration once the transaction which changed it has been committed or rolled back.
+     */
+    private void reloadIfStale() {
+        if (!stale) {
+            return;
+        }
+        synchronized (version) {
+            if (stale) {
+                stale = false;
+                loadUserConfiguration();
+            }
+        }
+    }
+
+    private ParsedItems getParsedItems() {
+        if (uncommittedChange.get()) {
+            return new ParsedItems(getAllConfigValuesFromStore());
+        }
+        ParsedItems current = parsedItems;
+        if (current != null) {
+            return current;
+        }
+        synchronized (version) {
+            current = parsedItems;
+            if (current != null) {
+                return current;
+            }
+            long loadedVersion = version.get();
+            current = new ParsedItems(getAllConfigValuesFromStore());
+            if (version.get() == loadedVersion) {
+                parsedItems = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * The pipeline specifications and workflow items of a version of the store.
+     */
+    private class ParsedItems {
+
+        private final Map<String, PipelineSpecification> pipelineKeys = new HashMap<>();
+        private final Map<String, PipelineSpecification> pipelines = new HashMap<>();
+        private final Map<String, List<WorkflowInstanceItemInfo>> workflowItems = new ConcurrentHashMap<>();
+        private final Map<String, Object> config;
+
+        ParsedItems(Map<String, Object> config) {
+            this.config = config;
+            config.forEach((k, value) -> {
+                if (k.startsWith(PIPELINE_KEY_PREFIX)) {
+                    PipelineSpecification pipelineSpecification = read(value, PipelineSpecification.class);
+                    pipelineKeys.put(k, pipelineSpecification);
+                    pipelines.put(pipelineSpecification.getName(), pipelineSpecification);
+                }
+            });
+        }
+
+        List<WorkflowInstanceItemInfo> getWorkflowItems(String prefix) {
+            return workflowItems.computeIfAbsent(prefix, p -> {
+                List<WorkflowInstanceItemInfo> items = new ArrayList<>();
+                config.forEach((k, value) -> {
+                    if (k.startsWith(p)) {
+                        items.add(read(value, WorkflowInstanceItemInfo.class));
+                    }
+                });
+                return items;
+            });
+        }
+
+        private <T> T read(Object value, Class<T> type) {
+            try {
+                return mapper.readValue(value.toString(), type);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
     }
 }
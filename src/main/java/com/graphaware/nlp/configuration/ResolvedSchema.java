@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.configuration;
+
+import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.persistence.constants.Relationships;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.graphaware.nlp.configuration.DynamicConfiguration.LABEL_KEY_PREFIX;
+import static com.graphaware.nlp.configuration.DynamicConfiguration.PROPERTY_KEY_PREFIX;
+import static com.graphaware.nlp.configuration.DynamicConfiguration.RELATIONSHIP_TYPE_KEY_PREFIX;
+
+/**
+ * Immutable resolution of the labels, relationship types and property keys of the graph model, computed once from
+ * the user configuration. The default labels and relationship types are resolved upfront, the other names are
+ * looked up in the overrides without building the configuration key.
+ */
+public final class ResolvedSchema {
+
+    private final Map<Labels, Label> labels = new EnumMap<>(Labels.class);
+    private final Map<Relationships, RelationshipType> relationships = new EnumMap<>(Relationships.class);
+    private final Map<String, Label> labelOverrides;
+    private final Map<String, RelationshipType> relationshipOverrides;
+    private final Map<String, String> propertyOverrides;
+
+    ResolvedSchema(Map<String, Object> userProvidedConfiguration) {
+        Map<String, Label> labelOverrides = new HashMap<>();
+        Map<String, RelationshipType> relationshipOverrides = new HashMap<>();
+        Map<String, String> propertyOverrides = new HashMap<>();
+        userProvidedConfiguration.forEach((key, value) -> {
+            if (key.startsWith(LABEL_KEY_PREFIX)) {
+                labelOverrides.put(key.substring(LABEL_KEY_PREFIX.length()), Label.label(value.toString()));
+            } else if (key.startsWith(RELATIONSHIP_TYPE_KEY_PREFIX)) {
+                relationshipOverrides.put(key.substring(RELATIONSHIP_TYPE_KEY_PREFIX.length()), RelationshipType.withName(value.toString()));
+            } else if (key.startsWith(PROPERTY_KEY_PREFIX)) {
+                propertyOverrides.put(key.substring(PROPERTY_KEY_PREFIX.length()), value.toString());
+            }
+        });
+        this.labelOverrides = Collections.unmodifiableMap(labelOverrides);
+        this.relationshipOverrides = Collections.unmodifiableMap(relationshipOverrides);
+        this.propertyOverrides = Collections.unmodifiableMap(propertyOverrides);
+        for (Labels label : Labels.values()) {
+            labels.put(label, labelOverrides.getOrDefault(label.toString(), label));
+        }
+        for (Relationships relationship : Relationships.values()) {
+            relationships.put(relationship, relationshipOverrides.getOrDefault(relationship.name(), relationship));
+        }
+    }
+
+    public Label label(Label label) {
+        if (label instanceof Labels) {
+            return labels.get(label);
+        }
+        return labelOverrides.getOrDefault(label.toString(), label);
+    }
+
+    public RelationshipType relationship(RelationshipType relationship) {
+        if (relationship instanceof Relationships) {
+            return relationships.get(relationship);
+        }
+        return relationshipOverrides.getOrDefault(relationship.name(), relationship);
+    }
+
+    public String property(String key) {
+        return propertyOverrides.getOrDefault(key, key);
+    }
+}
@@ -6,4 +6,13 @@ public final class SettingsConstants {
     public static final String DEFAULT_TEXT_PROCESSOR = "defaultProcessor";
     public static final String DEFAULT_PIPELINE = "defaultPipeline";
     public static final String DEFAULT_MODEL_WORKDIR = "defaultModelWorkdir";
+    public static final String WORKFLOW_TASK_POOL_SIZE = "workflowTaskPoolSize";
+    public static final String WORKFLOW_MAX_TASKS_PER_OUTPUT = "workflowMaxTasksPerOutput";
+    public static final String WORKFLOW_SYNC_TASK_TIMEOUT = "workflowSyncTaskTimeout";
+    public static final String ANNOTATION_CACHE_SIZE = "annotationCacheSize";
+    public static final String ANNOTATION_CACHE_DIRECTORY = "annotationCacheDirectory";
+    public static final String ANNOTATION_MAX_IN_FLIGHT = "annotationMaxInFlight";
+    public static final String ANNOTATION_QUEUE_SIZE = "annotationQueueSize";
+    public static final String ANNOTATION_QUEUE_TIMEOUT = "annotationQueueTimeout";
+    public static final String TEXTRANK_NATIVE_COOCCURRENCES = "textRankNativeCooccurrences";
 }
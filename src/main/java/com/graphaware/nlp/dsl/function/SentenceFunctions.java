@@ -15,6 +15,10 @@
  */
 package com.graphaware.nlp.dsl.function;
 
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.dsl.AbstractDSL;
+import com.graphaware.nlp.persistence.LeanOccurrences;
+import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.persistence.constants.Properties;
 import com.graphaware.nlp.persistence.constants.Relationships;
 import org.neo4j.graphdb.Direction;
@@ -25,11 +29,12 @@ import org.neo4j.procedure.Name;
 import org.neo4j.procedure.UserFunction;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class SentenceFunctions {
+public class SentenceFunctions extends AbstractDSL {
 
     @UserFunction("ga.nlp.sentence.nextTags")
     @Description("Returns a list of Tag nodes that appear just after the given Tag in a sentence along with the frequency")
@@ -64,4 +69,94 @@ public class SentenceFunctions {
         return response;
     }
 
+    @UserFunction("ga.nlp.sentence.occurrences")
+    @Description("Returns the tag occurrences of the given Sentence ordered by position, whether they are stored as TagOccurrence nodes or in lean mode")
+    public List<Map<String, Object>> occurrences(@Name("sentence") Node sentence) {
+        DynamicConfiguration configuration = getConfiguration();
+        List<Map<String, Object>> response = new ArrayList<>();
+        if (LeanOccurrences.isLean(sentence, configuration)) {
+            LeanOccurrences occurrences = LeanOccurrences.read(sentence, configuration);
+            for (int i = 0; i < occurrences.size(); i++) {
+                response.add(leanOccurrence(occurrences, i));
+            }
+            return response;
+        }
+
+        for (Node occurrence : getOccurrenceNodes(sentence, configuration)) {
+            response.add(occurrence(occurrence, configuration));
+        }
+
+        return response;
+    }
+
+    @UserFunction("ga.nlp.sentence.dependencies")
+    @Description("Returns the typed dependencies between the tag occurrences of the given Sentence, whether they are stored as relationships or in lean mode")
+    public List<Map<String, Object>> dependencies(@Name("sentence") Node sentence) {
+        DynamicConfiguration configuration = getConfiguration();
+        List<Map<String, Object>> response = new ArrayList<>();
+        if (LeanOccurrences.isLean(sentence, configuration)) {
+            LeanOccurrences occurrences = LeanOccurrences.read(sentence, configuration);
+            for (int i = 0; i < occurrences.dependencyCount(); i++) {
+                response.add(dependency(occurrences.getDependencyType(i), occurrences.getDependencySpecific(i),
+                        leanOccurrence(occurrences, occurrences.getDependencySource(i)),
+                        leanOccurrence(occurrences, occurrences.getDependencyTarget(i))));
+            }
+            return response;
+        }
+
+        String tagOccurrenceTag = configuration.getRelationshipFor(Relationships.TAG_OCCURRENCE_TAG).name();
+        for (Node source : getOccurrenceNodes(sentence, configuration)) {
+            for (Relationship rel : source.getRelationships(Direction.OUTGOING)) {
+                Node target = rel.getEndNode();
+                if (rel.getType().name().equals(tagOccurrenceTag) || !target.hasLabel(configuration.getLabelFor(Labels.TagOccurrence))) {
+                    continue;
+                }
+                response.add(dependency(rel.getType().name(), (String) rel.getProperty(configuration.getPropertyKeyFor(Properties.DEPENDENCY_SPECIFIC), null),
+                        occurrence(source, configuration), occurrence(target, configuration)));
+            }
+        }
+
+        return response;
+    }
+
+    private List<Node> getOccurrenceNodes(Node sentence, DynamicConfiguration configuration) {
+        String begin = configuration.getPropertyKeyFor(Properties.OCCURRENCE_BEGIN);
+        List<Node> occurrences = new ArrayList<>();
+        sentence.getRelationships(configuration.getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE), Direction.OUTGOING)
+                .forEach(rel -> occurrences.add(rel.getEndNode()));
+        occurrences.sort(Comparator.comparingInt(occurrence -> ((Number) occurrence.getProperty(begin)).intValue()));
+
+        return occurrences;
+    }
+
+    private Map<String, Object> leanOccurrence(LeanOccurrences occurrences, int index) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("begin", occurrences.getBegin(index));
+        m.put("end", occurrences.getEnd(index));
+        m.put("value", occurrences.getValue(index));
+        m.put("tag", database.getNodeById(occurrences.getTagNodeId(index)));
+
+        return m;
+    }
+
+    private Map<String, Object> occurrence(Node occurrence, DynamicConfiguration configuration) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("begin", occurrence.getProperty(configuration.getPropertyKeyFor(Properties.OCCURRENCE_BEGIN)));
+        m.put("end", occurrence.getProperty(configuration.getPropertyKeyFor(Properties.OCCURRENCE_END)));
+        m.put("value", occurrence.getProperty(configuration.getPropertyKeyFor(Properties.TAG_ORIGINAL_VALUE), null));
+        m.put("tag", occurrence.getSingleRelationship(configuration.getRelationshipFor(Relationships.TAG_OCCURRENCE_TAG), Direction.OUTGOING).getEndNode());
+
+        return m;
+    }
+
+    private Map<String, Object> dependency(String type, String specific, Map<String, Object> source, Map<String, Object> target) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("type", type);
+        m.put("specific", specific);
+        m.put("source", source);
+        m.put("target", target);
+
+        return m;
+    }
+
 }
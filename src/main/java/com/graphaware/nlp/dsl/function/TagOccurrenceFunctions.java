@@ -24,16 +24,28 @@ import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.UserFunction;
 
+import java.util.Map;
+
 public class TagOccurrenceFunctions {
 
     @Context
     public GraphDatabaseService database;
 
     @UserFunction("ga.nlp.tagForOccurrence")
-    @Description("Returns the Tag node associated to a given TagOccurrence")
-    public Node getTagForOccurrence(@Name("occurrence") Node occurrence) {
+    @Description("Returns the Tag node associated to a given TagOccurrence node, or to an occurrence returned by ga.nlp.sentence.occurrences (sentences stored in lean mode have no TagOccurrence nodes)")
+    public Node getTagForOccurrence(@Name("occurrence") Object occurrence) {
+        if (occurrence instanceof Map) {
+            Object tag = ((Map<?, ?>) occurrence).get("tag");
+            if (!(tag instanceof Node)) {
+                throw new RuntimeException("The occurrence has no tag, use the occurrences returned by ga.nlp.sentence.occurrences");
+            }
+            return (Node) tag;
+        }
+        if (!(occurrence instanceof Node)) {
+            throw new RuntimeException("Expected a TagOccurrence node or an occurrence returned by ga.nlp.sentence.occurrences");
+        }
         try {
-            return occurrence.getSingleRelationship(Relationships.TAG_OCCURRENCE_TAG, Direction.OUTGOING).getEndNode();
+            return ((Node) occurrence).getSingleRelationship(Relationships.TAG_OCCURRENCE_TAG, Direction.OUTGOING).getEndNode();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -15,17 +15,28 @@
  */
 package com.graphaware.nlp.dsl.procedure;
 
+import com.graphaware.nlp.domain.AnnotatedText;
 import com.graphaware.nlp.dsl.AbstractDSL;
 import com.graphaware.nlp.dsl.request.AnnotationRequest;
+import com.graphaware.nlp.dsl.request.BatchAnnotationRequest;
+import com.graphaware.nlp.dsl.request.CsvExportRequest;
 import com.graphaware.nlp.dsl.request.FilterRequest;
+import com.graphaware.nlp.dsl.result.AnnotationAdmissionResult;
+import com.graphaware.nlp.dsl.result.BatchAnnotationResult;
+import com.graphaware.nlp.dsl.result.CsvExportResult;
 import com.graphaware.nlp.dsl.result.NodeResult;
 import com.graphaware.nlp.dsl.result.SingleResult;
+import com.graphaware.nlp.dsl.result.TextAnnotationResult;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
 import org.neo4j.graphdb.Node;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Mode;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 
@@ -43,7 +54,57 @@ public class AnnotateProcedure extends AbstractDSL {
             throw new RuntimeException(e);
         }
     }
-    
+
+    @Procedure(name = "ga.nlp.annotate.batch", mode = Mode.WRITE)
+    @Description("Performs the annotation of a list of {id, text} documents and store them into the graph, committing every batchSize documents")
+    public Stream<BatchAnnotationResult> annotateBatch(@Name("documents") List<Map<String, Object>> documents, @Name(value = "config", defaultValue = "") Map<String, Object> config) {
+        try {
+            BatchAnnotationRequest request = BatchAnnotationRequest.fromMap(documents, config);
+            return Stream.of(getNLPManager().annotateTextsAndPersist(request));
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Procedure(name = "ga.nlp.annotate.texts", mode = Mode.READ)
+    @Description("Performs the annotation of a list of {id, text} documents in parallel and returns the annotations without storing them")
+    public Stream<TextAnnotationResult> annotateTexts(@Name("documents") List<Map<String, Object>> documents, @Name(value = "config", defaultValue = "") Map<String, Object> config) {
+        try {
+            BatchAnnotationRequest request = BatchAnnotationRequest.fromMap(documents, config);
+            List<AnnotatedText> annotatedTexts = getNLPManager().annotateTexts(request);
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.configure(SerializationConfig.Feature.FAIL_ON_EMPTY_BEANS, false);
+            List<TextAnnotationResult> results = new ArrayList<>(annotatedTexts.size());
+            for (int i = 0; i < annotatedTexts.size(); i++) {
+                results.add(new TextAnnotationResult(request.getDocuments().get(i).getId(), mapper.convertValue(annotatedTexts.get(i), Map.class)));
+            }
+            return results.stream();
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Procedure(name = "ga.nlp.annotate.exportCsv", mode = Mode.READ)
+    @Description("Performs the annotation of the {id, text} json lines of a file and writes the resulting graph as neo4j-admin import CSV files")
+    public Stream<CsvExportResult> exportCsv(@Name("exportRequest") Map<String, Object> exportRequest) {
+        try {
+            CsvExportRequest request = CsvExportRequest.fromMap(exportRequest);
+            return Stream.of(getNLPManager().exportAnnotatedTextsToCsv(request));
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Procedure(name = "ga.nlp.annotate.admission", mode = Mode.READ)
+    @Description("Returns, for each pipeline, the running and waiting annotations and the number of admitted, rejected and timed out annotation calls")
+    public Stream<AnnotationAdmissionResult> admission() {
+        return getNLPManager().getAnnotationAdmission().getBulkheads().stream()
+                .map(AnnotationAdmissionResult::new);
+    }
+
     @Procedure(name = "ga.nlp.filter", mode = Mode.WRITE)
     @Description("Boolean filter for text accordingly to complex filter definition")
     public Stream<SingleResult> filter(@Name("filterRequest") Map<String, Object> filterRequest) {
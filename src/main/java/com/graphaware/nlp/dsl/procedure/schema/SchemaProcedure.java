@@ -4,12 +4,14 @@ import com.graphaware.nlp.dsl.AbstractDSL;
 import com.graphaware.nlp.dsl.result.KeyValueResult;
 import com.graphaware.nlp.persistence.constants.Labels;
 import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.schema.ConstraintDefinition;
 import org.neo4j.graphdb.schema.IndexDefinition;
 import org.neo4j.procedure.Mode;
 import org.neo4j.procedure.Procedure;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -25,6 +27,7 @@ public class SchemaProcedure extends AbstractDSL {
         Label sentenceLabel = getConfiguration().getLabelFor(Labels.Sentence);
         Label tagLabel = getConfiguration().getLabelFor(Labels.Tag);
         Label keywordLabel = getConfiguration().getLabelFor(Labels.Keyword);
+        Label phraseLabel = getConfiguration().getLabelFor(Labels.Phrase);
         String property = "id";
         String textProperty = "value";
 
@@ -34,30 +37,89 @@ public class SchemaProcedure extends AbstractDSL {
         results.add(new KeyValueResult(format(tagLabel, property, UNIQUE), createConstraint(tagLabel, property)));
         results.add(new KeyValueResult(format(keywordLabel, property, UNIQUE), createConstraint(keywordLabel, property)));
         results.add(new KeyValueResult(format(tagLabel, textProperty, ""), createIndex(tagLabel, textProperty)));
+        results.add(new KeyValueResult(format(phraseLabel, textProperty, UNIQUE), createConstraintOnExistingValues(phraseLabel, textProperty)));
 
         return results.stream();
 
     }
 
     private String createConstraint(Label label, String property) {
-        for (ConstraintDefinition constraintDefinition : database.schema().getConstraints(label)) {
-            for (String s : constraintDefinition.getPropertyKeys()) {
-                if (s.equals(property)) {
-                    return EXISTED;
-                }
-            }
+        if (hasConstraint(label, property)) {
+            return EXISTED;
         }
 
         try {
             database.schema().constraintFor(label).assertPropertyIsUnique(property).create();
             return CREATED;
         } catch (Exception e) {
-            throw new RuntimeException(e);
+            throw new RuntimeException("Unable to create the unique constraint on " + describe(label, property), e);
+        }
+    }
+
+    /**
+     * Creates a unique constraint on a property whose values were not unique in the previous versions (the phrases were
+     * created without it): the creation fails on duplicate values or on an existing index on the property, these are
+     * reported with the way to fix them instead of the bare schema error.
+     */
+    private String createConstraintOnExistingValues(Label label, String property) {
+        if (hasConstraint(label, property)) {
+            return EXISTED;
+        }
+        for (IndexDefinition indexDefinition : database.schema().getIndexes(label)) {
+            if (!indexDefinition.isConstraintIndex() && contains(indexDefinition.getPropertyKeys(), property)) {
+                throw new RuntimeException("An index on " + describe(label, property) + " already exists and prevents creating its unique constraint, "
+                        + "drop it with 'DROP INDEX ON " + describe(label, property) + "' and call ga.nlp.createSchema again");
+            }
+        }
+        List<Object> duplicates = findDuplicateValues(label, property);
+        if (!duplicates.isEmpty()) {
+            throw new RuntimeException("Cannot create the unique constraint on " + describe(label, property) + ", some nodes share the same value "
+                    + "(e.g. " + duplicates + "). Merge the duplicate nodes as described in the README (Upgrading) and call ga.nlp.createSchema again");
         }
+
+        return createConstraint(label, property);
+    }
+
+    private List<Object> findDuplicateValues(Label label, String property) {
+        String query = "MATCH (n:`" + label.name() + "`) WHERE exists(n.`" + property + "`) "
+                + "WITH n.`" + property + "` AS value, count(*) AS nodes WHERE nodes > 1 "
+                + "RETURN value LIMIT 5";
+        List<Object> values = new ArrayList<>();
+        try (Result result = database.execute(query, Collections.emptyMap())) {
+            while (result.hasNext()) {
+                values.add(result.next().get("value"));
+            }
+        }
+
+        return values;
+    }
+
+    private boolean hasConstraint(Label label, String property) {
+        for (ConstraintDefinition constraintDefinition : database.schema().getConstraints(label)) {
+            if (contains(constraintDefinition.getPropertyKeys(), property)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean contains(Iterable<String> propertyKeys, String property) {
+        for (String s : propertyKeys) {
+            if (s.equals(property)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private String describe(Label label, String property) {
+        return ":" + label.name() + "(" + property + ")";
     }
 
     private String createIndex(Label label, String property) {
-        for (IndexDefinition indexDefinition : database.schema().getIndexes()) {
+        for (IndexDefinition indexDefinition : database.schema().getIndexes(label)) {
             for (String s : indexDefinition.getPropertyKeys()) {
                 if (s.equals(property)) {
                     return EXISTED;
@@ -20,6 +20,8 @@ import com.graphaware.nlp.dsl.result.NodeResult;
 import com.graphaware.nlp.dsl.result.SingleResult;
 import com.graphaware.nlp.dsl.result.WorkflowInstanceItemInfo;
 import com.graphaware.nlp.dsl.result.WorkflowItemInfo;
+import com.graphaware.nlp.workflow.input.DocumentWorkflowInput;
+import com.graphaware.nlp.workflow.input.FileWorkflowInput;
 import com.graphaware.nlp.workflow.input.QueryBasedWorkflowInput;
 import com.graphaware.nlp.workflow.input.WorkflowInput;
 import java.util.Map;
@@ -80,6 +82,34 @@ public class WorkflowInputProcedure extends AbstractDSL {
         return create(name, cl, parameters);
     }
 
+    @Procedure(name = "ga.nlp.workflow.createFileInput", mode = Mode.WRITE)
+    @Description("Create a Pipeline input streaming a file or a directory of the import directory")
+    public Stream<WorkflowInstanceItemInfo> createFileInput(@Name("name") String name, @Name("parameters") Map<String, Object> parameters) {
+        if (!parameters.containsKey("path")) {
+            throw new RuntimeException("the parameters must contain a path key");
+        }
+        if (!StringUtils.isNotBlank(name)) {
+            throw new RuntimeException("Invalid name");
+        }
+        String cl = FileWorkflowInput.class.getName();
+
+        return create(name, cl, parameters);
+    }
+
+    @Procedure(name = "ga.nlp.workflow.createDocumentInput", mode = Mode.WRITE)
+    @Description("Create a Pipeline input extracting the text of the PDF, Word and Powerpoint documents of a directory")
+    public Stream<WorkflowInstanceItemInfo> createDocumentInput(@Name("name") String name, @Name("parameters") Map<String, Object> parameters) {
+        if (!parameters.containsKey("path")) {
+            throw new RuntimeException("the parameters must contain a path key");
+        }
+        if (!StringUtils.isNotBlank(name)) {
+            throw new RuntimeException("Invalid name");
+        }
+        String cl = DocumentWorkflowInput.class.getName();
+
+        return create(name, cl, parameters);
+    }
+
     @Procedure(name = "ga.nlp.workflow.input.instance.list", mode = Mode.READ)
     @Description("List Pipelines input")
     public Stream<WorkflowInstanceItemInfo> list() {
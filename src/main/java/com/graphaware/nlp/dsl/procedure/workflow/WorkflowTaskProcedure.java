@@ -16,14 +16,20 @@
 package com.graphaware.nlp.dsl.procedure.workflow;
 
 import com.graphaware.nlp.dsl.AbstractDSL;
+import com.graphaware.nlp.dsl.result.WorkflowDeadLetterResult;
 import com.graphaware.nlp.dsl.result.WorkflowInstanceItemInfo;
 import com.graphaware.nlp.dsl.result.WorkflowItemInfo;
+import com.graphaware.nlp.dsl.result.WorkflowItemMetricsResult;
 import com.graphaware.nlp.dsl.result.SingleResult;
+import com.graphaware.nlp.dsl.result.WorkflowTaskQueueResult;
 import com.graphaware.nlp.dsl.result.WorkflowTaskResult;
+import com.graphaware.nlp.workflow.task.PendingTaskExecution;
 import com.graphaware.nlp.workflow.task.WorkflowTask;
 import com.graphaware.nlp.workflow.task.TaskManager;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Mode;
@@ -118,6 +124,22 @@ public class WorkflowTaskProcedure  extends AbstractDSL {
         }
     } 
     
+    @Procedure(name = "ga.nlp.workflow.task.resume", mode = Mode.WRITE)
+    @Description("Resume a Task from its last checkpoint")
+    public Stream<WorkflowTaskResult> resume(@Name(value = "name") String name) {
+        try {
+            WorkflowTask workflowTask = getWorkflowManager().getWorkflowTask(name);
+            if (workflowTask == null) {
+                throw new RuntimeException("Pipeline task not found");
+            }
+            TaskManager.getInstance().resume(workflowTask);
+            return Stream.of(new WorkflowTaskResult(workflowTask));
+        } catch (Exception e) {
+            LOG.error("ERROR in WorkflowTaskProcedure", e);
+            throw new RuntimeException(e);
+        }
+    } 
+    
     @Procedure(name = "ga.nlp.workflow.task.stop", mode = Mode.WRITE)
     @Description("Start a Task")
     public Stream<WorkflowInstanceItemInfo> stop(@Name(value = "name") String name) {
@@ -134,15 +156,104 @@ public class WorkflowTaskProcedure  extends AbstractDSL {
         }
     } 
     
+    @Procedure(name = "ga.nlp.workflow.task.replay", mode = Mode.WRITE)
+    @Description("Run the dead letters of a Task through its processors and outputs again")
+    public Stream<WorkflowTaskResult> replay(@Name(value = "name") String name) {
+        try {
+            WorkflowTask workflowTask = getWorkflowManager().getWorkflowTask(name);
+            if (workflowTask == null) {
+                throw new RuntimeException("Pipeline task not found");
+            }
+            TaskManager.getInstance().replay(workflowTask);
+            return Stream.of(new WorkflowTaskResult(workflowTask));
+        } catch (Exception e) {
+            LOG.error("ERROR in WorkflowTaskProcedure", e);
+            throw new RuntimeException(e);
+        }
+    } 
+    
+    @Procedure(name = "ga.nlp.workflow.task.deadLetters", mode = Mode.READ)
+    @Description("List the entries a Task failed to process")
+    public Stream<WorkflowDeadLetterResult> deadLetters(@Name(value = "name") String name) {
+        try {
+            WorkflowTask workflowTask = getWorkflowManager().getWorkflowTask(name);
+            if (workflowTask == null) {
+                throw new RuntimeException("Pipeline task not found");
+            }
+            return workflowTask.getDeadLetters().list(name).stream().map(WorkflowDeadLetterResult::new);
+        } catch (Exception e) {
+            LOG.error("ERROR in WorkflowTaskProcedure", e);
+            throw new RuntimeException(e);
+        }
+    } 
+    
+    @Procedure(name = "ga.nlp.workflow.task.pause", mode = Mode.WRITE)
+    @Description("Pause a Task before its next input entry")
+    public Stream<WorkflowTaskResult> pause(@Name(value = "name") String name) {
+        try {
+            WorkflowTask workflowTask = getWorkflowManager().getWorkflowTask(name);
+            if (workflowTask == null) {
+                throw new RuntimeException("Pipeline task not found");
+            }
+            TaskManager.getInstance().pause(workflowTask);
+            return Stream.of(new WorkflowTaskResult(workflowTask));
+        } catch (Exception e) {
+            LOG.error("ERROR in WorkflowTaskProcedure", e);
+            throw new RuntimeException(e);
+        }
+    } 
+    
+    @Procedure(name = "ga.nlp.workflow.task.unpause", mode = Mode.WRITE)
+    @Description("Let a paused Task continue")
+    public Stream<WorkflowTaskResult> unpause(@Name(value = "name") String name) {
+        try {
+            WorkflowTask workflowTask = getWorkflowManager().getWorkflowTask(name);
+            if (workflowTask == null) {
+                throw new RuntimeException("Pipeline task not found");
+            }
+            TaskManager.getInstance().unpause(workflowTask);
+            return Stream.of(new WorkflowTaskResult(workflowTask));
+        } catch (Exception e) {
+            LOG.error("ERROR in WorkflowTaskProcedure", e);
+            throw new RuntimeException(e);
+        }
+    } 
+    
+    @Procedure(name = "ga.nlp.workflow.task.queue", mode = Mode.READ)
+    @Description("List the Task executions waiting to start, in the order they will be considered")
+    public Stream<WorkflowTaskQueueResult> queue() {
+        List<PendingTaskExecution> pending = TaskManager.getInstance().getPendingExecutions();
+        return IntStream.range(0, pending.size())
+                .mapToObj(i -> new WorkflowTaskQueueResult(pending.get(i), i));
+    } 
+    
     @Procedure(name = "ga.nlp.workflow.task.status", mode = Mode.READ)
-    @Description("Start a Task")
-    public Stream<WorkflowInstanceItemInfo> status(@Name(value = "name") String name) {
+    @Description("Get the status and the progress of a Task")
+    public Stream<WorkflowTaskResult> status(@Name(value = "name") String name) {
         try {
             WorkflowTask workflowTask = getWorkflowManager().getWorkflowTask(name);
             if (workflowTask == null) {
                 throw new RuntimeException("Pipeline task not found");
             }
-            return Stream.of(workflowTask.getInfo());
+            return Stream.of(new WorkflowTaskResult(workflowTask));
+        } catch (Exception e) {
+            LOG.error("ERROR in WorkflowTaskProcedure", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Procedure(name = "ga.nlp.workflow.task.metrics", mode = Mode.READ)
+    @Description("Get the metrics of the input, processors and outputs of a Task: items in and out, errors, queue depth, latency percentiles in ms and throughput")
+    public Stream<WorkflowItemMetricsResult> metrics(@Name(value = "name") String name) {
+        try {
+            WorkflowTask workflowTask = getWorkflowManager().getWorkflowTask(name);
+            if (workflowTask == null) {
+                throw new RuntimeException("Pipeline task not found");
+            }
+            return Stream.concat(Stream.of(new WorkflowItemMetricsResult(name, "input", workflowTask.getInput())),
+                    Stream.concat(
+                            workflowTask.getProcessors().stream().map(processor -> new WorkflowItemMetricsResult(name, "processor", processor)),
+                            workflowTask.getOutputs().stream().map(output -> new WorkflowItemMetricsResult(name, "output", output))));
         } catch (Exception e) {
             LOG.error("ERROR in WorkflowTaskProcedure", e);
             throw new RuntimeException(e);
@@ -34,6 +34,12 @@ public class AnnotationRequest extends AbstractProcedureRequest {
 
     private boolean force;
 
+    private boolean incremental;
+
+    private int chunkSize;
+
+    private boolean persistChunks;
+
     private boolean checkLanguage = true;
 
     private List<String> annotators = new ArrayList<>();
@@ -63,6 +69,9 @@ public class AnnotationRequest extends AbstractProcedureRequest {
                 TEXT_KEY,
                 PIPELINE_KEY,
                 FORCE_KEY,
+                INCREMENTAL_KEY,
+                CHUNK_SIZE_KEY,
+                PERSIST_CHUNKS_KEY,
                 CHECK_LANGUAGE_KEY,
                 ANNOTATORS,
                 EXCLUDED_NER,
@@ -81,6 +90,10 @@ public class AnnotationRequest extends AbstractProcedureRequest {
     public static AnnotationRequest fromMap(Map<String, Object> map) {
         AnnotationRequest request = mapper.convertValue(map, AnnotationRequest.class);
         request.validateMap(map);
+        if (request.isIncremental() && request.isPersistChunks()) {
+            // chunks are stored after the old sentences are deleted, there is nothing to compare them with
+            throw new RuntimeException("The " + INCREMENTAL_KEY + " and " + PERSIST_CHUNKS_KEY + " parameters cannot be used together");
+        }
 
         return request;
     }
@@ -105,6 +118,25 @@ public class AnnotationRequest extends AbstractProcedureRequest {
         return force;
     }
 
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * @return the number of characters above which the text is annotated in chunks of about this size, 0 to annotate
+     * the text at once
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return whether the chunks are stored as soon as they are annotated instead of being merged first
+     */
+    public boolean isPersistChunks() {
+        return persistChunks;
+    }
+
     public boolean isCheckLanguage() {
         return checkLanguage;
     }
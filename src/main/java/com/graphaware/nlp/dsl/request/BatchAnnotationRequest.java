@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.nlp.dsl.request.RequestConstants.*;
+
+public class BatchAnnotationRequest extends AbstractProcedureRequest {
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private String pipeline;
+
+    private boolean checkLanguage = true;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private List<AnnotationRequest> documents = new ArrayList<>();
+
+    public BatchAnnotationRequest() {
+
+    }
+
+    @Override
+    public List<String> validMapKeys() {
+        return Arrays.asList(
+                PIPELINE_KEY,
+                CHECK_LANGUAGE_KEY,
+                BATCH_SIZE_KEY
+        );
+    }
+
+    public static BatchAnnotationRequest fromMap(List<Map<String, Object>> documents, Map<String, Object> map) {
+        Map<String, Object> config = map != null ? map : new HashMap<>();
+        BatchAnnotationRequest request = mapper.convertValue(config, BatchAnnotationRequest.class);
+        request.validateMap(config);
+        if (request.batchSize <= 0) {
+            throw new RuntimeException("The batchSize should be greater than 0");
+        }
+        documents.forEach(document -> {
+            request.documents.add(AnnotationRequest.fromMap(document));
+        });
+
+        return request;
+    }
+
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    public boolean isCheckLanguage() {
+        return checkLanguage;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public List<AnnotationRequest> getDocuments() {
+        return documents;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.request;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.nlp.dsl.request.RequestConstants.*;
+
+public class CsvExportRequest extends AbstractProcedureRequest {
+
+    private static final String DEFAULT_DATABASE = "graph.db";
+
+    private String inputFile;
+
+    private String outputDirectory;
+
+    private String pipeline;
+
+    private boolean checkLanguage = true;
+
+    private String database = DEFAULT_DATABASE;
+
+    public CsvExportRequest() {
+
+    }
+
+    @Override
+    public List<String> validMapKeys() {
+        return Arrays.asList(
+                INPUT_FILE_KEY,
+                OUTPUT_DIRECTORY_KEY,
+                PIPELINE_KEY,
+                CHECK_LANGUAGE_KEY,
+                DATABASE_KEY
+        );
+    }
+
+    @Override
+    public List<String> mandatoryKeys() {
+        return Arrays.asList(
+                INPUT_FILE_KEY,
+                OUTPUT_DIRECTORY_KEY
+        );
+    }
+
+    public static CsvExportRequest fromMap(Map<String, Object> map) {
+        CsvExportRequest request = mapper.convertValue(map, CsvExportRequest.class);
+        request.validateMap(map);
+
+        return request;
+    }
+
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    public String getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    public boolean isCheckLanguage() {
+        return checkLanguage;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+}
@@ -43,6 +43,10 @@ public class PipelineSpecification {
 
     public List<String> excludedPOS = new ArrayList<>();
 
+    public boolean leanOccurrences;
+
+    public boolean snapshot;
+
     public PipelineSpecification() {
     }
 
@@ -65,6 +69,12 @@ public class PipelineSpecification {
         if (map.containsKey(EXCLUDED_NER)) {
             pipelineSpecification.setExcludedNER((List<String>) map.get(EXCLUDED_NER));
         }
+        if (map.containsKey(LEAN_OCCURRENCES_KEY)) {
+            pipelineSpecification.setLeanOccurrences((Boolean) map.get(LEAN_OCCURRENCES_KEY));
+        }
+        if (map.containsKey(SNAPSHOT_KEY)) {
+            pipelineSpecification.setSnapshot((Boolean) map.get(SNAPSHOT_KEY));
+        }
 
         return pipelineSpecification;
     }
@@ -149,6 +159,22 @@ public class PipelineSpecification {
         this.excludedPOS = excludedPOS;
     }
 
+    public boolean isLeanOccurrences() {
+        return leanOccurrences;
+    }
+
+    public void setLeanOccurrences(boolean leanOccurrences) {
+        this.leanOccurrences = leanOccurrences;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
     private boolean objectToBoolean(Object obj) {
         boolean result = false;
         if (obj instanceof Boolean)
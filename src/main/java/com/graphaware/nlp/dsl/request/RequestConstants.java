@@ -22,6 +22,9 @@ public final class RequestConstants {
     public static final String PIPELINE_KEY = "pipeline";
     public static final String ID_KEY = "id";
     public static final String FORCE_KEY = "force";
+    public static final String INCREMENTAL_KEY = "incremental";
+    public static final String CHUNK_SIZE_KEY = "chunkSize";
+    public static final String PERSIST_CHUNKS_KEY = "persistChunks";
     public static final String FILTER_KEY = "filter";
     public static final String ENRICHER_KEY = "enricher";
     public static final String RELATIONSHIP_TYPE_KEY = "relationshipType";
@@ -30,4 +33,10 @@ public final class RequestConstants {
     public static final String EXCLUDED_NER = "excludedNER";
     public static final String EXCLUDED_POS = "excludedPOS";
     public static final String MIN_WEIGHT = "minWeight";
+    public static final String BATCH_SIZE_KEY = "batchSize";
+    public static final String INPUT_FILE_KEY = "inputFile";
+    public static final String OUTPUT_DIRECTORY_KEY = "outputDirectory";
+    public static final String DATABASE_KEY = "database";
+    public static final String LEAN_OCCURRENCES_KEY = "leanOccurrences";
+    public static final String SNAPSHOT_KEY = "snapshot";
 }
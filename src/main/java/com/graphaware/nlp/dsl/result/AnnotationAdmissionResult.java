@@ -0,0 +1,33 @@
+package com.graphaware.nlp.dsl.result;
+
+import com.graphaware.nlp.processor.AnnotationAdmission;
+
+public class AnnotationAdmissionResult {
+
+    public String pipeline;
+
+    public long maxInFlight;
+
+    public long inFlight;
+
+    public long maxQueued;
+
+    public long queued;
+
+    public long admitted;
+
+    public long rejected;
+
+    public long timedOut;
+
+    public AnnotationAdmissionResult(AnnotationAdmission.Bulkhead bulkhead) {
+        this.pipeline = bulkhead.getPipeline();
+        this.maxInFlight = bulkhead.getMaxInFlight();
+        this.inFlight = bulkhead.getInFlight();
+        this.maxQueued = bulkhead.getMaxQueued();
+        this.queued = bulkhead.getQueued();
+        this.admitted = bulkhead.getAdmitted();
+        this.rejected = bulkhead.getRejected();
+        this.timedOut = bulkhead.getTimedOut();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.result;
+
+public class CsvExportResult {
+
+    public long documents;
+
+    public long tags;
+
+    public long phrases;
+
+    public long timeTaken;
+
+    public String importCommand;
+
+    public CsvExportResult(long documents, long tags, long phrases, long timeTaken, String importCommand) {
+        this.documents = documents;
+        this.tags = tags;
+        this.phrases = phrases;
+        this.timeTaken = timeTaken;
+        this.importCommand = importCommand;
+    }
+}
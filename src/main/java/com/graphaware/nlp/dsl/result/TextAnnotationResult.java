@@ -0,0 +1,15 @@
+package com.graphaware.nlp.dsl.result;
+
+import java.util.Map;
+
+public class TextAnnotationResult {
+
+    public String id;
+
+    public Map<String, Object> annotation;
+
+    public TextAnnotationResult(String id, Map<String, Object> annotation) {
+        this.id = id;
+        this.annotation = annotation;
+    }
+}
@@ -0,0 +1,34 @@
+package com.graphaware.nlp.dsl.result;
+
+import com.graphaware.nlp.workflow.task.DeadLetterStore;
+import java.util.Map;
+
+public class WorkflowDeadLetterResult {
+
+    public String taskName;
+
+    public String entryId;
+
+    public String stage;
+
+    public String item;
+
+    public String exception;
+
+    public String error;
+
+    public long attempts;
+
+    public long failedAt;
+
+    public WorkflowDeadLetterResult(Map<String, Object> deadLetter) {
+        this.taskName = (String) deadLetter.get(DeadLetterStore.TASK);
+        this.entryId = (String) deadLetter.get(DeadLetterStore.ENTRY_ID);
+        this.stage = (String) deadLetter.get(DeadLetterStore.STAGE);
+        this.item = (String) deadLetter.get(DeadLetterStore.ITEM);
+        this.exception = (String) deadLetter.get(DeadLetterStore.EXCEPTION);
+        this.error = (String) deadLetter.get(DeadLetterStore.ERROR);
+        this.attempts = ((Number) deadLetter.getOrDefault(DeadLetterStore.ATTEMPTS, 0L)).longValue();
+        this.failedAt = ((Number) deadLetter.getOrDefault(DeadLetterStore.FAILED_AT, 0L)).longValue();
+    }
+}
@@ -0,0 +1,44 @@
+package com.graphaware.nlp.dsl.result;
+
+import com.graphaware.nlp.workflow.WorkflowItem;
+import com.graphaware.nlp.workflow.WorkflowItemMetrics;
+
+public class WorkflowItemMetricsResult {
+
+    public String taskName;
+
+    public String stage;
+
+    public String name;
+
+    public long itemsIn;
+
+    public long itemsOut;
+
+    public long errors;
+
+    public long queueDepth;
+
+    public double p50;
+
+    public double p95;
+
+    public double p99;
+
+    public double docsPerSecond;
+
+    public WorkflowItemMetricsResult(String taskName, String stage, WorkflowItem item) {
+        WorkflowItemMetrics metrics = item.getMetrics();
+        this.taskName = taskName;
+        this.stage = stage;
+        this.name = item.getName();
+        this.itemsIn = metrics.getItemsIn();
+        this.itemsOut = metrics.getItemsOut();
+        this.errors = metrics.getErrors();
+        this.queueDepth = metrics.getQueueDepth();
+        this.p50 = metrics.getLatencyP50Millis();
+        this.p95 = metrics.getLatencyP95Millis();
+        this.p99 = metrics.getLatencyP99Millis();
+        this.docsPerSecond = metrics.getDocsPerSecond();
+    }
+}
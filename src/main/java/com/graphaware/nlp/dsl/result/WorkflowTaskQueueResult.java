@@ -0,0 +1,27 @@
+package com.graphaware.nlp.dsl.result;
+
+import com.graphaware.nlp.workflow.task.PendingTaskExecution;
+
+public class WorkflowTaskQueueResult {
+
+    public String taskName;
+
+    public long position;
+
+    public long priority;
+
+    public String outputType;
+
+    public boolean sync;
+
+    public long queuedAt;
+
+    public WorkflowTaskQueueResult(PendingTaskExecution execution, long position) {
+        this.taskName = execution.getTask().getName();
+        this.position = position;
+        this.priority = execution.getPriority();
+        this.outputType = String.join(",", execution.getOutputTypes());
+        this.sync = execution.isSync();
+        this.queuedAt = execution.getQueuedAt();
+    }
+}
@@ -1,6 +1,10 @@
 package com.graphaware.nlp.dsl.result;
 
+import com.graphaware.nlp.workflow.WorkflowItem;
 import com.graphaware.nlp.workflow.task.WorkflowTask;
+import com.graphaware.nlp.workflow.task.WorkflowTaskCheckpoint;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class WorkflowTaskResult {
 
@@ -16,12 +20,22 @@ public class WorkflowTaskResult {
 
     public String info;
 
+    public Map<String, Object> progress;
+
+    public Map<String, Object> checkpoint;
+
+    public long deadLetters;
+
     public WorkflowTaskResult(WorkflowTask task) {
         this.taskName = task.getName();
         this.input = task.getInput().getName();
-        this.processor = task.getProcess().getName();
-        this.output = task.getOutput().getName();
+        this.processor = task.getProcessors().stream().map(WorkflowItem::getName).collect(Collectors.joining(","));
+        this.output = task.getOutputs().stream().map(WorkflowItem::getName).collect(Collectors.joining(","));
         this.status = task.getStatus().name();
         this.info = task.getAdditionalInfo();
+        this.progress = task.getInput().getProgress();
+        WorkflowTaskCheckpoint taskCheckpoint = task.getCheckpoint();
+        this.checkpoint = taskCheckpoint != null ? taskCheckpoint.asMap() : null;
+        this.deadLetters = task.getDeadLetters().count(task.getName());
     }
 }
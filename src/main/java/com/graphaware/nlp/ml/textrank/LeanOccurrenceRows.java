@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.textrank;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.persistence.LeanOccurrences;
+import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.constants.Relationships;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Produces, for AnnotatedTexts with sentences stored in lean mode, the same rows as the TextRank co-occurrence and tag
+ * queries produce for TagOccurrence nodes. The storage mode is checked for each sentence, so a text whose sentences
+ * were stored partly in lean mode, for instance by an incremental update, is read whole.
+ */
+final class LeanOccurrenceRows {
+
+    private static final Set<String> RELATED_TAG_DEPENDENCIES = new HashSet<>(Arrays.asList("COMPOUND", "AMOD"));
+
+    private final GraphDatabaseService database;
+    private final DynamicConfiguration configuration;
+    private final Map<Long, Node> tags = new HashMap<>();
+
+    LeanOccurrenceRows(GraphDatabaseService database, DynamicConfiguration configuration) {
+        this.database = database;
+        this.configuration = configuration;
+    }
+
+    static boolean hasLeanSentences(Node annotatedText, DynamicConfiguration configuration) {
+        for (Relationship rel : annotatedText.getRelationships(configuration.getRelationshipFor(Relationships.CONTAINS_SENTENCE), Direction.OUTGOING)) {
+            if (LeanOccurrences.isLean(rel.getEndNode(), configuration)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Rows of consecutive tags passing the filters, within each sentence if respectSentences is true, across the
+     * whole text otherwise.
+     */
+    List<Map<String, Object>> cooccurrences(Node annotatedText, boolean respectSentences, Collection<String> stopWords,
+                                            Collection<String> forbiddenPOSs, Collection<String> forbiddenNEs) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<long[]> sequence = new ArrayList<>();
+        for (Node sentence : getSentences(annotatedText)) {
+            LeanOccurrences occurrences = LeanOccurrences.of(sentence, configuration);
+            if (respectSentences) {
+                sequence.clear();
+            }
+            for (int i = 0; i < occurrences.size(); i++) {
+                if (accept(getTag(occurrences.getTagNodeId(i)), stopWords, forbiddenPOSs, forbiddenNEs)) {
+                    sequence.add(new long[]{occurrences.getTagNodeId(i), occurrences.getBegin(i)});
+                }
+            }
+            if (respectSentences) {
+                addConsecutivePairs(sequence, rows);
+            }
+        }
+        if (!respectSentences) {
+            sequence.sort(Comparator.comparingLong(entry -> entry[1]));
+            addConsecutivePairs(sequence, rows);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Rows of tags whose occurrences are related by a typed dependency, ordered by position.
+     */
+    List<Map<String, Object>> dependencyCooccurrences(Node annotatedText) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Node sentence : getSentences(annotatedText)) {
+            LeanOccurrences occurrences = LeanOccurrences.of(sentence, configuration);
+            Set<Long> visited = new HashSet<>();
+            for (int i = 0; i < occurrences.dependencyCount(); i++) {
+                int first = occurrences.getDependencySource(i);
+                int second = occurrences.getDependencyTarget(i);
+                if (occurrences.getBegin(first) > occurrences.getBegin(second)) {
+                    int tmp = first;
+                    first = second;
+                    second = tmp;
+                }
+                if (occurrences.getBegin(first) == occurrences.getBegin(second) || !visited.add(((long) first << 32) | second)) {
+                    continue;
+                }
+                Node tag1 = getTag(occurrences.getTagNodeId(first));
+                Node tag2 = getTag(occurrences.getTagNodeId(second));
+                if (accept(tag1, null, null, null) && accept(tag2, null, null, null)) {
+                    rows.add(row(tag1, occurrences.getBegin(first), tag2, occurrences.getBegin(second)));
+                }
+            }
+        }
+        rows.sort(Comparator.<Map<String, Object>>comparingInt(row -> (Integer) row.get("sourceStartPosition"))
+                .thenComparingInt(row -> (Integer) row.get("destinationStartPosition")));
+
+        return rows;
+    }
+
+    /**
+     * One row per occurrence whose tag is not a stop word, with the tags of the COMPOUND and AMOD occurrences
+     * pointing to it, ordered by position.
+     */
+    List<Map<String, Object>> tags(Node annotatedText, Collection<String> posList, Collection<String> stopWords) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Node sentence : getSentences(annotatedText)) {
+            LeanOccurrences occurrences = LeanOccurrences.of(sentence, configuration);
+            for (int i = 0; i < occurrences.size(); i++) {
+                Node tag = getTag(occurrences.getTagNodeId(i));
+                if (stopWords.contains(getValue(tag).toLowerCase())) {
+                    continue;
+                }
+                List<Long> relatedTags = new ArrayList<>();
+                List<Number> relatedStarts = new ArrayList<>();
+                List<Number> relatedEnds = new ArrayList<>();
+                for (int d = 0; d < occurrences.dependencyCount(); d++) {
+                    if (occurrences.getDependencyTarget(d) != i || !RELATED_TAG_DEPENDENCIES.contains(occurrences.getDependencyType(d))) {
+                        continue;
+                    }
+                    int related = occurrences.getDependencySource(d);
+                    Node relatedTag = getTag(occurrences.getTagNodeId(related));
+                    String[] pos = getPos(relatedTag);
+                    if (pos.length == 0 || (Arrays.stream(pos).anyMatch(posList::contains) && !stopWords.contains(getValue(relatedTag).toLowerCase()))) {
+                        relatedTags.add(relatedTag.getId());
+                        relatedStarts.add(occurrences.getBegin(related));
+                        relatedEnds.add(occurrences.getEnd(related));
+                    }
+                }
+                List<String> labels = new ArrayList<>();
+                tag.getLabels().forEach(label -> labels.add(label.name()));
+
+                Map<String, Object> row = new HashMap<>();
+                row.put("tag", tag.getProperty(configuration.getPropertyKeyFor(Properties.PROPERTY_ID)));
+                row.put("sP", occurrences.getBegin(i));
+                row.put("eP", occurrences.getEnd(i));
+                row.put("tagId", tag.getId());
+                row.put("rel_tags", relatedTags);
+                row.put("rel_tos", relatedStarts);
+                row.put("rel_toe", relatedEnds);
+                row.put("labels", labels);
+                rows.add(row);
+            }
+        }
+        rows.sort(Comparator.comparingInt(row -> (Integer) row.get("sP")));
+
+        return rows;
+    }
+
+    private void addConsecutivePairs(List<long[]> sequence, List<Map<String, Object>> rows) {
+        for (int i = 0; i < sequence.size() - 1; i++) {
+            rows.add(row(getTag(sequence.get(i)[0]), (int) sequence.get(i)[1], getTag(sequence.get(i + 1)[0]), (int) sequence.get(i + 1)[1]));
+        }
+    }
+
+    private Map<String, Object> row(Node tag1, int tag1Start, Node tag2, int tag2Start) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("tag1", tag1.getId());
+        row.put("tag2", tag2.getId());
+        row.put("tag1_id", tag1.getProperty(configuration.getPropertyKeyFor(Properties.PROPERTY_ID)));
+        row.put("tag2_id", tag2.getProperty(configuration.getPropertyKeyFor(Properties.PROPERTY_ID)));
+        row.put("sourceStartPosition", tag1Start);
+        row.put("destinationStartPosition", tag2Start);
+        row.put("pos1", getPos(tag1));
+        row.put("pos2", getPos(tag2));
+
+        return row;
+    }
+
+    private boolean accept(Node tag, Collection<String> stopWords, Collection<String> forbiddenPOSs, Collection<String> forbiddenNEs) {
+        String value = getValue(tag);
+        if (value.length() <= 2) {
+            return false;
+        }
+        if (stopWords != null && stopWords.contains(value.toLowerCase())) {
+            return false;
+        }
+        if (forbiddenPOSs != null && Arrays.stream(getPos(tag)).anyMatch(forbiddenPOSs::contains)) {
+            return false;
+        }
+        if (forbiddenNEs != null) {
+            for (Label label : tag.getLabels()) {
+                if (forbiddenNEs.contains(label.name())) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private Node getTag(long id) {
+        return tags.computeIfAbsent(id, database::getNodeById);
+    }
+
+    private String getValue(Node tag) {
+        return String.valueOf(tag.getProperty(configuration.getPropertyKeyFor(Properties.CONTENT_VALUE)));
+    }
+
+    private String[] getPos(Node tag) {
+        return (String[]) tag.getProperty(configuration.getPropertyKeyFor(Properties.PART_OF_SPEECH), new String[0]);
+    }
+
+    private List<Node> getSentences(Node annotatedText) {
+        String sentenceNumber = configuration.getPropertyKeyFor(Properties.SENTENCE_NUMBER);
+        List<Node> sentences = new ArrayList<>();
+        annotatedText.getRelationships(configuration.getRelationshipFor(Relationships.CONTAINS_SENTENCE), Direction.OUTGOING)
+                .forEach(rel -> sentences.add(rel.getEndNode()));
+        sentences.sort(Comparator.comparingInt(sentence -> ((Number) sentence.getProperty(sentenceNumber)).intValue()));
+
+        return sentences;
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.textrank;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.persistence.LeanOccurrences;
+import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.constants.Relationships;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the TextRank co-occurrences of an AnnotatedText with the Core API, walking its sentences and their tag
+ * occurrences (TagOccurrence nodes, or the arrays of a sentence stored in lean mode) in document order, instead of
+ * running the co-occurrence queries.
+ * <p>
+ * Each distinct tag is read and filtered once (length, stop words, forbidden POS and NE labels) and gets a dense index
+ * through a primitive map, the accepted occurrences are kept in primitive arrays. Two occurrences co-occur when they
+ * are less than {@code cooccurrenceWindow} accepted occurrences apart, within the same sentence if
+ * {@code respectSentences} is set, and both their tags have an admitted POS (or none). With the default window of 2
+ * these are the pairs of consecutive tags the queries return.
+ */
+final class NativeCooccurrenceBuilder {
+
+    private static final int MIN_WINDOW = 2;
+    private static final byte REJECTED = 0;
+    private static final byte ACCEPTED = 1;
+    private static final byte ADMITTED = 2;
+
+    private final GraphDatabaseService database;
+    private final DynamicConfiguration configuration;
+    private final boolean respectSentences;
+    private final int window;
+    private final Collection<String> stopWords;
+    private final Collection<String> admittedPOSs;
+    private final Collection<String> forbiddenPOSs;
+    private final Collection<String> forbiddenNEs;
+
+    private final LongIntMap tagIndexes = new LongIntMap(256);
+    private long[] tagNodeIds = new long[256];
+    private String[] tagValues = new String[256];
+    private byte[] tagStates = new byte[256];
+    private boolean[] tagsPaired = new boolean[256];
+    private int tagCount;
+
+    private int[] sequenceTags = new int[256];
+    private int[] sequenceStarts = new int[256];
+    private int sequenceSize;
+
+    NativeCooccurrenceBuilder(GraphDatabaseService database, DynamicConfiguration configuration, boolean respectSentences,
+                              int cooccurrenceWindow, Collection<String> stopWords, Collection<String> admittedPOSs,
+                              Collection<String> forbiddenPOSs, Collection<String> forbiddenNEs) {
+        this.database = database;
+        this.configuration = configuration;
+        this.respectSentences = respectSentences;
+        this.window = Math.max(MIN_WINDOW, cooccurrenceWindow);
+        this.stopWords = stopWords;
+        this.admittedPOSs = admittedPOSs;
+        this.forbiddenPOSs = forbiddenPOSs;
+        this.forbiddenNEs = forbiddenNEs;
+    }
+
+    /**
+     * Adds the co-occurrences of the text to the pairs, ordered by the position of their source, and the values of
+     * the tags taking part in a co-occurrence (admitted or not) to idToValue.
+     */
+    void build(Node annotatedText, Pairs pairs, Map<Long, String> idToValue) {
+        sequenceSize = 0;
+        for (Node sentence : getSentences(annotatedText)) {
+            if (LeanOccurrences.isLean(sentence, configuration)) {
+                readLean(sentence);
+            } else {
+                readTagOccurrences(sentence);
+            }
+            if (respectSentences) {
+                addPairs(pairs);
+                sequenceSize = 0;
+            }
+        }
+        if (!respectSentences) {
+            addPairs(pairs);
+        }
+        for (int i = 0; i < tagCount; i++) {
+            if (tagsPaired[i]) {
+                idToValue.put(tagNodeIds[i], tagValues[i]);
+            }
+        }
+    }
+
+    private void readLean(Node sentence) {
+        LeanOccurrences occurrences = LeanOccurrences.read(sentence, configuration);
+        for (int i = 0; i < occurrences.size(); i++) {
+            addOccurrence(occurrences.getTagNodeId(i), occurrences.getBegin(i));
+        }
+    }
+
+    private void readTagOccurrences(Node sentence) {
+        RelationshipType tagOccurrenceTag = configuration.getRelationshipFor(Relationships.TAG_OCCURRENCE_TAG);
+        String startPosition = configuration.getPropertyKeyFor(Properties.START_POSITION);
+        long[] tags = new long[16];
+        long[] occurrences = new long[16];
+        int size = 0;
+        for (Relationship rel : sentence.getRelationships(configuration.getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE), Direction.OUTGOING)) {
+            Node occurrence = rel.getEndNode();
+            Relationship tag = occurrence.getSingleRelationship(tagOccurrenceTag, Direction.OUTGOING);
+            if (tag == null) {
+                continue;
+            }
+            if (size == occurrences.length) {
+                occurrences = Arrays.copyOf(occurrences, size * 2);
+                tags = Arrays.copyOf(tags, size * 2);
+            }
+            // start position in the high bits, so that sorting the longs orders the occurrences
+            occurrences[size] = ((long) ((Number) occurrence.getProperty(startPosition)).intValue() << 32) | size;
+            tags[size] = tag.getEndNode().getId();
+            size++;
+        }
+        Arrays.sort(occurrences, 0, size);
+        for (int i = 0; i < size; i++) {
+            addOccurrence(tags[(int) occurrences[i]], (int) (occurrences[i] >> 32));
+        }
+    }
+
+    private void addOccurrence(long tagNodeId, int start) {
+        int tag = getTagIndex(tagNodeId);
+        if (tagStates[tag] == REJECTED) {
+            return;
+        }
+        if (sequenceSize == sequenceTags.length) {
+            sequenceTags = Arrays.copyOf(sequenceTags, sequenceSize * 2);
+            sequenceStarts = Arrays.copyOf(sequenceStarts, sequenceSize * 2);
+        }
+        sequenceTags[sequenceSize] = tag;
+        sequenceStarts[sequenceSize] = start;
+        sequenceSize++;
+    }
+
+    private void addPairs(Pairs pairs) {
+        for (int i = 0; i < sequenceSize - 1; i++) {
+            int source = sequenceTags[i];
+            for (int j = i + 1; j < sequenceSize && j - i < window; j++) {
+                int destination = sequenceTags[j];
+                tagsPaired[source] = true;
+                tagsPaired[destination] = true;
+                if (tagStates[source] == ADMITTED && tagStates[destination] == ADMITTED) {
+                    pairs.add(tagNodeIds[source], sequenceStarts[i], tagNodeIds[destination], sequenceStarts[j]);
+                }
+            }
+        }
+    }
+
+    private int getTagIndex(long tagNodeId) {
+        int index = tagIndexes.get(tagNodeId);
+        if (index >= 0) {
+            return index;
+        }
+        if (tagCount == tagNodeIds.length) {
+            tagNodeIds = Arrays.copyOf(tagNodeIds, tagCount * 2);
+            tagValues = Arrays.copyOf(tagValues, tagCount * 2);
+            tagStates = Arrays.copyOf(tagStates, tagCount * 2);
+            tagsPaired = Arrays.copyOf(tagsPaired, tagCount * 2);
+        }
+        index = tagCount++;
+        Node tag = database.getNodeById(tagNodeId);
+        tagNodeIds[index] = tagNodeId;
+        tagValues[index] = (String) tag.getProperty(configuration.getPropertyKeyFor(Properties.PROPERTY_ID), null);
+        tagStates[index] = getState(tag, tagValues[index]);
+        tagIndexes.put(tagNodeId, index);
+
+        return index;
+    }
+
+    private byte getState(Node tag, String id) {
+        String value = String.valueOf(tag.getProperty(configuration.getPropertyKeyFor(Properties.CONTENT_VALUE), ""));
+        if (id == null || value.length() <= 2 || stopWords.contains(value.toLowerCase())) {
+            return REJECTED;
+        }
+        String[] pos = (String[]) tag.getProperty(configuration.getPropertyKeyFor(Properties.PART_OF_SPEECH), new String[0]);
+        boolean admitted = pos.length == 0;
+        for (String p : pos) {
+            if (forbiddenPOSs.contains(p)) {
+                return REJECTED;
+            }
+            admitted |= admittedPOSs.contains(p);
+        }
+        for (Label label : tag.getLabels()) {
+            if (forbiddenNEs.contains(label.name())) {
+                return REJECTED;
+            }
+        }
+
+        return admitted ? ADMITTED : ACCEPTED;
+    }
+
+    private List<Node> getSentences(Node annotatedText) {
+        String sentenceNumber = configuration.getPropertyKeyFor(Properties.SENTENCE_NUMBER);
+        List<Node> sentences = new ArrayList<>();
+        annotatedText.getRelationships(configuration.getRelationshipFor(Relationships.CONTAINS_SENTENCE), Direction.OUTGOING)
+                .forEach(rel -> sentences.add(rel.getEndNode()));
+        sentences.sort(Comparator.comparingInt(sentence -> ((Number) sentence.getProperty(sentenceNumber)).intValue()));
+
+        return sentences;
+    }
+
+    /**
+     * Co-occurrences in the order they were found, as parallel primitive arrays.
+     */
+    static final class Pairs {
+
+        private long[] sources = new long[256];
+        private int[] sourceStarts = new int[256];
+        private long[] destinations = new long[256];
+        private int[] destinationStarts = new int[256];
+        private int size;
+
+        void add(long source, int sourceStart, long destination, int destinationStart) {
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                sourceStarts = Arrays.copyOf(sourceStarts, size * 2);
+                destinations = Arrays.copyOf(destinations, size * 2);
+                destinationStarts = Arrays.copyOf(destinationStarts, size * 2);
+            }
+            sources[size] = source;
+            sourceStarts[size] = sourceStart;
+            destinations[size] = destination;
+            destinationStarts[size] = destinationStart;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long getSource(int pair) {
+            return sources[pair];
+        }
+
+        int getSourceStart(int pair) {
+            return sourceStarts[pair];
+        }
+
+        long getDestination(int pair) {
+            return destinations[pair];
+        }
+
+        int getDestinationStart(int pair) {
+            return destinationStarts[pair];
+        }
+    }
+
+    /**
+     * Open addressing map from node ids (never negative) to indexes.
+     */
+    static final class LongIntMap {
+
+        private static final long FREE = -1L;
+
+        private long[] keys;
+        private int[] values;
+        private int size;
+
+        LongIntMap(int capacity) {
+            int tableSize = Integer.highestOneBit(Math.max(4, capacity) - 1) << 1;
+            keys = new long[tableSize];
+            values = new int[tableSize];
+            Arrays.fill(keys, FREE);
+        }
+
+        /**
+         * @return the value of the key, or -1 if absent
+         */
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; keys[slot] != FREE; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != FREE && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == FREE) {
+                size++;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            Arrays.fill(keys, FREE);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
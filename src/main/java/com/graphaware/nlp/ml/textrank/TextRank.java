@@ -20,6 +20,7 @@ import com.graphaware.nlp.ml.pagerank.PageRank;
 import com.graphaware.common.util.Pair;
 import com.graphaware.nlp.NLPManager;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.configuration.SettingsConstants;
 import com.graphaware.nlp.domain.AnnotatedText;
 import com.graphaware.nlp.domain.Keyword;
 import com.graphaware.nlp.domain.TfIdfObject;
@@ -168,8 +169,18 @@ public class TextRank {
         }
     }
 
+    /**
+     * @deprecated reads TagOccurrence nodes only, use {@link #createCooccurrences(Node, boolean)} which also reads the
+     * sentences stored in lean mode
+     */
     @Deprecated
     public Map<Long, Map<Long, CoOccurrenceItem>> createCooccurrencesOld(Node annotatedText) {
+        try (Transaction tx = database.beginTx()) {
+            if (LeanOccurrenceRows.hasLeanSentences(annotatedText, getConfiguration())) {
+                throw new RuntimeException("AnnotatedText " + annotatedText.getId() + " has sentences stored in lean mode, which have no TagOccurrence nodes to query");
+            }
+            tx.success();
+        }
         Map<String, Object> params = new HashMap<>();
         params.put("id", annotatedText.getId());
         String query;
@@ -268,44 +279,24 @@ public class TextRank {
             params.put("forbiddenNEs", new ArrayList<>());
         }
 
-        Result res = null;
+        NativeCooccurrenceBuilder.Pairs prelim = new NativeCooccurrenceBuilder.Pairs();
         try (Transaction tx = database.beginTx();) {
-            res = database.execute(query, params);
+            if (!fromDependencies && isNativeCooccurrences()) {
+                new NativeCooccurrenceBuilder(database, getConfiguration(), respectSentences, cooccurrenceWindow, stopWords, admittedPOSs, forbiddenPOSs, forbiddenNEs)
+                        .build(annotatedText, prelim, idToValue);
+            } else if (LeanOccurrenceRows.hasLeanSentences(annotatedText, getConfiguration())) {
+                LeanOccurrenceRows leanRows = new LeanOccurrenceRows(database, getConfiguration());
+                addCooccurrenceRows((fromDependencies
+                        ? leanRows.dependencyCooccurrences(annotatedText)
+                        : leanRows.cooccurrences(annotatedText, respectSentences, stopWords, forbiddenPOSs, forbiddenNEs)).iterator(), prelim);
+            } else {
+                addCooccurrenceRows(database.execute(query, params), prelim);
+            }
             tx.success();
         } catch (Exception e) {
             LOG.error("Error while creating co-occurrences: ", e);
         }
 
-        List<CoOccurrenceItem> prelim = new ArrayList<>();
-        while (res != null && res.hasNext()) {
-            Map<String, Object> next = res.next();
-            Long tag1 = toLong(next.get("tag1"));
-            Long tag2 = toLong(next.get("tag2"));
-            String tagVal1 = (String) next.get("tag1_id");
-            String tagVal2 = (String) next.get("tag2_id");
-            Long tag1Start = toLong(next.get("sourceStartPosition"));
-            Long tag2Start = toLong(next.get("destinationStartPosition"));
-            List<String> pos1 = next.get("pos1") != null ? Arrays.asList((String[]) next.get("pos1")) : new ArrayList<>();
-            List<String> pos2 = next.get("pos2") != null ? Arrays.asList((String[]) next.get("pos2")) : new ArrayList<>();
-
-            // check whether POS of both tags are admitted
-            boolean bPOS1 = pos1.stream().filter(pos -> admittedPOSs.contains(pos)).count() != 0  ||  pos1.size() == 0;
-            boolean bPOS2 = pos2.stream().filter(pos -> admittedPOSs.contains(pos)).count() != 0  ||  pos2.size() == 0;
-            //System.out.println("  " + tagVal1 + " -> " + tagVal2);
-
-            // fill tag co-occurrences (adjacency matrix)
-            if (bPOS1 && bPOS2 && tagVal1 != null && tagVal2 != null) {
-                //System.out.println("    passed");
-                prelim.add(new CoOccurrenceItem(tag1, tag1Start.intValue(), tag2, tag2Start.intValue()));
-            }
-
-            // for logging purposses and for `expandNamedEntities()`
-            if (tag1!=null)
-                idToValue.put(tag1, tagVal1);
-            if (tag2!=null)
-                idToValue.put(tag2, tagVal2);
-        }
-
         Map<Long, List<Pair<Long, Long>>> neExp;
         if (expandNEs && !fromDependencies) {
             // process named entities: split them into individual tokens by calling ga.nlp.annotate(), assign them IDs and create co-occurrences
@@ -320,11 +311,11 @@ public class TextRank {
         //Long prev = -1L; 
         Map<Long, Map<Long, CoOccurrenceItem>> results = new HashMap<>();
         long neVisited = 0L;
-        for (CoOccurrenceItem it: prelim) {
-            Long tag1 = it.getSource();
-            Long tag2 = it.getDestination();
-            int tag1Start = it.getStartingPositions().get(0).first().intValue();
-            int tag2Start = it.getStartingPositions().get(0).second().intValue();
+        for (int i = 0; i < prelim.size(); i++) {
+            Long tag1 = prelim.getSource(i);
+            Long tag2 = prelim.getDestination(i);
+            int tag1Start = prelim.getSourceStart(i);
+            int tag2Start = prelim.getDestinationStart(i);
 
             if (expandNEs && !fromDependencies) {
                 if (neExp.containsKey(tag1)) {
@@ -365,6 +356,51 @@ public class TextRank {
         return results;
     }
 
+    private void addCooccurrenceRows(Iterator<Map<String, Object>> res, NativeCooccurrenceBuilder.Pairs prelim) {
+        while (res != null && res.hasNext()) {
+            Map<String, Object> next = res.next();
+            Long tag1 = toLong(next.get("tag1"));
+            Long tag2 = toLong(next.get("tag2"));
+            String tagVal1 = (String) next.get("tag1_id");
+            String tagVal2 = (String) next.get("tag2_id");
+            Long tag1Start = toLong(next.get("sourceStartPosition"));
+            Long tag2Start = toLong(next.get("destinationStartPosition"));
+            List<String> pos1 = next.get("pos1") != null ? Arrays.asList((String[]) next.get("pos1")) : new ArrayList<>();
+            List<String> pos2 = next.get("pos2") != null ? Arrays.asList((String[]) next.get("pos2")) : new ArrayList<>();
+
+            // check whether POS of both tags are admitted
+            boolean bPOS1 = pos1.stream().filter(pos -> admittedPOSs.contains(pos)).count() != 0  ||  pos1.size() == 0;
+            boolean bPOS2 = pos2.stream().filter(pos -> admittedPOSs.contains(pos)).count() != 0  ||  pos2.size() == 0;
+            //System.out.println("  " + tagVal1 + " -> " + tagVal2);
+
+            // fill tag co-occurrences (adjacency matrix)
+            if (bPOS1 && bPOS2 && tagVal1 != null && tagVal2 != null) {
+                //System.out.println("    passed");
+                prelim.add(tag1, tag1Start.intValue(), tag2, tag2Start.intValue());
+            }
+
+            // for logging purposses and for `expandNamedEntities()`
+            if (tag1!=null)
+                idToValue.put(tag1, tagVal1);
+            if (tag2!=null)
+                idToValue.put(tag2, tagVal2);
+        }
+    }
+
+    /**
+     * The native builder is opt-in: it applies the co-occurrence window and rejects a tag having any forbidden POS,
+     * so its keywords can differ from the ones of the queries.
+     */
+    private boolean isNativeCooccurrences() {
+        DynamicConfiguration configuration = getConfiguration();
+        return configuration.hasSettingValue(SettingsConstants.TEXTRANK_NATIVE_COOCCURRENCES)
+                && Boolean.parseBoolean(configuration.getSettingValueFor(SettingsConstants.TEXTRANK_NATIVE_COOCCURRENCES).toString());
+    }
+
+    private DynamicConfiguration getConfiguration() {
+        return NLPManager.getInstance().getConfiguration();
+    }
+
     private static Long toLong(Object value) {
         Long returnValue;
         if (value == null) {
@@ -529,7 +565,9 @@ public class TextRank {
         Map<Long, KeywordExtractedItem> keywordMap = new HashMap<>();
         List<Long> wrongNEs = new ArrayList<>();
         try (Transaction tx = database.beginTx()) {
-            Result res = database.execute(GET_TAG_QUERY, params);
+            Iterator<Map<String, Object>> res = LeanOccurrenceRows.hasLeanSentences(annotatedText, getConfiguration())
+                    ? new LeanOccurrenceRows(database, getConfiguration()).tags(annotatedText, admittedPOSs, (Collection<String>) params.get("stopwords")).iterator()
+                    : database.execute(GET_TAG_QUERY, params);
             while (res != null && res.hasNext()) {
                 Map<String, Object> next = res.next();
                 long tagId = (long) next.get("tagId");
@@ -556,8 +594,8 @@ public class TextRank {
                 }
                 //System.out.println(" Adding for " + item.getValue() + ": " + item.getRelatedTags());
             }
-            if (res != null) {
-                res.close();
+            if (res instanceof Result) {
+                ((Result) res).close();
             }
             tx.success();
         } catch (Exception e) {
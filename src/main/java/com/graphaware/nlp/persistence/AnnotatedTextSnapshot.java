@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.PartOfTextOccurrence;
+import com.graphaware.nlp.domain.Phrase;
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.domain.TagOccurrence;
+import com.graphaware.nlp.domain.TypedDependency;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary snapshot of an AnnotatedText, stored on the AnnotatedText node so that the text can be rehydrated
+ * with a single property read instead of a traversal of its sentences.
+ * <p>
+ * The encoding is the protobuf wire format of the following schema, fields are only written when they are set and
+ * unknown fields are skipped when reading, so fields can be added without bumping the version. The version is only
+ * increased for incompatible changes; snapshots with a newer version than {@link #VERSION} are not decoded.
+ * <pre>
+ * message AnnotatedText { uint32 version = 1; string text = 2; int32 numTerms = 3; repeated Sentence sentences = 4; }
+ * message Sentence { string text = 1; int32 number = 2; sint32 sentiment = 3; repeated Tag tags = 4;
+ *                    repeated Occurrence occurrences = 5; repeated Dependency dependencies = 6; repeated Phrase phrases = 7; }
+ * message Tag { string lemma = 1; string language = 2; int32 multiplicity = 3; repeated string pos = 4; repeated string ne = 5; }
+ * message Occurrence { int32 tag = 1; int32 begin = 2; int32 end = 3; string value = 4; repeated string tokenIds = 5; }
+ * message Dependency { string source = 1; string target = 2; string name = 3; string specific = 4; }
+ * message Phrase { int32 begin = 1; int32 end = 2; string content = 3; string type = 4; string reference = 5; string referenceType = 6; }
+ * </pre>
+ * Tag parents and extra properties are enrichment data and are not part of the snapshot.
+ */
+public final class AnnotatedTextSnapshot {
+
+    public static final int VERSION = 1;
+
+    private AnnotatedTextSnapshot() {
+    }
+
+    public static byte[] encode(AnnotatedText annotatedText) {
+        return write(out -> {
+            out.writeUInt32(1, VERSION);
+            writeString(out, 2, annotatedText.getText());
+            out.writeInt32(3, annotatedText.getNumTerms());
+            for (Sentence sentence : annotatedText.getSentencesSorted()) {
+                out.writeByteArray(4, encodeSentence(sentence));
+            }
+        });
+    }
+
+    /**
+     * @return the decoded text, or null if the snapshot was written with a newer, incompatible version
+     */
+    public static AnnotatedText decode(byte[] snapshot) {
+        try {
+            CodedInputStream in = CodedInputStream.newInstance(snapshot);
+            AnnotatedText annotatedText = new AnnotatedText();
+            int tag;
+            while ((tag = in.readTag()) != 0) {
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case 1:
+                        if (in.readUInt32() > VERSION) {
+                            return null;
+                        }
+                        break;
+                    case 2:
+                        annotatedText.setText(in.readString());
+                        break;
+                    case 3:
+                        annotatedText.setNumTerms(in.readInt32());
+                        break;
+                    case 4:
+                        annotatedText.addSentence(decodeSentence(in.readByteArray()));
+                        break;
+                    default:
+                        in.skipField(tag);
+                }
+            }
+
+            return annotatedText;
+        } catch (IOException e) {
+            throw new RuntimeException("Corrupted AnnotatedText snapshot", e);
+        }
+    }
+
+    private static byte[] encodeSentence(Sentence sentence) {
+        return write(out -> {
+            writeString(out, 1, sentence.getSentence());
+            out.writeInt32(2, sentence.getSentenceNumber());
+            out.writeSInt32(3, sentence.getSentiment());
+            List<Tag> tags = new ArrayList<>(sentence.getTags());
+            Map<String, Integer> tagIndexes = new HashMap<>();
+            for (Tag tag : tags) {
+                tagIndexes.put(tag.getLemma(), tagIndexes.size());
+            }
+            List<byte[]> occurrences = new ArrayList<>();
+            for (List<TagOccurrence> occurrencesAtBegin : sentence.getTagOccurrences().values()) {
+                for (TagOccurrence occurrence : occurrencesAtBegin) {
+                    Integer index = tagIndexes.get(occurrence.getElement().getLemma());
+                    if (index == null) {
+                        index = tags.size();
+                        tags.add(occurrence.getElement());
+                        tagIndexes.put(occurrence.getElement().getLemma(), index);
+                    }
+                    occurrences.add(encodeOccurrence(occurrence, index));
+                }
+            }
+            for (Tag tag : tags) {
+                out.writeByteArray(4, encodeTag(tag));
+            }
+            for (byte[] occurrence : occurrences) {
+                out.writeByteArray(5, occurrence);
+            }
+            for (TypedDependency dependency : sentence.getTypedDependencies()) {
+                out.writeByteArray(6, write(dep -> {
+                    writeString(dep, 1, dependency.getSource());
+                    writeString(dep, 2, dependency.getTarget());
+                    writeString(dep, 3, dependency.getName());
+                    writeString(dep, 4, dependency.getSpecific());
+                }));
+            }
+            if (sentence.getPhraseOccurrences() != null) {
+                for (Map<Integer, PartOfTextOccurrence<Phrase>> occurrencesAtBegin : sentence.getPhraseOccurrences().values()) {
+                    for (PartOfTextOccurrence<Phrase> occurrence : occurrencesAtBegin.values()) {
+                        out.writeByteArray(7, encodePhrase(occurrence));
+                    }
+                }
+            }
+        });
+    }
+
+    private static byte[] encodeTag(Tag tag) {
+        return write(out -> {
+            writeString(out, 1, tag.getLemma());
+            writeString(out, 2, tag.getLanguage());
+            out.writeInt32(3, tag.getMultiplicity());
+            for (String pos : tag.getPosAsList()) {
+                out.writeString(4, pos);
+            }
+            for (String ne : tag.getNeAsList()) {
+                out.writeString(5, ne);
+            }
+        });
+    }
+
+    private static byte[] encodeOccurrence(TagOccurrence occurrence, int tagIndex) {
+        return write(out -> {
+            out.writeInt32(1, tagIndex);
+            out.writeInt32(2, occurrence.getSpan().first());
+            out.writeInt32(3, occurrence.getSpan().second());
+            writeString(out, 4, occurrence.getValue());
+            for (String tokenId : occurrence.getPartIds()) {
+                out.writeString(5, tokenId);
+            }
+        });
+    }
+
+    private static byte[] encodePhrase(PartOfTextOccurrence<Phrase> occurrence) {
+        Phrase phrase = occurrence.getElement();
+        return write(out -> {
+            out.writeInt32(1, occurrence.getSpan().first());
+            out.writeInt32(2, occurrence.getSpan().second());
+            writeString(out, 3, phrase.getContent());
+            writeString(out, 4, phrase.getType());
+            if (phrase.getReference() != null) {
+                writeString(out, 5, phrase.getReference().getContent());
+                writeString(out, 6, phrase.getReference().getType());
+            }
+        });
+    }
+
+    private static Sentence decodeSentence(byte[] bytes) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(bytes);
+        String text = null;
+        int number = 0;
+        int sentiment = Sentence.NO_SENTIMENT;
+        List<Tag> tags = new ArrayList<>();
+        List<byte[]> occurrences = new ArrayList<>();
+        List<TypedDependency> dependencies = new ArrayList<>();
+        List<byte[]> phrases = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1:
+                    text = in.readString();
+                    break;
+                case 2:
+                    number = in.readInt32();
+                    break;
+                case 3:
+                    sentiment = in.readSInt32();
+                    break;
+                case 4:
+                    tags.add(decodeTag(in.readByteArray()));
+                    break;
+                case 5:
+                    occurrences.add(in.readByteArray());
+                    break;
+                case 6:
+                    dependencies.add(decodeDependency(in.readByteArray()));
+                    break;
+                case 7:
+                    phrases.add(in.readByteArray());
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        Sentence sentence = new Sentence(text, number);
+        sentence.setSentiment(sentiment);
+        List<Tag> sentenceTags = new ArrayList<>();
+        tags.forEach(t -> sentenceTags.add(sentence.addTag(t)));
+        for (byte[] occurrence : occurrences) {
+            decodeOccurrence(occurrence, sentence, sentenceTags);
+        }
+        dependencies.forEach(sentence::addTypedDependency);
+        for (byte[] phrase : phrases) {
+            decodePhrase(phrase, sentence);
+        }
+
+        return sentence;
+    }
+
+    private static Tag decodeTag(byte[] bytes) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(bytes);
+        String lemma = null;
+        String language = null;
+        int multiplicity = 1;
+        List<String> pos = new ArrayList<>();
+        List<String> ne = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1:
+                    lemma = in.readString();
+                    break;
+                case 2:
+                    language = in.readString();
+                    break;
+                case 3:
+                    multiplicity = in.readInt32();
+                    break;
+                case 4:
+                    pos.add(in.readString());
+                    break;
+                case 5:
+                    ne.add(in.readString());
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        Tag result = new Tag(lemma, language);
+        result.setMultiplicity(multiplicity);
+        result.setPos(pos);
+        result.setNe(ne);
+
+        return result;
+    }
+
+    private static void decodeOccurrence(byte[] bytes, Sentence sentence, List<Tag> tags) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(bytes);
+        int tagIndex = 0;
+        int begin = 0;
+        int end = 0;
+        String value = null;
+        List<String> tokenIds = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1:
+                    tagIndex = in.readInt32();
+                    break;
+                case 2:
+                    begin = in.readInt32();
+                    break;
+                case 3:
+                    end = in.readInt32();
+                    break;
+                case 4:
+                    value = in.readString();
+                    break;
+                case 5:
+                    tokenIds.add(in.readString());
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        sentence.addTagOccurrence(begin, end, value, tags.get(tagIndex), tokenIds);
+    }
+
+    private static TypedDependency decodeDependency(byte[] bytes) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(bytes);
+        String[] fields = new String[4];
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            int field = WireFormat.getTagFieldNumber(tag);
+            if (field >= 1 && field <= 4) {
+                fields[field - 1] = in.readString();
+            } else {
+                in.skipField(tag);
+            }
+        }
+
+        return new TypedDependency(fields[0], fields[1], fields[2], fields[3]);
+    }
+
+    private static void decodePhrase(byte[] bytes, Sentence sentence) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(bytes);
+        int begin = 0;
+        int end = 0;
+        String[] fields = new String[4];
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            int field = WireFormat.getTagFieldNumber(tag);
+            if (field == 1) {
+                begin = in.readInt32();
+            } else if (field == 2) {
+                end = in.readInt32();
+            } else if (field >= 3 && field <= 6) {
+                fields[field - 3] = in.readString();
+            } else {
+                in.skipField(tag);
+            }
+        }
+        Phrase phrase = new Phrase(fields[0], fields[1]);
+        if (fields[2] != null) {
+            phrase.setReference(new Phrase(fields[2], fields[3]));
+        }
+        sentence.addPhraseOccurrence(begin, end, phrase);
+    }
+
+    private static void writeString(CodedOutputStream out, int field, String value) throws IOException {
+        if (value != null) {
+            out.writeString(field, value);
+        }
+    }
+
+    private static byte[] write(MessageWriter writer) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+            writer.write(out);
+            out.flush();
+
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write the AnnotatedText snapshot", e);
+        }
+    }
+
+    private interface MessageWriter {
+        void write(CodedOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.NLPManager;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.persistence.persisters.TagPersister;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists batches of already annotated texts, each batch in its own transaction.
+ * Batches are committed on a dedicated thread so that they are not enlisted in the caller transaction, and the
+ * caller can annotate the next batch while the previous one is being written.
+ * All the documents of a batch share the same transaction id and the same Tag resolution cache.
+ */
+public class BatchAnnotatedTextWriter implements AutoCloseable {
+
+    private static final Log LOG = LoggerFactory.getLogger(BatchAnnotatedTextWriter.class);
+
+    private final GraphDatabaseService database;
+    private final TagPersister tagPersister;
+    private final PipelineSpecification pipelineSpecification;
+    private final ExecutorService committer;
+    private final AtomicLong committedDocuments = new AtomicLong();
+    private final AtomicLong committedBatches = new AtomicLong();
+    private Future<?> pending;
+
+    public BatchAnnotatedTextWriter(GraphDatabaseService database, TagPersister tagPersister, PipelineSpecification pipelineSpecification) {
+        this.database = database;
+        this.tagPersister = tagPersister;
+        this.pipelineSpecification = pipelineSpecification;
+        this.committer = Executors.newSingleThreadExecutor();
+    }
+
+    public void write(List<Entry> batch) {
+        awaitPending();
+        pending = committer.submit(() -> commit(batch));
+    }
+
+    public void flush() {
+        awaitPending();
+    }
+
+    public long getCommittedDocuments() {
+        return committedDocuments.get();
+    }
+
+    public long getCommittedBatches() {
+        return committedBatches.get();
+    }
+
+    @Override
+    public void close() {
+        committer.shutdown();
+    }
+
+    private void commit(List<Entry> batch) {
+        String txId = System.currentTimeMillis() + "_" + committedBatches.get();
+        tagPersister.openResolutionCache();
+        try (Transaction tx = database.beginTx()) {
+            batch.forEach(entry -> {
+                NLPManager.getInstance().processAnnotationPersist(entry.getId(), entry.getText(), entry.getAnnotatedText(), pipelineSpecification, txId);
+            });
+            tx.success();
+        } finally {
+            tagPersister.closeResolutionCache();
+        }
+        committedBatches.incrementAndGet();
+        committedDocuments.addAndGet(batch.size());
+        LOG.info("Committed batch of " + batch.size() + " annotated texts, total " + committedDocuments.get());
+    }
+
+    private void awaitPending() {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Batch annotation failed after " + committedDocuments.get() + " committed documents", e.getCause());
+        } finally {
+            pending = null;
+        }
+    }
+
+    public static class Entry {
+
+        private final String id;
+        private final String text;
+        private final AnnotatedText annotatedText;
+
+        public Entry(String id, String text, AnnotatedText annotatedText) {
+            this.id = id;
+            this.text = text;
+            this.annotatedText = annotatedText;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public AnnotatedText getAnnotatedText() {
+            return annotatedText;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.persistence.persisters.AnnotatedTextPersister;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists a text annotated chunk by chunk as one annotated text: the AnnotatedText node is prepared, then each group
+ * of annotated chunks is appended to it in its own transaction.
+ * Groups are committed on a dedicated thread so that they are not enlisted in the caller transaction (within a
+ * procedure a nested transaction would only join it), and the caller can annotate the next group while the previous
+ * one is being written. The groups already committed are kept when a later one fails or the caller rolls back.
+ * The caller transaction must not hold locks on the nodes written here, the writer would wait for it forever.
+ */
+public class ChunkedAnnotatedTextWriter implements AutoCloseable {
+
+    private final GraphDatabaseService database;
+    private final AnnotatedTextPersister persister;
+    private final String id;
+    private final String txId;
+    private final boolean leanOccurrences;
+    private final ExecutorService committer;
+    private final AtomicLong committedGroups = new AtomicLong();
+    private final Node annotatedTextNode;
+    private Node lastSentenceNode;
+    private Future<Node> pending;
+
+    public ChunkedAnnotatedTextWriter(GraphDatabaseService database, AnnotatedTextPersister persister, String id, String txId, boolean leanOccurrences) {
+        this.database = database;
+        this.persister = persister;
+        this.id = id;
+        this.txId = txId;
+        this.leanOccurrences = leanOccurrences;
+        this.committer = Executors.newSingleThreadExecutor();
+        try {
+            pending = committer.submit(this::prepare);
+            this.annotatedTextNode = awaitPending();
+        } catch (RuntimeException e) {
+            committer.shutdown();
+            throw e;
+        }
+    }
+
+    public void append(AnnotatedText annotatedText) {
+        if (pending != null) {
+            lastSentenceNode = awaitPending();
+        }
+        Node previous = lastSentenceNode;
+        pending = committer.submit(() -> commit(previous, annotatedText));
+    }
+
+    /**
+     * @return the AnnotatedText node, once all the appended groups are committed
+     */
+    public Node flush() {
+        if (pending != null) {
+            lastSentenceNode = awaitPending();
+        }
+
+        return annotatedTextNode;
+    }
+
+    @Override
+    public void close() {
+        committer.shutdown();
+    }
+
+    private Node prepare() {
+        try (Transaction tx = database.beginTx()) {
+            Node node = persister.prepareForAppend(id, txId);
+            persister.removeSnapshot(node);
+            tx.success();
+            return node;
+        }
+    }
+
+    private Node commit(Node previous, AnnotatedText annotatedText) {
+        Node last;
+        try (Transaction tx = database.beginTx()) {
+            last = persister.appendSentences(annotatedTextNode, previous, annotatedText, id, txId, leanOccurrences);
+            tx.success();
+        }
+        committedGroups.incrementAndGet();
+
+        return last;
+    }
+
+    private Node awaitPending() {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Storing the chunks of " + id + " failed after " + committedGroups.get() + " committed groups of chunks", e.getCause());
+        } finally {
+            pending = null;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.constants.Relationships;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read view over the tag occurrences and typed dependencies of a Sentence stored in lean mode, that is as parallel
+ * primitive arrays on the Sentence node instead of TagOccurrence nodes.
+ * Occurrences are ordered by begin position and addressed by their index, dependencies refer to occurrence indexes.
+ * The same view can be built from the TagOccurrence nodes of a Sentence, see {@link #of(Node, DynamicConfiguration)},
+ * so that texts mixing both storage modes can be read alike.
+ * <p>
+ * The Tag of each occurrence is stored both as a node id, to reach it without a lookup, and as the value of its
+ * {@code id} property. Node ids are reused after a delete, so the node id is only trusted when it still points to a Tag
+ * with that id, otherwise the Tag is looked up by its id.
+ */
+public final class LeanOccurrences {
+
+    public static final String ROOT_DEPENDENCY = "ROOT";
+
+    private final int[] begins;
+    private final int[] ends;
+    private final long[] tags;
+    private final String[] values;
+    private final int[] valueIndexes;
+    private final int[] dependencySources;
+    private final int[] dependencyTargets;
+    private final String[] dependencyTypes;
+    private final String[] dependencySpecifics;
+
+    private LeanOccurrences(Node sentence, DynamicConfiguration configuration) {
+        this.begins = (int[]) sentence.getProperty(configuration.getPropertyKeyFor(Properties.OCCURRENCE_BEGINS));
+        this.ends = (int[]) sentence.getProperty(configuration.getPropertyKeyFor(Properties.OCCURRENCE_ENDS));
+        this.tags = resolveTags(sentence, configuration);
+        this.values = (String[]) sentence.getProperty(configuration.getPropertyKeyFor(Properties.OCCURRENCE_VALUES));
+        this.valueIndexes = (int[]) sentence.getProperty(configuration.getPropertyKeyFor(Properties.OCCURRENCE_VALUE_INDEXES));
+        this.dependencySources = (int[]) sentence.getProperty(configuration.getPropertyKeyFor(Properties.DEPENDENCY_SOURCES), new int[0]);
+        this.dependencyTargets = (int[]) sentence.getProperty(configuration.getPropertyKeyFor(Properties.DEPENDENCY_TARGETS), new int[0]);
+        this.dependencyTypes = (String[]) sentence.getProperty(configuration.getPropertyKeyFor(Properties.DEPENDENCY_TYPES), new String[0]);
+        this.dependencySpecifics = (String[]) sentence.getProperty(configuration.getPropertyKeyFor(Properties.DEPENDENCY_SPECIFICS), new String[0]);
+    }
+
+    private LeanOccurrences(int[] begins, int[] ends, long[] tags, String[] values, int[] dependencySources,
+                            int[] dependencyTargets, String[] dependencyTypes, String[] dependencySpecifics) {
+        this.begins = begins;
+        this.ends = ends;
+        this.tags = tags;
+        this.values = values;
+        this.valueIndexes = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            valueIndexes[i] = i;
+        }
+        this.dependencySources = dependencySources;
+        this.dependencyTargets = dependencyTargets;
+        this.dependencyTypes = dependencyTypes;
+        this.dependencySpecifics = dependencySpecifics;
+    }
+
+    private static long[] resolveTags(Node sentence, DynamicConfiguration configuration) {
+        long[] tags = (long[]) sentence.getProperty(configuration.getPropertyKeyFor(Properties.OCCURRENCE_TAGS));
+        String[] tagIds = (String[]) sentence.getProperty(configuration.getPropertyKeyFor(Properties.OCCURRENCE_TAG_IDS));
+        GraphDatabaseService database = sentence.getGraphDatabase();
+        Label tagLabel = configuration.getLabelFor(Labels.Tag);
+        String idProperty = configuration.getPropertyKeyFor(Properties.PROPERTY_ID);
+        Map<String, Long> resolved = new HashMap<>();
+        for (int i = 0; i < tags.length; i++) {
+            Long tag = resolved.get(tagIds[i]);
+            if (tag == null) {
+                tag = isTag(database, tags[i], tagLabel, idProperty, tagIds[i]) ? tags[i] : findTag(database, tagLabel, idProperty, tagIds[i], sentence);
+                resolved.put(tagIds[i], tag);
+            }
+            tags[i] = tag;
+        }
+
+        return tags;
+    }
+
+    private static boolean isTag(GraphDatabaseService database, long nodeId, Label tagLabel, String idProperty, String tagId) {
+        try {
+            Node node = database.getNodeById(nodeId);
+            return node.hasLabel(tagLabel) && tagId.equals(node.getProperty(idProperty, null));
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
+    private static long findTag(GraphDatabaseService database, Label tagLabel, String idProperty, String tagId, Node sentence) {
+        Node node = database.findNode(tagLabel, idProperty, tagId);
+        if (node == null) {
+            throw new RuntimeException("Tag " + tagId + " of sentence " + sentence.getId() + " does not exist anymore");
+        }
+
+        return node.getId();
+    }
+
+    public static boolean isLean(Node sentence, DynamicConfiguration configuration) {
+        return sentence.hasProperty(configuration.getPropertyKeyFor(Properties.OCCURRENCE_TAGS));
+    }
+
+    public static LeanOccurrences read(Node sentence, DynamicConfiguration configuration) {
+        if (!isLean(sentence, configuration)) {
+            throw new RuntimeException("Sentence " + sentence.getId() + " does not store its occurrences in lean mode");
+        }
+
+        return new LeanOccurrences(sentence, configuration);
+    }
+
+    /**
+     * @return the occurrences of the sentence, read from its lean arrays or collected from its TagOccurrence nodes,
+     * whichever way the sentence is stored
+     */
+    public static LeanOccurrences of(Node sentence, DynamicConfiguration configuration) {
+        return isLean(sentence, configuration) ? read(sentence, configuration) : collect(sentence, configuration);
+    }
+
+    private static LeanOccurrences collect(Node sentence, DynamicConfiguration configuration) {
+        RelationshipType tagOccurrenceTag = configuration.getRelationshipFor(Relationships.TAG_OCCURRENCE_TAG);
+        String begin = configuration.getPropertyKeyFor(Properties.OCCURRENCE_BEGIN);
+        List<Node> occurrences = new ArrayList<>();
+        List<Node> occurrenceTags = new ArrayList<>();
+        for (Relationship rel : sentence.getRelationships(configuration.getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE), Direction.OUTGOING)) {
+            Relationship tag = rel.getEndNode().getSingleRelationship(tagOccurrenceTag, Direction.OUTGOING);
+            if (tag != null) {
+                occurrences.add(rel.getEndNode());
+                occurrenceTags.add(tag.getEndNode());
+            }
+        }
+        Integer[] order = new Integer[occurrences.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> ((Number) occurrences.get(i).getProperty(begin)).intValue()));
+
+        int[] begins = new int[order.length];
+        int[] ends = new int[order.length];
+        long[] tags = new long[order.length];
+        String[] values = new String[order.length];
+        Map<Long, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < order.length; i++) {
+            Node occurrence = occurrences.get(order[i]);
+            begins[i] = ((Number) occurrence.getProperty(begin)).intValue();
+            ends[i] = ((Number) occurrence.getProperty(configuration.getPropertyKeyFor(Properties.OCCURRENCE_END))).intValue();
+            tags[i] = occurrenceTags.get(order[i]).getId();
+            values[i] = String.valueOf(occurrence.getProperty(configuration.getPropertyKeyFor(Properties.TAG_ORIGINAL_VALUE), ""));
+            indexes.put(occurrence.getId(), i);
+        }
+
+        List<Relationship> dependencies = new ArrayList<>();
+        for (int i = 0; i < order.length; i++) {
+            for (Relationship rel : occurrences.get(order[i]).getRelationships(Direction.OUTGOING)) {
+                if (indexes.containsKey(rel.getEndNode().getId())) {
+                    dependencies.add(rel);
+                }
+            }
+        }
+        int[] dependencySources = new int[dependencies.size()];
+        int[] dependencyTargets = new int[dependencies.size()];
+        String[] dependencyTypes = new String[dependencies.size()];
+        String[] dependencySpecifics = new String[dependencies.size()];
+        for (int i = 0; i < dependencies.size(); i++) {
+            Relationship dependency = dependencies.get(i);
+            dependencySources[i] = indexes.get(dependency.getStartNode().getId());
+            dependencyTargets[i] = indexes.get(dependency.getEndNode().getId());
+            dependencyTypes[i] = dependency.getType().name();
+            dependencySpecifics[i] = String.valueOf(dependency.getProperty(configuration.getPropertyKeyFor(Properties.DEPENDENCY_SPECIFIC), ""));
+        }
+
+        return new LeanOccurrences(begins, ends, tags, values, dependencySources, dependencyTargets, dependencyTypes, dependencySpecifics);
+    }
+
+    public int size() {
+        return begins.length;
+    }
+
+    public int getBegin(int occurrence) {
+        return begins[occurrence];
+    }
+
+    public int getEnd(int occurrence) {
+        return ends[occurrence];
+    }
+
+    public long getTagNodeId(int occurrence) {
+        return tags[occurrence];
+    }
+
+    public String getValue(int occurrence) {
+        return values[valueIndexes[occurrence]];
+    }
+
+    public int dependencyCount() {
+        return dependencySources.length;
+    }
+
+    public int getDependencySource(int dependency) {
+        return dependencySources[dependency];
+    }
+
+    public int getDependencyTarget(int dependency) {
+        return dependencyTargets[dependency];
+    }
+
+    public String getDependencyType(int dependency) {
+        return dependencyTypes[dependency];
+    }
+
+    public String getDependencySpecific(int dependency) {
+        String specific = dependencySpecifics[dependency];
+        return specific.isEmpty() ? null : specific;
+    }
+
+    public boolean isRoot(int occurrence) {
+        for (int i = 0; i < dependencySources.length; i++) {
+            if (dependencySources[i] == occurrence && ROOT_DEPENDENCY.equals(dependencyTypes[i])) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -30,7 +30,10 @@ public class PersistenceRegistry {
 
     private final Map<Class, Persister> registeredPersisters = new HashMap<>();
 
+    private final UniqueNodeCreator uniqueNodeCreator;
+
     public PersistenceRegistry(GraphDatabaseService databaseService) {
+        this.uniqueNodeCreator = new UniqueNodeCreator(databaseService);
         register(Tag.class, new TagPersister(databaseService, this));
         register(Sentence.class, new SentencePersister(databaseService, this));
         register(AnnotatedText.class, new AnnotatedTextPersister(databaseService, this));
@@ -46,4 +49,8 @@ public class PersistenceRegistry {
         return registeredPersisters.get(clazz);
     }
 
+    public UniqueNodeCreator getUniqueNodeCreator() {
+        return uniqueNodeCreator;
+    }
+
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.graphdb.ConstraintViolationException;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.graphdb.schema.ConstraintType;
+import org.neo4j.logging.Log;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gets or creates the nodes shared by the annotated texts (tags, phrases, keywords), identified by a label and the
+ * value of a key, in the caller transaction.
+ * <p>
+ * A find-then-create does not see the nodes created by the other transactions before they commit, so two of them can
+ * create the same node. When the key has a unique constraint (see {@code ga.nlp.createSchema}) a missing node is
+ * merged instead: the constraint makes the transaction creating the node hold a lock on its value until it commits, a
+ * concurrent transaction merging the same node waits for it and then finds the committed node. A creation racing with
+ * a commit that still fails on the constraint is retried as a lookup. Nothing is committed on the side, so a rolled
+ * back annotation leaves no node behind.
+ * <p>
+ * Without the constraint the node is found or created in the caller transaction, and parallel writers can create
+ * duplicates; this is logged once per label and key. The absence of duplicates is therefore only guaranteed once
+ * {@code ga.nlp.createSchema} has created the constraints.
+ */
+public class UniqueNodeCreator {
+
+    private static final Log LOG = LoggerFactory.getLogger(UniqueNodeCreator.class);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String CONSTRAINT_VIOLATION_STATUS = "ConstraintValidationFailed";
+
+    private final GraphDatabaseService database;
+    private final Set<String> constrained = ConcurrentHashMap.newKeySet();
+    private final Set<String> warned = ConcurrentHashMap.newKeySet();
+
+    public UniqueNodeCreator(GraphDatabaseService database) {
+        this.database = database;
+    }
+
+    /**
+     * @return the node having the label and the value for the key, found or created in the caller transaction
+     */
+    public Node getOrCreate(Label label, String key, Object value) {
+        for (int attempt = 1; ; attempt++) {
+            Node node = database.findNode(label, key, value);
+            if (node != null) {
+                return node;
+            }
+            if (!isUnique(label, key)) {
+                node = database.createNode(label);
+                node.setProperty(key, value);
+                return node;
+            }
+            try {
+                return merge(label, key, value);
+            } catch (ConstraintViolationException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+            } catch (QueryExecutionException e) {
+                if (attempt >= MAX_ATTEMPTS || !e.getStatusCode().endsWith(CONSTRAINT_VIOLATION_STATUS)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Node merge(Label label, String key, Object value) {
+        String query = "MERGE (n:" + escape(label.name()) + " {" + escape(key) + ": {value}}) RETURN n";
+        try (Result result = database.execute(query, Collections.singletonMap("value", value))) {
+            return (Node) result.next().get("n");
+        }
+    }
+
+    private boolean isUnique(Label label, String key) {
+        String labelAndKey = label.name() + "." + key;
+        if (constrained.contains(labelAndKey)) {
+            return true;
+        }
+        for (ConstraintDefinition constraint : database.schema().getConstraints(label)) {
+            if (constraint.isConstraintType(ConstraintType.UNIQUENESS)) {
+                for (String property : constraint.getPropertyKeys()) {
+                    if (property.equals(key)) {
+                        constrained.add(labelAndKey);
+                        return true;
+                    }
+                }
+            }
+        }
+        if (warned.add(labelAndKey)) {
+            LOG.warn("No unique constraint on :" + label.name() + "(" + key + "), parallel writers can create duplicate nodes. Run ga.nlp.createSchema to create it (see the README to upgrade a database having duplicates)");
+        }
+
+        return false;
+    }
+
+    private static String escape(String name) {
+        return "`" + name.replace("`", "``") + "`";
+    }
+}
@@ -37,7 +37,8 @@ public enum Labels implements Label {
     VeryPositive,
     VeryNegative,
     Neutral,
-    VectorContainer;
+    VectorContainer,
+    WorkflowDeadLetter;
 
 
     public static boolean contains(String label) {
@@ -43,6 +43,18 @@ public final class Properties {
     public static final String NAMED_ENTITY_PREFIX = "NER_";
     public static final String PART_OF_SPEECH = "pos";
     public static final String LAST_TX_ID = "lastTxId";
+    public static final String TAG_FINGERPRINT = "fingerprint";
+    public static final String OCCURRENCE_BEGINS = "occurrenceBegins";
+    public static final String OCCURRENCE_ENDS = "occurrenceEnds";
+    public static final String OCCURRENCE_TAGS = "occurrenceTags";
+    public static final String OCCURRENCE_TAG_IDS = "occurrenceTagIds";
+    public static final String OCCURRENCE_VALUES = "occurrenceValues";
+    public static final String OCCURRENCE_VALUE_INDEXES = "occurrenceValueIndexes";
+    public static final String DEPENDENCY_SOURCES = "dependencySources";
+    public static final String DEPENDENCY_TARGETS = "dependencyTargets";
+    public static final String DEPENDENCY_TYPES = "dependencyTypes";
+    public static final String DEPENDENCY_SPECIFICS = "dependencySpecifics";
+    public static final String SNAPSHOT = "snapshot";
 
     /**
      * Private constructor to prevent people from instantiating this class - it's not meant to be instantiated.
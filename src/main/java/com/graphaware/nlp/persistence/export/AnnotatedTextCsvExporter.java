@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence.export;
+
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.NLPDefaultValues;
+import com.graphaware.nlp.domain.Phrase;
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.domain.TagOccurrence;
+import com.graphaware.nlp.domain.TypedDependency;
+import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.constants.Relationships;
+import com.graphaware.nlp.util.SentenceUtils;
+import com.graphaware.nlp.util.TagUtils;
+import org.neo4j.graphdb.Label;
+import org.neo4j.logging.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes annotated texts as neo4j-admin import CSV files instead of storing them in the graph.
+ * <p>
+ * The produced graph has the same layout as the one written by the AnnotatedText and Sentence persisters, with the
+ * labels, relationship types and property keys resolved through the {@link DynamicConfiguration}.
+ * Tag nodes (by id) and Phrase nodes (by value) are deduplicated across all the exported documents, their part of
+ * speech and named entities being merged as the TagPersister does. Since Tags and Phrases are only known completely
+ * once every document has been exported, their files are written by {@link #close()}.
+ */
+public class AnnotatedTextCsvExporter implements AutoCloseable {
+
+    private static final Log LOG = LoggerFactory.getLogger(AnnotatedTextCsvExporter.class);
+
+    public static final String ARRAY_DELIMITER = ";";
+
+    private final File directory;
+    private final DynamicConfiguration configuration;
+
+    private final Map<String, CsvFile> nodeFiles = new LinkedHashMap<>();
+    private final Map<String, CsvFile> relationshipFiles = new LinkedHashMap<>();
+    private final Map<String, TagRow> tags = new HashMap<>();
+    private final Map<String, String> phrases = new HashMap<>();
+    private final Set<String> documentIds = new HashSet<>();
+    private long occurrenceSequence = 0;
+    private long documents = 0;
+    private boolean closed = false;
+
+    public AnnotatedTextCsvExporter(File directory, DynamicConfiguration configuration) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new RuntimeException("Cannot create export directory " + directory.getAbsolutePath());
+        }
+        this.directory = directory;
+        this.configuration = configuration;
+
+        nodeFiles.put("annotated-texts", new CsvFile("annotated-texts", idColumn(Labels.AnnotatedText),
+                key(Properties.PROPERTY_ID), key(Properties.NUM_TERMS) + ":int", ":LABEL"));
+        nodeFiles.put("sentences", new CsvFile("sentences", idColumn(Labels.Sentence),
+                key(Properties.PROPERTY_ID), key(Properties.SENTENCE_NUMBER) + ":int", key(Properties.HASH), key(Properties.TEXT), ":LABEL"));
+        nodeFiles.put("tag-occurrences", new CsvFile("tag-occurrences", idColumn(Labels.TagOccurrence),
+                key(Properties.OCCURRENCE_BEGIN) + ":int", key(Properties.OCCURRENCE_END) + ":int",
+                key(Properties.PART_OF_SPEECH) + ":string[]", key(Properties.NAMED_ENTITY) + ":string[]",
+                key(Properties.TAG_ORIGINAL_VALUE), ":LABEL"));
+        nodeFiles.put("phrase-occurrences", new CsvFile("phrase-occurrences", idColumn(Labels.PhraseOccurrence),
+                key(Properties.START_POSITION) + ":int", key(Properties.END_POSITION) + ":int", ":LABEL"));
+
+        relationshipFiles.put("contains-sentence", relationshipFile("contains-sentence", Labels.AnnotatedText, Labels.Sentence));
+        relationshipFiles.put("first-sentence", relationshipFile("first-sentence", Labels.AnnotatedText, Labels.Sentence));
+        relationshipFiles.put("next-sentence", relationshipFile("next-sentence", Labels.Sentence, Labels.Sentence));
+        relationshipFiles.put("has-tag", relationshipFile("has-tag", Labels.Sentence, Labels.Tag, key(Properties.TF) + ":int"));
+        relationshipFiles.put("sentence-tag-occurrence", relationshipFile("sentence-tag-occurrence", Labels.Sentence, Labels.TagOccurrence));
+        relationshipFiles.put("tag-occurrence-tag", relationshipFile("tag-occurrence-tag", Labels.TagOccurrence, Labels.Tag));
+        relationshipFiles.put("dependencies", relationshipFile("dependencies", Labels.TagOccurrence, Labels.TagOccurrence, key(Properties.DEPENDENCY_SPECIFIC)));
+        relationshipFiles.put("has-phrase", relationshipFile("has-phrase", Labels.Sentence, Labels.Phrase));
+        relationshipFiles.put("sentence-phrase-occurrence", relationshipFile("sentence-phrase-occurrence", Labels.Sentence, Labels.PhraseOccurrence));
+        relationshipFiles.put("phrase-occurrence-phrase", relationshipFile("phrase-occurrence-phrase", Labels.PhraseOccurrence, Labels.Phrase));
+    }
+
+    public void export(String id, AnnotatedText annotatedText) {
+        checkNotClosed();
+        if (!documentIds.add(id)) {
+            throw new RuntimeException("The id " + id + " is used by more than one document, neo4j-admin import needs unique ids");
+        }
+        nodeFiles.get("annotated-texts").row(id, id, annotatedText.getTokens().size(), label(Labels.AnnotatedText));
+
+        String previousSentenceId = null;
+        annotatedText.getSentences().sort((Sentence o1, Sentence o2) -> o1.compareTo(o2));
+        for (Sentence sentence : annotatedText.getSentences()) {
+            String sentenceId = String.format("%s_%s", id, sentence.getSentenceNumber());
+            exportSentence(sentence, sentenceId);
+            relationshipFiles.get("contains-sentence").row(id, sentenceId, type(Relationships.CONTAINS_SENTENCE));
+            if (previousSentenceId == null) {
+                relationshipFiles.get("first-sentence").row(id, sentenceId, type(Relationships.FIRST_SENTENCE));
+            } else {
+                relationshipFiles.get("next-sentence").row(previousSentenceId, sentenceId, type(Relationships.NEXT_SENTENCE));
+            }
+            previousSentenceId = sentenceId;
+        }
+        documents++;
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    public long getTags() {
+        return tags.size();
+    }
+
+    public long getPhrases() {
+        return phrases.size();
+    }
+
+    /**
+     * @return the neo4j-admin import command loading the exported files into the given database
+     */
+    public String getImportCommand(String databaseName) {
+        StringBuilder command = new StringBuilder("neo4j-admin import --database=").append(databaseName)
+                .append(" --multiline-fields=true --array-delimiter=\"").append(ARRAY_DELIMITER).append("\"");
+        nodeFiles.values().forEach(file -> command.append(" --nodes=").append(file.getPath()));
+        command.append(" --nodes=").append(new File(directory, "tags.csv").getAbsolutePath());
+        command.append(" --nodes=").append(new File(directory, "phrases.csv").getAbsolutePath());
+        relationshipFiles.values().forEach(file -> command.append(" --relationships=").append(file.getPath()));
+
+        return command.toString();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeTags();
+            writePhrases();
+        } finally {
+            nodeFiles.values().forEach(CsvFile::close);
+            relationshipFiles.values().forEach(CsvFile::close);
+        }
+        LOG.info("Exported " + documents + " annotated texts, " + tags.size() + " tags and " + phrases.size() + " phrases to " + directory.getAbsolutePath());
+    }
+
+    private void exportSentence(Sentence sentence, String sentenceId) {
+        List<String> sentenceLabels = new ArrayList<>();
+        sentenceLabels.add(label(Labels.Sentence));
+        Label sentimentLabel = SentenceUtils.getDefaultLabelForSentimentLevel(sentence.getSentiment());
+        if (sentimentLabel != null) {
+            sentenceLabels.add(configuration.getLabelFor(sentimentLabel).name());
+        }
+        nodeFiles.get("sentences").row(sentenceId, sentenceId, sentence.getSentenceNumber(), sentence.hash(), sentence.getSentence(), labels(sentenceLabels));
+
+        sentence.getTags().forEach(tag -> {
+            mergeTag(tag);
+            relationshipFiles.get("has-tag").row(sentenceId, tag.getId(), type(Relationships.HAS_TAG), tag.getMultiplicity());
+        });
+
+        exportTagOccurrences(sentence, sentenceId);
+        exportPhraseOccurrences(sentence, sentenceId);
+    }
+
+    private void exportTagOccurrences(Sentence sentence, String sentenceId) {
+        Map<TagOccurrence, Long> occurrenceIds = new LinkedHashMap<>();
+        Map<String, Long> tokenIdsToOccurrenceIds = new HashMap<>();
+        sentence.getTagOccurrences().values().forEach(occurrences -> occurrences.forEach(occurrence -> {
+            long occurrenceId = ++occurrenceSequence;
+            occurrenceIds.put(occurrence, occurrenceId);
+            occurrence.getPartIds().forEach(tokenId -> tokenIdsToOccurrenceIds.put(tokenId, occurrenceId));
+        }));
+
+        Set<Long> roots = new HashSet<>();
+        for (TypedDependency typedDependency : sentence.getTypedDependencies()) {
+            Long source = tokenIdsToOccurrenceIds.get(typedDependency.getSource());
+            Long target = tokenIdsToOccurrenceIds.get(typedDependency.getTarget());
+            if (source == null || target == null) {
+                continue;
+            }
+            String type = typedDependency.getName().toUpperCase();
+            if (type.equals("ROOT")) {
+                roots.add(source);
+            }
+            relationshipFiles.get("dependencies").row(source, target, type, typedDependency.getSpecific());
+        }
+
+        occurrenceIds.forEach((occurrence, occurrenceId) -> {
+            Tag tag = occurrence.getElement();
+            mergeTag(tag);
+            List<String> occurrenceLabels = new ArrayList<>();
+            occurrenceLabels.add(label(Labels.TagOccurrence));
+            if (roots.contains(occurrenceId)) {
+                occurrenceLabels.add(label(Labels.Root));
+            }
+            nodeFiles.get("tag-occurrences").row(occurrenceId, occurrence.getSpan().first(), occurrence.getSpan().second(),
+                    tag.getPosAsArray(), tag.getNeAsArray(), occurrence.getValue(), labels(occurrenceLabels));
+            relationshipFiles.get("sentence-tag-occurrence").row(sentenceId, occurrenceId, type(Relationships.SENTENCE_TAG_OCCURRENCE));
+            relationshipFiles.get("tag-occurrence-tag").row(occurrenceId, tag.getId(), type(Relationships.TAG_OCCURRENCE_TAG));
+        });
+    }
+
+    private void exportPhraseOccurrences(Sentence sentence, String sentenceId) {
+        sentence.getPhraseOccurrences().values().forEach(phraseOccurrenceAtPosition -> {
+            phraseOccurrenceAtPosition.values().forEach(occurrence -> {
+                Phrase phrase = occurrence.getElement();
+                String type = phrase.getType() != null ? phrase.getType() : NLPDefaultValues.PHRASE_TYPE;
+                phrases.put(phrase.getContent(), type);
+                long occurrenceId = ++occurrenceSequence;
+                nodeFiles.get("phrase-occurrences").row(occurrenceId, occurrence.getSpan().first(), occurrence.getSpan().second(), label(Labels.PhraseOccurrence));
+                relationshipFiles.get("has-phrase").row(sentenceId, phrase.getContent(), type(Relationships.HAS_PHRASE));
+                relationshipFiles.get("sentence-phrase-occurrence").row(sentenceId, occurrenceId, type(Relationships.SENTENCE_PHRASE_OCCURRENCE));
+                relationshipFiles.get("phrase-occurrence-phrase").row(occurrenceId, phrase.getContent(), type(Relationships.PHRASE_OCCURRENCE_PHRASE));
+            });
+        });
+    }
+
+    private void mergeTag(Tag tag) {
+        tags.computeIfAbsent(tag.getId(), k -> new TagRow(tag)).merge(tag);
+    }
+
+    private void writeTags() {
+        Map<String, String> extraColumns = new LinkedHashMap<>();
+        tags.values().forEach(row -> row.extraProperties.forEach((k, v) -> extraColumns.putIfAbsent(k, k + columnType(v))));
+        List<String> header = new ArrayList<>();
+        header.add(idColumn(Labels.Tag));
+        header.add(key(Properties.PROPERTY_ID));
+        header.add(key(Properties.LANGUAGE));
+        header.add(key(Properties.CONTENT_VALUE));
+        header.add(key(Properties.PART_OF_SPEECH) + ":string[]");
+        header.add(key(Properties.NAMED_ENTITY) + ":string[]");
+        header.addAll(extraColumns.values());
+        header.add(":LABEL");
+
+        try (CsvFile file = new CsvFile("tags", header.toArray(new String[0]))) {
+            String namedEntityPrefix = key(Properties.NAMED_ENTITY_PREFIX);
+            tags.values().forEach(row -> {
+                List<Object> values = new ArrayList<>();
+                values.add(row.id);
+                values.add(row.id);
+                values.add(row.language);
+                values.add(row.lemma);
+                values.add(row.pos.toArray(new String[0]));
+                values.add(row.ne.toArray(new String[0]));
+                extraColumns.keySet().forEach(k -> values.add(row.extraProperties.get(k)));
+                List<String> tagLabels = new ArrayList<>();
+                tagLabels.add(label(Labels.Tag));
+                row.ne.forEach(ne -> tagLabels.add(namedEntityPrefix + TagUtils.getNamedEntityValue(ne)));
+                values.add(labels(tagLabels));
+                file.row(values.toArray());
+            });
+        }
+    }
+
+    private void writePhrases() {
+        try (CsvFile file = new CsvFile("phrases", idColumn(Labels.Phrase), key(Properties.CONTENT_VALUE), key(Properties.PHRASE_TYPE), ":LABEL")) {
+            phrases.forEach((content, type) -> file.row(content, content, type, label(Labels.Phrase)));
+        }
+    }
+
+    private CsvFile relationshipFile(String name, Labels start, Labels end, String... properties) {
+        String[] header = new String[3 + properties.length];
+        header[0] = ":START_ID(" + start.name() + ")";
+        header[1] = ":END_ID(" + end.name() + ")";
+        header[2] = ":TYPE";
+        System.arraycopy(properties, 0, header, 3, properties.length);
+
+        return new CsvFile(name, header);
+    }
+
+    private String idColumn(Labels label) {
+        return ":ID(" + label.name() + ")";
+    }
+
+    private String key(String property) {
+        return configuration.getPropertyKeyFor(property);
+    }
+
+    private String label(Labels label) {
+        return configuration.getLabelFor(label).name();
+    }
+
+    private String type(Relationships relationship) {
+        return configuration.getRelationshipFor(relationship).name();
+    }
+
+    private static String labels(List<String> labels) {
+        return String.join(ARRAY_DELIMITER, labels);
+    }
+
+    private static String columnType(Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            return ":long";
+        }
+        if (value instanceof Number) {
+            return ":double";
+        }
+        if (value instanceof Boolean) {
+            return ":boolean";
+        }
+
+        return "";
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new RuntimeException("The exporter has already been closed");
+        }
+    }
+
+    private static class TagRow {
+
+        private final String id;
+        private final String lemma;
+        private final String language;
+        private final Set<String> pos = new LinkedHashSet<>();
+        private final Set<String> ne = new LinkedHashSet<>();
+        private final Map<String, Object> extraProperties = new HashMap<>();
+
+        TagRow(Tag tag) {
+            this.id = tag.getId();
+            this.lemma = tag.getLemma();
+            this.language = tag.getLanguage();
+        }
+
+        TagRow merge(Tag tag) {
+            pos.addAll(tag.getPosAsList());
+            ne.addAll(tag.getNeAsList());
+            extraProperties.putAll(tag.getExtraProperties());
+            return this;
+        }
+    }
+
+    private class CsvFile implements AutoCloseable {
+
+        private final File file;
+        private final Writer writer;
+
+        CsvFile(String name, String... header) {
+            this.file = new File(directory, name + ".csv");
+            try {
+                this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+                writer.write(String.join(",", header));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot write " + file.getAbsolutePath(), e);
+            }
+        }
+
+        String getPath() {
+            return file.getAbsolutePath();
+        }
+
+        void row(Object... values) {
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(format(values[i]));
+                }
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot write " + file.getAbsolutePath(), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot close " + file.getAbsolutePath(), e);
+            }
+        }
+
+        private String format(Object value) {
+            if (value == null) {
+                return "";
+            }
+            if (value instanceof Number || value instanceof Boolean) {
+                return String.valueOf(value);
+            }
+            if (value instanceof String[]) {
+                return quote(String.join(ARRAY_DELIMITER, (String[]) value));
+            }
+
+            return quote(String.valueOf(value));
+        }
+
+        private String quote(String value) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+    }
+}
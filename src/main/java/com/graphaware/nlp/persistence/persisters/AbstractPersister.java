@@ -19,7 +19,9 @@ import com.graphaware.nlp.NLPManager;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.configuration.ResolvedSchema;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
+import com.graphaware.nlp.persistence.UniqueNodeCreator;
 import org.codehaus.jackson.map.SerializationConfig;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
@@ -55,6 +57,10 @@ public abstract class AbstractPersister {
         return manager.getConfiguration();
     }
 
+    protected ResolvedSchema schema() {
+        return manager.getConfiguration().getSchema();
+    }
+
     protected ObjectMapper mapper() {
         return mapper;
     }
@@ -63,6 +69,13 @@ public abstract class AbstractPersister {
         return registry.getPersister(clazz);
     }
 
+    /**
+     * Gets or creates the node shared between texts having the label and value, see {@link UniqueNodeCreator}.
+     */
+    protected Node getOrCreateUnique(Label label, String key, Object value) {
+        return registry.getUniqueNodeCreator().getOrCreate(label, key, value);
+    }
+
     protected Node getIfExist(Label label, String key, Object value) {
         ResourceIterator<Node> nodes = getDatabase().findNodes(label, key, value);
         List<Node> all = new ArrayList<>();
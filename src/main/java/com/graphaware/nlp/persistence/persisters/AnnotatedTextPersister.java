@@ -18,6 +18,7 @@ package com.graphaware.nlp.persistence.persisters;
 import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.nlp.domain.AnnotatedText;
 import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.persistence.AnnotatedTextSnapshot;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
 import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.persistence.constants.Properties;
@@ -25,8 +26,17 @@ import com.graphaware.nlp.persistence.constants.Relationships;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.logging.Log;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class AnnotatedTextPersister extends AbstractPersister implements Persister<AnnotatedText> {
@@ -44,8 +54,15 @@ public class AnnotatedTextPersister extends AbstractPersister implements Persist
 
     @Override
     public Node persist(AnnotatedText annotatedText, String id, String txId) {
+        return persist(annotatedText, id, txId, false);
+    }
+
+    /**
+     * @param leanOccurrences whether the sentences store their occurrences in lean mode, see {@link SentencePersister#persist(Sentence, String, String, boolean)}
+     */
+    public Node persist(AnnotatedText annotatedText, String id, String txId, boolean leanOccurrences) {
         LOG.info("Start storing annotatedText " + id);
-        Node tmpAnnotatedNode = getIfExist(configuration().getLabelFor(Labels.AnnotatedText), Properties.PROPERTY_ID, id);
+        Node tmpAnnotatedNode = getIfExist(schema().label(Labels.AnnotatedText), Properties.PROPERTY_ID, id);
         final Node annotatedTextNode;
         if (tmpAnnotatedNode != null) {
             annotatedTextNode = tmpAnnotatedNode;
@@ -53,21 +70,138 @@ public class AnnotatedTextPersister extends AbstractPersister implements Persist
             annotatedTextNode = getOrCreate(annotatedText, id, txId);
 
         }
-        iterateSentencesAndStore(annotatedTextNode, annotatedText, id, txId);
+        iterateSentencesAndStore(annotatedTextNode, annotatedText, id, txId, leanOccurrences);
         tmpAnnotatedNode = annotatedTextNode;
 
         LOG.info("end storing annotatedText " + id);
         return tmpAnnotatedNode;
     }
 
+    /**
+     * Stores the annotated text rewriting only the sentences whose hash is not stored anymore.
+     * Stored sentences are matched by hash whatever their number, so that inserting or removing a sentence does not
+     * make the following ones look changed. A matched sentence keeps its node and occurrences; it is renumbered, and
+     * its occurrence offsets are shifted, when an edit before it moved it. Other sentences are stored again, stored
+     * sentences not present anymore in the text are deleted with their occurrences. If no AnnotatedText node exists for
+     * the given id yet, this is the same as {@link #persist(AnnotatedText, String, String)}.
+     */
+    public Node persistIncrementally(AnnotatedText annotatedText, String id, String txId) {
+        return persistIncrementally(annotatedText, id, txId, false);
+    }
+
+    public Node persistIncrementally(AnnotatedText annotatedText, String id, String txId, boolean leanOccurrences) {
+        Node annotatedTextNode = getIfExist(schema().label(Labels.AnnotatedText), Properties.PROPERTY_ID, id);
+        if (annotatedTextNode == null) {
+            return persist(annotatedText, id, txId, leanOccurrences);
+        }
+        LOG.info("Start incremental storing of annotatedText " + id);
+        SentencePersister sentencePersister = (SentencePersister) getPersister(Sentence.class);
+        Map<String, Deque<Node>> storedSentences = getStoredSentencesByHash(annotatedTextNode);
+        annotatedText.getSentences().sort((Sentence o1, Sentence o2) -> o1.compareTo(o2));
+        Node[] keptSentences = new Node[annotatedText.getSentences().size()];
+        for (int i = 0; i < keptSentences.length; i++) {
+            Deque<Node> sameHash = storedSentences.get(annotatedText.getSentences().get(i).hash());
+            keptSentences[i] = sameHash != null ? sameHash.pollFirst() : null;
+        }
+        // the stored sentences left are gone from the text, they are deleted and the kept ones moved before storing
+        // the new ones, whose ids could otherwise collide with theirs
+        int removed = 0;
+        for (Deque<Node> sameHash : storedSentences.values()) {
+            for (Node storedSentence : sameHash) {
+                sentencePersister.delete(storedSentence);
+                removed++;
+            }
+        }
+        // with a unique constraint on the sentence id, a kept sentence cannot take the id another one still has
+        String sentenceNumber = schema().property(Properties.SENTENCE_NUMBER);
+        for (int i = 0; i < keptSentences.length; i++) {
+            if (keptSentences[i] != null
+                    && ((Number) keptSentences[i].getProperty(sentenceNumber)).intValue() != annotatedText.getSentences().get(i).getSentenceNumber()) {
+                keptSentences[i].removeProperty(schema().property(Properties.PROPERTY_ID));
+            }
+        }
+        for (int i = 0; i < keptSentences.length; i++) {
+            if (keptSentences[i] != null) {
+                sentencePersister.move(keptSentences[i], annotatedText.getSentences().get(i), id);
+            }
+        }
+        List<Node> sentenceNodes = new ArrayList<>();
+        int rewritten = 0;
+        for (int i = 0; i < keptSentences.length; i++) {
+            if (keptSentences[i] != null) {
+                sentenceNodes.add(keptSentences[i]);
+                continue;
+            }
+            Node sentenceNode = sentencePersister.persist(annotatedText.getSentences().get(i), id, txId, leanOccurrences);
+            relateSentenceToAnnotatedText(sentenceNode, annotatedTextNode, false);
+            sentenceNodes.add(sentenceNode);
+            rewritten++;
+        }
+        relinkSentences(annotatedTextNode, sentenceNodes);
+        annotatedTextNode.setProperty(schema().property(Properties.NUM_TERMS), annotatedText.getTokens().size());
+
+        LOG.info("end incremental storing of annotatedText " + id + ": " + rewritten + " sentences rewritten, " + removed + " removed");
+        return annotatedTextNode;
+    }
+
+    /**
+     * Gets the AnnotatedText node of the given id ready for {@link #appendSentences(Node, Node, AnnotatedText, String, String, boolean)},
+     * creating it or deleting the sentences it has.
+     */
+    public Node prepareForAppend(String id, String txId) {
+        Node annotatedTextNode = getIfExist(schema().label(Labels.AnnotatedText), Properties.PROPERTY_ID, id);
+        if (annotatedTextNode == null) {
+            return getOrCreate(new AnnotatedText(), id, txId);
+        }
+        SentencePersister sentencePersister = (SentencePersister) getPersister(Sentence.class);
+        getStoredSentences(annotatedTextNode).values().forEach(sentencePersister::delete);
+        annotatedTextNode.setProperty(schema().property(Properties.NUM_TERMS), 0);
+
+        return annotatedTextNode;
+    }
+
+    /**
+     * Stores the sentences of the annotated text after the sentences already stored, so that a long text can be
+     * stored part by part.
+     *
+     * @param lastSentenceNode the last sentence stored, null if none
+     * @return the last sentence stored
+     */
+    public Node appendSentences(Node annotatedTextNode, Node lastSentenceNode, AnnotatedText annotatedText, String id, String txId, boolean leanOccurrences) {
+        SentencePersister sentencePersister = (SentencePersister) getPersister(Sentence.class);
+        Node previousSentence = lastSentenceNode;
+        for (Sentence sentence : annotatedText.getSentencesSorted()) {
+            Node sentenceNode = sentencePersister.persist(sentence, id, txId, leanOccurrences);
+            relateSentenceToAnnotatedText(sentenceNode, annotatedTextNode, previousSentence == null);
+            if (previousSentence != null) {
+                relatePreviousSentenceToNext(previousSentence, sentenceNode);
+            }
+            previousSentence = sentenceNode;
+        }
+        int numTerms = ((Number) annotatedTextNode.getProperty(schema().property(Properties.NUM_TERMS), 0)).intValue();
+        annotatedTextNode.setProperty(schema().property(Properties.NUM_TERMS), numTerms + annotatedText.getTokens().size());
+
+        return previousSentence;
+    }
+
     @Override
     public AnnotatedText fromNode(Node node) {
-        if (!node.hasLabel(configuration().getLabelFor(Labels.AnnotatedText))) {
-            throw new RuntimeException("Expected an " + configuration().getLabelFor(Labels.AnnotatedText) + " node.");
+        if (!node.hasLabel(schema().label(Labels.AnnotatedText))) {
+            throw new RuntimeException("Expected an " + schema().label(Labels.AnnotatedText) + " node.");
         }
-        AnnotatedText annotatedText = mapper().convertValue(node.getAllProperties(), AnnotatedText.class);
+        Object snapshot = node.getProperty(schema().property(Properties.SNAPSHOT), null);
+        if (snapshot instanceof byte[]) {
+            AnnotatedText annotatedText = AnnotatedTextSnapshot.decode((byte[]) snapshot);
+            if (annotatedText != null) {
+                return annotatedText;
+            }
+            LOG.warn("Snapshot of " + node.getProperty(schema().property(Properties.PROPERTY_ID)) + " has an unsupported version, reading the graph instead");
+        }
+        Map<String, Object> properties = node.getAllProperties();
+        properties.remove(schema().property(Properties.SNAPSHOT));
+        AnnotatedText annotatedText = mapper().convertValue(properties, AnnotatedText.class);
 
-        node.getRelationships(configuration().getRelationshipFor(Relationships.CONTAINS_SENTENCE), Direction.OUTGOING).forEach(relationship -> {
+        node.getRelationships(schema().relationship(Relationships.CONTAINS_SENTENCE), Direction.OUTGOING).forEach(relationship -> {
             Sentence sentence = (Sentence) getPersister(Sentence.class).fromNode(relationship.getEndNode());
             annotatedText.addSentence(sentence);
         });
@@ -75,16 +209,46 @@ public class AnnotatedTextPersister extends AbstractPersister implements Persist
         return annotatedText;
     }
 
+    /**
+     * Stores a binary snapshot of the annotated text on its node, used by {@link #fromNode(Node)} to rehydrate the text
+     * without traversing its sentences. See {@link AnnotatedTextSnapshot}.
+     */
+    public void storeSnapshot(Node node, AnnotatedText annotatedText) {
+        node.setProperty(schema().property(Properties.SNAPSHOT), AnnotatedTextSnapshot.encode(annotatedText));
+    }
+
+    public void removeSnapshot(Node node) {
+        node.removeProperty(schema().property(Properties.SNAPSHOT));
+    }
+
+    /**
+     * Updates the sentiment labels of the stored sentences, and the snapshot if the text has one, without storing the
+     * sentences again.
+     */
+    public void updateSentiment(Node node, AnnotatedText annotatedText) {
+        SentencePersister sentencePersister = (SentencePersister) getPersister(Sentence.class);
+        Map<Integer, Node> storedSentences = getStoredSentences(node);
+        annotatedText.getSentences().forEach(sentence -> {
+            Node sentenceNode = storedSentences.get(sentence.getSentenceNumber());
+            if (sentenceNode != null) {
+                sentencePersister.updateSentiment(sentenceNode, sentence);
+            }
+        });
+        if (node.hasProperty(schema().property(Properties.SNAPSHOT))) {
+            storeSnapshot(node, annotatedText);
+        }
+    }
+
     @Override
     public boolean exists(String id) {
-        return null != getIfExist(configuration().getLabelFor(Labels.AnnotatedText), Properties.PROPERTY_ID, id);
+        return null != getIfExist(schema().label(Labels.AnnotatedText), Properties.PROPERTY_ID, id);
     }
 
     @Override
     public Node getOrCreate(AnnotatedText annotatedText, String id, String txId) {
-        Node node = database.createNode(configuration().getLabelFor(Labels.AnnotatedText));
-        node.setProperty(configuration().getPropertyKeyFor(Properties.PROPERTY_ID), id);
-        node.setProperty(configuration().getPropertyKeyFor(Properties.NUM_TERMS), annotatedText.getTokens().size());
+        Node node = database.createNode(schema().label(Labels.AnnotatedText));
+        node.setProperty(schema().property(Properties.PROPERTY_ID), id);
+        node.setProperty(schema().property(Properties.NUM_TERMS), annotatedText.getTokens().size());
 
         return node;
     }
@@ -94,11 +258,11 @@ public class AnnotatedTextPersister extends AbstractPersister implements Persist
 
     }
 
-    private void iterateSentencesAndStore(Node annotatedTextNode, AnnotatedText annotatedText, String id, String txId) {
+    private void iterateSentencesAndStore(Node annotatedTextNode, AnnotatedText annotatedText, String id, String txId, boolean leanOccurrences) {
         final AtomicReference<Node> previousSentenceReference = new AtomicReference<>();
         annotatedText.getSentences().sort((Sentence o1, Sentence o2) -> o1.compareTo(o2));
         annotatedText.getSentences().forEach((sentence) -> {
-            Node sentenceNode = getPersister(Sentence.class).persist(sentence, id, txId);
+            Node sentenceNode = ((SentencePersister) getPersister(Sentence.class)).persist(sentence, id, txId, leanOccurrences);
             Node previousSentence = previousSentenceReference.get();
             boolean isFirstSentence = previousSentence == null;
             relateSentenceToAnnotatedText(sentenceNode, annotatedTextNode, isFirstSentence);
@@ -109,16 +273,61 @@ public class AnnotatedTextPersister extends AbstractPersister implements Persist
         });
     }
 
+    private Map<Integer, Node> getStoredSentences(Node annotatedTextNode) {
+        Map<Integer, Node> sentences = new HashMap<>();
+        annotatedTextNode.getRelationships(schema().relationship(Relationships.CONTAINS_SENTENCE), Direction.OUTGOING).forEach(relationship -> {
+            Node sentenceNode = relationship.getEndNode();
+            sentences.put(((Number) sentenceNode.getProperty(schema().property(Properties.SENTENCE_NUMBER))).intValue(), sentenceNode);
+        });
+
+        return sentences;
+    }
+
+    private Map<String, Deque<Node>> getStoredSentencesByHash(Node annotatedTextNode) {
+        Map<String, Deque<Node>> sentences = new HashMap<>();
+        new TreeMap<>(getStoredSentences(annotatedTextNode)).values().forEach(sentenceNode -> {
+            String hash = String.valueOf(sentenceNode.getProperty(schema().property(Properties.HASH), ""));
+            sentences.computeIfAbsent(hash, k -> new ArrayDeque<>()).add(sentenceNode);
+        });
+
+        return sentences;
+    }
+
+    private void relinkSentences(Node annotatedTextNode, List<Node> sentenceNodes) {
+        if (sentenceNodes.isEmpty()) {
+            return;
+        }
+        relinkSingle(annotatedTextNode, sentenceNodes.get(0), schema().relationship(Relationships.FIRST_SENTENCE));
+        for (int i = 1; i < sentenceNodes.size(); i++) {
+            relinkSingle(sentenceNodes.get(i - 1), sentenceNodes.get(i), schema().relationship(Relationships.NEXT_SENTENCE));
+        }
+        Relationship afterLast = sentenceNodes.get(sentenceNodes.size() - 1).getSingleRelationship(schema().relationship(Relationships.NEXT_SENTENCE), Direction.OUTGOING);
+        if (afterLast != null) {
+            afterLast.delete();
+        }
+    }
+
+    private void relinkSingle(Node from, Node to, RelationshipType type) {
+        Relationship existing = from.getSingleRelationship(type, Direction.OUTGOING);
+        if (existing != null && existing.getEndNode().equals(to)) {
+            return;
+        }
+        if (existing != null) {
+            existing.delete();
+        }
+        from.createRelationshipTo(to, type);
+    }
+
     private void relateSentenceToAnnotatedText(Node sentence, Node annotatedText, boolean isFirstSentence) {
         annotatedText.createRelationshipTo(
                 sentence,
-                configuration().getRelationshipFor(Relationships.CONTAINS_SENTENCE));
+                schema().relationship(Relationships.CONTAINS_SENTENCE));
         if (isFirstSentence) {
-            annotatedText.createRelationshipTo(sentence, configuration().getRelationshipFor(Relationships.FIRST_SENTENCE));
+            annotatedText.createRelationshipTo(sentence, schema().relationship(Relationships.FIRST_SENTENCE));
         }
     }
 
     private void relatePreviousSentenceToNext(Node previous, Node next) {
-        previous.createRelationshipTo(next, configuration().getRelationshipFor(Relationships.NEXT_SENTENCE));
+        previous.createRelationshipTo(next, schema().relationship(Relationships.NEXT_SENTENCE));
     }
 }
@@ -54,15 +54,11 @@ public class KeywordPersister extends AbstractPersister implements Persister<Key
 
     @Override
     public Node getOrCreate(Keyword keyword, String id, String txId) {
-        Node newNode;
-        Node storedKeyword = getIfExist(keywordLabel, "id", keyword.getKeyword());
-        if (storedKeyword != null) {
-            newNode = storedKeyword;
-        } else {
-            newNode = database.createNode(keywordLabel);
-            update(newNode, keyword, id);
+        Node node = getOrCreateUnique(keywordLabel, "id", keyword.getKeyword());
+        if (!node.hasProperty("value")) {
+            update(node, keyword, id);
         }
-        return newNode;
+        return node;
     }
 
     @Override
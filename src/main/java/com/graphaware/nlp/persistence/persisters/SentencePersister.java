@@ -17,6 +17,7 @@ package com.graphaware.nlp.persistence.persisters;
 
 import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.domain.*;
+import com.graphaware.nlp.persistence.LeanOccurrences;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
 import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.persistence.constants.Properties;
@@ -24,19 +25,36 @@ import com.graphaware.nlp.persistence.constants.Relationships;
 import com.graphaware.nlp.util.SentenceUtils;
 import org.neo4j.graphdb.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SentencePersister extends AbstractPersister implements Persister<Sentence> {
 
+    private final Map<String, RelationshipType> dependencyTypes = new ConcurrentHashMap<>();
+
     public SentencePersister(GraphDatabaseService database, PersistenceRegistry registry) {
         super(database, registry);
     }
 
     @Override
     public Node persist(Sentence sentence, String id, String txId) {
+        return persist(sentence, id, txId, false);
+    }
+
+    /**
+     * @param leanOccurrences when true, tag occurrences and typed dependencies are stored as primitive arrays on the
+     *                        Sentence node (see {@link LeanOccurrences}) instead of TagOccurrence nodes
+     */
+    public Node persist(Sentence sentence, String id, String txId, boolean leanOccurrences) {
         String sentenceId = String.format("%s_%s", id, sentence.getSentenceNumber());
-        Node sentenceNode = getIfExist(configuration().getLabelFor(Labels.Sentence), configuration().getPropertyKeyFor(Properties.PROPERTY_ID), sentenceId);
+        Node sentenceNode = getIfExist(schema().label(Labels.Sentence), schema().property(Properties.PROPERTY_ID), sentenceId);
         Node newSentenceNode;
         if (sentenceNode == null) {
             newSentenceNode = getOrCreate(sentence, id, txId);
@@ -45,8 +63,12 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
         }
         update(newSentenceNode, sentence, id);
         storeSentenceTags(sentence, newSentenceNode, id, txId);
-        storeSentenceTagOccurrences(sentence, newSentenceNode, txId);
-        storeUniversalDependenciesForSentence(sentence, newSentenceNode);
+        if (leanOccurrences) {
+            storeLeanOccurrences(sentence, newSentenceNode, txId);
+        } else {
+            Map<String, Node> tokenIdsToNodes = storeSentenceTagOccurrences(sentence, newSentenceNode, txId);
+            storeUniversalDependenciesForSentence(sentence, tokenIdsToNodes);
+        }
         storePhrases(sentence, newSentenceNode, txId);
         assignSentimentLabel(sentence, newSentenceNode);
         sentenceNode = newSentenceNode;
@@ -57,8 +79,8 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
     @Override
     public Sentence fromNode(Node node) {
         Map<String, Object> properties = node.getAllProperties();
-        String sentence = properties.get(configuration().getPropertyKeyFor(Properties.TEXT)).toString();
-        int sentenceNumber = (int) properties.get(configuration().getPropertyKeyFor(Properties.SENTENCE_NUMBER));
+        String sentence = properties.get(schema().property(Properties.TEXT)).toString();
+        int sentenceNumber = (int) properties.get(schema().property(Properties.SENTENCE_NUMBER));
 
         final Sentence sentenceO = new Sentence(sentence, sentenceNumber);
 
@@ -79,7 +101,7 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
 
     @Override
     public Node getOrCreate(Sentence sentence, String id, String txId) {
-        Node node = database.createNode(configuration().getLabelFor(Labels.Sentence));
+        Node node = database.createNode(schema().label(Labels.Sentence));
         update(node, sentence, id);
 
         return node;
@@ -87,10 +109,102 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
 
     @Override
     public void update(Node node, Sentence sentence, String id) {
-        node.setProperty(configuration().getPropertyKeyFor(Properties.PROPERTY_ID), String.format("%s_%s", id, sentence.getSentenceNumber()));
-        node.setProperty(configuration().getPropertyKeyFor(Properties.SENTENCE_NUMBER), sentence.getSentenceNumber());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.HASH), sentence.hash());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.TEXT), sentence.getSentence());
+        node.setProperty(schema().property(Properties.PROPERTY_ID), String.format("%s_%s", id, sentence.getSentenceNumber()));
+        node.setProperty(schema().property(Properties.SENTENCE_NUMBER), sentence.getSentenceNumber());
+        node.setProperty(schema().property(Properties.HASH), sentence.hash());
+        node.setProperty(schema().property(Properties.TEXT), sentence.getSentence());
+    }
+
+    /**
+     * Moves a stored sentence whose text did not change to the place it has in a new version of the text: its number
+     * and id are updated, and the offsets of its occurrences are shifted by the distance the sentence moved, computed
+     * from the first tag (or phrase) occurrence of each version.
+     */
+    public void move(Node sentenceNode, Sentence sentence, String id) {
+        String sentenceNumber = schema().property(Properties.SENTENCE_NUMBER);
+        if (((Number) sentenceNode.getProperty(sentenceNumber)).intValue() != sentence.getSentenceNumber()
+                || !sentenceNode.hasProperty(schema().property(Properties.PROPERTY_ID))) {
+            sentenceNode.setProperty(schema().property(Properties.PROPERTY_ID), String.format("%s_%s", id, sentence.getSentenceNumber()));
+            sentenceNode.setProperty(sentenceNumber, sentence.getSentenceNumber());
+        }
+        List<Node> tagOccurrences = getOccurrences(sentenceNode, Relationships.SENTENCE_TAG_OCCURRENCE);
+        List<Node> phraseOccurrences = getOccurrences(sentenceNode, Relationships.SENTENCE_PHRASE_OCCURRENCE);
+        int[] leanBegins = (int[]) sentenceNode.getProperty(schema().property(Properties.OCCURRENCE_BEGINS), null);
+
+        Integer storedBegin = leanBegins != null
+                ? (leanBegins.length > 0 ? Arrays.stream(leanBegins).min().getAsInt() : null)
+                : getFirstBegin(tagOccurrences, Properties.OCCURRENCE_BEGIN);
+        Integer newBegin = sentence.getTagOccurrences().isEmpty() ? null : Collections.min(sentence.getTagOccurrences().keySet());
+        if (storedBegin == null || newBegin == null) {
+            storedBegin = getFirstBegin(phraseOccurrences, Properties.START_POSITION);
+            newBegin = sentence.getPhraseOccurrences().isEmpty() ? null : Collections.min(sentence.getPhraseOccurrences().keySet());
+        }
+        if (storedBegin == null || newBegin == null || storedBegin.intValue() == newBegin.intValue()) {
+            return;
+        }
+        int shift = newBegin - storedBegin;
+        if (leanBegins != null) {
+            sentenceNode.setProperty(schema().property(Properties.OCCURRENCE_BEGINS), shift(leanBegins, shift));
+            sentenceNode.setProperty(schema().property(Properties.OCCURRENCE_ENDS),
+                    shift((int[]) sentenceNode.getProperty(schema().property(Properties.OCCURRENCE_ENDS)), shift));
+        }
+        tagOccurrences.forEach(occurrence -> shift(occurrence, Properties.OCCURRENCE_BEGIN, Properties.OCCURRENCE_END, shift));
+        phraseOccurrences.forEach(occurrence -> shift(occurrence, Properties.START_POSITION, Properties.END_POSITION, shift));
+    }
+
+    private List<Node> getOccurrences(Node sentenceNode, Relationships relationship) {
+        List<Node> occurrences = new ArrayList<>();
+        sentenceNode.getRelationships(schema().relationship(relationship), Direction.OUTGOING)
+                .forEach(rel -> occurrences.add(rel.getEndNode()));
+
+        return occurrences;
+    }
+
+    private Integer getFirstBegin(List<Node> occurrences, String beginProperty) {
+        Integer first = null;
+        for (Node occurrence : occurrences) {
+            int begin = ((Number) occurrence.getProperty(schema().property(beginProperty))).intValue();
+            if (first == null || begin < first) {
+                first = begin;
+            }
+        }
+
+        return first;
+    }
+
+    private void shift(Node occurrence, String beginProperty, String endProperty, int shift) {
+        occurrence.setProperty(schema().property(beginProperty), ((Number) occurrence.getProperty(schema().property(beginProperty))).intValue() + shift);
+        occurrence.setProperty(schema().property(endProperty), ((Number) occurrence.getProperty(schema().property(endProperty))).intValue() + shift);
+    }
+
+    private static int[] shift(int[] positions, int shift) {
+        int[] shifted = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            shifted[i] = positions[i] + shift;
+        }
+
+        return shifted;
+    }
+
+    /**
+     * Deletes the sentence node together with its TagOccurrence and PhraseOccurrence nodes.
+     * Tag and Phrase nodes are shared between sentences and are left in place.
+     */
+    public void delete(Node sentenceNode) {
+        deleteOccurrences(sentenceNode, Relationships.SENTENCE_TAG_OCCURRENCE);
+        deleteOccurrences(sentenceNode, Relationships.SENTENCE_PHRASE_OCCURRENCE);
+        deleteWithRelationships(sentenceNode);
+    }
+
+    private void deleteOccurrences(Node sentenceNode, Relationships relationship) {
+        getOccurrences(sentenceNode, relationship).forEach(this::deleteWithRelationships);
+    }
+
+    private void deleteWithRelationships(Node node) {
+        List<Relationship> relationships = new ArrayList<>();
+        node.getRelationships().forEach(relationships::add);
+        relationships.forEach(Relationship::delete);
+        node.delete();
     }
 
     private void storeSentenceTags(Sentence sentence, Node sentenceNode, String id, String txId) {
@@ -101,8 +215,8 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
     }
 
     private void relateSentenceToTag(Node sentenceNode, Node tagNode, int multiplicity) {
-        Relationship rel = sentenceNode.createRelationshipTo(tagNode, configuration().getRelationshipFor(Relationships.HAS_TAG));
-        rel.setProperty(configuration().getPropertyKeyFor(Properties.TF), multiplicity);
+        Relationship rel = sentenceNode.createRelationshipTo(tagNode, schema().relationship(Relationships.HAS_TAG));
+        rel.setProperty(schema().property(Properties.TF), multiplicity);
     }
 
     private void storePhrases(Sentence sentence, Node sentenceNode, String txId) {
@@ -117,136 +231,168 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
         });
     }
 
-    private void storeSentenceTagOccurrences(Sentence sentence, Node sentenceNode, String txId) {
+    private Map<String, Node> storeSentenceTagOccurrences(Sentence sentence, Node sentenceNode, String txId) {
+        final Map<String, Node> tokenIdsToNodes = new HashMap<>();
         sentence.getTagOccurrences().values().forEach(occurrence -> {
             for (TagOccurrence tagAtPosition : occurrence) {
                 Node tagNode = getPersister(Tag.class).getOrCreate(tagAtPosition.getElement(), null, txId);
                 Node tagOccurrenceNode = createTagOccurrenceNode(tagAtPosition);
                 relateTagOccurrenceToTag(tagOccurrenceNode, tagNode);
                 relateSentenceToTagOccurrence(sentenceNode, tagOccurrenceNode);
+                tagAtPosition.getPartIds().forEach(tokenId -> tokenIdsToNodes.put(tokenId, tagOccurrenceNode));
+            }
+        });
+
+        return tokenIdsToNodes;
+    }
+
+    private void storeLeanOccurrences(Sentence sentence, Node sentenceNode, String txId) {
+        List<TagOccurrence> occurrences = new ArrayList<>();
+        sentence.getTagOccurrences().values().forEach(occurrences::addAll);
+        occurrences.sort(Comparator.comparingInt(occurrence -> occurrence.getSpan().first()));
+
+        int size = occurrences.size();
+        int[] begins = new int[size];
+        int[] ends = new int[size];
+        long[] tags = new long[size];
+        String[] tagIds = new String[size];
+        int[] valueIndexes = new int[size];
+        Map<String, Integer> values = new LinkedHashMap<>();
+        Map<String, Integer> tokenIdsToIndexes = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            TagOccurrence occurrence = occurrences.get(i);
+            begins[i] = occurrence.getSpan().first();
+            ends[i] = occurrence.getSpan().second();
+            Node tagNode = getPersister(Tag.class).getOrCreate(occurrence.getElement(), null, txId);
+            tags[i] = tagNode.getId();
+            tagIds[i] = String.valueOf(tagNode.getProperty(schema().property(Properties.PROPERTY_ID)));
+            valueIndexes[i] = values.computeIfAbsent(occurrence.getValue() != null ? occurrence.getValue() : "", k -> values.size());
+            final int index = i;
+            occurrence.getPartIds().forEach(tokenId -> tokenIdsToIndexes.put(tokenId, index));
+        }
+
+        List<TypedDependency> dependencies = new ArrayList<>();
+        sentence.getTypedDependencies().forEach(typedDependency -> {
+            if (tokenIdsToIndexes.containsKey(typedDependency.getSource()) && tokenIdsToIndexes.containsKey(typedDependency.getTarget())) {
+                dependencies.add(typedDependency);
             }
         });
+        int[] sources = new int[dependencies.size()];
+        int[] targets = new int[dependencies.size()];
+        String[] types = new String[dependencies.size()];
+        String[] specifics = new String[dependencies.size()];
+        for (int i = 0; i < dependencies.size(); i++) {
+            TypedDependency typedDependency = dependencies.get(i);
+            sources[i] = tokenIdsToIndexes.get(typedDependency.getSource());
+            targets[i] = tokenIdsToIndexes.get(typedDependency.getTarget());
+            types[i] = getDependencyType(typedDependency.getName()).name();
+            specifics[i] = typedDependency.getSpecific() != null ? typedDependency.getSpecific() : "";
+        }
+
+        sentenceNode.setProperty(schema().property(Properties.OCCURRENCE_BEGINS), begins);
+        sentenceNode.setProperty(schema().property(Properties.OCCURRENCE_ENDS), ends);
+        sentenceNode.setProperty(schema().property(Properties.OCCURRENCE_TAGS), tags);
+        sentenceNode.setProperty(schema().property(Properties.OCCURRENCE_TAG_IDS), tagIds);
+        sentenceNode.setProperty(schema().property(Properties.OCCURRENCE_VALUES), values.keySet().toArray(new String[0]));
+        sentenceNode.setProperty(schema().property(Properties.OCCURRENCE_VALUE_INDEXES), valueIndexes);
+        sentenceNode.setProperty(schema().property(Properties.DEPENDENCY_SOURCES), sources);
+        sentenceNode.setProperty(schema().property(Properties.DEPENDENCY_TARGETS), targets);
+        sentenceNode.setProperty(schema().property(Properties.DEPENDENCY_TYPES), types);
+        sentenceNode.setProperty(schema().property(Properties.DEPENDENCY_SPECIFICS), specifics);
     }
 
     private void relateSentenceToTagOccurrence(Node sentenceNode, Node tagOccurrenceNode) {
-        sentenceNode.createRelationshipTo(tagOccurrenceNode, configuration().getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE));
+        sentenceNode.createRelationshipTo(tagOccurrenceNode, schema().relationship(Relationships.SENTENCE_TAG_OCCURRENCE));
     }
 
     private Node createTagOccurrenceNode(TagOccurrence occurrence) {
-        Node node = database.createNode(configuration().getLabelFor(Labels.TagOccurrence));
-        node.setProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_BEGIN), occurrence.getSpan().first());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_END), occurrence.getSpan().second());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH), occurrence.getElement().getPosAsArray());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.NAMED_ENTITY), occurrence.getElement().getNeAsArray());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.TAG_ORIGINAL_VALUE), occurrence.getValue());
+        Node node = database.createNode(schema().label(Labels.TagOccurrence));
+        node.setProperty(schema().property(Properties.OCCURRENCE_BEGIN), occurrence.getSpan().first());
+        node.setProperty(schema().property(Properties.OCCURRENCE_END), occurrence.getSpan().second());
+        node.setProperty(schema().property(Properties.PART_OF_SPEECH), occurrence.getElement().getPosAsArray());
+        node.setProperty(schema().property(Properties.NAMED_ENTITY), occurrence.getElement().getNeAsArray());
+        node.setProperty(schema().property(Properties.TAG_ORIGINAL_VALUE), occurrence.getValue());
         return node;
     }
 
     private void relateTagOccurrenceToTag(Node tagOccurrence, Node tag) {
-        tagOccurrence.createRelationshipTo(tag, configuration().getRelationshipFor(Relationships.TAG_OCCURRENCE_TAG));
-    }
-
-    private void storeUniversalDependenciesForSentence(Sentence sentence, Node sentenceNode) {
-        final Map<String, Long> tokenIdsToNodeIds = new HashMap<>();
-        sentence.getTagOccurrences().values().forEach(occurence -> {
-            occurence.forEach(tagOccurrence -> {
-                Node tagOccurrenceNode = getTagOccurrenceInSentence(sentenceNode, tagOccurrence);
-                if (tagOccurrenceNode == null) {
-                    throw new RuntimeException("Expected to find a TagOccurrence node, got null");
-                }
-                tagOccurrence.getPartIds().forEach(tokenId -> {
-                    tokenIdsToNodeIds.put(tokenId, tagOccurrenceNode.getId());
-                });
-            });
-        });
+        tagOccurrence.createRelationshipTo(tag, schema().relationship(Relationships.TAG_OCCURRENCE_TAG));
+    }
 
+    private void storeUniversalDependenciesForSentence(Sentence sentence, Map<String, Node> tokenIdsToNodes) {
         sentence.getTypedDependencies().forEach(typedDependency -> {
-            if (!tokenIdsToNodeIds.containsKey(typedDependency.getSource()) || !tokenIdsToNodeIds.containsKey(typedDependency.getTarget())) {
+            Node sourceNode = tokenIdsToNodes.get(typedDependency.getSource());
+            Node targetNode = tokenIdsToNodes.get(typedDependency.getTarget());
+            if (sourceNode == null || targetNode == null) {
 //                LOG.info("source: {} or target: {} for typed dependency not found", typedDependency.getSource(), typedDependency.getTarget());
                 return;
             }
-
-            Node sourceNode = database.getNodeById(tokenIdsToNodeIds.get(typedDependency.getSource()));
-            Node targetNode = database.getNodeById(tokenIdsToNodeIds.get(typedDependency.getTarget()));
             relateTypedDependencySourceAndTarget(sourceNode, targetNode, typedDependency);
         });
     }
 
     private void relateTypedDependencySourceAndTarget(Node source, Node target, TypedDependency typedDependency) {
-        RelationshipType relationshipType = RelationshipType.withName(typedDependency.getName().toUpperCase());
+        RelationshipType relationshipType = getDependencyType(typedDependency.getName());
         Relationship relationship = source.createRelationshipTo(target, relationshipType);
         if (null != typedDependency.getSpecific()) {
-            relationship.setProperty(configuration().getPropertyKeyFor(Properties.DEPENDENCY_SPECIFIC), typedDependency.getSpecific());
+            relationship.setProperty(schema().property(Properties.DEPENDENCY_SPECIFIC), typedDependency.getSpecific());
         }
-        if (relationshipType.name().equals("ROOT")) {
-            source.addLabel(configuration().getLabelFor(Labels.Root));
+        if (relationshipType.name().equals(LeanOccurrences.ROOT_DEPENDENCY)) {
+            source.addLabel(schema().label(Labels.Root));
         }
     }
 
+    private RelationshipType getDependencyType(String dependencyName) {
+        return dependencyTypes.computeIfAbsent(dependencyName, name -> RelationshipType.withName(name.toUpperCase()));
+    }
+
+    public void updateSentiment(Node sentenceNode, Sentence sentence) {
+        assignSentimentLabel(sentence, sentenceNode);
+    }
+
     private void assignSentimentLabel(Sentence sentence, Node sentenceNode) {
         int sentiment = sentence.getSentiment();
         Label sentimentLabel = SentenceUtils.getDefaultLabelForSentimentLevel(sentiment);
         if (sentimentLabel == null) {
             return;
         }
-        sentenceNode.addLabel(configuration().getLabelFor(sentimentLabel));
-    }
-
-    private Node getTagOccurrenceInSentence(Node sentenceNode, TagOccurrence tagOccurrence) {
-        for (Relationship relationship : sentenceNode.getRelationships(configuration().getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE), Direction.OUTGOING)) {
-            Node otherNode = relationship.getEndNode();
-            if (otherNode.getProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_BEGIN)).equals(tagOccurrence.getSpan().first())
-                    && otherNode.getProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_END)).equals(tagOccurrence.getSpan().second())) {
-                return otherNode;
-            }
-        }
-
-        return null;
+        sentenceNode.addLabel(schema().label(sentimentLabel));
     }
 
     private void relateSentenceToPhrase(Node sentenceNode, Node phraseNode) {
         sentenceNode.createRelationshipTo(phraseNode,
-                configuration().getRelationshipFor(Relationships.HAS_PHRASE));
+                schema().relationship(Relationships.HAS_PHRASE));
     }
 
     private void relatePhraseOccurrenceToPhrase(Node phraseOccurrenceNode, Node phraseNode) {
         phraseOccurrenceNode.createRelationshipTo(phraseNode,
-                configuration().getRelationshipFor(Relationships.PHRASE_OCCURRENCE_PHRASE));
+                schema().relationship(Relationships.PHRASE_OCCURRENCE_PHRASE));
     }
 
     private void relateSentenceToPhraseOccurrence(Node sentenceNode, Node phraseOccurrenceNode) {
         sentenceNode.createRelationshipTo(phraseOccurrenceNode,
-                configuration().getRelationshipFor(Relationships.SENTENCE_PHRASE_OCCURRENCE));
+                schema().relationship(Relationships.SENTENCE_PHRASE_OCCURRENCE));
     }
 
     private Node createPhraseOccurrence(PartOfTextOccurrence<Phrase> occurrence) {
-        Node node = database.createNode(configuration().getLabelFor(Labels.PhraseOccurrence));
-        node.setProperty(configuration().getPropertyKeyFor(Properties.START_POSITION), occurrence.getSpan().first());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.END_POSITION), occurrence.getSpan().second());
+        Node node = database.createNode(schema().label(Labels.PhraseOccurrence));
+        node.setProperty(schema().property(Properties.START_POSITION), occurrence.getSpan().first());
+        node.setProperty(schema().property(Properties.END_POSITION), occurrence.getSpan().second());
 
         return node;
     }
 
     private Node getOrCreatePhrase(Phrase phrase, String txId) {
-        Node node = database.findNode(configuration().getLabelFor(Labels.Phrase),
-                configuration().getPropertyKeyFor(Properties.CONTENT_VALUE),
-                phrase.getContent()
-        );
-
-        if (node == null) {
-            node = database.createNode(configuration().getLabelFor(Labels.Phrase));
-            updatePhrase(phrase, node);
-        } else {
-            updatePhrase(phrase, node);
-        }
+        Node node = getOrCreateUnique(schema().label(Labels.Phrase), schema().property(Properties.CONTENT_VALUE), phrase.getContent());
+        updatePhrase(phrase, node);
 
         return node;
     }
 
     private void updatePhrase(Phrase phrase, Node phraseNode) {
-        phraseNode.setProperty(configuration().getPropertyKeyFor(Properties.CONTENT_VALUE), phrase.getContent());
+        phraseNode.setProperty(schema().property(Properties.CONTENT_VALUE), phrase.getContent());
         String type = phrase.getType() != null ? phrase.getType() : NLPDefaultValues.PHRASE_TYPE;
-        phraseNode.setProperty(configuration().getPropertyKeyFor(Properties.PHRASE_TYPE), type);
+        phraseNode.setProperty(schema().property(Properties.PHRASE_TYPE), type);
     }
 
     @Override
@@ -31,6 +31,8 @@ import java.util.*;
 
 public class TagPersister extends AbstractPersister implements Persister<Tag> {
 
+    private final ThreadLocal<Map<String, Long>> resolvedTags = new ThreadLocal<>();
+
     public TagPersister(GraphDatabaseService database, PersistenceRegistry registry) {
         super(database, registry);
     }
@@ -43,8 +45,8 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
     @Override
     public Tag fromNode(Node node) {
         checkNodeIsATag(node);
-        return new Tag(String.valueOf(node.getProperty(configuration().getPropertyKeyFor(Properties.CONTENT_VALUE))),
-                String.valueOf(node.getProperty(configuration().getPropertyKeyFor(Properties.LANGUAGE))));
+        return new Tag(String.valueOf(node.getProperty(schema().property(Properties.CONTENT_VALUE))),
+                String.valueOf(node.getProperty(schema().property(Properties.LANGUAGE))));
     }
 
     @Override
@@ -52,15 +54,36 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
         return false;
     }
 
+    /**
+     * Opens a resolution cache for the current thread : until {@link #closeResolutionCache()} is called, each distinct
+     * Tag id is looked up in the index only once and subsequent occurrences reuse the resolved node id.
+     * The cache must not outlive the transaction in which the nodes have been resolved.
+     */
+    public void openResolutionCache() {
+        resolvedTags.set(new HashMap<>());
+    }
+
+    public void closeResolutionCache() {
+        resolvedTags.remove();
+    }
+
+    /**
+     * Gets or creates the node of the tag and merges the part of speech, named entities and extra properties of the
+     * tag into it.
+     * <p>
+     * The node keeps a fingerprint of what it has been given, the sorted hashes of its parts of speech, named entities
+     * and extra property keys: when the fingerprint already contains all the hashes of the tag, and the tag has no
+     * parents to relate, the tag brings nothing new and the node is neither read further nor written, which spares
+     * the frequent tags from being locked and rewritten for each text. The values of the extra properties are not
+     * part of the fingerprint, as they only used to be refreshed along with new parts of speech or named entities.
+     */
     @Override
     public Node getOrCreate(Tag tag, String id, String txId) {
-        Node node = getIfExist(
-                configuration().getLabelFor(configuration().getLabelFor(Labels.Tag)),
-                configuration().getPropertyKeyFor(configuration().getPropertyKeyFor(Properties.PROPERTY_ID)),
-                tag.getId());
-
-        if (null == node) {
-            node = database.createNode(configuration().getLabelFor(Labels.Tag));
+        Node node = findOrCreateTagNode(tag);
+        long[] fingerprint = fingerprint(tag);
+        long[] storedFingerprint = (long[]) node.getProperty(schema().property(Properties.TAG_FINGERPRINT), null);
+        if (tag.getParents().isEmpty() && storedFingerprint != null && containsAll(storedFingerprint, fingerprint)) {
+            return node;
         }
 
         if (shouldBeUpdated(tag, node)) {
@@ -76,12 +99,89 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
             setLastTransaction(node, txId);
             storeTagParent(node, tag, txId);
         }
+        node.setProperty(schema().property(Properties.TAG_FINGERPRINT), union(storedFingerprint, fingerprint));
+        return node;
+    }
+
+    private static long[] fingerprint(Tag tag) {
+        Set<Long> hashes = new HashSet<>();
+        tag.getPosAsList().forEach(pos -> hashes.add(hash('p', pos)));
+        tag.getNeAsList().forEach(ne -> hashes.add(hash('n', ne)));
+        tag.getExtraProperties().keySet().forEach(key -> hashes.add(hash('x', key)));
+        long[] fingerprint = new long[hashes.size()];
+        int i = 0;
+        for (Long hash : hashes) {
+            fingerprint[i++] = hash;
+        }
+        Arrays.sort(fingerprint);
+
+        return fingerprint;
+    }
+
+    /**
+     * 64 bits FNV-1a hash of the kind and value.
+     */
+    private static long hash(char kind, String value) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ kind) * 0x100000001b3L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    private static boolean containsAll(long[] sorted, long[] values) {
+        for (long value : values) {
+            if (Arrays.binarySearch(sorted, value) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long[] union(long[] sorted, long[] values) {
+        if (sorted == null) {
+            return values;
+        }
+        long[] union = new long[sorted.length + values.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < sorted.length || j < values.length) {
+            long next;
+            if (j >= values.length || (i < sorted.length && sorted[i] <= values[j])) {
+                next = sorted[i++];
+            } else {
+                next = values[j++];
+            }
+            if (size == 0 || union[size - 1] != next) {
+                union[size++] = next;
+            }
+        }
+
+        return Arrays.copyOf(union, size);
+    }
+
+    private Node findOrCreateTagNode(Tag tag) {
+        Map<String, Long> cache = resolvedTags.get();
+        if (cache != null && cache.containsKey(tag.getId())) {
+            return database.getNodeById(cache.get(tag.getId()));
+        }
+
+        Node node = getOrCreateUnique(schema().label(Labels.Tag), schema().property(Properties.PROPERTY_ID), tag.getId());
+
+        if (cache != null) {
+            cache.put(tag.getId(), node.getId());
+        }
+
         return node;
     }
 
     private boolean shouldBeUpdated(Tag tag, Node tagNode) {
-        if (tagNode.hasProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH))) {
-            String[] pos = (String[]) tagNode.getProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH));
+        if (tagNode.hasProperty(schema().property(Properties.PART_OF_SPEECH))) {
+            String[] pos = (String[]) tagNode.getProperty(schema().property(Properties.PART_OF_SPEECH));
             if (tag.getPosAsList().size() != pos.length) {
                 return true;
             }
@@ -92,8 +192,8 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
             }
         }
 
-        if (tagNode.hasProperty(configuration().getPropertyKeyFor(Properties.NAMED_ENTITY))) {
-            String[] pos = (String[]) tagNode.getProperty(configuration().getPropertyKeyFor(Properties.NAMED_ENTITY));
+        if (tagNode.hasProperty(schema().property(Properties.NAMED_ENTITY))) {
+            String[] pos = (String[]) tagNode.getProperty(schema().property(Properties.NAMED_ENTITY));
             if (tag.getNeAsList().size() != pos.length) {
                 return true;
             }
@@ -117,15 +217,15 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
 
     @Override
     public void update(Node node, Tag tag, String id) {
-        node.setProperty(configuration().getPropertyKeyFor(Properties.PROPERTY_ID), tag.getId());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.LANGUAGE), tag.getLanguage());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.CONTENT_VALUE), tag.getLemma());
+        node.setProperty(schema().property(Properties.PROPERTY_ID), tag.getId());
+        node.setProperty(schema().property(Properties.LANGUAGE), tag.getLanguage());
+        node.setProperty(schema().property(Properties.CONTENT_VALUE), tag.getLemma());
     }
 
     private void assignNamedEntityOnTag(Node tagNode, Tag tag) {
         List<String> allNEs = new ArrayList<>();
-        if (tagNode.hasProperty(configuration().getPropertyKeyFor(Properties.NAMED_ENTITY))) {
-            String[] nes = (String[]) tagNode.getProperty(configuration().getPropertyKeyFor(Properties.NAMED_ENTITY));
+        if (tagNode.hasProperty(schema().property(Properties.NAMED_ENTITY))) {
+            String[] nes = (String[]) tagNode.getProperty(schema().property(Properties.NAMED_ENTITY));
             allNEs.addAll(Arrays.asList(nes));
         }
 
@@ -134,17 +234,17 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
                 .filter(n -> !allNEs.contains(n))
                 .forEach(allNEs::add);
 
-        tagNode.setProperty(configuration().getPropertyKeyFor(Properties.NAMED_ENTITY), TypeConverter.convertStringListToArray(allNEs));
+        tagNode.setProperty(schema().property(Properties.NAMED_ENTITY), TypeConverter.convertStringListToArray(allNEs));
         allNEs.forEach(ner -> {
-            String labelName = configuration().getPropertyKeyFor(Properties.NAMED_ENTITY_PREFIX) + TagUtils.getNamedEntityValue(ner);
+            String labelName = schema().property(Properties.NAMED_ENTITY_PREFIX) + TagUtils.getNamedEntityValue(ner);
             tagNode.addLabel(Label.label(labelName));
         });
     }
 
     private void assignPartOfSpeechOnTag(Node tagNode, Tag tag) {
         List<String> allPos = new ArrayList<>();
-        if (tagNode.hasProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH))) {
-            String[] posV = (String[]) tagNode.getProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH));
+        if (tagNode.hasProperty(schema().property(Properties.PART_OF_SPEECH))) {
+            String[] posV = (String[]) tagNode.getProperty(schema().property(Properties.PART_OF_SPEECH));
             allPos.addAll(Arrays.asList(posV));
         }
         tag.getPosAsList()
@@ -152,7 +252,7 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
                 .filter(t -> !allPos.contains(t))
                 .forEach(allPos::add);
 
-        tagNode.setProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH), TypeConverter.convertStringListToArray(allPos));
+        tagNode.setProperty(schema().property(Properties.PART_OF_SPEECH), TypeConverter.convertStringListToArray(allPos));
     }
 
     private void storeExtraProperties(Tag tag, Node tagNode) {
@@ -173,8 +273,8 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
                         "WHERE id(source) = {source} AND id(target) = {target} " +
                         "MERGE (source)-[r:`%s` {%s: {type} }]->(target) " +
                         "ON CREATE SET r.%s = {weight}, r.source = {sourceId} ",
-                        configuration().getLabelFor(Labels.Tag),
-                        configuration().getLabelFor(Labels.Tag),
+                        schema().label(Labels.Tag),
+                        schema().label(Labels.Tag),
                         Relationships.IS_RELATED_TO,
                         "type",
                         "weight");
@@ -191,19 +291,19 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
 
     private void checkNodeIsATag(Node tagNode) {
         Map<String, Object> allProperties = tagNode.getAllProperties();
-        assert (tagNode.hasLabel(configuration().getLabelFor(Labels.Tag)));
-        assert (allProperties.containsKey(configuration().getPropertyKeyFor(Properties.PROPERTY_ID)));
-        assert (allProperties.containsKey(configuration().getPropertyKeyFor(Properties.CONTENT_VALUE)));
-        assert (allProperties.containsKey(configuration().getPropertyKeyFor(Properties.LANGUAGE)));
+        assert (tagNode.hasLabel(schema().label(Labels.Tag)));
+        assert (allProperties.containsKey(schema().property(Properties.PROPERTY_ID)));
+        assert (allProperties.containsKey(schema().property(Properties.CONTENT_VALUE)));
+        assert (allProperties.containsKey(schema().property(Properties.LANGUAGE)));
     }
     
     private boolean checkSameTransaction(Node tagNode, String txId) {
-        String nodeTxId = (String) tagNode.getProperty(configuration().getPropertyKeyFor(Properties.LAST_TX_ID), null);
+        String nodeTxId = (String) tagNode.getProperty(schema().property(Properties.LAST_TX_ID), null);
         return nodeTxId != null ? nodeTxId.equalsIgnoreCase(txId) : false;
     }
 
     private void setLastTransaction(Node node, String txId) {
-        node.setProperty(configuration().getPropertyKeyFor(Properties.LAST_TX_ID), txId);
+        node.setProperty(schema().property(Properties.LAST_TX_ID), txId);
     }
 
     @Override
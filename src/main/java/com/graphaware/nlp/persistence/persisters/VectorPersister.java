@@ -46,7 +46,7 @@ public class VectorPersister extends AbstractPersister implements Persister<Vect
     @Override
     public boolean exists(String id) {
         Node node = database.getNodeById(Long.parseLong(id));
-        Label label = configuration().getLabelFor(Labels.VectorContainer);
+        Label label = schema().label(Labels.VectorContainer);
         if (node != null && node.hasLabel(label)) {
             return true;
         } else if (node != null) {
@@ -66,7 +66,7 @@ public class VectorPersister extends AbstractPersister implements Persister<Vect
         if (label != null) {
             vectorContainerLabel = Label.label(label);
         } else {
-            vectorContainerLabel = configuration().getLabelFor(Labels.VectorContainer);
+            vectorContainerLabel = schema().label(Labels.VectorContainer);
         }
         node.addLabel(vectorContainerLabel);
         node.setProperty(object.getPropertyName(), object.getVector().getArray());
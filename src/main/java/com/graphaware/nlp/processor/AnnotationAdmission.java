@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor;
+
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.configuration.SettingsConstants;
+import org.neo4j.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of annotations running at once for each pipeline, so that a spike of annotation calls does not
+ * take all the cores of the database.
+ * <p>
+ * Each pipeline has its own bulkhead of {@code annotationMaxInFlight} annotations (unlimited when the setting is absent
+ * or 0). The callers beyond the limit wait, at most {@code annotationQueueTimeout} milliseconds, in a queue of
+ * {@code annotationQueueSize} callers; a caller finding the queue full is rejected at once. The settings can be given
+ * for a single pipeline by suffixing them with {@code .<pipeline name>}, and are read on each call, so they can be
+ * changed while the database runs.
+ */
+public class AnnotationAdmission {
+
+    private static final Log LOG = LoggerFactory.getLogger(AnnotationAdmission.class);
+
+    private static final int DEFAULT_QUEUE_SIZE = 100;
+    private static final long DEFAULT_QUEUE_TIMEOUT = 30000;
+
+    private final DynamicConfiguration configuration;
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public AnnotationAdmission(DynamicConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Runs the annotation once admitted for the pipeline.
+     *
+     * @throws RuntimeException if the pipeline is overloaded: its queue is full or the wait timed out
+     */
+    public <T> T execute(String pipeline, Supplier<T> annotation) {
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(pipeline, Bulkhead::new);
+        bulkhead.acquire((int) getSetting(SettingsConstants.ANNOTATION_MAX_IN_FLIGHT, pipeline, 0),
+                (int) getSetting(SettingsConstants.ANNOTATION_QUEUE_SIZE, pipeline, DEFAULT_QUEUE_SIZE),
+                getSetting(SettingsConstants.ANNOTATION_QUEUE_TIMEOUT, pipeline, DEFAULT_QUEUE_TIMEOUT));
+        try {
+            return annotation.get();
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public List<Bulkhead> getBulkheads() {
+        return new ArrayList<>(bulkheads.values());
+    }
+
+    private long getSetting(String key, String pipeline, long defaultValue) {
+        if (configuration == null) {
+            return defaultValue;
+        }
+        String pipelineKey = key + "." + pipeline;
+        String settingKey = configuration.hasSettingValue(pipelineKey) ? pipelineKey : key;
+        if (!configuration.hasSettingValue(settingKey)) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(0, Long.parseLong(configuration.getSettingValueFor(settingKey).toString()));
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value for the setting " + settingKey + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static class Bulkhead {
+
+        private final String pipeline;
+        private int maxInFlight;
+        private int maxQueued;
+        private int inFlight;
+        private int queued;
+        private long admitted;
+        private long rejected;
+        private long timedOut;
+
+        Bulkhead(String pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        synchronized void acquire(int maxInFlight, int maxQueued, long timeout) {
+            this.maxInFlight = maxInFlight;
+            this.maxQueued = maxQueued;
+            if (maxInFlight <= 0 || (inFlight < maxInFlight && queued == 0)) {
+                admit();
+                return;
+            }
+            if (queued >= maxQueued) {
+                rejected++;
+                throw new RuntimeException("Annotation overloaded for pipeline " + pipeline + ": "
+                        + inFlight + " annotations running and " + queued + " waiting, try again later");
+            }
+            queued++;
+            try {
+                long deadline = System.currentTimeMillis() + timeout;
+                while (inFlight >= this.maxInFlight && this.maxInFlight > 0) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        timedOut++;
+                        throw new RuntimeException("Annotation overloaded for pipeline " + pipeline
+                                + ": no annotation slot within " + timeout + " ms, try again later");
+                    }
+                    wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for an annotation slot of pipeline " + pipeline, e);
+            } finally {
+                queued--;
+            }
+            admit();
+        }
+
+        synchronized void release() {
+            inFlight--;
+            notifyAll();
+        }
+
+        private void admit() {
+            inFlight++;
+            admitted++;
+        }
+
+        public String getPipeline() {
+            return pipeline;
+        }
+
+        public synchronized int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public synchronized int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public synchronized int getInFlight() {
+            return inFlight;
+        }
+
+        public synchronized int getQueued() {
+            return queued;
+        }
+
+        public synchronized long getAdmitted() {
+            return admitted;
+        }
+
+        public synchronized long getRejected() {
+            return rejected;
+        }
+
+        public synchronized long getTimedOut() {
+            return timedOut;
+        }
+    }
+}
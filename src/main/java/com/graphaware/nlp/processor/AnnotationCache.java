@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor;
+
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.configuration.SettingsConstants;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.persistence.AnnotatedTextSnapshot;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Memoizes the annotations of the texts, so that a text seen again with the same language and pipeline specification
+ * is not annotated again.
+ * <p>
+ * The key is the pipeline name and a SHA-256 of the text, the language and the serialized pipeline specification, so
+ * a pipeline whose steps change never gets the annotations of its former specification. The text is hashed as is:
+ * the annotations hold character offsets, which would not match a differently spaced copy.
+ * <p>
+ * The annotations are kept as {@link AnnotatedTextSnapshot}s in an LRU of {@code annotationCacheSize} entries (the
+ * cache is disabled when the setting is absent or 0), and, when {@code annotationCacheDirectory} is set, in one file
+ * per text under a directory per pipeline, which survives restarts. Each hit decodes a fresh {@link AnnotatedText},
+ * the callers are free to modify it.
+ */
+public class AnnotationCache {
+
+    private static final Log LOG = LoggerFactory.getLogger(AnnotationCache.class);
+    private static final String KEY_SEPARATOR = "/";
+    private static final String FILE_EXTENSION = ".snapshot";
+
+    private final DynamicConfiguration configuration;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AnnotationCache(DynamicConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    public boolean isEnabled() {
+        return getMaxSize() > 0 || getDirectory() != null;
+    }
+
+    public AnnotatedText annotate(TextProcessor processor, String text, String lang, PipelineSpecification pipelineSpecification) {
+        if (!isEnabled()) {
+            return processor.annotateText(text, lang, pipelineSpecification);
+        }
+        String key = key(text, lang, pipelineSpecification);
+        AnnotatedText cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        AnnotatedText annotatedText = processor.annotateText(text, lang, pipelineSpecification);
+        put(key, annotatedText);
+
+        return annotatedText;
+    }
+
+    /**
+     * Annotates through {@link TextProcessor#annotateTexts(List, String, PipelineSpecification)} the texts not in the
+     * cache only, the annotated texts are in the order of the texts.
+     */
+    public List<AnnotatedText> annotateTexts(TextProcessor processor, List<String> texts, String lang, PipelineSpecification pipelineSpecification) {
+        if (!isEnabled()) {
+            return processor.annotateTexts(texts, lang, pipelineSpecification);
+        }
+        List<AnnotatedText> annotatedTexts = new ArrayList<>(texts.size());
+        List<String> keys = new ArrayList<>(texts.size());
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String key = key(texts.get(i), lang, pipelineSpecification);
+            keys.add(key);
+            AnnotatedText cached = missing.containsKey(key) ? null : get(key);
+            annotatedTexts.add(cached);
+            if (cached == null) {
+                missing.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return annotatedTexts;
+        }
+        List<String> toAnnotate = new ArrayList<>(missing.size());
+        missing.values().forEach(indexes -> toAnnotate.add(texts.get(indexes.get(0))));
+        List<AnnotatedText> annotated = processor.annotateTexts(toAnnotate, lang, pipelineSpecification);
+        int i = 0;
+        for (List<Integer> indexes : missing.values()) {
+            AnnotatedText annotatedText = annotated.get(i++);
+            byte[] snapshot = put(keys.get(indexes.get(0)), annotatedText);
+            annotatedTexts.set(indexes.get(0), annotatedText);
+            for (int j = 1; j < indexes.size(); j++) {
+                annotatedTexts.set(indexes.get(j), AnnotatedTextSnapshot.decode(snapshot));
+            }
+        }
+
+        return annotatedTexts;
+    }
+
+    /**
+     * Drops the annotations of the pipeline, from memory and from disk.
+     */
+    public void invalidate(String pipeline) {
+        String prefix = pipeline + KEY_SEPARATOR;
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+        Path directory = getDirectory();
+        if (directory != null) {
+            deleteRecursively(directory.resolve(toDirectoryName(pipeline)));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        synchronized (entries) {
+            statistics.put("size", entries.size());
+        }
+        statistics.put("hits", hits.get());
+        statistics.put("misses", misses.get());
+        return statistics;
+    }
+
+    private AnnotatedText get(String key) {
+        byte[] snapshot;
+        synchronized (entries) {
+            snapshot = entries.get(key);
+        }
+        if (snapshot == null) {
+            snapshot = read(key);
+            if (snapshot != null) {
+                store(key, snapshot);
+            }
+        }
+        AnnotatedText annotatedText = snapshot != null ? AnnotatedTextSnapshot.decode(snapshot) : null;
+        if (annotatedText == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+
+        return annotatedText;
+    }
+
+    private byte[] put(String key, AnnotatedText annotatedText) {
+        byte[] snapshot = AnnotatedTextSnapshot.encode(annotatedText);
+        store(key, snapshot);
+        write(key, snapshot);
+
+        return snapshot;
+    }
+
+    private void store(String key, byte[] snapshot) {
+        int maxSize = getMaxSize();
+        if (maxSize <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, snapshot);
+            Iterator<String> eldest = entries.keySet().iterator();
+            while (entries.size() > maxSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private byte[] read(String key) {
+        Path file = getFile(key);
+        if (file == null || !Files.exists(file)) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            LOG.warn("Cannot read the cached annotation " + file, e);
+            return null;
+        }
+    }
+
+    private void write(String key, byte[] snapshot) {
+        Path file = getFile(key);
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(tmp, snapshot);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Cannot write the cached annotation " + file, e);
+        }
+    }
+
+    private Path getFile(String key) {
+        Path directory = getDirectory();
+        if (directory == null) {
+            return null;
+        }
+        int separator = key.lastIndexOf(KEY_SEPARATOR);
+        String hash = key.substring(separator + 1);
+        return directory.resolve(toDirectoryName(key.substring(0, separator)))
+                .resolve(hash.substring(0, 2))
+                .resolve(hash + FILE_EXTENSION);
+    }
+
+    private String key(String text, String lang, PipelineSpecification pipelineSpecification) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(mapper.writeValueAsString(pipelineSpecification).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(lang).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hash = new StringBuilder(pipelineSpecification.getName()).append(KEY_SEPARATOR);
+            for (byte b : digest.digest()) {
+                hash.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hash.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Cannot compute the annotation cache key", e);
+        }
+    }
+
+    private int getMaxSize() {
+        if (configuration == null || !configuration.hasSettingValue(SettingsConstants.ANNOTATION_CACHE_SIZE)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(configuration.getSettingValueFor(SettingsConstants.ANNOTATION_CACHE_SIZE).toString());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value for the setting " + SettingsConstants.ANNOTATION_CACHE_SIZE + ", disabling the annotation cache");
+            return 0;
+        }
+    }
+
+    private Path getDirectory() {
+        if (configuration == null || !configuration.hasSettingValue(SettingsConstants.ANNOTATION_CACHE_DIRECTORY)) {
+            return null;
+        }
+        return Paths.get(configuration.getSettingValueFor(SettingsConstants.ANNOTATION_CACHE_DIRECTORY).toString());
+    }
+
+    private static String toDirectoryName(String pipeline) {
+        return pipeline.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    private static void deleteRecursively(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    LOG.warn("Cannot delete the cached annotation " + path, e);
+                }
+            });
+        } catch (IOException e) {
+            LOG.warn("Cannot delete the cached annotations of " + directory, e);
+        }
+    }
+}
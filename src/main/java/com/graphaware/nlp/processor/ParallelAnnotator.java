@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor;
+
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.dsl.request.PipelineSpecification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Default implementation of {@link TextProcessor#annotateTexts(List, String, PipelineSpecification)}: the texts are
+ * annotated by at most threadNumber (from the pipeline specification) workers, the caller thread being one of them,
+ * each taking the next text not yet annotated. The worker threads come from a shared pool and are reused across
+ * calls. The first failure stops the workers and is thrown to the caller.
+ */
+final class ParallelAnnotator {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "nlp-annotator-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ParallelAnnotator() {
+    }
+
+    static List<AnnotatedText> annotate(TextProcessor processor, List<String> texts, String lang, PipelineSpecification pipelineSpecification) {
+        int threadNumber = (int) Math.max(1, Math.min(pipelineSpecification.getThreadNumber(), texts.size()));
+        if (threadNumber == 1) {
+            List<AnnotatedText> annotatedTexts = new ArrayList<>(texts.size());
+            texts.forEach(text -> annotatedTexts.add(processor.annotateText(text, lang, pipelineSpecification)));
+            return annotatedTexts;
+        }
+
+        AnnotatedText[] annotatedTexts = new AnnotatedText[texts.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        CountDownLatch runningWorkers = new CountDownLatch(threadNumber - 1);
+        Runnable worker = () -> {
+            int i;
+            while (failure.get() == null && (i = next.getAndIncrement()) < annotatedTexts.length) {
+                try {
+                    annotatedTexts[i] = processor.annotateText(texts.get(i), lang, pipelineSpecification);
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+        for (int t = 1; t < threadNumber; t++) {
+            WORKERS.execute(() -> {
+                try {
+                    worker.run();
+                } finally {
+                    runningWorkers.countDown();
+                }
+            });
+        }
+        worker.run();
+        try {
+            runningWorkers.await();
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, new RuntimeException("Interrupted while waiting for the annotation workers", e));
+            Thread.currentThread().interrupt();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        return Arrays.asList(annotatedTexts);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor;
+
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.PartOfTextOccurrence;
+import com.graphaware.nlp.domain.Phrase;
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.domain.TagOccurrence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits long texts into chunks annotated separately, and merges the annotated chunks back into the annotated text of
+ * the whole text.
+ * <p>
+ * A chunk ends after the last paragraph break of its window of chunkSize characters, else after its last sentence end
+ * (the following whitespace starting the next chunk), else after its last whitespace, a break being searched in the second half of the window only so that chunks do not get too
+ * small. The chunks cover the whole text, so the offsets of a chunk only need to be shifted by its begin.
+ */
+public final class TextChunker {
+
+    private TextChunker() {
+    }
+
+    public static List<Chunk> split(String text, int chunkSize) {
+        List<Chunk> chunks = new ArrayList<>();
+        if (chunkSize <= 0 || text.length() <= chunkSize) {
+            chunks.add(new Chunk(0, text));
+            return chunks;
+        }
+        int begin = 0;
+        while (begin < text.length()) {
+            int end = begin + chunkSize >= text.length() ? text.length() : findBreak(text, begin + chunkSize / 2, begin + chunkSize);
+            chunks.add(new Chunk(begin, text.substring(begin, end)));
+            begin = end;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Merges the annotated chunks into one annotated text: the character offsets of the occurrences are shifted by the
+     * begin of their chunk and the sentences are numbered in order starting at firstSentenceNumber. The tokens ids of
+     * the occurrences and dependencies are kept, they are only resolved within their sentence.
+     */
+    public static AnnotatedText merge(List<Chunk> chunks, List<AnnotatedText> annotatedChunks, int firstSentenceNumber) {
+        AnnotatedText merged = new AnnotatedText();
+        int sentenceNumber = firstSentenceNumber;
+        int numTerms = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            AnnotatedText annotatedChunk = annotatedChunks.get(i);
+            for (Sentence sentence : annotatedChunk.getSentencesSorted()) {
+                merged.addSentence(shift(sentence, chunks.get(i).getBegin(), sentenceNumber++));
+            }
+            numTerms += annotatedChunk.getNumTerms();
+        }
+        merged.setNumTerms(numTerms);
+
+        return merged;
+    }
+
+    private static int findBreak(String text, int from, int to) {
+        int sentenceEnd = -1;
+        int whitespace = -1;
+        for (int i = to - 1; i >= from; i--) {
+            char c = text.charAt(i);
+            if (c == '\n' && i > 0 && (text.charAt(i - 1) == '\n' || text.charAt(i - 1) == '\r')) {
+                return i + 1;
+            }
+            if (Character.isWhitespace(c)) {
+                char previous = text.charAt(i - 1);
+                if (sentenceEnd < 0 && (previous == '.' || previous == '!' || previous == '?')) {
+                    sentenceEnd = i;
+                }
+                if (whitespace < 0) {
+                    whitespace = i + 1;
+                }
+            }
+        }
+        if (sentenceEnd > 0) {
+            return sentenceEnd;
+        }
+
+        return whitespace > 0 ? whitespace : to;
+    }
+
+    private static Sentence shift(Sentence sentence, int offset, int sentenceNumber) {
+        Sentence shifted = new Sentence(sentence.getSentence(), sentenceNumber);
+        shifted.setSentiment(sentence.getSentiment());
+        sentence.getTags().forEach(shifted::addTag);
+        for (List<TagOccurrence> occurrences : sentence.getTagOccurrences().values()) {
+            for (TagOccurrence occurrence : occurrences) {
+                shifted.addTagOccurrence(occurrence.getSpan().first() + offset, occurrence.getSpan().second() + offset,
+                        occurrence.getValue(), occurrence.getElement(), occurrence.getPartIds());
+            }
+        }
+        sentence.getTypedDependencies().forEach(shifted::addTypedDependency);
+        if (sentence.getPhraseOccurrences() != null) {
+            for (Map<Integer, PartOfTextOccurrence<Phrase>> occurrences : sentence.getPhraseOccurrences().values()) {
+                for (PartOfTextOccurrence<Phrase> occurrence : occurrences.values()) {
+                    shifted.addPhraseOccurrence(occurrence.getSpan().first() + offset, occurrence.getSpan().second() + offset, occurrence.getElement());
+                }
+            }
+        }
+
+        return shifted;
+    }
+
+    public static class Chunk {
+
+        private final int begin;
+        private final String text;
+
+        public Chunk(int begin, String text) {
+            this.begin = begin;
+            this.text = text;
+        }
+
+        /**
+         * @return the offset of the chunk in the text
+         */
+        public int getBegin() {
+            return begin;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+}
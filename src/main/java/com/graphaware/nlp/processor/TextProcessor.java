@@ -40,6 +40,15 @@ public interface TextProcessor {
 
     AnnotatedText annotateText(String text, String lang, PipelineSpecification pipelineSpecification);
 
+    /**
+     * Annotates the texts, in the same language, returning the annotated texts in the same order. By default the texts
+     * are annotated concurrently by up to {@link PipelineSpecification#getThreadNumber()} threads, implementations
+     * with native batching should override it.
+     */
+    default List<AnnotatedText> annotateTexts(List<String> texts, String lang, PipelineSpecification pipelineSpecification) {
+        return ParallelAnnotator.annotate(this, texts, lang, pipelineSpecification);
+    }
+
     Tag annotateSentence(String text, String lang, PipelineSpecification pipelineSpecification);
 
     Tag annotateTag(String text, String lang, PipelineSpecification pipelineSpecification);
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.util;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+public final class TransactionUtils {
+
+    private TransactionUtils() {
+    }
+
+    /**
+     * @return true if the current thread already runs a transaction, in which case beginTx() only opens a nested
+     * placebo transaction that cannot be rolled back on its own. Databases whose transaction state cannot be checked
+     * are assumed to run one.
+     */
+    public static boolean isInTransaction(GraphDatabaseService database) {
+        if (!(database instanceof GraphDatabaseAPI)) {
+            return true;
+        }
+        return ((GraphDatabaseAPI) database).getDependencyResolver()
+                .resolveDependency(ThreadToStatementContextBridge.class)
+                .hasTransaction();
+    }
+}
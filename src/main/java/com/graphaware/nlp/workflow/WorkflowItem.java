@@ -15,6 +15,8 @@ public abstract class WorkflowItem<C extends WorkflowConfiguration, T> extends A
     private final GraphDatabaseService database;
     private C configuration;
     private boolean valid;
+    private final WorkflowItemMetrics metrics = new WorkflowItemMetrics();
+    private volatile WorkflowErrorListener errorListener;
 
     public WorkflowItem(String name, GraphDatabaseService database) {
         this.name = name;
@@ -49,6 +51,32 @@ public abstract class WorkflowItem<C extends WorkflowConfiguration, T> extends A
         return database;
     }
 
+    public WorkflowItemMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the listener receiving the entries the item fails to handle, or null to let the failures propagate.
+     */
+    public void setErrorListener(WorkflowErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
+    /**
+     * Hands a failed entry to the error listener, if any.
+     *
+     * @return true if the failure has been taken care of and the item can go on with the next entries, false if the
+     * caller must propagate it
+     */
+    protected boolean isolate(Object entryId, String text, Throwable error) {
+        WorkflowErrorListener listener = errorListener;
+        if (listener == null) {
+            return false;
+        }
+        listener.failed(this, entryId, text, error);
+        return true;
+    }
+
     public WorkflowInstanceItemInfo getInfo() {
         return new WorkflowInstanceItemInfo(
                 this.getClass().getName(),
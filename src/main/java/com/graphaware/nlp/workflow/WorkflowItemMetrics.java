@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.workflow;
+
+import com.graphaware.common.log.LoggerFactory;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.neo4j.logging.Log;
+
+/**
+ * Counters of a workflow item: the entries it received and emitted (for an output, the entries acknowledged as
+ * committed), the errors, the depth of its internal queues and the distribution of the time spent on each entry.
+ * <p>
+ * Recording is lock-free, so that the metrics can stay on in production: counters are {@link LongAdder}s and
+ * latencies go to a {@link LatencyHistogram}. The metrics are reset when a task using the item starts.
+ */
+public class WorkflowItemMetrics implements WorkflowItemMetricsMBean {
+
+    private static final Log LOG = LoggerFactory.getLogger(WorkflowItemMetrics.class);
+    private static final String JMX_DOMAIN = "com.graphaware.nlp";
+
+    private final LongAdder itemsIn = new LongAdder();
+    private final LongAdder itemsOut = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong startedAt = new AtomicLong();
+    private volatile long lastEmittedAt;
+    private volatile IntSupplier queueDepth = () -> 0;
+    private ObjectName objectName;
+
+    public void received() {
+        startedAt.compareAndSet(0, System.currentTimeMillis());
+        itemsIn.increment();
+    }
+
+    public void emitted() {
+        itemsOut.increment();
+        lastEmittedAt = System.currentTimeMillis();
+    }
+
+    public void failed() {
+        errors.increment();
+    }
+
+    /**
+     * Records the time spent on an entry, as measured with {@link System#nanoTime()}.
+     */
+    public void record(long nanos) {
+        latencies.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Sets the gauge returning the number of entries waiting in the queues of the item.
+     */
+    public void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    @Override
+    public long getItemsIn() {
+        return itemsIn.sum();
+    }
+
+    @Override
+    public long getItemsOut() {
+        return itemsOut.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return latencies.percentile(0.50) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP95Millis() {
+        return latencies.percentile(0.95) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return latencies.percentile(0.99) / 1000.0;
+    }
+
+    /**
+     * @return the entries emitted per second, between the first entry received and the last one emitted
+     */
+    @Override
+    public double getDocsPerSecond() {
+        long start = startedAt.get();
+        long out = itemsOut.sum();
+        if (start == 0 || out == 0) {
+            return 0;
+        }
+        return out * 1000.0 / Math.max(1, lastEmittedAt - start);
+    }
+
+    @Override
+    public void reset() {
+        itemsIn.reset();
+        itemsOut.reset();
+        errors.reset();
+        latencies.reset();
+        startedAt.set(0);
+        lastEmittedAt = 0;
+    }
+
+    public Map<String, Object> asMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("itemsIn", getItemsIn());
+        map.put("itemsOut", getItemsOut());
+        map.put("errors", getErrors());
+        map.put("queueDepth", getQueueDepth());
+        map.put("p50", getLatencyP50Millis());
+        map.put("p95", getLatencyP95Millis());
+        map.put("p99", getLatencyP99Millis());
+        map.put("docsPerSecond", getDocsPerSecond());
+        return map;
+    }
+
+    synchronized void register(String type, String name) {
+        unregister();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName candidate = new ObjectName(JMX_DOMAIN + ":type=" + ObjectName.quote(type) + ",name=" + ObjectName.quote(name));
+            if (server.isRegistered(candidate)) {
+                server.unregisterMBean(candidate);
+            }
+            server.registerMBean(this, candidate);
+            objectName = candidate;
+        } catch (JMException e) {
+            LOG.warn("Unable to register the metrics of " + name + " in JMX", e);
+        }
+    }
+
+    synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOG.warn("Unable to unregister " + objectName + " from JMX", e);
+        }
+        objectName = null;
+    }
+}
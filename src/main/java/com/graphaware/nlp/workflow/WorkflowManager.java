@@ -132,6 +132,7 @@ public class WorkflowManager {
             T newProcessorInstance = constructor.newInstance(id, database);
             newProcessorInstance.init(parameters);
             instances.put(id, newProcessorInstance);
+            newProcessorInstance.getMetrics().register(pipelineItemClass.getSimpleName(), id);
             storeWorkflowInstanceItem(newProcessorInstance);
         } catch (NoSuchMethodException | SecurityException
                 | InstantiationException | IllegalAccessException
@@ -144,19 +145,19 @@ public class WorkflowManager {
     }
     
     public WorkflowInput deleteWorkflowInput(String id) {
-        return workflowInputInstances.remove(id);
+        return unregisterMetrics(workflowInputInstances.remove(id));
     }
     
     public WorkflowOutput deleteWorkflowOutput(String id) {
-        return workflowOutputInstances.remove(id);
+        return unregisterMetrics(workflowOutputInstances.remove(id));
     }
     
     public WorkflowProcessor deleteWorkflowProcessor(String id) {
-        return workflowProcessorInstances.remove(id);
+        return unregisterMetrics(workflowProcessorInstances.remove(id));
     }
     
     public WorkflowTask deleteWorkflowTask(String id) {
-        return workflowTaskInstances.remove(id);
+        return unregisterMetrics(workflowTaskInstances.remove(id));
     }
 
     public Set<WorkflowItemInfo> getWorkflowProcessorClasses() {
@@ -272,6 +273,13 @@ public class WorkflowManager {
         workflowProcessorClasses.putAll(loadedInstances);
     }
 
+    private <T extends WorkflowItem> T unregisterMetrics(T item) {
+        if (item != null) {
+            item.getMetrics().unregister();
+        }
+        return item;
+    }
+
     private void storeWorkflowInstanceItem(WorkflowItem processorItemInstance) {
         configuration.storeWorkflowInstanceItem(processorItemInstance);
     }
@@ -0,0 +1,251 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.graphaware.nlp.workflow.input;
+
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.NLPManager;
+import com.graphaware.nlp.annotation.NLPInput;
+import com.graphaware.nlp.parser.Parser;
+import com.graphaware.nlp.parser.domain.Page;
+import com.graphaware.nlp.parser.pdf.TikaPDFParser;
+import com.graphaware.nlp.parser.poi.PowerpointParser;
+import com.graphaware.nlp.parser.poi.WordParser;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+
+/**
+ * Extracts the text of the PDF, Word (docx) and Powerpoint (pptx) documents of a directory, through the
+ * {@link TikaPDFParser}, {@link WordParser} and {@link PowerpointParser} extensions.
+ * <p>
+ * The documents are parsed on a pool of {@code threadNumber} workers (the number of cores by default), which hand the
+ * extracted texts to the task through a queue of {@code queueSize} entries (twice the number of workers by default):
+ * when the annotation is slower than the extraction the workers block, so at most the queue and one document per
+ * worker are held in memory. Each document is an entry whose id is its path relative to the directory, or, with
+ * {@code split: 'page'}, each page is an entry whose id is {@code <relative path>#<page number>}.
+ * <p>
+ * The entries come in completion order, so the input is not resumable. A document that cannot be parsed is logged
+ * and skipped, and counted in the progress of the input.
+ */
+@NLPInput(name = "DocumentWorkflowInput")
+public class DocumentWorkflowInput
+        extends WorkflowInput<DocumentWorkflowInputConfiguration, String> {
+
+    private static final Log LOG = LoggerFactory.getLogger(DocumentWorkflowInput.class);
+    private static final long HANDOFF_POLL_MILLIS = 50;
+    private static final String PAGE_SEPARATOR = "#";
+
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile long entries;
+    private ExecutorService workers;
+
+    public DocumentWorkflowInput(String name, GraphDatabaseService database) {
+        super(name, database);
+    }
+
+    @Override
+    public void init(Map<String, Object> parameters) {
+        DocumentWorkflowInputConfiguration configuration = new DocumentWorkflowInputConfiguration(parameters);
+        if (configuration.getPath() == null || configuration.getPath().trim().isEmpty()) {
+            throw new RuntimeException("The input " + getName() + " needs a path");
+        }
+        setConfiguration(configuration);
+    }
+
+    @Override
+    public Iterator<WorkflowInputEntry<String>> iterator() {
+        stop();
+        Path path = InputFiles.resolve(getDatabase(), getConfiguration().getPath(), getName());
+        Path base = InputFiles.getBase(path);
+        Queue<String> files = new ConcurrentLinkedQueue<>(InputFiles.list(path, getConfiguration().getPattern()));
+        documents.set(0);
+        pages.set(0);
+        skipped.set(0);
+        entries = 0;
+        int threadNumber = Math.max(1, Math.min(getConfiguration().getThreadNumber(), files.size()));
+        BlockingQueue<WorkflowInputEntry<String>> extracted = new ArrayBlockingQueue<>(Math.max(1, getConfiguration().getQueueSize(threadNumber * 2)));
+        CountDownLatch runningWorkers = new CountDownLatch(threadNumber);
+        workers = Executors.newFixedThreadPool(threadNumber);
+        for (int i = 0; i < threadNumber; i++) {
+            workers.execute(() -> work(base, files, extracted, runningWorkers));
+        }
+        LOG.info("Started " + threadNumber + " extraction workers for input " + getName() + " on " + files.size() + " documents");
+        return new DocumentIterator(extracted, runningWorkers);
+    }
+
+    @Override
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("entries", entries);
+        progress.put("documents", documents.get());
+        progress.put("pages", pages.get());
+        progress.put("skipped", skipped.get());
+        return progress;
+    }
+
+    @Override
+    public void handle(Void entry) {
+        //The input is the starting point
+    }
+
+    private void work(Path base, Queue<String> files, BlockingQueue<WorkflowInputEntry<String>> extracted, CountDownLatch runningWorkers) {
+        try {
+            String file;
+            while ((file = files.poll()) != null) {
+                List<WorkflowInputEntry<String>> extractedEntries;
+                try {
+                    extractedEntries = extract(base, file);
+                } catch (Exception e) {
+                    skipped.incrementAndGet();
+                    LOG.warn("Unable to extract the text of " + file + ", skipping it", e);
+                    continue;
+                }
+                documents.incrementAndGet();
+                for (WorkflowInputEntry<String> entry : extractedEntries) {
+                    extracted.put(entry);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            runningWorkers.countDown();
+        }
+    }
+
+    private List<WorkflowInputEntry<String>> extract(Path base, String file) throws Exception {
+        Parser parser = getParser(file);
+        List<Page> documentPages;
+        try (InputStream stream = Files.newInputStream(base.resolve(file))) {
+            documentPages = parser.parse(stream, getConfiguration().getFilterPatterns());
+        }
+        pages.addAndGet(documentPages.size());
+        List<WorkflowInputEntry<String>> extractedEntries = new ArrayList<>();
+        if (getConfiguration().isSplitByPage()) {
+            for (Page page : documentPages) {
+                String text = String.join("\n", page.getParagraphs());
+                if (!text.trim().isEmpty()) {
+                    extractedEntries.add(new WorkflowInputEntry<>(text, file + PAGE_SEPARATOR + page.getNumber()));
+                }
+            }
+        } else {
+            StringBuilder text = new StringBuilder();
+            for (Page page : documentPages) {
+                for (String paragraph : page.getParagraphs()) {
+                    text.append(paragraph).append('\n');
+                }
+            }
+            if (text.toString().trim().length() > 0) {
+                extractedEntries.add(new WorkflowInputEntry<>(text.toString(), file));
+            }
+        }
+        return extractedEntries;
+    }
+
+    private Parser getParser(String file) {
+        String name = file.toLowerCase();
+        if (name.endsWith(".pdf")) {
+            return getParser(TikaPDFParser.class);
+        } else if (name.endsWith(".docx")) {
+            return getParser(WordParser.class);
+        } else if (name.endsWith(".pptx")) {
+            return getParser(PowerpointParser.class);
+        }
+        throw new RuntimeException("No parser for the document " + file);
+    }
+
+    private Parser getParser(Class<? extends Parser> clazz) {
+        Parser parser = (Parser) NLPManager.getInstance().getExtension(clazz);
+        if (parser == null) {
+            throw new RuntimeException("The parser extension " + clazz.getName() + " is not loaded");
+        }
+        return parser;
+    }
+
+    private void stop() {
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    class DocumentIterator implements Iterator<WorkflowInputEntry<String>> {
+
+        private final BlockingQueue<WorkflowInputEntry<String>> extracted;
+        private final CountDownLatch runningWorkers;
+        private WorkflowInputEntry<String> next;
+        private boolean endOfQueue;
+
+        public DocumentIterator(BlockingQueue<WorkflowInputEntry<String>> extracted, CountDownLatch runningWorkers) {
+            this.extracted = extracted;
+            this.runningWorkers = runningWorkers;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (endOfQueue) {
+                return false;
+            }
+            if (next == null) {
+                next = take();
+            }
+            if (next == null) {
+                endOfQueue = true;
+                stop();
+            }
+            return true;
+        }
+
+        @Override
+        public WorkflowInputEntry<String> next() {
+            if (next == null && !endOfQueue) {
+                hasNext();
+            }
+            if (endOfQueue) {
+                return new WorkflowInputEndOfQueueEntry<>();
+            }
+            WorkflowInputEntry<String> entry = next;
+            next = null;
+            entries++;
+            return entry;
+        }
+
+        private WorkflowInputEntry<String> take() {
+            try {
+                while (true) {
+                    WorkflowInputEntry<String> entry = extracted.poll(HANDOFF_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (entry != null) {
+                        return entry;
+                    }
+                    if (runningWorkers.getCount() == 0) {
+                        return extracted.poll();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+                throw new RuntimeException("Interrupted while waiting for the extraction workers of " + getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.graphaware.nlp.workflow.input;
+
+import com.graphaware.nlp.workflow.WorkflowBaseConfiguration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class DocumentWorkflowInputConfiguration extends WorkflowBaseConfiguration {
+
+    public static final String CONF_PATH = "path";
+    public static final String CONF_PATTERN = "pattern";
+    public static final String CONF_SPLIT = "split";
+    public static final String CONF_THREAD_NUMBER = "threadNumber";
+    public static final String CONF_QUEUE_SIZE = "queueSize";
+    public static final String CONF_FILTER_PATTERNS = "filterPatterns";
+
+    public static final String SPLIT_DOCUMENT = "document";
+    public static final String SPLIT_PAGE = "page";
+
+    private static final String DEFAULT_PATTERN = "*.{pdf,docx,pptx}";
+
+    public DocumentWorkflowInputConfiguration(Map<String, Object> configuration) {
+        super(configuration);
+    }
+
+    public String getPath() {
+        return (String) getConfiguration().get(CONF_PATH);
+    }
+
+    public String getPattern() {
+        return (String) getConfiguration().getOrDefault(CONF_PATTERN, DEFAULT_PATTERN);
+    }
+
+    /**
+     * @return whether each page (slide, paragraph for Word documents) is an entry, rather than each document
+     */
+    public boolean isSplitByPage() {
+        return SPLIT_PAGE.equalsIgnoreCase((String) getConfiguration().getOrDefault(CONF_SPLIT, SPLIT_DOCUMENT));
+    }
+
+    public int getThreadNumber() {
+        Object threadNumber = getConfiguration().get(CONF_THREAD_NUMBER);
+        return threadNumber != null ? ((Number) threadNumber).intValue() : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getQueueSize(int defaultQueueSize) {
+        Object queueSize = getConfiguration().get(CONF_QUEUE_SIZE);
+        return queueSize != null ? ((Number) queueSize).intValue() : defaultQueueSize;
+    }
+
+    public List<String> getFilterPatterns() {
+        List<String> filterPatterns = (List<String>) getConfiguration().get(CONF_FILTER_PATTERNS);
+        return filterPatterns != null ? filterPatterns : new ArrayList<>();
+    }
+}
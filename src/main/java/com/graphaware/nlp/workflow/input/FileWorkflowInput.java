@@ -0,0 +1,359 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.graphaware.nlp.workflow.input;
+
+import com.graphaware.nlp.annotation.NLPInput;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+/**
+ * Streams the entries from files, without loading the texts in the graph first.
+ * <p>
+ * The {@code path} is a file or a directory, relative to the import directory of the database
+ * ({@code dbms.directories.import}) when it is set, in which case the path cannot leave it. The files of a directory
+ * matching the {@code pattern} glob are read in the order of their relative paths. With the {@code text} format each
+ * file is an entry, whose id is its relative path; with the {@code jsonl} format each line of the files is a JSON
+ * object, whose {@code idField} and {@code textField} (default {@code id} and {@code text}) give the entry, the
+ * position of the line being the id when it has none.
+ * <p>
+ * The JSON Lines files are read sequentially through a buffer of {@code bufferSize} bytes, so a file of any size is
+ * streamed in constant memory. The input is resumable: the key of each entry is {@code <relative path>@<byte offset>}
+ * of the end of the entry, a resumed run skips the files before it and seeks to the offset.
+ */
+@NLPInput(name = "FileWorkflowInput")
+public class FileWorkflowInput
+        extends WorkflowInput<FileWorkflowInputConfiguration, String> {
+
+    private static final String KEY_SEPARATOR = "@";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private String resumeKey;
+    private volatile String lastKey;
+    private volatile long entries;
+    private volatile long files;
+    private volatile long bytes;
+
+    public FileWorkflowInput(String name, GraphDatabaseService database) {
+        super(name, database);
+    }
+
+    @Override
+    public void init(Map<String, Object> parameters) {
+        FileWorkflowInputConfiguration configuration = new FileWorkflowInputConfiguration(parameters);
+        if (configuration.getPath() == null || configuration.getPath().trim().isEmpty()) {
+            throw new RuntimeException("The input " + getName() + " needs a path");
+        }
+        setConfiguration(configuration);
+    }
+
+    @Override
+    public Iterator<WorkflowInputEntry<String>> iterator() {
+        Path path = InputFiles.resolve(getDatabase(), getConfiguration().getPath(), getName());
+        String startKey = resumeKey != null ? resumeKey : getConfiguration().getStartKey();
+        lastKey = startKey;
+        entries = 0;
+        files = 0;
+        bytes = 0;
+        return new FileIterator(InputFiles.getBase(path), InputFiles.list(path, getConfiguration().getPattern()), startKey);
+    }
+
+    /**
+     * @return the key of the last entry read
+     */
+    public String getLastKey() {
+        return lastKey;
+    }
+
+    @Override
+    public boolean isResumable() {
+        return true;
+    }
+
+    @Override
+    public void resumeFrom(Object key) {
+        resumeKey = key != null ? key.toString() : null;
+    }
+
+    @Override
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("entries", entries);
+        progress.put("files", files);
+        progress.put("bytes", bytes);
+        progress.put("lastKey", lastKey);
+        return progress;
+    }
+
+    @Override
+    public void handle(Void entry) {
+        //The input is the starting point
+    }
+
+    private static String key(String file, long offset) {
+        return file + KEY_SEPARATOR + offset;
+    }
+
+    class FileIterator implements Iterator<WorkflowInputEntry<String>> {
+
+        private final Path base;
+        private final Iterator<String> remaining;
+        private final String startFile;
+        private final long startOffset;
+        private EntryReader reader;
+        private WorkflowInputEntry<String> next;
+        private boolean endOfQueue;
+
+        public FileIterator(Path base, List<String> files, String startKey) {
+            this.base = base;
+            int separator = startKey != null ? startKey.lastIndexOf(KEY_SEPARATOR) : -1;
+            if (startKey != null && separator < 0) {
+                throw new RuntimeException("Invalid start key " + startKey + " for the input " + getName());
+            }
+            this.startFile = separator >= 0 ? startKey.substring(0, separator) : null;
+            this.startOffset = separator >= 0 ? Long.parseLong(startKey.substring(separator + 1)) : 0;
+            List<String> toRead = new ArrayList<>();
+            for (String file : files) {
+                if (startFile == null || file.compareTo(startFile) >= 0) {
+                    toRead.add(file);
+                }
+            }
+            this.remaining = toRead.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (endOfQueue) {
+                return false;
+            }
+            if (next == null) {
+                next = read();
+            }
+            if (next == null) {
+                endOfQueue = true;
+            }
+            return true;
+        }
+
+        @Override
+        public WorkflowInputEntry<String> next() {
+            if (next == null && !endOfQueue) {
+                hasNext();
+            }
+            if (endOfQueue) {
+                return new WorkflowInputEndOfQueueEntry<>();
+            }
+            WorkflowInputEntry<String> entry = next;
+            next = null;
+            entries++;
+            lastKey = (String) entry.getKey();
+            return entry;
+        }
+
+        private WorkflowInputEntry<String> read() {
+            try {
+                while (true) {
+                    if (reader == null) {
+                        if (!remaining.hasNext()) {
+                            return null;
+                        }
+                        String file = remaining.next();
+                        long offset = file.equals(startFile) ? startOffset : 0;
+                        reader = getConfiguration().isJsonLines()
+                                ? new JsonLinesReader(base, file, offset)
+                                : new TextFileReader(base, file, offset);
+                        files++;
+                    }
+                    WorkflowInputEntry<String> entry = reader.read();
+                    if (entry != null) {
+                        return entry;
+                    }
+                    reader.close();
+                    reader = null;
+                }
+            } catch (IOException e) {
+                closeReader();
+                throw new RuntimeException("Cannot read the input " + getName(), e);
+            } catch (RuntimeException e) {
+                closeReader();
+                throw e;
+            }
+        }
+
+        private void closeReader() {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+                reader = null;
+            }
+        }
+    }
+
+    interface EntryReader extends Closeable {
+
+        /**
+         * @return the next entry of the file, or null at the end of the file
+         */
+        WorkflowInputEntry<String> read() throws IOException;
+    }
+
+    class TextFileReader implements EntryReader {
+
+        private final Path path;
+        private final String file;
+        private boolean done;
+
+        TextFileReader(Path base, String file, long offset) throws IOException {
+            this.path = base.resolve(file);
+            this.file = file;
+            this.done = offset > 0 && offset >= Files.size(path);
+        }
+
+        @Override
+        public WorkflowInputEntry<String> read() throws IOException {
+            if (done) {
+                return null;
+            }
+            done = true;
+            byte[] content = Files.readAllBytes(path);
+            bytes += content.length;
+            return new WorkflowInputEntry<>(new String(content, Charset.forName(getConfiguration().getEncoding())), file, key(file, content.length));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    class JsonLinesReader implements EntryReader {
+
+        private final String file;
+        private final LineReader lines;
+        private final Charset charset;
+        private final String idField;
+        private final String textField;
+
+        JsonLinesReader(Path base, String file, long offset) throws IOException {
+            this.file = file;
+            this.lines = new LineReader(base.resolve(file), offset, Math.max(1024, getConfiguration().getBufferSize()));
+            this.charset = Charset.forName(getConfiguration().getEncoding());
+            this.idField = getConfiguration().getIdField();
+            this.textField = getConfiguration().getTextField();
+        }
+
+        @Override
+        public WorkflowInputEntry<String> read() throws IOException {
+            while (true) {
+                long lineStart = lines.getPosition();
+                byte[] line = lines.readLine();
+                if (line == null) {
+                    return null;
+                }
+                bytes += lines.getPosition() - lineStart;
+                String json = new String(line, charset);
+                if (json.trim().isEmpty()) {
+                    continue;
+                }
+                Map<String, Object> document = mapper.readValue(json, Map.class);
+                Object text = document.get(textField);
+                if (text == null) {
+                    throw new RuntimeException("The line at offset " + lineStart + " of " + file + " has no " + textField + " field");
+                }
+                Object id = document.get(idField);
+                return new WorkflowInputEntry<>(text.toString(),
+                        id != null ? id.toString() : key(file, lineStart),
+                        key(file, lines.getPosition()));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            lines.close();
+        }
+    }
+
+    /**
+     * Reads the lines of a file through a fixed size buffer, keeping the byte offset of the next line.
+     */
+    static class LineReader implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private long position;
+
+        LineReader(Path path, long offset, int bufferSize) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.channel.position(offset);
+            this.position = offset;
+            this.buffer = ByteBuffer.allocate(bufferSize);
+            this.buffer.flip();
+        }
+
+        long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return the next line without its terminator, or null at the end of the file
+         */
+        byte[] readLine() throws IOException {
+            line.reset();
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int read = channel.read(buffer);
+                    buffer.flip();
+                    if (read < 0) {
+                        return line.size() > 0 ? trim(line.toByteArray()) : null;
+                    }
+                }
+                int start = buffer.position();
+                int limit = buffer.limit();
+                for (int i = start; i < limit; i++) {
+                    if (buffer.get(i) == '\n') {
+                        line.write(buffer.array(), start, i - start);
+                        buffer.position(i + 1);
+                        position += i + 1 - start;
+                        return trim(line.toByteArray());
+                    }
+                }
+                line.write(buffer.array(), start, limit - start);
+                buffer.position(limit);
+                position += limit - start;
+            }
+        }
+
+        private static byte[] trim(byte[] line) {
+            if (line.length > 0 && line[line.length - 1] == '\r') {
+                byte[] trimmed = new byte[line.length - 1];
+                System.arraycopy(line, 0, trimmed, 0, trimmed.length);
+                return trimmed;
+            }
+            return line;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.graphaware.nlp.workflow.input;
+
+import com.graphaware.nlp.workflow.WorkflowBaseConfiguration;
+import java.util.Map;
+
+public class FileWorkflowInputConfiguration extends WorkflowBaseConfiguration {
+
+    public static final String CONF_PATH = "path";
+    public static final String CONF_FORMAT = "format";
+    public static final String CONF_PATTERN = "pattern";
+    public static final String CONF_ID_FIELD = "idField";
+    public static final String CONF_TEXT_FIELD = "textField";
+    public static final String CONF_ENCODING = "encoding";
+    public static final String CONF_BUFFER_SIZE = "bufferSize";
+    public static final String CONF_START_KEY = "startKey";
+
+    public static final String FORMAT_TEXT = "text";
+    public static final String FORMAT_JSONL = "jsonl";
+
+    private static final String DEFAULT_PATTERN = "*";
+    private static final String DEFAULT_ID_FIELD = "id";
+    private static final String DEFAULT_TEXT_FIELD = "text";
+    private static final String DEFAULT_ENCODING = "UTF-8";
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    public FileWorkflowInputConfiguration(Map<String, Object> configuration) {
+        super(configuration);
+    }
+
+    public String getPath() {
+        return (String) getConfiguration().get(CONF_PATH);
+    }
+
+    /**
+     * @return {@code text} (one entry per file) or {@code jsonl} (one entry per line), guessed from the extension of
+     * the path if not set
+     */
+    public String getFormat() {
+        String format = (String) getConfiguration().get(CONF_FORMAT);
+        if (format != null) {
+            return format.toLowerCase();
+        }
+        String path = getPath();
+        return path != null && (path.endsWith(".jsonl") || path.endsWith(".json")) ? FORMAT_JSONL : FORMAT_TEXT;
+    }
+
+    public boolean isJsonLines() {
+        return FORMAT_JSONL.equals(getFormat());
+    }
+
+    public String getPattern() {
+        return (String) getConfiguration().getOrDefault(CONF_PATTERN, DEFAULT_PATTERN);
+    }
+
+    public String getIdField() {
+        return (String) getConfiguration().getOrDefault(CONF_ID_FIELD, DEFAULT_ID_FIELD);
+    }
+
+    public String getTextField() {
+        return (String) getConfiguration().getOrDefault(CONF_TEXT_FIELD, DEFAULT_TEXT_FIELD);
+    }
+
+    public String getEncoding() {
+        return (String) getConfiguration().getOrDefault(CONF_ENCODING, DEFAULT_ENCODING);
+    }
+
+    public int getBufferSize() {
+        Object bufferSize = getConfiguration().get(CONF_BUFFER_SIZE);
+        return bufferSize != null ? ((Number) bufferSize).intValue() : DEFAULT_BUFFER_SIZE;
+    }
+
+    public String getStartKey() {
+        return (String) getConfiguration().get(CONF_START_KEY);
+    }
+}
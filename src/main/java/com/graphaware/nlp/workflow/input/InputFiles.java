@@ -0,0 +1,111 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.graphaware.nlp.workflow.input;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+/**
+ * Locates the files read by the file based inputs, and the files read and written by the export procedures.
+ */
+public final class InputFiles {
+
+    private InputFiles() {
+    }
+
+    /**
+     * Resolves the path against the import directory of the database ({@code dbms.directories.import}) when it is
+     * set, refusing paths leaving it.
+     */
+    static Path resolve(GraphDatabaseService database, String configured, String inputName) {
+        return resolveExisting(database, configured, "the input " + inputName);
+    }
+
+    /**
+     * Resolves the path of a file or directory that must exist, as {@link #resolve(GraphDatabaseService, String, String)}.
+     *
+     * @param owner what the path is given to, for the error messages
+     */
+    public static Path resolveExisting(GraphDatabaseService database, String configured, String owner) {
+        Path path = resolveConfined(database, configured, owner);
+        if (!Files.exists(path)) {
+            throw new RuntimeException("The path " + configured + " of " + owner + " does not exist");
+        }
+        return path;
+    }
+
+    /**
+     * Resolves the path of a file or directory that may not exist yet, as
+     * {@link #resolve(GraphDatabaseService, String, String)}.
+     *
+     * @param owner what the path is given to, for the error messages
+     */
+    public static Path resolveConfined(GraphDatabaseService database, String configured, String owner) {
+        File importDirectory = getImportDirectory(database);
+        if (importDirectory == null) {
+            return Paths.get(configured).toAbsolutePath().normalize();
+        }
+        Path root = importDirectory.toPath().toAbsolutePath().normalize();
+        Path path = root.resolve(configured).normalize();
+        if (!path.startsWith(root)) {
+            throw new RuntimeException("The path " + configured + " of " + owner + " is outside of the import directory");
+        }
+        return path;
+    }
+
+    /**
+     * @return the directory the files of the path are relative to: the path itself if it is a directory
+     */
+    static Path getBase(Path path) {
+        return Files.isDirectory(path) ? path : path.getParent();
+    }
+
+    /**
+     * @return the path of the file, or of the files of the directory (recursively) whose name matches the glob,
+     * relative to the base and sorted
+     */
+    static List<String> list(Path path, String pattern) {
+        Path base = getBase(path);
+        if (!Files.isDirectory(path)) {
+            return Collections.singletonList(toRelative(base, path));
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        try (Stream<Path> walk = Files.walk(path)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(file.getFileName()))
+                    .map(file -> toRelative(base, file))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot list the files of " + path, e);
+        }
+    }
+
+    private static String toRelative(Path base, Path file) {
+        return base.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    private static File getImportDirectory(GraphDatabaseService database) {
+        if (!(database instanceof GraphDatabaseAPI)) {
+            return null;
+        }
+        Config config = ((GraphDatabaseAPI) database).getDependencyResolver().resolveDependency(Config.class);
+        return config.get(GraphDatabaseSettings.load_csv_file_url_root);
+    }
+}
@@ -6,15 +6,44 @@
 package com.graphaware.nlp.workflow.input;
 
 import com.graphaware.nlp.annotation.NLPInput;
+import com.graphaware.nlp.util.TransactionUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
 
+/**
+ * Reads the entries from a Cypher query returning a {@code text} and an {@code id} column.
+ * <p>
+ * When a {@code pageSize} is configured the query is run once per page, with the parameters {@code lastKey} (the key
+ * of the last row of the previous page, {@code startKey} or null for the first page) and {@code pageSize}. The query
+ * must return the rows ordered by a monotonically increasing key, in the column named by {@code pageKey} ({@code id}
+ * by default), and at most {@code pageSize} rows, for example:
+ * <pre>
+ * MATCH (n:Lesson) WHERE {lastKey} IS NULL OR id(n) &gt; {lastKey}
+ * RETURN n.text AS text, id(n) AS id ORDER BY id LIMIT {pageSize}
+ * </pre>
+ * A paginated input is resumable: the key of each entry is its page key.
+ * <p>
+ * Each page is read in its own transaction only when the task runs on its own thread ({@code sync: false}). A sync
+ * task runs in the transaction of the caller, which then holds every page read, and every write of the outputs,
+ * until it commits: paging still bounds the rows held by the input, not the transaction state.
+ */
 @NLPInput(name = "QueryBasedPipelineIput")
 public class QueryBasedWorkflowInput
         extends WorkflowInput<WorkflowInputQueryConfiguration, String> {
 
+    private Object resumeKey;
+    private volatile Object lastKey;
+    private volatile long entries;
+    private volatile long pages;
+
     public QueryBasedWorkflowInput(String name, GraphDatabaseService database) {
         super(name, database);
     }
@@ -27,16 +56,61 @@ public class QueryBasedWorkflowInput
     @Override
     public Iterator<WorkflowInputEntry<String>> iterator() {
         String query = getConfiguration().getQuery();
+        lastKey = resumeKey != null ? resumeKey : getConfiguration().getStartKey();
+        entries = 0;
+        pages = 0;
+        if (getConfiguration().isPaginated()) {
+            return new PagedIteratorWrapper(query, getConfiguration().getPageSize(), getConfiguration().getPageKey());
+        }
         Result rs = getDatabase().execute(query);
         return new IteratorWrapper(rs);
     }
 
+    /**
+     * @return the key of the last entry read, in paginated mode
+     */
+    public Object getLastKey() {
+        return lastKey;
+    }
+
+    @Override
+    public boolean isResumable() {
+        return getConfiguration().isPaginated();
+    }
+
+    @Override
+    public void resumeFrom(Object key) {
+        if (key != null && !isResumable()) {
+            super.resumeFrom(key);
+        }
+        resumeKey = key;
+    }
+
+    @Override
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("entries", entries);
+        if (getConfiguration().isPaginated()) {
+            progress.put("pages", pages);
+            progress.put("lastKey", lastKey);
+        }
+        return progress;
+    }
+
     @Override
     public void handle(Void entry) {
         //The input is the starting point 
     }
 
-    
+    private WorkflowInputEntry<String> toEntry(Map<String, Object> row, Object key) {
+        entries++;
+        Object id = row.get("id");
+        return new WorkflowInputEntry<>(
+                (String) row.get("text"),
+                id != null ? id.toString() : null,
+                key);
+    }
+
     class IteratorWrapper implements Iterator<WorkflowInputEntry<String>> {
         
         private final Result rs;
@@ -65,10 +139,105 @@ public class QueryBasedWorkflowInput
             if (endOfQueue) {
                 return new WorkflowInputEndOfQueueEntry<>();
             }
-            Map<String, Object> nextElement = rs.next();
-            return new WorkflowInputEntry<>(
-                    (String)nextElement.get("text"), 
-                    (String)nextElement.get("id"));
+            return toEntry(rs.next(), null);
         }        
     }
+
+    class PagedIteratorWrapper implements Iterator<WorkflowInputEntry<String>> {
+
+        private final String query;
+        private final int pageSize;
+        private final String pageKey;
+        private Iterator<Map<String, Object>> page = Collections.emptyIterator();
+        private Object fetchedKey;
+        private boolean lastPage;
+        private boolean endOfQueue;
+
+        public PagedIteratorWrapper(String query, int pageSize, String pageKey) {
+            this.query = query;
+            this.pageSize = pageSize;
+            this.pageKey = pageKey;
+            this.fetchedKey = lastKey;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (endOfQueue) {
+                return false;
+            }
+            if (!page.hasNext() && !lastPage) {
+                page = fetchPage().iterator();
+            }
+            if (!page.hasNext()) {
+                endOfQueue = true;
+            }
+            return true;
+        }
+
+        @Override
+        public WorkflowInputEntry<String> next() {
+            if (endOfQueue) {
+                return new WorkflowInputEndOfQueueEntry<>();
+            }
+            Map<String, Object> row = page.next();
+            lastKey = row.get(pageKey);
+            return toEntry(row, lastKey);
+        }
+
+        private List<Map<String, Object>> fetchPage() {
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("lastKey", fetchedKey);
+            parameters.put("pageSize", pageSize);
+            List<Map<String, Object>> rows;
+            if (TransactionUtils.isInTransaction(getDatabase())) {
+                rows = readPage(parameters);
+            } else {
+                try (Transaction tx = getDatabase().beginTx()) {
+                    rows = readPage(parameters);
+                    tx.success();
+                }
+            }
+            pages++;
+            lastPage = rows.size() < pageSize;
+            if (!rows.isEmpty()) {
+                Object key = rows.get(rows.size() - 1).get(pageKey);
+                if (key == null) {
+                    throw new RuntimeException("The query of the input " + getName() + " must return the page key in the column " + pageKey);
+                }
+                if (fetchedKey != null && !isAfter(key, fetchedKey)) {
+                    throw new RuntimeException("The page key " + pageKey + " of the input " + getName() + " is not increasing (" + key + ")");
+                }
+                fetchedKey = key;
+            }
+            return rows;
+        }
+
+        /**
+         * Numbers are compared by value and other comparable keys of the same type by their natural order, keys which
+         * cannot be ordered only have to differ from the previous one.
+         */
+        @SuppressWarnings("unchecked")
+        private boolean isAfter(Object key, Object previous) {
+            if (key instanceof Number && previous instanceof Number) {
+                if ((key instanceof Long || key instanceof Integer) && (previous instanceof Long || previous instanceof Integer)) {
+                    return ((Number) key).longValue() > ((Number) previous).longValue();
+                }
+                return ((Number) key).doubleValue() > ((Number) previous).doubleValue();
+            }
+            if (key instanceof Comparable && key.getClass().equals(previous.getClass())) {
+                return ((Comparable<Object>) key).compareTo(previous) > 0;
+            }
+            return !Objects.equals(key, previous);
+        }
+
+        private List<Map<String, Object>> readPage(Map<String, Object> parameters) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            try (Result rs = getDatabase().execute(query, parameters)) {
+                while (rs.hasNext()) {
+                    rows.add(rs.next());
+                }
+            }
+            return rows;
+        }
+    }
 }
@@ -6,6 +6,8 @@
 package com.graphaware.nlp.workflow.input;
 
 import com.graphaware.nlp.workflow.WorkflowItem;
+import java.util.Collections;
+import java.util.Map;
 import org.neo4j.graphdb.GraphDatabaseService;
 import com.graphaware.nlp.workflow.WorkflowConfiguration;
 
@@ -23,6 +25,29 @@ public abstract class WorkflowInput<C extends WorkflowConfiguration, T>
     public String getPrefix() {
         return WORKFLOW_INPUT_KEY_PREFIX;
     }
+
+    /**
+     * @return how far the current or last run has read the input, for reporting
+     */
+    public Map<String, Object> getProgress() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @return whether the input can start a run after the key of a given entry, see {@link #resumeFrom(Object)}
+     */
+    public boolean isResumable() {
+        return false;
+    }
+
+    /**
+     * Makes the next run start after the entry with the given key, or from the beginning if the key is null.
+     */
+    public void resumeFrom(Object key) {
+        if (key != null) {
+            throw new UnsupportedOperationException("The input " + getName() + " cannot be resumed");
+        }
+    }
     
     
 }
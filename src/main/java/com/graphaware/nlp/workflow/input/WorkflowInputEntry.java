@@ -8,10 +8,19 @@ package com.graphaware.nlp.workflow.input;
 public class WorkflowInputEntry<T> {
     private final String text;
     private final T id;
+    private final Object key;
 
     public WorkflowInputEntry(String text, T id) {
+        this(text, id, null);
+    }
+
+    /**
+     * @param key the position of the entry in the input, from which a resumed run can start, if the input is resumable
+     */
+    public WorkflowInputEntry(String text, T id, Object key) {
         this.text = text;
         this.id = id;
+        this.key = key;
     }
 
     public String getText() {
@@ -21,6 +30,10 @@ public class WorkflowInputEntry<T> {
     public T getId() {
         return id;
     }
+
+    public Object getKey() {
+        return key;
+    }
     
     
 }
@@ -15,6 +15,10 @@ import java.util.Map;
 public class WorkflowInputQueryConfiguration extends WorkflowBaseConfiguration {
 
     public static final String CONF_QUERY = "query";
+    public static final String CONF_PAGE_SIZE = "pageSize";
+    public static final String CONF_PAGE_KEY = "pageKey";
+    public static final String CONF_START_KEY = "startKey";
+    public static final String DEFAULT_PAGE_KEY = "id";
 
     public WorkflowInputQueryConfiguration(Map<String, Object> configuration) {
         super(configuration);
@@ -23,4 +27,21 @@ public class WorkflowInputQueryConfiguration extends WorkflowBaseConfiguration {
     public String getQuery() {
         return (String) getConfiguration().get(CONF_QUERY);
     }
+
+    public boolean isPaginated() {
+        return getPageSize() > 0;
+    }
+
+    public int getPageSize() {
+        Object pageSize = getConfiguration().get(CONF_PAGE_SIZE);
+        return pageSize != null ? ((Number) pageSize).intValue() : 0;
+    }
+
+    public String getPageKey() {
+        return (String) getConfiguration().getOrDefault(CONF_PAGE_KEY, DEFAULT_PAGE_KEY);
+    }
+
+    public Object getStartKey() {
+        return getConfiguration().get(CONF_START_KEY);
+    }
 }
@@ -5,52 +5,230 @@
  */
 package com.graphaware.nlp.workflow.output;
 
+import com.graphaware.nlp.NLPManager;
 import com.graphaware.nlp.annotation.NLPOutput;
+import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.persistence.persisters.TagPersister;
+import com.graphaware.nlp.workflow.processor.WorkflowProcessorEndOfQueueEntry;
 import com.graphaware.nlp.workflow.processor.WorkflowProcessorOutputEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.TransientFailureException;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.logging.Log;
 import com.graphaware.common.log.LoggerFactory;
 
+/**
+ * Write-behind variant of {@link StoreAnnotatedTextWorkflowOutput}: entries are queued and persisted by a writer
+ * thread, which commits up to {@code batchSize} entries per transaction, or what has arrived after
+ * {@code flushInterval} milliseconds. The queue holds at most {@code queueSize} entries, the caller blocks when it is
+ * full. A batch failing with a transient error, such as a deadlock, is retried up to {@code retries} times, waiting
+ * {@code retryBackoff} milliseconds, doubled at each attempt. A batch still failing is split in two and each half
+ * retried, down to single entries, which are handed to the error listener of the task. When the task has none, a
+ * failing entry stops the writer and the failure is thrown on the task thread by the next entry or by the end of
+ * queue entry, which flushes the pending entries and stops the writer.
+ * <p>
+ * Each run of a task has its own queue and writer. The batches are committed in their own transactions,
+ * independently of the transaction of the caller, the entries are acknowledged to the commit listener once their
+ * batch is committed, never when they could not be stored.
+ */
 @NLPOutput(name = "DeferredStoreAnnotatedTextWorkflowOutput")
 public class DeferredStoreAnnotatedTextWorkflowOutput extends StoreAnnotatedTextWorkflowOutput {
 
     private static final Log LOG = LoggerFactory.getLogger(DeferredStoreAnnotatedTextWorkflowOutput.class);
+    private static final long HANDOFF_POLL_MILLIS = 50;
 
-    private final BlockingQueue<WorkflowProcessorOutputEntry> queue;
-    private final StoreThread backgroundThread;
+    /**
+     * The writers of the runs in progress, by task thread, as the output can be shared by several tasks running at
+     * once.
+     */
+    private final ConcurrentMap<Thread, StoreThread> writers = new ConcurrentHashMap<>();
 
     public DeferredStoreAnnotatedTextWorkflowOutput(String name, GraphDatabaseService database) {
         super(name, database);
-        this.queue = new LinkedBlockingQueue<>();
-        this.backgroundThread = new StoreThread(this);
-        backgroundThread.start();
+        getMetrics().setQueueDepth(() -> writers.values().stream().mapToInt(writer -> writer.queue.size()).sum());
     }
 
     @Override
     public void handle(WorkflowProcessorOutputEntry entry) {
-        queue.offer(entry);
+        StoreThread writer = writers.get(Thread.currentThread());
+        if (entry instanceof WorkflowProcessorEndOfQueueEntry) {
+            if (writer != null) {
+                flush(writer, entry);
+            }
+            return;
+        }
+        if (writer == null) {
+            writer = start();
+        }
+        checkWriter(writer);
+        getMetrics().received();
+        enqueue(writer, entry);
+    }
+
+    private StoreThread start() {
+        StoreThread writer = new StoreThread(Math.max(1, getConfiguration().getQueueSize()), Math.max(1, getConfiguration().getBatchSize()),
+                getConfiguration().getFlushInterval(), getConfiguration().getRetries(), getConfiguration().getRetryBackoff());
+        writers.put(Thread.currentThread(), writer);
+        writer.start();
+
+        return writer;
+    }
+
+    private void enqueue(StoreThread writer, WorkflowProcessorOutputEntry entry) {
+        try {
+            while (!writer.queue.offer(entry, HANDOFF_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkWriter(writer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the writer of " + getName(), e);
+        }
+    }
+
+    private void flush(StoreThread writer, WorkflowProcessorOutputEntry endOfQueue) {
+        try {
+            enqueue(writer, endOfQueue);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while flushing " + getName(), e);
+        } finally {
+            writers.remove(Thread.currentThread(), writer);
+        }
+        if (writer.failure.get() != null) {
+            throw new RuntimeException("The writer of " + getName() + " failed", writer.failure.get());
+        }
+    }
+
+    private void checkWriter(StoreThread writer) {
+        if (writer.failure.get() != null || !writer.isAlive()) {
+            writers.remove(Thread.currentThread(), writer);
+            throw new RuntimeException("The writer of " + getName() + " stopped", writer.failure.get());
+        }
     }
 
     class StoreThread extends Thread {
 
-        private final DeferredStoreAnnotatedTextWorkflowOutput store;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final BlockingQueue<WorkflowProcessorOutputEntry> queue;
+        private final int batchSize;
+        private final long flushInterval;
+        private final int retries;
+        private final long retryBackoff;
+        private final TagPersister tagPersister;
+        private long committedBatches = 0;
+        private long committedEntries = 0;
+        private long skippedEntries = 0;
 
-        public StoreThread(DeferredStoreAnnotatedTextWorkflowOutput store) {
-            this.store = store;
+        public StoreThread(int queueSize, int batchSize, long flushInterval, int retries, long retryBackoff) {
+            super("nlp-writer-" + DeferredStoreAnnotatedTextWorkflowOutput.this.getName());
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.batchSize = batchSize;
+            this.flushInterval = flushInterval;
+            this.retries = retries;
+            this.retryBackoff = retryBackoff;
+            this.tagPersister = NLPManager.getInstance().getPersister(Tag.class);
+            setDaemon(true);
         }
 
         @Override
         public void run() {
+            List<WorkflowProcessorOutputEntry> batch = new ArrayList<>(batchSize);
+            boolean endOfQueue = false;
             try {
-                WorkflowProcessorOutputEntry entry = queue.take();
-                store.handle(entry);
-
+                while (!endOfQueue) {
+                    WorkflowProcessorOutputEntry next = queue.take();
+                    long deadline = System.currentTimeMillis() + flushInterval;
+                    while (next != null) {
+                        if (next instanceof WorkflowProcessorEndOfQueueEntry) {
+                            endOfQueue = true;
+                            break;
+                        }
+                        batch.add(next);
+                        long wait = deadline - System.currentTimeMillis();
+                        if (batch.size() >= batchSize || wait <= 0) {
+                            break;
+                        }
+                        next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    }
+                    write(batch);
+                    batch.clear();
+                }
             } catch (InterruptedException ex) {
                 LOG.warn("Interrupted excetpion", ex);
+            } catch (Throwable ex) {
+                LOG.error("The writer " + getName() + " failed", ex);
+                failure.set(ex);
             }
+            LOG.info("Writer " + getName() + " stopped: " + committedEntries + " entries committed in "
+                    + committedBatches + " transactions, " + skippedEntries + " skipped");
+        }
+
+        private void write(List<WorkflowProcessorOutputEntry> batch) throws InterruptedException {
+            write(batch, 0);
         }
 
+        private void write(List<WorkflowProcessorOutputEntry> batch, int attempt) throws InterruptedException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                commit(batch);
+            } catch (Exception ex) {
+                if (attempt < retries && isTransient(ex)) {
+                    long backoff = retryBackoff << attempt;
+                    LOG.warn("Transient failure storing a batch of " + batch.size() + " entries, retrying in " + backoff + " ms", ex);
+                    Thread.sleep(backoff);
+                    write(batch, attempt + 1);
+                    return;
+                }
+                if (batch.size() == 1) {
+                    WorkflowProcessorOutputEntry entry = batch.get(0);
+                    getMetrics().failed();
+                    if (!isolate(entry.getId(), getText(entry), ex)) {
+                        throw new RuntimeException("Unable to store entry " + entry.getId(), ex);
+                    }
+                    skippedEntries++;
+                    return;
+                }
+                LOG.warn("Unable to store a batch of " + batch.size() + " entries, retrying it in two halves", ex);
+                int half = batch.size() / 2;
+                write(new ArrayList<>(batch.subList(0, half)));
+                write(new ArrayList<>(batch.subList(half, batch.size())));
+            }
+        }
+
+        private boolean isTransient(Throwable error) {
+            for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+                if (cause instanceof TransientFailureException) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void commit(List<WorkflowProcessorOutputEntry> batch) {
+            String txId = System.currentTimeMillis() + "_" + committedBatches;
+            tagPersister.openResolutionCache();
+            try (Transaction tx = getDatabase().beginTx()) {
+                for (WorkflowProcessorOutputEntry entry : batch) {
+                    store(entry, txId);
+                }
+                tx.success();
+            } finally {
+                tagPersister.closeResolutionCache();
+            }
+            committedBatches++;
+            committedEntries += batch.size();
+            batch.forEach(DeferredStoreAnnotatedTextWorkflowOutput.this::committed);
+        }
     }
 }
@@ -0,0 +1,88 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.graphaware.nlp.workflow.output;
+
+import com.graphaware.nlp.annotation.NLPOutput;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.util.TransactionUtils;
+import com.graphaware.nlp.workflow.processor.WorkflowProcessorEndOfQueueEntry;
+import com.graphaware.nlp.workflow.processor.WorkflowProcessorOutputEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+
+/**
+ * Runs the configured {@code query} for each entry, with the annotation held in memory, without persisting it.
+ * The parameters are {@code entryId}, {@code text}, {@code sentences} (the number of sentences) and {@code tags}, a
+ * list of maps with the {@code value}, {@code pos}, {@code ne} and {@code multiplicity} of each tag. Meant as a
+ * downstream stage of a task fanning the same annotations out to several outputs.
+ */
+@NLPOutput(name = "QueryWorkflowOutput")
+public class QueryWorkflowOutput extends WorkflowOutput<QueryWorkflowOutputConfiguration> {
+
+    public QueryWorkflowOutput(String name, GraphDatabaseService database) {
+        super(name, database);
+    }
+
+    @Override
+    public void init(Map<String, Object> parameters) {
+        setConfiguration(new QueryWorkflowOutputConfiguration(parameters));
+        String query = getConfiguration().getQuery();
+        if (query == null || query.isEmpty()) {
+            throw new RuntimeException("The output " + getName() + " requires a query");
+        }
+    }
+
+    @Override
+    public void handle(WorkflowProcessorOutputEntry entry) {
+        if (entry instanceof WorkflowProcessorEndOfQueueEntry) {
+            return;
+        }
+        getMetrics().received();
+        // outside a transaction the query runs in its own one, rolled back if it fails
+        boolean ownTransaction = !TransactionUtils.isInTransaction(getDatabase());
+        long start = System.nanoTime();
+        try {
+            try (Result result = getDatabase().execute(getConfiguration().getQuery(), getParameters(entry))) {
+                while (result.hasNext()) {
+                    result.next();
+                }
+            }
+        } catch (Exception e) {
+            getMetrics().failed();
+            if (ownTransaction && isolate(entry.getId(), getText(entry), e)) {
+                return;
+            }
+            throw new RuntimeException(e);
+        } finally {
+            getMetrics().record(System.nanoTime() - start);
+        }
+        committed(entry);
+    }
+
+    private Map<String, Object> getParameters(WorkflowProcessorOutputEntry entry) {
+        AnnotatedText annotatedText = entry.getAnnotateText();
+        List<Map<String, Object>> tags = new ArrayList<>();
+        for (Tag tag : annotatedText.getTags()) {
+            Map<String, Object> tagMap = new HashMap<>();
+            tagMap.put("value", tag.getLemma());
+            tagMap.put("pos", tag.getPosAsList());
+            tagMap.put("ne", tag.getNeAsList());
+            tagMap.put("multiplicity", tag.getMultiplicity());
+            tags.add(tagMap);
+        }
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("entryId", entry.getId());
+        parameters.put("text", annotatedText.getText());
+        parameters.put("sentences", annotatedText.getSentences().size());
+        parameters.put("tags", tags);
+        return parameters;
+    }
+}
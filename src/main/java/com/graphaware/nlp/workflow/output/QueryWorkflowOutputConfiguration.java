@@ -0,0 +1,22 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.graphaware.nlp.workflow.output;
+
+import com.graphaware.nlp.workflow.WorkflowBaseConfiguration;
+import java.util.Map;
+
+public class QueryWorkflowOutputConfiguration extends WorkflowBaseConfiguration {
+
+    private final static String QUERY = "query";
+
+    public QueryWorkflowOutputConfiguration(Map<String, Object> configuration) {
+        super(configuration);
+    }
+
+    public String getQuery() {
+        return (String) getConfiguration().get(QUERY);
+    }
+}
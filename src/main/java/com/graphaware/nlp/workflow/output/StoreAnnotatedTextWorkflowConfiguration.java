@@ -10,6 +10,15 @@ import java.util.Map;
 
 public class StoreAnnotatedTextWorkflowConfiguration extends WorkflowBaseConfiguration {
     private final static String POST_QUERY = "query";
+    private final static String BATCH_SIZE = "batchSize";
+    private final static String FLUSH_INTERVAL = "flushInterval";
+    private final static String QUEUE_SIZE = "queueSize";
+    private final static String RETRIES = "retries";
+    private final static String RETRY_BACKOFF = "retryBackoff";
+    private final static int DEFAULT_BATCH_SIZE = 100;
+    private final static long DEFAULT_FLUSH_INTERVAL = 1000;
+    private final static int DEFAULT_RETRIES = 3;
+    private final static long DEFAULT_RETRY_BACKOFF = 100;
     
     public StoreAnnotatedTextWorkflowConfiguration(Map<String, Object> configuration) {
         super(configuration);
@@ -18,5 +27,41 @@ public class StoreAnnotatedTextWorkflowConfiguration extends WorkflowBaseConfigu
     public String getQuery() {
         return (String)getConfiguration().get(POST_QUERY);
     }
+
+    /**
+     * @return the maximum number of entries committed in a single transaction by a deferred output
+     */
+    public int getBatchSize() {
+        return ((Number) getConfiguration().getOrDefault(BATCH_SIZE, DEFAULT_BATCH_SIZE)).intValue();
+    }
+
+    /**
+     * @return the maximum time, in milliseconds, a deferred output waits for a batch to fill before committing it
+     */
+    public long getFlushInterval() {
+        return ((Number) getConfiguration().getOrDefault(FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL)).longValue();
+    }
+
+    /**
+     * @return the capacity of the queue of a deferred output, by default four batches
+     */
+    public int getQueueSize() {
+        return ((Number) getConfiguration().getOrDefault(QUEUE_SIZE, getBatchSize() * 4)).intValue();
+    }
+
+    /**
+     * @return the number of times a deferred output retries a batch failing with a transient error, such as a
+     * deadlock, before splitting it
+     */
+    public int getRetries() {
+        return ((Number) getConfiguration().getOrDefault(RETRIES, DEFAULT_RETRIES)).intValue();
+    }
+
+    /**
+     * @return the wait in milliseconds before the first retry, doubled at each following one
+     */
+    public long getRetryBackoff() {
+        return ((Number) getConfiguration().getOrDefault(RETRY_BACKOFF, DEFAULT_RETRY_BACKOFF)).longValue();
+    }
     
 }
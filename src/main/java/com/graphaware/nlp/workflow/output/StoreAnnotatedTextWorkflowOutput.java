@@ -8,12 +8,14 @@ package com.graphaware.nlp.workflow.output;
 import com.graphaware.nlp.NLPManager;
 import com.graphaware.nlp.annotation.NLPOutput;
 import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.util.TransactionUtils;
 import com.graphaware.nlp.workflow.processor.WorkflowProcessorEndOfQueueEntry;
 import com.graphaware.nlp.workflow.processor.WorkflowProcessorOutputEntry;
 import java.util.HashMap;
 import java.util.Map;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
 
 @NLPOutput(name = "StoreAnnotatedTextPipelineOutput")
 public class StoreAnnotatedTextWorkflowOutput extends WorkflowOutput<StoreAnnotatedTextWorkflowConfiguration> {
@@ -27,24 +29,49 @@ public class StoreAnnotatedTextWorkflowOutput extends WorkflowOutput<StoreAnnota
         setConfiguration(new StoreAnnotatedTextWorkflowConfiguration(parameters));
     }
 
+    /**
+     * Stores the entry in its own transaction when the task runs on its own thread, so that a failing entry is rolled
+     * back before it is handed to the error listener. When the task runs in the transaction of the caller, the
+     * partial writes of a failing entry cannot be undone on their own, so the failure always propagates.
+     */
     @Override
     public void handle(WorkflowProcessorOutputEntry entry) {
+        if (entry instanceof WorkflowProcessorEndOfQueueEntry) {
+            return;
+        }
+        boolean ownTransaction = !TransactionUtils.isInTransaction(getDatabase());
         try {
-            if (entry instanceof WorkflowProcessorEndOfQueueEntry) {
-                return;
-            }
-            Node newAnnotatedNode = persistAnnotatedText(entry.getAnnotateText(), (String) entry.getId(), "");
-            String query = getConfiguration().getQuery();
-            if (query != null
-                    || !query.isEmpty()) {
-                Map<String, Object> parameters = new HashMap<>();
-                parameters.put("annotatedTextId", newAnnotatedNode.getId());
-                parameters.put("entryId", entry.getId());
-                getDatabase().execute(query, parameters);
+            getMetrics().received();
+            try (Transaction tx = getDatabase().beginTx()) {
+                store(entry, "");
+                tx.success();
             }
         } catch (Exception e) {
+            getMetrics().failed();
+            if (ownTransaction && isolate(entry.getId(), getText(entry), e)) {
+                return;
+            }
             throw new RuntimeException(e);
         }
+        committed(entry);
+    }
+
+    /**
+     * Persists the annotated text of the entry and runs the configured post query, if any, in the current transaction.
+     */
+    protected Node store(WorkflowProcessorOutputEntry entry, String txId) {
+        long start = System.nanoTime();
+        Node newAnnotatedNode = persistAnnotatedText(entry.getAnnotateText(), (String) entry.getId(), txId);
+        String query = getConfiguration().getQuery();
+        if (query != null
+                && !query.isEmpty()) {
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("annotatedTextId", newAnnotatedNode.getId());
+            parameters.put("entryId", entry.getId());
+            getDatabase().execute(query, parameters);
+        }
+        getMetrics().record(System.nanoTime() - start);
+        return newAnnotatedNode;
     }
 
     public Node persistAnnotatedText(AnnotatedText annotatedText, String id, String txId) {
@@ -7,6 +7,7 @@ package com.graphaware.nlp.workflow.output;
 
 import com.graphaware.nlp.workflow.WorkflowItem;
 import com.graphaware.nlp.workflow.processor.WorkflowProcessorOutputEntry;
+import java.util.function.Consumer;
 import org.neo4j.graphdb.GraphDatabaseService;
 import com.graphaware.nlp.workflow.WorkflowConfiguration;
 
@@ -19,6 +20,8 @@ public abstract class WorkflowOutput<C extends WorkflowConfiguration>
 
     public static final String WORFKLOW_OUTPUT_KEY_PREFIX = "WORFKLOW_OUTPUT_";
 
+    private volatile Consumer<Object> commitListener;
+
     public WorkflowOutput(String name, GraphDatabaseService database) {
         super(name, database);
     }
@@ -28,4 +31,29 @@ public abstract class WorkflowOutput<C extends WorkflowConfiguration>
         return WORFKLOW_OUTPUT_KEY_PREFIX;
     }
 
+    /**
+     * Sets the listener notified with the id of each entry once the output has committed it, or null to remove it.
+     */
+    public void setCommitListener(Consumer<Object> commitListener) {
+        this.commitListener = commitListener;
+    }
+
+    /**
+     * @return the annotated text of the entry, to record it along with a failure
+     */
+    protected static String getText(WorkflowProcessorOutputEntry entry) {
+        return entry.getAnnotateText() != null ? entry.getAnnotateText().getText() : null;
+    }
+
+    /**
+     * To be called by the implementations once the entry is committed, or definitively given up.
+     */
+    protected void committed(WorkflowProcessorOutputEntry entry) {
+        getMetrics().emitted();
+        Consumer<Object> listener = commitListener;
+        if (listener != null) {
+            listener.accept(entry.getId());
+        }
+    }
+
 }
@@ -6,25 +6,183 @@
 package com.graphaware.nlp.workflow.processor;
 
 import com.graphaware.nlp.annotation.NLPProcessor;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.workflow.input.WorkflowInputEndOfQueueEntry;
+import com.graphaware.nlp.workflow.input.WorkflowInputEntry;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.logging.Log;
 import com.graphaware.common.log.LoggerFactory;
 
-@NLPProcessor(name = "PipelineTextProcessor")
+/**
+ * Annotates the input entries on a pool of worker threads.
+ * <p>
+ * Entries are handed to the workers through a bounded queue: when it is full the caller (the task thread) blocks,
+ * so a fast input cannot buffer the whole corpus in memory. Annotated texts come back through a second bounded queue
+ * and are forwarded to the output on the caller thread, in completion order, so that the output keeps writing in
+ * the caller transaction. On end of queue, the workers are drained before the end of queue entry is forwarded.
+ * <p>
+ * The number of workers is the processor {@code threadNumber} parameter, or the pipeline threadNumber if not set,
+ * the capacity of the queues is the {@code queueSize} parameter, twice the number of workers by default. The queues
+ * and workers are created for each run of a task and shut down at its end of queue.
+ */
+@NLPProcessor(name = "ParallelPipelineTextProcessor")
 public class WorkflowParallelTextProcessor extends WorkflowTextProcessor {
-    
-    private final BlockingQueue<WorkflowProcessorOutputEntry> queue;
+
     private static final Log LOG = LoggerFactory.getLogger(WorkflowParallelTextProcessor.class);
-    
+    private static final long HANDOFF_POLL_MILLIS = 50;
+
+    /**
+     * The runs in progress, by task thread, as the processor can be shared by several tasks running at once.
+     */
+    private final ConcurrentMap<Thread, Run> runs = new ConcurrentHashMap<>();
+
     public WorkflowParallelTextProcessor(String name, GraphDatabaseService database) {
         super(name, database);
-        this.queue = new LinkedBlockingQueue<>();
+        getMetrics().setQueueDepth(this::queueDepth);
+    }
+
+    @Override
+    public void handle(WorkflowInputEntry entry) {
+        Run run = runs.get(Thread.currentThread());
+        try {
+            if (entry instanceof WorkflowInputEndOfQueueEntry) {
+                if (run != null) {
+                    run.drain();
+                }
+                super.checkAndHandle(new WorkflowProcessorEndOfQueueEntry());
+                return;
+            }
+            if (!isValid()) {
+                LOG.warn("The Processor " + this.getName() + " is in an invalid state");
+                return;
+            }
+            if (run == null) {
+                run = new Run(loadPipelineSpecification());
+                runs.put(Thread.currentThread(), run);
+            }
+            getMetrics().received();
+            run.enqueue(entry);
+        } catch (RuntimeException e) {
+            if (run != null) {
+                run.stop();
+            }
+            throw e;
+        }
+    }
+
+    private int queueDepth() {
+        return runs.values().stream().mapToInt(Run::queueDepth).sum();
+    }
+
+    /**
+     * The queues and workers of one run of a task, from its first entry to its end of queue.
+     */
+    private class Run {
+
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final BlockingQueue<WorkflowInputEntry> inputQueue;
+        private final BlockingQueue<WorkflowProcessorOutputEntry> outputQueue;
+        private final ExecutorService workers;
+        private final CountDownLatch runningWorkers;
+        private final Thread owner = Thread.currentThread();
+
+        Run(PipelineSpecification pipelineSpecification) {
+            int threadNumber = Math.max(1, getConfiguration().getThreadNumber(pipelineSpecification.getThreadNumber()));
+            int queueSize = Math.max(1, getConfiguration().getQueueSize(threadNumber * 2));
+            inputQueue = new ArrayBlockingQueue<>(queueSize);
+            outputQueue = new ArrayBlockingQueue<>(queueSize);
+            runningWorkers = new CountDownLatch(threadNumber);
+            workers = Executors.newFixedThreadPool(threadNumber);
+            for (int i = 0; i < threadNumber; i++) {
+                workers.execute(() -> work(pipelineSpecification));
+            }
+            LOG.info("Started " + threadNumber + " annotation workers for processor " + getName() + " with queues of " + queueSize + " entries");
+        }
+
+        private void work(PipelineSpecification pipelineSpecification) {
+            try {
+                while (true) {
+                    WorkflowInputEntry entry = inputQueue.take();
+                    if (entry instanceof WorkflowInputEndOfQueueEntry) {
+                        return;
+                    }
+                    AnnotatedText annotatedText;
+                    try {
+                        annotatedText = annotate(entry, pipelineSpecification);
+                    } catch (RuntimeException e) {
+                        if (isolate(entry.getId(), entry.getText(), e)) {
+                            continue;
+                        }
+                        throw e;
+                    }
+                    outputQueue.put(new WorkflowProcessorOutputEntry(annotatedText, entry.getId()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                runningWorkers.countDown();
+            }
+        }
+
+        private void enqueue(WorkflowInputEntry entry) {
+            try {
+                while (!inputQueue.offer(entry, HANDOFF_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    forwardAnnotated();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the annotation workers", e);
+            }
+            forwardAnnotated();
+        }
+
+        private void drain() {
+            long threadNumber = runningWorkers.getCount();
+            for (int i = 0; i < threadNumber; i++) {
+                enqueue(new WorkflowInputEndOfQueueEntry<>());
+            }
+            try {
+                while (!runningWorkers.await(HANDOFF_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    forwardAnnotated();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while draining the annotation workers", e);
+            }
+            forwardAnnotated();
+            stop();
+        }
+
+        private void forwardAnnotated() {
+            Throwable workerFailure = failure.get();
+            if (workerFailure != null) {
+                throw new RuntimeException("Annotation failed in processor " + getName(), workerFailure);
+            }
+            WorkflowProcessorOutputEntry annotated;
+            while ((annotated = outputQueue.poll()) != null) {
+                checkAndHandle(annotated);
+            }
+        }
+
+        private int queueDepth() {
+            return inputQueue.size() + outputQueue.size();
+        }
+
+        private void stop() {
+            workers.shutdownNow();
+            runs.remove(owner, this);
+        }
     }
-    
-    
-    
-    
-    
 }
@@ -37,16 +37,18 @@ public class WorkflowTextProcessor extends WorkflowProcessor<WorkflowTextProcess
             super.checkAndHandle(new WorkflowProcessorEndOfQueueEntry());
             return;
         }
+        getMetrics().received();
         if (isValid()) {
-            long start = -System.currentTimeMillis();
-            String lang = NLPManager.getInstance().checkTextLanguage(entry.getText(), getConfiguration().checkLanguage());
-            System.out.println("Time for getting lang: " + (System.currentTimeMillis() + start));
-            String pipeline = NLPManager.getInstance().getPipeline(getConfiguration().getPipeline());
-            PipelineSpecification pipelineSpecification = NLPManager.getInstance().getConfiguration().loadPipeline(pipeline);
-            if (null == pipelineSpecification) {
-                throw new RuntimeException("No pipeline " + pipeline);
+            PipelineSpecification pipelineSpecification = loadPipelineSpecification();
+            AnnotatedText annotateText;
+            try {
+                annotateText = annotate(entry, pipelineSpecification);
+            } catch (RuntimeException e) {
+                if (isolate(entry.getId(), entry.getText(), e)) {
+                    return;
+                }
+                throw e;
             }
-            AnnotatedText annotateText = textProcessor.annotateText(entry.getText(), lang, pipelineSpecification);
             super.checkAndHandle(new WorkflowProcessorOutputEntry(annotateText, entry.getId()));
         } else {
             LOG.warn("The Processor " + this.getName() + " is in an invalid state");
@@ -54,6 +56,30 @@ public class WorkflowTextProcessor extends WorkflowProcessor<WorkflowTextProcess
         }
     }
 
+    protected PipelineSpecification loadPipelineSpecification() {
+        String pipeline = NLPManager.getInstance().getPipeline(getConfiguration().getPipeline());
+        PipelineSpecification pipelineSpecification = NLPManager.getInstance().getConfiguration().loadPipeline(pipeline);
+        if (null == pipelineSpecification) {
+            throw new RuntimeException("No pipeline " + pipeline);
+        }
+        return pipelineSpecification;
+    }
+
+    protected AnnotatedText annotate(WorkflowInputEntry entry, PipelineSpecification pipelineSpecification) {
+        long start = System.nanoTime();
+        try {
+            String lang = NLPManager.getInstance().checkTextLanguage(entry.getText(), getConfiguration().checkLanguage());
+            AnnotatedText annotatedText = NLPManager.getInstance().annotate(textProcessor, entry.getText(), lang, pipelineSpecification);
+            getMetrics().emitted();
+            return annotatedText;
+        } catch (RuntimeException e) {
+            getMetrics().failed();
+            throw e;
+        } finally {
+            getMetrics().record(System.nanoTime() - start);
+        }
+    }
+
     @Override
     public void init(Map<String, Object> parameters) {
         setConfiguration(new WorkflowTextProcessorConfiguration(parameters));
@@ -17,6 +17,8 @@ public class WorkflowTextProcessorConfiguration extends WorkflowBaseConfiguratio
     public static final String TEXT_PROCESSOR = "textProcessor";
     public static final String PIPELINE = "pipeline";
     public static final String CHECK_LANGUAGE = "checkLanguage";
+    public static final String THREAD_NUMBER = "threadNumber";
+    public static final String QUEUE_SIZE = "queueSize";
 
     public WorkflowTextProcessorConfiguration(Map<String, Object> configuration) {
         super(configuration);
@@ -34,4 +36,18 @@ public class WorkflowTextProcessorConfiguration extends WorkflowBaseConfiguratio
         return (Boolean) getConfiguration().getOrDefault(CHECK_LANGUAGE, Boolean.TRUE);
     }
 
+    /**
+     * @return the configured number of annotation threads, or the given default if not set
+     */
+    public int getThreadNumber(long defaultValue) {
+        return ((Number) getConfiguration().getOrDefault(THREAD_NUMBER, defaultValue)).intValue();
+    }
+
+    /**
+     * @return the configured capacity of the queues between input, processor and output, or the given default if not set
+     */
+    public int getQueueSize(int defaultValue) {
+        return ((Number) getConfiguration().getOrDefault(QUEUE_SIZE, defaultValue)).intValue();
+    }
+
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.workflow.task;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks the entries dispatched by a task and acknowledged by its output, possibly out of order, and advances the
+ * checkpoint to the last entry acknowledged together with all the entries dispatched before it. An entry delivered
+ * to several outputs is acknowledged once all of them have committed it.
+ */
+class CheckpointTracker {
+
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private final Map<Object, Deque<Pending>> pendingById = new HashMap<>();
+    private final int acknowledgementsPerEntry;
+    private Object lastKey;
+    private long acknowledged;
+    private boolean advanced;
+
+    CheckpointTracker(Object lastKey, long acknowledged, int acknowledgementsPerEntry) {
+        this.lastKey = lastKey;
+        this.acknowledged = acknowledged;
+        this.acknowledgementsPerEntry = acknowledgementsPerEntry;
+    }
+
+    synchronized void dispatched(Object id, Object key) {
+        Pending entry = new Pending(key, acknowledgementsPerEntry);
+        pending.add(entry);
+        pendingById.computeIfAbsent(id, k -> new ArrayDeque<>()).add(entry);
+    }
+
+    synchronized void acknowledged(Object id) {
+        Deque<Pending> entries = pendingById.get(id);
+        if (entries == null) {
+            return;
+        }
+        if (--entries.peek().remaining == 0) {
+            entries.poll();
+        }
+        if (entries.isEmpty()) {
+            pendingById.remove(id);
+        }
+        while (!pending.isEmpty() && pending.peek().remaining == 0) {
+            Pending head = pending.poll();
+            if (head.key != null) {
+                lastKey = head.key;
+            }
+            acknowledged++;
+            advanced = true;
+        }
+    }
+
+    /**
+     * @return whether the checkpoint advanced since the last call
+     */
+    synchronized boolean advanced() {
+        boolean result = advanced;
+        advanced = false;
+        return result;
+    }
+
+    synchronized void copyTo(WorkflowTaskCheckpoint checkpoint) {
+        checkpoint.setLastKey(lastKey);
+        checkpoint.setProcessed(acknowledged);
+    }
+
+    private static class Pending {
+
+        private final Object key;
+        private int remaining;
+
+        Pending(Object key, int remaining) {
+            this.key = key;
+            this.remaining = remaining;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.workflow.task;
+
+import com.graphaware.nlp.NLPManager;
+import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.workflow.input.WorkflowInputEntry;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Stores the entries a task failed to process as {@code WorkflowDeadLetter} nodes, one per task and entry id, with
+ * the text of the entry, the stage and the item that failed, the exception and the number of failed attempts.
+ * <p>
+ * A replay marks the dead letters of the task with the id of the replay run; once the run is over, the dead letters
+ * that did not fail again in that run are deleted.
+ */
+public class DeadLetterStore {
+
+    public static final String TASK = "task";
+    public static final String ENTRY_ID = "entryId";
+    public static final String TEXT = "text";
+    public static final String STAGE = "stage";
+    public static final String ITEM = "item";
+    public static final String EXCEPTION = "exception";
+    public static final String ERROR = "error";
+    public static final String STACK_TRACE = "stackTrace";
+    public static final String ATTEMPTS = "attempts";
+    public static final String FAILED_AT = "failedAt";
+    public static final String FAILED_RUN = "failedRun";
+    public static final String REPLAY_RUN = "replayRun";
+
+    private final GraphDatabaseService database;
+
+    public DeadLetterStore(GraphDatabaseService database) {
+        this.database = database;
+    }
+
+    public void store(String task, String stage, String item, Object entryId, String text, Throwable error, String runId) {
+        String id = String.valueOf(entryId);
+        try (Transaction tx = database.beginTx()) {
+            Node deadLetter = find(task, id);
+            if (deadLetter == null) {
+                deadLetter = database.createNode(getLabel());
+                deadLetter.setProperty(TASK, task);
+                deadLetter.setProperty(ENTRY_ID, id);
+                deadLetter.setProperty(ATTEMPTS, 1L);
+            } else {
+                deadLetter.setProperty(ATTEMPTS, ((Number) deadLetter.getProperty(ATTEMPTS, 0L)).longValue() + 1);
+            }
+            if (text != null) {
+                deadLetter.setProperty(TEXT, text);
+            }
+            deadLetter.setProperty(STAGE, stage);
+            deadLetter.setProperty(ITEM, item);
+            deadLetter.setProperty(EXCEPTION, error.getClass().getName());
+            deadLetter.setProperty(ERROR, String.valueOf(error.getMessage()));
+            deadLetter.setProperty(STACK_TRACE, getStackTrace(error));
+            deadLetter.setProperty(FAILED_AT, System.currentTimeMillis());
+            deadLetter.setProperty(FAILED_RUN, runId);
+            tx.success();
+        }
+    }
+
+    /**
+     * @return the dead letters of the task, as maps of their properties
+     */
+    public List<Map<String, Object>> list(String task) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        try (Transaction tx = database.beginTx()) {
+            try (ResourceIterator<Node> deadLetters = database.findNodes(getLabel(), TASK, task)) {
+                deadLetters.forEachRemaining(deadLetter -> result.add(deadLetter.getAllProperties()));
+            }
+            tx.success();
+        }
+        return result;
+    }
+
+    public long count(String task) {
+        long count = 0;
+        try (Transaction tx = database.beginTx()) {
+            try (ResourceIterator<Node> deadLetters = database.findNodes(getLabel(), TASK, task)) {
+                while (deadLetters.hasNext()) {
+                    deadLetters.next();
+                    count++;
+                }
+            }
+            tx.success();
+        }
+        return count;
+    }
+
+    /**
+     * Marks the dead letters of the task as replayed by the run.
+     *
+     * @return the entries to replay
+     */
+    List<WorkflowInputEntry<String>> startReplay(String task, String runId) {
+        List<WorkflowInputEntry<String>> entries = new ArrayList<>();
+        try (Transaction tx = database.beginTx()) {
+            try (ResourceIterator<Node> deadLetters = database.findNodes(getLabel(), TASK, task)) {
+                deadLetters.forEachRemaining(deadLetter -> {
+                    if (deadLetter.hasProperty(TEXT)) {
+                        deadLetter.setProperty(REPLAY_RUN, runId);
+                        entries.add(new WorkflowInputEntry<>((String) deadLetter.getProperty(TEXT), (String) deadLetter.getProperty(ENTRY_ID)));
+                    }
+                });
+            }
+            tx.success();
+        }
+        return entries;
+    }
+
+    /**
+     * Deletes the dead letters replayed by the run that did not fail again.
+     */
+    void completeReplay(String task, String runId) {
+        try (Transaction tx = database.beginTx()) {
+            try (ResourceIterator<Node> deadLetters = database.findNodes(getLabel(), TASK, task)) {
+                deadLetters.forEachRemaining(deadLetter -> {
+                    if (runId.equals(deadLetter.getProperty(REPLAY_RUN, null))
+                            && !runId.equals(deadLetter.getProperty(FAILED_RUN, null))) {
+                        deadLetter.delete();
+                    }
+                });
+            }
+            tx.success();
+        }
+    }
+
+    private Node find(String task, String entryId) {
+        try (ResourceIterator<Node> deadLetters = database.findNodes(getLabel(), ENTRY_ID, entryId)) {
+            while (deadLetters.hasNext()) {
+                Node deadLetter = deadLetters.next();
+                if (task.equals(deadLetter.getProperty(TASK, null))) {
+                    return deadLetter;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Label getLabel() {
+        return NLPManager.getInstance().getConfiguration().getLabelFor(Labels.WorkflowDeadLetter);
+    }
+
+    private static String getStackTrace(Throwable error) {
+        StringWriter writer = new StringWriter();
+        error.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+}
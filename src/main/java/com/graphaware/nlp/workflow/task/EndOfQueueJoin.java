@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.workflow.task;
+
+import com.graphaware.nlp.workflow.MessageHandler;
+import com.graphaware.nlp.workflow.processor.WorkflowProcessorEndOfQueueEntry;
+
+/**
+ * Joins the processors feeding the same output: entries go through, the end of queue entry is forwarded once all
+ * the processors have sent theirs, so that the output does not flush while some of them are still running.
+ */
+class EndOfQueueJoin<E> implements MessageHandler<E> {
+
+    private final MessageHandler output;
+    private final int upstream;
+    private int ended;
+
+    EndOfQueueJoin(MessageHandler output, int upstream) {
+        this.output = output;
+        this.upstream = upstream;
+    }
+
+    @Override
+    public void handle(E entry) {
+        if (entry instanceof WorkflowProcessorEndOfQueueEntry && ++ended < upstream) {
+            return;
+        }
+        output.handle(entry);
+    }
+
+    @Override
+    public void setSuccessor(MessageHandler next) {
+        throw new UnsupportedOperationException("The successor of a join is its output");
+    }
+}
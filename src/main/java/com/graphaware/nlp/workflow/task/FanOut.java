@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.workflow.task;
+
+import com.graphaware.nlp.workflow.MessageHandler;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands each entry, in memory, to several handlers, in order.
+ */
+class FanOut<E> implements MessageHandler<E> {
+
+    private final List<MessageHandler> handlers;
+
+    FanOut(List<? extends MessageHandler> handlers) {
+        this.handlers = new ArrayList<>(handlers);
+    }
+
+    @Override
+    public void handle(E entry) {
+        for (MessageHandler handler : handlers) {
+            handler.handle(entry);
+        }
+    }
+
+    @Override
+    public void setSuccessor(MessageHandler next) {
+        throw new UnsupportedOperationException("The successors of a fan out are fixed");
+    }
+}
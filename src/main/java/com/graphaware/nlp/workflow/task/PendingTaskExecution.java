@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.workflow.task;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An execution of a task waiting in the queue of the {@link TaskManager}, ordered by decreasing priority then by
+ * submission order.
+ */
+public class PendingTaskExecution implements Comparable<PendingTaskExecution> {
+
+    private final WorkflowTask task;
+    private final long sequence;
+    private final int priority;
+    private final Set<String> outputTypes = new TreeSet<>();
+    private final boolean sync;
+    private final long queuedAt;
+    boolean admitted;
+
+    PendingTaskExecution(WorkflowTask task, long sequence) {
+        this.task = task;
+        this.sequence = sequence;
+        this.priority = task.getConfiguration().getPriority();
+        task.getOutputs().forEach(output -> outputTypes.add(output.getClass().getName()));
+        this.sync = task.isSync();
+        this.queuedAt = System.currentTimeMillis();
+    }
+
+    public WorkflowTask getTask() {
+        return task;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return the classes of the outputs of the task, the concurrency cap applies to the tasks sharing one of them
+     */
+    public Set<String> getOutputTypes() {
+        return outputTypes;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
+    @Override
+    public int compareTo(PendingTaskExecution other) {
+        if (priority != other.priority) {
+            return Integer.compare(other.priority, priority);
+        }
+        return Long.compare(sequence, other.sequence);
+    }
+}
@@ -7,19 +7,49 @@ package com.graphaware.nlp.workflow.task;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.NLPManager;
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.configuration.SettingsConstants;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import org.neo4j.logging.Log;
 
+/**
+ * Schedules the executions of the workflow tasks.
+ * <p>
+ * Executions wait in a queue ordered by task priority, then by submission order. An execution starts when, for each
+ * class of its outputs, fewer than {@code workflowMaxTasksPerOutput} tasks with an output of that class are running
+ * and, for asynchronous tasks, when fewer than {@code workflowTaskPoolSize} asynchronous tasks are running. Both
+ * limits are NLP settings, read each time the queue is scheduled. A synchronous task runs on the caller thread, which
+ * waits for its turn at most {@code workflowSyncTaskTimeout} milliseconds.
+ */
 public class TaskManager {
 
+    private static final Log LOG = LoggerFactory.getLogger(TaskManager.class);
+
+    public static final int DEFAULT_POOL_SIZE = 10;
+    public static final int DEFAULT_MAX_TASKS_PER_OUTPUT = 2;
+    public static final int DEFAULT_SYNC_TASK_TIMEOUT = 600000;
+
     private final ExecutorService executors;
     private final Cache<String, WorkflowTaskExecutionInstance> executions;
     private static final int DEFAULT_EXPIRATION_MINUTES = 30;
 
+    private final List<PendingTaskExecution> pending = new ArrayList<>();
+    private final Map<String, Integer> runningByOutput = new HashMap<>();
+    private int runningAsync = 0;
+    private long sequence = 0;
+
     private TaskManager() {
-        executors = Executors.newFixedThreadPool(10);//This will be configurable
+        executors = Executors.newCachedThreadPool();
         executions = CacheBuilder.newBuilder()
                 .expireAfterAccess(DEFAULT_EXPIRATION_MINUTES, TimeUnit.MINUTES).build();
     }
@@ -29,32 +59,172 @@ public class TaskManager {
     }
 
     public void stop(WorkflowTask workflowTask) {
-        if (workflowTask.getStatus() == TaskStatus.RUNNING) {
+        synchronized (this) {
+            if (workflowTask.getStatus() == TaskStatus.QUEUED) {
+                pending.removeIf(execution -> execution.getTask() == workflowTask);
+                workflowTask.cancelQueued();
+                notifyAll();
+                return;
+            }
+        }
+        if (workflowTask.getStatus() == TaskStatus.RUNNING
+                || workflowTask.getStatus() == TaskStatus.PAUSED) {
             workflowTask.cancel();
         }
     }
 
+    /**
+     * Pauses the task before its next input entry, see {@link WorkflowTask#pause()}.
+     */
+    public void pause(WorkflowTask workflowTask) {
+        workflowTask.pause();
+    }
+
+    public void unpause(WorkflowTask workflowTask) {
+        workflowTask.unpause();
+    }
+
+    /**
+     * @return the executions waiting to start, in the order they will be considered
+     */
+    public synchronized List<PendingTaskExecution> getPendingExecutions() {
+        List<PendingTaskExecution> result = new ArrayList<>(pending);
+        Collections.sort(result);
+        return result;
+    }
+
     private static class TaskManagerHolder {
 
         private static final TaskManager INSTANCE = new TaskManager();
     }
 
     public WorkflowTask execute(WorkflowTask task) {
-        if (task.getStatus() == TaskStatus.RUNNING) {
-            throw new RuntimeException("The task " + task.getName() + " is already running");
+        return execute(task, false, false);
+    }
+
+    /**
+     * Runs the task from its last checkpoint, see {@link WorkflowTask#doProcess()}.
+     */
+    public WorkflowTask resume(WorkflowTask task) {
+        return execute(task, true, false);
+    }
+
+    /**
+     * Runs the dead letters of the task through its processors and outputs again, see {@link DeadLetterStore}.
+     */
+    public WorkflowTask replay(WorkflowTask task) {
+        return execute(task, false, true);
+    }
+
+    private WorkflowTask execute(WorkflowTask task, boolean resume, boolean replay) {
+        Limits limits = new Limits();
+        long timeout = getSetting(SettingsConstants.WORKFLOW_SYNC_TASK_TIMEOUT, DEFAULT_SYNC_TASK_TIMEOUT);
+        PendingTaskExecution execution;
+        synchronized (this) {
+            if (task.getStatus() == TaskStatus.RUNNING
+                    || task.getStatus() == TaskStatus.PAUSED) {
+                throw new RuntimeException("The task " + task.getName() + " is already running");
+            }
+            if (task.getStatus() == TaskStatus.QUEUED) {
+                throw new RuntimeException("The task " + task.getName() + " is already queued");
+            }
+            task.reset();
+            task.setResume(resume);
+            task.setReplay(replay);
+            task.queued();
+            execution = new PendingTaskExecution(task, sequence++);
+            pending.add(execution);
+            schedule(limits);
         }
-        task.reset();
-        if (!task.isSync()) {
-            executors.execute(() -> {
+        if (task.isSync() && awaitTurn(execution, timeout)) {
+            try {
                 doExecute(task);
-            });
-        } else {
-            doExecute(task);
+            } finally {
+                release(execution);
+            }
         }
 
         return task;
     }
 
+    private synchronized boolean awaitTurn(PendingTaskExecution execution, long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            while (!execution.admitted) {
+                if (execution.getTask().getStatus() != TaskStatus.QUEUED) {
+                    return false;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    pending.remove(execution);
+                    execution.getTask().cancelQueued();
+                    throw new RuntimeException("The task " + execution.getTask().getName() + " waited more than "
+                            + timeout + " ms for its turn, increase " + SettingsConstants.WORKFLOW_SYNC_TASK_TIMEOUT
+                            + " or run it with sync: false");
+                }
+                wait(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.remove(execution);
+            execution.getTask().cancelQueued();
+            throw new RuntimeException("Interrupted while waiting to run the task " + execution.getTask().getName(), e);
+        }
+    }
+
+    /**
+     * To be called holding the monitor, with limits read before taking it.
+     */
+    private void schedule(Limits limits) {
+        for (PendingTaskExecution execution : getPendingExecutions()) {
+            if (execution.getOutputTypes().stream().anyMatch(type -> runningByOutput.getOrDefault(type, 0) >= limits.maxTasksPerOutput)
+                    || (!execution.isSync() && runningAsync >= limits.poolSize)) {
+                continue;
+            }
+            pending.remove(execution);
+            execution.getOutputTypes().forEach(type -> runningByOutput.merge(type, 1, Integer::sum));
+            execution.admitted = true;
+            if (execution.isSync()) {
+                notifyAll();
+            } else {
+                runningAsync++;
+                executors.execute(() -> {
+                    try {
+                        doExecute(execution.getTask());
+                    } finally {
+                        release(execution);
+                    }
+                });
+            }
+        }
+    }
+
+    private void release(PendingTaskExecution execution) {
+        Limits limits = new Limits();
+        synchronized (this) {
+            execution.getOutputTypes().forEach(outputType
+                    -> runningByOutput.computeIfPresent(outputType, (type, running) -> running > 1 ? running - 1 : null));
+            if (!execution.isSync()) {
+                runningAsync--;
+            }
+            schedule(limits);
+        }
+    }
+
+    private static int getSetting(String key, int defaultValue) {
+        DynamicConfiguration configuration = NLPManager.getInstance().getConfiguration();
+        if (configuration == null || !configuration.hasSettingValue(key)) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(configuration.getSettingValueFor(key).toString()));
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value for the setting " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
     private void doExecute(WorkflowTask task) {
         WorkflowTaskExecutionInstance instanceInfo = getInstanceInfo(task);
         executions.put(instanceInfo.getExecutionId(), instanceInfo);
@@ -63,6 +233,15 @@ public class TaskManager {
         instanceInfo.setEndStatus(task.getStatus());
     }
 
+    /**
+     * The scheduling limits, read from the settings before taking the monitor of the manager.
+     */
+    private static class Limits {
+
+        private final int poolSize = getSetting(SettingsConstants.WORKFLOW_TASK_POOL_SIZE, DEFAULT_POOL_SIZE);
+        private final int maxTasksPerOutput = getSetting(SettingsConstants.WORKFLOW_MAX_TASKS_PER_OUTPUT, DEFAULT_MAX_TASKS_PER_OUTPUT);
+    }
+
     private WorkflowTaskExecutionInstance getInstanceInfo(WorkflowTask task) {
         return new WorkflowTaskExecutionInstance(UUID.randomUUID().toString(), task.getName(), System.currentTimeMillis());
 
@@ -7,7 +7,9 @@ package com.graphaware.nlp.workflow.task;
 
 public enum TaskStatus {
     IDLE,
+    QUEUED,
     RUNNING,
+    PAUSED,
     FAILED,
     CANCELLED,
     SUCCEEDED;
@@ -6,17 +6,31 @@
 package com.graphaware.nlp.workflow.task;
 
 import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.NLPManager;
 import com.graphaware.nlp.annotation.NLPTask;
+import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.dsl.procedure.workflow.WorkflowInputProcedure;
 import com.graphaware.nlp.dsl.result.WorkflowInstanceItemInfo;
+import com.graphaware.nlp.workflow.MessageHandler;
+import com.graphaware.nlp.workflow.WorkflowErrorListener;
 import com.graphaware.nlp.workflow.WorkflowItem;
 import com.graphaware.nlp.workflow.WorkflowManager;
 import com.graphaware.nlp.workflow.processor.WorkflowProcessor;
 import com.graphaware.nlp.workflow.input.WorkflowInput;
+import com.graphaware.nlp.workflow.input.WorkflowInputEndOfQueueEntry;
 import com.graphaware.nlp.workflow.input.WorkflowInputEntry;
 import com.graphaware.nlp.workflow.output.WorkflowOutput;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.logging.Log;
 
@@ -31,56 +45,170 @@ public class WorkflowTask
     private WorkflowInput input;
     private WorkflowProcessor process;
     private WorkflowOutput output;
+    private final Map<WorkflowProcessor, List<WorkflowOutput>> graph = new LinkedHashMap<>();
+    private final Set<WorkflowOutput> outputs = new LinkedHashSet<>();
+    private MessageHandler head;
 
-    private TaskStatus status;
+    private static final long PAUSE_POLL_MILLIS = 100;
+
+    private volatile TaskStatus status;
     private volatile boolean cancelled = false;
+    private volatile boolean paused = false;
+    private final Object pauseLock = new Object();
     private String additionalInfo;
+    private volatile boolean resume = false;
+    private volatile boolean replay = false;
+    private final DeadLetterStore deadLetters;
+    private final AtomicLong deadLettered = new AtomicLong();
+    private String runId;
+    private WorkflowTaskCheckpoint checkpoint;
+    private long checkpointElapsed;
+    private long runStartedAt;
 
     public WorkflowTask(String name, GraphDatabaseService database) {
         super(name, database);
         this.status = TaskStatus.IDLE;
+        this.deadLetters = new DeadLetterStore(database);
     }
 
+    /**
+     * Initializes the task either as a chain of one input, processor and output, or, with the {@code dag}
+     * parameter, as an input fanning out to several processors, each fanning out to several outputs. In the latter
+     * case each entry is read once, annotated once per processor, and the annotations are handed to the outputs in
+     * memory.
+     */
     @Override
     public void init(Map<String, Object> parameters) {
         setConfiguration(new WorkflowTaskConfiguration(parameters));
         String inputName = getConfiguration().getInput();
-        String outputName = getConfiguration().getOutput();
-        String processName = getConfiguration().getProcessor();
-        if (inputName == null || outputName == null || processName == null) {
+        Map<String, List<String>> dag = getConfiguration().getDag();
+        if (dag == null) {
+            String outputName = getConfiguration().getOutput();
+            String processName = getConfiguration().getProcessor();
+            if (outputName == null || processName == null) {
+                throw new RuntimeException("The task cannot be initialized. "
+                        + "Some parameters are null");
+            }
+            dag = Collections.singletonMap(processName, Collections.singletonList(outputName));
+        }
+        if (inputName == null || dag.isEmpty()) {
             throw new RuntimeException("The task cannot be initialized. "
                     + "Some parameters are null");
         }
         this.input = WorkflowManager.getInstance().getWorkflowInput(inputName);
-        this.output = WorkflowManager.getInstance().getWorkflowOutput(outputName);
-        this.process = WorkflowManager.getInstance().getWorkflowProcessor(processName);
-        if (input == null || output == null || process == null) {
+        if (input == null) {
             throw new RuntimeException("The task cannot be initialized. "
                     + "Some parameters are invalid");
         }
-        this.input.setSuccessor(process);
-        this.process.setSuccessor(output);
+        graph.clear();
+        outputs.clear();
+        dag.forEach((processName, outputNames) -> {
+            WorkflowProcessor processor = WorkflowManager.getInstance().getWorkflowProcessor(processName);
+            if (processor == null || outputNames == null || outputNames.isEmpty()) {
+                throw new RuntimeException("The task cannot be initialized. "
+                        + "Some parameters are invalid");
+            }
+            List<WorkflowOutput> processorOutputs = new ArrayList<>();
+            for (String outputName : outputNames) {
+                WorkflowOutput processorOutput = WorkflowManager.getInstance().getWorkflowOutput(outputName);
+                if (processorOutput == null) {
+                    throw new RuntimeException("The task cannot be initialized. "
+                            + "Some parameters are invalid");
+                }
+                processorOutputs.add(processorOutput);
+            }
+            graph.put(processor, processorOutputs);
+            outputs.addAll(processorOutputs);
+        });
+        this.process = graph.keySet().iterator().next();
+        this.output = outputs.iterator().next();
+        wire();
+    }
+
+    /**
+     * Connects the items of the task. Items can be shared by several tasks, so this is done again before each run.
+     */
+    private void wire() {
+        Map<WorkflowOutput, Integer> upstream = new HashMap<>();
+        graph.values().forEach(processorOutputs -> processorOutputs.forEach(o -> upstream.merge(o, 1, Integer::sum)));
+        Map<WorkflowOutput, MessageHandler> targets = new HashMap<>();
+        upstream.forEach((o, count) -> targets.put(o, count > 1 ? new EndOfQueueJoin(o, count) : o));
+        graph.forEach((processor, processorOutputs) -> {
+            List<MessageHandler> successors = new ArrayList<>();
+            processorOutputs.forEach(o -> successors.add(targets.get(o)));
+            processor.setSuccessor(successors.size() == 1 ? successors.get(0) : new FanOut(successors));
+        });
+        head = graph.size() == 1 ? process : new FanOut(new ArrayList<>(graph.keySet()));
+        input.setSuccessor(head);
+    }
+
+    /**
+     * @return the number of output deliveries of each entry, so the number of commits expected for it
+     */
+    private int getPathCount() {
+        return graph.values().stream().mapToInt(List::size).sum();
     }
 
+    /**
+     * Runs the task. The progress is saved as a {@link WorkflowTaskCheckpoint} while the entries are acknowledged by
+     * the output, at most every {@code checkpointInterval} milliseconds, and once more when the task ends. A resumed
+     * task restarts its input after the last key of the saved checkpoint, a new run discards it.
+     * <p>
+     * Unless {@code deadLetter} is false, an entry failing in a processor or an output is stored in the
+     * {@link DeadLetterStore} and counts as processed, and the task goes on. Outputs writing in the transaction of
+     * the caller, as in sync mode, cannot roll back a failing entry on its own, so their failures fail the task. A
+     * replay run reads the dead letters of the task instead of its input, and leaves the checkpoint untouched.
+     */
     public void doProcess() {
-        if (getStatus() != TaskStatus.IDLE) {
+        if (getStatus() != TaskStatus.IDLE && getStatus() != TaskStatus.QUEUED) {
             throw new RuntimeException("The task " + getName() + " is not in IDLE state");
         }
         if (isValid()) {
             throw new RuntimeException("The task is invalid. Check logs for the reason.");
         }
         setStatus(TaskStatus.RUNNING);
+        CheckpointTracker tracker = null;
         try {
-            Iterator inputIterator = input.iterator();
-            while (inputIterator.hasNext()
-                    && !cancelled) {
-                WorkflowInputEntry next = (WorkflowInputEntry) inputIterator.next();
-                process.handle(next);
+            wire();
+            input.getMetrics().reset();
+            graph.keySet().forEach(processor -> processor.getMetrics().reset());
+            outputs.forEach(o -> o.getMetrics().reset());
+            runId = UUID.randomUUID().toString();
+            deadLettered.set(0);
+            tracker = replay ? new CheckpointTracker(null, 0, getPathCount()) : openCheckpoint();
+            CheckpointTracker runTracker = tracker;
+            outputs.forEach(o -> o.setCommitListener(runTracker::acknowledged));
+            if (getConfiguration().isDeadLetter()) {
+                WorkflowErrorListener errorListener = (item, entryId, text, error) -> deadLetter(runTracker, item, entryId, text, error);
+                graph.keySet().forEach(processor -> processor.setErrorListener(errorListener));
+                outputs.forEach(o -> o.setErrorListener(errorListener));
+            }
+            long checkpointInterval = getConfiguration().getCheckpointInterval();
+            long lastCheckpoint = System.currentTimeMillis();
+            Iterator inputIterator = replay ? deadLetters.startReplay(getName(), runId).iterator() : input.iterator();
+            boolean endOfQueue = false;
+            WorkflowInputEntry next;
+            while (awaitUnpaused()
+                    && (next = nextInputEntry(inputIterator)) != null) {
+                endOfQueue = next instanceof WorkflowInputEndOfQueueEntry;
+                if (!endOfQueue) {
+                    tracker.dispatched(next.getId(), next.getKey());
+                }
+                head.handle(next);
+                if (System.currentTimeMillis() - lastCheckpoint >= checkpointInterval && tracker.advanced()) {
+                    saveCheckpoint(tracker);
+                    lastCheckpoint = System.currentTimeMillis();
+                }
+            }
+            if (!endOfQueue) {
+                // let the processor drain its pending entries and the output flush
+                head.handle(new WorkflowInputEndOfQueueEntry<>());
             }
         } catch (Exception ex) {
             LOG.error("The task " + getName() + " failed", ex);
             setStatus(TaskStatus.FAILED);
             additionalInfo = ex.getMessage();
+            finish(tracker);
             return;
         }
         if (cancelled) {
@@ -88,6 +216,104 @@ public class WorkflowTask
         } else {
             setStatus(TaskStatus.SUCCEEDED);
         }
+        finish(tracker);
+    }
+
+    /**
+     * Blocks while the task is paused.
+     *
+     * @return false if the task has been cancelled
+     */
+    private boolean awaitUnpaused() throws InterruptedException {
+        if (paused && !cancelled) {
+            synchronized (pauseLock) {
+                setStatus(TaskStatus.PAUSED);
+                while (paused && !cancelled) {
+                    pauseLock.wait(PAUSE_POLL_MILLIS);
+                }
+                setStatus(TaskStatus.RUNNING);
+            }
+        }
+        return !cancelled;
+    }
+
+    /**
+     * @return the next entry of the input, or null when it is exhausted; the time spent reading it, including the
+     * fetch of a new page, is recorded in the input metrics
+     */
+    private WorkflowInputEntry nextInputEntry(Iterator inputIterator) {
+        long start = System.nanoTime();
+        try {
+            if (!inputIterator.hasNext()) {
+                return null;
+            }
+            WorkflowInputEntry next = (WorkflowInputEntry) inputIterator.next();
+            if (!(next instanceof WorkflowInputEndOfQueueEntry)) {
+                input.getMetrics().received();
+                input.getMetrics().emitted();
+                input.getMetrics().record(System.nanoTime() - start);
+            }
+            return next;
+        } catch (RuntimeException e) {
+            input.getMetrics().failed();
+            throw e;
+        }
+    }
+
+    private CheckpointTracker openCheckpoint() {
+        DynamicConfiguration configuration = NLPManager.getInstance().getConfiguration();
+        WorkflowTaskCheckpoint previous = resume ? configuration.loadWorkflowTaskCheckpoint(getName()) : null;
+        if (previous != null && !input.isResumable()
+                && (previous.getLastKey() != null || previous.getProcessed() > 0)) {
+            throw new RuntimeException("The task " + getName() + " cannot be resumed, the input "
+                    + input.getName() + " is not resumable");
+        }
+        input.resumeFrom(previous != null ? previous.getLastKey() : null);
+        checkpoint = previous != null ? previous : new WorkflowTaskCheckpoint(getName());
+        checkpointElapsed = checkpoint.getElapsed();
+        runStartedAt = System.currentTimeMillis();
+        CheckpointTracker tracker = new CheckpointTracker(checkpoint.getLastKey(), checkpoint.getProcessed(), getPathCount());
+        saveCheckpoint(tracker);
+        return tracker;
+    }
+
+    private void saveCheckpoint(CheckpointTracker tracker) {
+        long now = System.currentTimeMillis();
+        tracker.copyTo(checkpoint);
+        checkpoint.setStatus(status.name());
+        checkpoint.setUpdatedAt(now);
+        checkpoint.setElapsed(checkpointElapsed + now - runStartedAt);
+        NLPManager.getInstance().getConfiguration().storeWorkflowTaskCheckpoint(checkpoint);
+    }
+
+    private void finish(CheckpointTracker tracker) {
+        outputs.forEach(o -> o.setCommitListener(null));
+        graph.keySet().forEach(processor -> processor.setErrorListener(null));
+        outputs.forEach(o -> o.setErrorListener(null));
+        if (tracker == null) {
+            return;
+        }
+        try {
+            if (!replay) {
+                saveCheckpoint(tracker);
+            } else if (status == TaskStatus.SUCCEEDED) {
+                deadLetters.completeReplay(getName(), runId);
+            }
+        } catch (Exception ex) {
+            LOG.error("Unable to save the progress of the task " + getName(), ex);
+        }
+    }
+
+    private void deadLetter(CheckpointTracker tracker, WorkflowItem item, Object entryId, String text, Throwable error) {
+        String stage = item instanceof WorkflowOutput ? "output" : "processor";
+        LOG.warn("The entry " + entryId + " failed in the " + stage + " " + item.getName() + " of the task " + getName()
+                + ", moving it to the dead letters", error);
+        deadLetters.store(getName(), stage, item.getName(), entryId, text, error, runId);
+        deadLettered.incrementAndGet();
+        int acknowledgements = item instanceof WorkflowProcessor ? graph.get(item).size() : 1;
+        for (int i = 0; i < acknowledgements; i++) {
+            tracker.acknowledged(entryId);
+        }
     }
 
     @Override
@@ -101,6 +327,35 @@ public class WorkflowTask
 
     public void cancel() {
         cancelled = true;
+        unpause();
+    }
+
+    /**
+     * Makes the task stop reading its input before the next entry, until {@link #unpause()}. The entries already
+     * handed to the processor and the output are still completed. Pausing an idle or queued task makes it start
+     * paused.
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    public void unpause() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    void queued() {
+        status = TaskStatus.QUEUED;
+    }
+
+    void cancelQueued() {
+        status = TaskStatus.CANCELLED;
     }
 
     public void reset() {
@@ -108,6 +363,32 @@ public class WorkflowTask
         cancelled = false;
     }
 
+    void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    void setReplay(boolean replay) {
+        this.replay = replay;
+    }
+
+    public DeadLetterStore getDeadLetters() {
+        return deadLetters;
+    }
+
+    /**
+     * @return the number of entries moved to the dead letters by the current, or last, run
+     */
+    public long getDeadLettered() {
+        return deadLettered.get();
+    }
+
+    /**
+     * @return the last checkpoint saved by the task, or null if the task never ran
+     */
+    public WorkflowTaskCheckpoint getCheckpoint() {
+        return NLPManager.getInstance().getConfiguration().loadWorkflowTaskCheckpoint(getName());
+    }
+
     public TaskStatus getStatus() {
         return status;
     }
@@ -122,11 +403,11 @@ public class WorkflowTask
             LOG.warn("The input for the task " + getName() + " is no valid");
             return false;
         }
-        if (process == null || !process.isValid()) {
+        if (graph.isEmpty() || graph.keySet().stream().anyMatch(processor -> !processor.isValid())) {
             LOG.warn("The processor for the task " + getName() + " is no valid");
             return false;
         }
-        if (output == null || !output.isValid()) {
+        if (outputs.stream().anyMatch(o -> !o.isValid())) {
             LOG.warn("The output for the task " + getName() + " is no valid");
             return false;
         }
@@ -163,4 +444,18 @@ public class WorkflowTask
     public WorkflowOutput getOutput() {
         return output;
     }
+
+    /**
+     * @return the processors fed by the input, the first one is {@link #getProcess()}
+     */
+    public List<WorkflowProcessor> getProcessors() {
+        return new ArrayList<>(graph.keySet());
+    }
+
+    /**
+     * @return the outputs of all the processors, the first one is {@link #getOutput()}
+     */
+    public List<WorkflowOutput> getOutputs() {
+        return new ArrayList<>(outputs);
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2013-2018 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.workflow.task;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent progress of a {@link WorkflowTask}: the key of the last input entry acknowledged by the output, with all
+ * the entries before it, the number of acknowledged entries and the timings, accumulated over the resumed runs.
+ */
+public class WorkflowTaskCheckpoint {
+
+    private String taskName;
+    private String status;
+    private Object lastKey;
+    private long processed;
+    private long startedAt;
+    private long updatedAt;
+    private long elapsed;
+
+    public WorkflowTaskCheckpoint() {
+    }
+
+    public WorkflowTaskCheckpoint(String taskName) {
+        this.taskName = taskName;
+        this.startedAt = System.currentTimeMillis();
+        this.updatedAt = startedAt;
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    public void setTaskName(String taskName) {
+        this.taskName = taskName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Object getLastKey() {
+        return lastKey;
+    }
+
+    public void setLastKey(Object lastKey) {
+        this.lastKey = lastKey;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * @return the running time of the task in milliseconds, over all its runs
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    public void setElapsed(long elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    public Map<String, Object> asMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("status", status);
+        map.put("lastKey", lastKey);
+        map.put("processed", processed);
+        map.put("startedAt", startedAt);
+        map.put("updatedAt", updatedAt);
+        map.put("elapsed", elapsed);
+        return map;
+    }
+}
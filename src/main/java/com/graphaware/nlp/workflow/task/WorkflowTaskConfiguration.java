@@ -6,6 +6,7 @@
 package com.graphaware.nlp.workflow.task;
 
 import com.graphaware.nlp.workflow.WorkflowBaseConfiguration;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -18,6 +19,12 @@ public class WorkflowTaskConfiguration extends WorkflowBaseConfiguration {
     public static final String WORFKLOW_OUTPUT_NAME = "output";
     public static final String WORFKLOW_PROCESSOR_NAME = "processor";
     public static final String SYNCRONOUS = "sync";
+    public static final String CHECKPOINT_INTERVAL = "checkpointInterval";
+    public static final String PRIORITY = "priority";
+    public static final String DAG = "dag";
+    public static final String DEAD_LETTER = "deadLetter";
+
+    private static final long DEFAULT_CHECKPOINT_INTERVAL = 1000;
 
     public WorkflowTaskConfiguration(Map<String, Object> configuration) {
         super(configuration);
@@ -35,8 +42,38 @@ public class WorkflowTaskConfiguration extends WorkflowBaseConfiguration {
         return (String) getConfiguration().get(WORFKLOW_PROCESSOR_NAME);
     }
     
+    /**
+     * @return the map from the name of each processor fed by the input to the names of the outputs it feeds, or null
+     * if the task is a single input, processor and output chain
+     */
+    public Map<String, List<String>> getDag() {
+        return (Map<String, List<String>>) getConfiguration().get(DAG);
+    }
+
+    /**
+     * @return whether the entries failing in a processor or an output are moved to the dead letters, letting the task
+     * go on, instead of failing the task
+     */
+    public boolean isDeadLetter() {
+        return (Boolean) getConfiguration().getOrDefault(DEAD_LETTER, true);
+    }
+
     public boolean isSync() {
         return (Boolean) getConfiguration().getOrDefault(SYNCRONOUS, true);
     }
 
+    /**
+     * @return the priority of the task in the queue of the TaskManager, higher priorities run first
+     */
+    public int getPriority() {
+        return ((Number) getConfiguration().getOrDefault(PRIORITY, 0)).intValue();
+    }
+
+    /**
+     * @return the minimum time in milliseconds between two checkpoints saved while the task runs
+     */
+    public long getCheckpointInterval() {
+        return ((Number) getConfiguration().getOrDefault(CHECKPOINT_INTERVAL, DEFAULT_CHECKPOINT_INTERVAL)).longValue();
+    }
+
 }
@@ -81,6 +81,14 @@ public abstract class NLPIntegrationTest extends GraphAwareIntegrationTest {
         executeInTransaction("MATCH (n) DETACH DELETE n", emptyConsumer());
     }
 
+    protected static String getRootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
     protected static Consumer<Result> emptyConsumer() {
         return new Consumer<Result>() {
             @Override
@@ -10,6 +10,9 @@ import com.graphaware.nlp.dsl.request.PipelineSpecification;
 import com.graphaware.nlp.dsl.result.WorkflowInstanceItemInfo;
 import com.graphaware.nlp.module.NLPConfiguration;
 import com.graphaware.nlp.module.NLPModule;
+import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.constants.Relationships;
 import com.graphaware.nlp.stub.StubTextProcessor;
 import com.graphaware.nlp.workflow.task.WorkflowTask;
 import com.graphaware.nlp.workflow.task.WorkflowTaskConfiguration;
@@ -23,6 +26,7 @@ import org.neo4j.graphdb.Transaction;
 
 import java.lang.reflect.Field;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.graphaware.runtime.RuntimeRegistry.getStartedRuntime;
 import java.util.List;
@@ -76,6 +80,74 @@ public class DynamicConfigurationTest extends AbstractEmbeddedTest {
         }
     }
 
+    @Test
+    public void testPipelineLookupsAreCachedUntilTheConfigurationChanges() {
+        DynamicConfiguration configuration = new DynamicConfiguration(getDatabase());
+        PipelineSpecification specification = new PipelineSpecification("custom", StubTextProcessor.class.getName());
+        specification.setStopWords("hello,hihi");
+        configuration.storeCustomPipeline(specification);
+
+        long version = configuration.getVersion();
+        PipelineSpecification loaded = configuration.loadPipeline("custom");
+        assertEquals("hello,hihi", loaded.getStopWords());
+        assertSame(loaded, configuration.loadPipeline("custom"));
+        assertNull(configuration.loadPipeline("other"));
+        assertEquals(version, configuration.getVersion());
+
+        specification.setStopWords("hello");
+        configuration.storeCustomPipeline(specification);
+        assertTrue(configuration.getVersion() > version);
+        assertEquals("hello", configuration.loadPipeline("custom").getStopWords());
+
+        configuration.removePipeline("custom", StubTextProcessor.class.getName());
+        assertNull(configuration.loadPipeline("custom"));
+        assertTrue(configuration.loadCustomPipelines().isEmpty());
+    }
+
+    @Test
+    public void testCachedPipelinesFollowTheOutcomeOfTheCallerTransaction() throws Exception {
+        DynamicConfiguration configuration = new DynamicConfiguration(getDatabase());
+        try (Transaction tx = getDatabase().beginTx()) {
+            configuration.storeCustomPipeline(new PipelineSpecification("rolledBack", StubTextProcessor.class.getName()));
+            assertNotNull(configuration.loadPipeline("rolledBack"));
+            tx.failure();
+        }
+        assertNull(configuration.loadPipeline("rolledBack"));
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            configuration.storeCustomPipeline(new PipelineSpecification("committed", StubTextProcessor.class.getName()));
+            // another thread caches the store as it is before the commit
+            AtomicReference<PipelineSpecification> seen = new AtomicReference<>();
+            Thread reader = new Thread(() -> seen.set(configuration.loadPipeline("committed")));
+            reader.start();
+            reader.join();
+            assertNull(seen.get());
+            tx.success();
+        }
+        assertNotNull(configuration.loadPipeline("committed"));
+    }
+
+    @Test
+    public void testSchemaIsResolvedOnceAndReplacedOnUpdate() {
+        DynamicConfiguration configuration = new DynamicConfiguration(getDatabase());
+        ResolvedSchema schema = configuration.getSchema();
+        assertSame(Labels.Tag, configuration.getLabelFor(Labels.Tag));
+        assertSame(Relationships.HAS_TAG, configuration.getRelationshipFor(Relationships.HAS_TAG));
+        assertEquals(Properties.CONTENT_VALUE, configuration.getPropertyKeyFor(Properties.CONTENT_VALUE));
+
+        configuration.update(DynamicConfiguration.LABEL_KEY_PREFIX + "Tag", "Token");
+        configuration.update(DynamicConfiguration.RELATIONSHIP_TYPE_KEY_PREFIX + "HAS_TAG", "HAS_TOKEN");
+        configuration.update(DynamicConfiguration.PROPERTY_KEY_PREFIX + Properties.CONTENT_VALUE, "word");
+
+        assertNotSame(schema, configuration.getSchema());
+        assertSame(Labels.Tag, schema.label(Labels.Tag));
+        assertEquals("Token", configuration.getLabelFor(Labels.Tag).name());
+        assertSame(configuration.getLabelFor(Labels.Tag), configuration.getLabelFor(Labels.Tag));
+        assertEquals("HAS_TOKEN", configuration.getRelationshipFor(Relationships.HAS_TAG).name());
+        assertEquals("word", configuration.getPropertyKeyFor(Properties.CONTENT_VALUE));
+        assertSame(Labels.Sentence, configuration.getLabelFor(Labels.Sentence));
+    }
+
     @Test
     public void testConfigurationValuesShouldBeLoadedFromPreviousState() throws Exception {
         resetSingleton();
@@ -1,15 +1,22 @@
 package com.graphaware.nlp.dsl;
 
 import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.configuration.SettingsConstants;
 import com.graphaware.nlp.processor.TextProcessor;
 import com.graphaware.nlp.stub.StubTextProcessor;
 import com.graphaware.nlp.util.TestNLPGraph;
 import org.junit.Before;
 import org.junit.Test;
+import org.neo4j.graphdb.Transaction;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -59,6 +66,177 @@ public class AnnotateTextProcedureTest extends NLPIntegrationTest {
         }));
     }
 
+    @Test
+    public void testBatchAnnotationCommitsEveryBatchSizeDocuments() {
+        clearDb();
+        List<Map<String, Object>> documents = new ArrayList<>();
+        for (int i = 0; i < SHORT_TEXTS.size(); ++i) {
+            Map<String, Object> document = new HashMap<>();
+            document.put("id", "doc-" + i);
+            document.put("text", SHORT_TEXTS.get(i));
+            documents.add(document);
+        }
+        executeInTransaction("CALL ga.nlp.annotate.batch({documents}, {batchSize: 3, checkLanguage: false})", Collections.singletonMap("documents", documents), (result -> {
+            assertTrue(result.hasNext());
+            Map<String, Object> row = result.next();
+            assertEquals(10L, row.get("documents"));
+            assertEquals(4L, row.get("batches"));
+        }));
+
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertAnnotatedTextNodesCount(10);
+        executeInTransaction("MATCH (t:Tag) WITH t.id AS id, count(*) AS c WHERE c > 1 RETURN count(*) AS duplicates", (result -> {
+            assertEquals(0L, result.next().get("duplicates"));
+        }));
+    }
+
+    @Test
+    public void testTextsAreAnnotatedInParallelWithoutBeingStored() {
+        clearDb();
+        List<Map<String, Object>> documents = new ArrayList<>();
+        for (int i = 0; i < SHORT_TEXTS.size(); ++i) {
+            Map<String, Object> document = new HashMap<>();
+            document.put("id", "doc-" + i);
+            document.put("text", SHORT_TEXTS.get(i));
+            documents.add(document);
+        }
+        List<String> ids = new ArrayList<>();
+        executeInTransaction("CALL ga.nlp.annotate.texts({documents}, {checkLanguage: false})", Collections.singletonMap("documents", documents), (result -> {
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                ids.add((String) row.get("id"));
+                Map<String, Object> annotation = (Map<String, Object>) row.get("annotation");
+                assertFalse(((List) annotation.get("sentences")).isEmpty());
+            }
+        }));
+        assertEquals(10, ids.size());
+        for (int i = 0; i < ids.size(); ++i) {
+            assertEquals("doc-" + i, ids.get(i));
+        }
+
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertAnnotatedTextNodesCount(0);
+    }
+
+    @Test
+    public void testDuplicateTextsAreAnnotatedOnceUntilThePipelineChanges() {
+        clearDb();
+        getNLPManager().getConfiguration().updateInternalSetting(SettingsConstants.ANNOTATION_CACHE_SIZE, 100);
+        executeInTransaction("CALL ga.nlp.annotate({text: {p0}, id: 'first', checkLanguage: false})", buildSeqParameters(SHORT_TEXTS.get(5)), emptyConsumer());
+        StubTextProcessor.failOn("#Brexit");
+        try {
+            executeInTransaction("CALL ga.nlp.annotate({text: {p0}, id: 'copy', checkLanguage: false})", buildSeqParameters(SHORT_TEXTS.get(5)), emptyConsumer());
+            TestNLPGraph tester = new TestNLPGraph(getDatabase());
+            tester.assertAnnotatedTextNodesCount(2);
+            assertEquals(1L, getNLPManager().getAnnotationCache().getStatistics().get("hits"));
+
+            executeInTransaction("CALL ga.nlp.processor.removePipeline({p0}, {p1})", buildSeqParameters(TextProcessor.DEFAULT_PIPELINE, StubTextProcessor.class.getName()), emptyConsumer());
+            createPipeline(StubTextProcessor.class.getName(), TextProcessor.DEFAULT_PIPELINE);
+            assertEquals(0, getNLPManager().getAnnotationCache().getStatistics().get("size"));
+            try {
+                executeInTransaction("CALL ga.nlp.annotate({text: {p0}, id: 'after-change', checkLanguage: false})", buildSeqParameters(SHORT_TEXTS.get(5)), emptyConsumer());
+                fail("The text should have been annotated again");
+            } catch (RuntimeException e) {
+                //expected, the stub fails on the text
+            }
+        } finally {
+            StubTextProcessor.failOn(null);
+        }
+    }
+
+    @Test
+    public void testLongTextsAreAnnotatedInChunks() {
+        clearDb();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 30; ++i) {
+            text.append(i > 0 ? " " : "").append("Sentence number ").append(i).append(" of the long text.");
+        }
+        Map<String, Object> parameters = buildSeqParameters(text.toString());
+        executeInTransaction("CALL ga.nlp.annotate({text: {p0}, id: 'merged', chunkSize: 200, checkLanguage: false})", parameters, emptyConsumer());
+        executeInTransaction("CALL ga.nlp.annotate({text: {p0}, id: 'streamed', chunkSize: 200, persistChunks: true, checkLanguage: false})", parameters, emptyConsumer());
+
+        for (String id : Arrays.asList("merged", "streamed")) {
+            executeInTransaction("MATCH (a:AnnotatedText {id: {p0}})-[:CONTAINS_SENTENCE]->(s:Sentence) "
+                    + "RETURN count(s) AS sentences, count(DISTINCT s.sentenceNumber) AS numbers, max(s.sentenceNumber) AS last, a.numTerms AS numTerms", buildSeqParameters(id), (result -> {
+                Map<String, Object> row = result.next();
+                assertEquals(30L, row.get("sentences"));
+                assertEquals(30L, row.get("numbers"));
+                assertEquals(29L, ((Number) row.get("last")).longValue());
+                assertTrue(((Number) row.get("numTerms")).intValue() > 0);
+            }));
+            executeInTransaction("MATCH (a:AnnotatedText {id: {p0}})-[:FIRST_SENTENCE]->(first)-[:NEXT_SENTENCE*]->(last) "
+                    + "WHERE NOT (last)-[:NEXT_SENTENCE]->() RETURN first.sentenceNumber AS first, last.sentenceNumber AS last", buildSeqParameters(id), (result -> {
+                Map<String, Object> row = result.next();
+                assertEquals(0L, ((Number) row.get("first")).longValue());
+                assertEquals(29L, ((Number) row.get("last")).longValue());
+                assertFalse(result.hasNext());
+            }));
+        }
+
+        try {
+            executeInTransaction("CALL ga.nlp.annotate({text: {p0}, id: 'streamed', chunkSize: 200, persistChunks: true, incremental: true, checkLanguage: false})", parameters, emptyConsumer());
+            fail("An incremental annotation cannot be stored chunk by chunk");
+        } catch (RuntimeException e) {
+            assertTrue(getRootMessage(e).contains("cannot be used together"));
+        }
+
+        // the chunks are committed on their own, not in the transaction of the caller
+        try (Transaction tx = getDatabase().beginTx()) {
+            getDatabase().execute("CALL ga.nlp.annotate({text: {p0}, id: 'rolledBack', chunkSize: 200, persistChunks: true, checkLanguage: false})", parameters).resultAsString();
+            tx.failure();
+        }
+        executeInTransaction("MATCH (a:AnnotatedText {id: 'rolledBack'})-[:CONTAINS_SENTENCE]->(s:Sentence) RETURN count(s) AS sentences", (result -> {
+            assertEquals(30L, result.next().get("sentences"));
+        }));
+    }
+
+    @Test
+    public void testAnnotationsBeyondTheLimitAreRejectedWhenTheQueueIsFull() throws Exception {
+        clearDb();
+        getNLPManager().getConfiguration().updateInternalSetting(SettingsConstants.ANNOTATION_MAX_IN_FLIGHT, 1);
+        getNLPManager().getConfiguration().updateInternalSetting(SettingsConstants.ANNOTATION_QUEUE_SIZE, 0);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread blocking = new Thread(() -> getNLPManager().getAnnotationAdmission().execute(TextProcessor.DEFAULT_PIPELINE, () -> {
+            running.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }));
+        blocking.start();
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        try {
+            executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is Frank', id: 'rejected', checkLanguage: false})", emptyConsumer());
+            fail("The annotation should have been rejected");
+        } catch (RuntimeException e) {
+            assertTrue(getRootMessage(e).contains("overloaded"));
+        }
+
+        getNLPManager().getConfiguration().updateInternalSetting(SettingsConstants.ANNOTATION_QUEUE_SIZE, 1);
+        getNLPManager().getConfiguration().updateInternalSetting(SettingsConstants.ANNOTATION_QUEUE_TIMEOUT, 100);
+        try {
+            executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is Frank', id: 'timed-out', checkLanguage: false})", emptyConsumer());
+            fail("The annotation should have timed out");
+        } catch (RuntimeException e) {
+            assertTrue(getRootMessage(e).contains("overloaded"));
+        }
+        executeInTransaction("CALL ga.nlp.annotate.admission()", (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals(TextProcessor.DEFAULT_PIPELINE, row.get("pipeline"));
+            assertEquals(1L, row.get("inFlight"));
+            assertEquals(1L, row.get("rejected"));
+            assertEquals(1L, row.get("timedOut"));
+        }));
+
+        release.countDown();
+        blocking.join();
+        executeInTransaction("CALL ga.nlp.annotate({text: 'hello my name is Frank', id: 'admitted', checkLanguage: false})", emptyConsumer());
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertAnnotatedTextNodesCount(1);
+    }
+
     @Test
     public void testExceptionIsThrownWhenLanguageCannotBeDetected() {
         try {
@@ -3,6 +3,7 @@ package com.graphaware.nlp.dsl.schema;
 import com.graphaware.nlp.NLPIntegrationTest;
 import org.junit.Test;
 import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.schema.ConstraintDefinition;
 import org.neo4j.graphdb.schema.IndexDefinition;
@@ -24,9 +25,37 @@ public class SchemaProcedureTest extends NLPIntegrationTest {
         schemaAssert(Tag, ID, UNIQUE);
         schemaAssert(Keyword, ID, UNIQUE);
         schemaAssert(Tag, VALUE, "");
+        schemaAssert(Phrase, VALUE, UNIQUE);
 
     }
 
+    @Test
+    public void testDuplicatePhrasesAreReportedWhenCreatingTheSchema() {
+        executeInTransaction("CREATE (:Phrase {value: 'the quick fox'}), (:Phrase {value: 'the quick fox'})", emptyConsumer());
+        try {
+            executeInTransaction("CALL ga.nlp.createSchema", Result::resultAsString);
+            fail("The unique constraint cannot be created on duplicate phrases");
+        } catch (RuntimeException e) {
+            assertTrue(getRootMessage(e).contains("the quick fox"));
+        }
+
+        executeInTransaction("MATCH (p:Phrase) WITH p ORDER BY id(p) WITH p.value AS value, collect(p) AS phrases WHERE size(phrases) > 1 "
+                + "UNWIND tail(phrases) AS duplicate DETACH DELETE duplicate", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.createSchema", emptyConsumer());
+        schemaAssert(Phrase, VALUE, UNIQUE);
+    }
+
+    @Test
+    public void testAnIndexOnThePhraseValueIsReportedWhenCreatingTheSchema() {
+        executeInTransaction("CREATE INDEX ON :Phrase(value)", emptyConsumer());
+        try {
+            executeInTransaction("CALL ga.nlp.createSchema", Result::resultAsString);
+            fail("The unique constraint cannot be created over an existing index");
+        } catch (RuntimeException e) {
+            assertTrue(getRootMessage(e).contains("DROP INDEX ON :Phrase(value)"));
+        }
+    }
+
     private void schemaAssert(Label label, String s, String type) {
         boolean exist = false;
         try (Transaction tx = getDatabase().beginTx()) {
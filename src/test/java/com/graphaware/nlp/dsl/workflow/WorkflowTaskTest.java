@@ -1,10 +1,20 @@
 package com.graphaware.nlp.dsl.workflow;
 
 import com.graphaware.nlp.NLPIntegrationTest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.graphaware.nlp.processor.TextProcessor;
 import com.graphaware.nlp.stub.StubTextProcessor;
@@ -13,6 +23,7 @@ import static org.junit.Assert.assertTrue;
 import com.graphaware.nlp.workflow.task.TaskStatus;
 import org.junit.Before;
 import org.junit.Test;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.neo4j.graphdb.Result;
 
 import static org.junit.Assert.*;
@@ -166,6 +177,414 @@ public class WorkflowTaskTest extends NLPIntegrationTest {
         }));
     }
 
+    @Test
+    public void testWorkflowTaskWithParallelTextProcessor() {
+        clearDb();
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Lesson) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS), emptyConsumer());
+
+        executeInTransaction("CALL ga.nlp.workflow.createQueryInput('myInput', { query: 'MATCH (n:Lesson) RETURN n.text AS text, toString(id(n)) AS id'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.processor.create('myProcessor', "
+                + "'com.graphaware.nlp.workflow.processor.WorkflowParallelTextProcessor', "
+                + "{pipeline: 'tokenizer', threadNumber: 4, queueSize: 2})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createStoreAnnotationOutput('myOutput')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.create('myTask', 'com.graphaware.nlp.workflow.task.WorkflowTask', {input:'myInput', processor:'myProcessor', output:'myOutput'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.start('myTask')", (result -> {
+            while (result.hasNext()) {
+                assertEquals(TaskStatus.SUCCEEDED.toString(), result.next().get("status"));
+            }
+        }));
+
+        executeInTransaction("MATCH (n)-[r:HAS_ANNOTATED_TEXT]->() RETURN count(r) AS c", (result -> {
+            assertTrue(result.hasNext());
+            assertEquals(10L, (long) result.next().get("c"));
+        }));
+    }
+
+    @Test
+    public void testWorkflowTaskMetrics() {
+        clearDb();
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Lesson) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS), emptyConsumer());
+
+        executeInTransaction("CALL ga.nlp.workflow.createQueryInput('myInput', { query: 'MATCH (n:Lesson) RETURN n.text AS text, toString(id(n)) AS id'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.processor.create('myProcessor', "
+                + "'com.graphaware.nlp.workflow.processor.WorkflowParallelTextProcessor', "
+                + "{pipeline: 'tokenizer', threadNumber: 2})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createStoreAnnotationOutput('myOutput')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.create('myTask', 'com.graphaware.nlp.workflow.task.WorkflowTask', {input:'myInput', processor:'myProcessor', output:'myOutput'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.start('myTask')", emptyConsumer());
+
+        Map<String, Map<String, Object>> stages = new HashMap<>();
+        executeInTransaction("CALL ga.nlp.workflow.task.metrics('myTask')", (result -> {
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                stages.put((String) row.get("stage"), row);
+            }
+        }));
+        assertEquals(3, stages.size());
+        for (String stage : Arrays.asList("input", "processor", "output")) {
+            Map<String, Object> metrics = stages.get(stage);
+            assertEquals(10L, metrics.get("itemsIn"));
+            assertEquals(10L, metrics.get("itemsOut"));
+            assertEquals(0L, metrics.get("errors"));
+            assertEquals(0L, metrics.get("queueDepth"));
+            assertTrue((double) metrics.get("p99") >= (double) metrics.get("p50"));
+            assertTrue((double) metrics.get("docsPerSecond") > 0);
+        }
+        assertEquals("myProcessor", stages.get("processor").get("name"));
+    }
+
+    @Test
+    public void testWorkflowTaskWithDeferredOutput() {
+        clearDb();
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Lesson) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS), emptyConsumer());
+
+        executeInTransaction("CALL ga.nlp.workflow.createQueryInput('myInput', { query: 'MATCH (n:Lesson) RETURN n.text AS text, toString(id(n)) AS id'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createTextProcessor('myProcessor', { pipeline: 'tokenizer'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.output.create('myOutput', "
+                + "'com.graphaware.nlp.workflow.output.DeferredStoreAnnotatedTextWorkflowOutput', "
+                + "{query: 'MATCH (n), (x) WHERE id(n) = toInteger({entryId}) AND id(x) = toInteger({annotatedTextId}) MERGE (n)-[:HAS_ANNOTATED_TEXT]->(x)', "
+                + "batchSize: 3, flushInterval: 100, queueSize: 4})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.create('myTask', 'com.graphaware.nlp.workflow.task.WorkflowTask', {input:'myInput', processor:'myProcessor', output:'myOutput'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.start('myTask')", (result -> {
+            while (result.hasNext()) {
+                assertEquals(TaskStatus.SUCCEEDED.toString(), result.next().get("status"));
+            }
+        }));
+
+        executeInTransaction("MATCH (n:Lesson)-[r:HAS_ANNOTATED_TEXT]->(:AnnotatedText) RETURN count(r) AS c", (result -> {
+            assertTrue(result.hasNext());
+            assertEquals(10L, (long) result.next().get("c"));
+        }));
+    }
+
+    @Test
+    public void testWorkflowTaskWithPaginatedInput() {
+        clearDb();
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Lesson) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS), emptyConsumer());
+
+        executeInTransaction("CALL ga.nlp.workflow.input.create('myInput', "
+                + "'com.graphaware.nlp.workflow.input.QueryBasedWorkflowInput', "
+                + "{query: 'MATCH (n:Lesson) WHERE {lastKey} IS NULL OR id(n) > {lastKey} RETURN n.text AS text, id(n) AS id ORDER BY id LIMIT {pageSize}', "
+                + "pageSize: 3})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createTextProcessor('myProcessor', { pipeline: 'tokenizer'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createStoreAnnotationOutput('myOutput')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.create('myTask', 'com.graphaware.nlp.workflow.task.WorkflowTask', {input:'myInput', processor:'myProcessor', output:'myOutput'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.start('myTask')", emptyConsumer());
+
+        executeInTransaction("MATCH (n)-[r:HAS_ANNOTATED_TEXT]->() RETURN count(r) AS c", (result -> {
+            assertEquals(10L, (long) result.next().get("c"));
+        }));
+        long maxId = (long) getDatabase().execute("MATCH (n:Lesson) RETURN max(id(n)) AS id").next().get("id");
+        executeInTransaction("CALL ga.nlp.workflow.task.status('myTask')", (result -> {
+            Map<String, Object> next = result.next();
+            assertEquals(TaskStatus.SUCCEEDED.toString(), next.get("status"));
+            Map<String, Object> progress = (Map<String, Object>) next.get("progress");
+            assertEquals(10L, progress.get("entries"));
+            assertEquals(4L, progress.get("pages"));
+            assertEquals(maxId, progress.get("lastKey"));
+        }));
+    }
+
+    @Test
+    public void testWorkflowTaskFailsWhenThePageKeyIsNotIncreasing() {
+        clearDb();
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Lesson) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS), emptyConsumer());
+
+        executeInTransaction("CALL ga.nlp.workflow.input.create('myInput', "
+                + "'com.graphaware.nlp.workflow.input.QueryBasedWorkflowInput', "
+                + "{query: 'MATCH (n:Lesson) WHERE {lastKey} IS NULL OR id(n) <> {lastKey} RETURN n.text AS text, id(n) AS id ORDER BY id DESC LIMIT {pageSize}', "
+                + "pageSize: 3})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createTextProcessor('myProcessor', { pipeline: 'tokenizer'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createStoreAnnotationOutput('myOutput')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.create('myTask', 'com.graphaware.nlp.workflow.task.WorkflowTask', {input:'myInput', processor:'myProcessor', output:'myOutput'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.start('myTask')", emptyConsumer());
+
+        executeInTransaction("CALL ga.nlp.workflow.task.status('myTask')", (result -> {
+            Map<String, Object> next = result.next();
+            assertEquals(TaskStatus.FAILED.toString(), next.get("status"));
+            assertEquals(2L, ((Map<String, Object>) next.get("progress")).get("pages"));
+        }));
+    }
+
+    @Test
+    public void testWorkflowTaskIsResumedFromCheckpoint() {
+        clearDb();
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Lesson) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS), emptyConsumer());
+
+        executeInTransaction("CALL ga.nlp.workflow.input.create('myInput', "
+                + "'com.graphaware.nlp.workflow.input.QueryBasedWorkflowInput', "
+                + "{query: 'MATCH (n:Lesson) WHERE {lastKey} IS NULL OR id(n) > {lastKey} RETURN n.text AS text, id(n) AS id ORDER BY id LIMIT {pageSize}', "
+                + "pageSize: 3})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createTextProcessor('myProcessor', { pipeline: 'tokenizer'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createStoreAnnotationOutput('myOutput')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.create('myTask', 'com.graphaware.nlp.workflow.task.WorkflowTask', {input:'myInput', processor:'myProcessor', output:'myOutput'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.start('myTask')", emptyConsumer());
+
+        long maxId = (long) getDatabase().execute("MATCH (n:Lesson) RETURN max(id(n)) AS id").next().get("id");
+        executeInTransaction("CALL ga.nlp.workflow.task.status('myTask')", (result -> {
+            Map<String, Object> checkpoint = (Map<String, Object>) result.next().get("checkpoint");
+            assertEquals(TaskStatus.SUCCEEDED.toString(), checkpoint.get("status"));
+            assertEquals(10L, ((Number) checkpoint.get("processed")).longValue());
+            assertEquals(maxId, ((Number) checkpoint.get("lastKey")).longValue());
+        }));
+
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Lesson) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS.subList(0, 2)), emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.resume('myTask')", (result -> {
+            Map<String, Object> next = result.next();
+            assertEquals(TaskStatus.SUCCEEDED.toString(), next.get("status"));
+            Map<String, Object> progress = (Map<String, Object>) next.get("progress");
+            assertEquals(2L, progress.get("entries"));
+            Map<String, Object> checkpoint = (Map<String, Object>) next.get("checkpoint");
+            assertEquals(12L, ((Number) checkpoint.get("processed")).longValue());
+        }));
+        executeInTransaction("MATCH (n)-[r:HAS_ANNOTATED_TEXT]->() RETURN count(r) AS c", (result -> {
+            assertEquals(12L, (long) result.next().get("c"));
+        }));
+    }
+
+    @Test
+    public void testWorkflowTasksAreQueuedByPriorityAndOutputCap() throws InterruptedException {
+        clearDb();
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Lesson) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS), emptyConsumer());
+        executeInTransaction("CALL ga.nlp.config.setting.set('workflowMaxTasksPerOutput', 1)", emptyConsumer());
+
+        executeInTransaction("CALL ga.nlp.workflow.input.create('myInput', "
+                + "'com.graphaware.nlp.workflow.input.QueryBasedWorkflowInput', "
+                + "{query: 'MATCH (n:Lesson) WHERE {lastKey} IS NULL OR id(n) > {lastKey} RETURN n.text AS text, id(n) AS id ORDER BY id LIMIT {pageSize}', "
+                + "pageSize: 3})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createTextProcessor('myProcessor', { pipeline: 'tokenizer'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.output.create('myOutput', "
+                + "'com.graphaware.nlp.workflow.output.DeferredStoreAnnotatedTextWorkflowOutput', {})", emptyConsumer());
+        for (String task : Arrays.asList("taskA:0", "taskB:1", "taskC:5")) {
+            String[] parts = task.split(":");
+            executeInTransaction("CALL ga.nlp.workflow.task.create('" + parts[0] + "', 'com.graphaware.nlp.workflow.task.WorkflowTask', "
+                    + "{input:'myInput', processor:'myProcessor', output:'myOutput', sync: false, priority: " + parts[1] + "})", emptyConsumer());
+        }
+
+        executeInTransaction("CALL ga.nlp.workflow.task.pause('taskA')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.start('taskA')", emptyConsumer());
+        waitForStatus("taskA", TaskStatus.PAUSED);
+        executeInTransaction("CALL ga.nlp.workflow.task.start('taskB')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.start('taskC')", emptyConsumer());
+
+        List<String> queued = new ArrayList<>();
+        executeInTransaction("CALL ga.nlp.workflow.task.queue()", (result -> {
+            while (result.hasNext()) {
+                queued.add((String) result.next().get("taskName"));
+            }
+        }));
+        assertEquals(Arrays.asList("taskC", "taskB"), queued);
+
+        executeInTransaction("CALL ga.nlp.workflow.task.stop('taskB')", emptyConsumer());
+        waitForStatus("taskB", TaskStatus.CANCELLED);
+        executeInTransaction("CALL ga.nlp.workflow.task.unpause('taskA')", emptyConsumer());
+        waitForStatus("taskA", TaskStatus.SUCCEEDED);
+        waitForStatus("taskC", TaskStatus.SUCCEEDED);
+
+        executeInTransaction("CALL ga.nlp.workflow.task.queue()", (result -> {
+            assertFalse(result.hasNext());
+        }));
+        executeInTransaction("CALL ga.nlp.workflow.task.status('taskC')", (result -> {
+            Map<String, Object> progress = (Map<String, Object>) result.next().get("progress");
+            assertEquals(10L, progress.get("entries"));
+        }));
+    }
+
+    private void waitForStatus(String task, TaskStatus status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        AtomicReference<Object> current = new AtomicReference<>();
+        while (System.currentTimeMillis() < deadline) {
+            executeInTransaction("CALL ga.nlp.workflow.task.status({name})", Collections.singletonMap("name", task),
+                    (result -> current.set(result.next().get("status"))));
+            if (status.toString().equals(current.get())) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("The task " + task + " is " + current.get() + " instead of " + status);
+    }
+
+    @Test
+    public void testWorkflowTaskFansOutAnnotations() {
+        clearDb();
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Lesson) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS), emptyConsumer());
+
+        executeInTransaction("CALL ga.nlp.workflow.input.create('myInput', "
+                + "'com.graphaware.nlp.workflow.input.QueryBasedWorkflowInput', "
+                + "{query: 'MATCH (n:Lesson) WHERE {lastKey} IS NULL OR id(n) > {lastKey} RETURN n.text AS text, id(n) AS id ORDER BY id LIMIT {pageSize}', "
+                + "pageSize: 3})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createTextProcessor('myProcessor', { pipeline: 'tokenizer'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createTextProcessor('mySecondProcessor', { pipeline: 'tokenizer'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createStoreAnnotationOutput('myOutput')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.output.create('myQueryOutput', "
+                + "'com.graphaware.nlp.workflow.output.QueryWorkflowOutput', "
+                + "{query: 'MATCH (n) WHERE id(n) = toInteger({entryId}) SET n.tagCount = size({tags}), n.annotations = coalesce(n.annotations, 0) + 1'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.create('myTask', 'com.graphaware.nlp.workflow.task.WorkflowTask', "
+                + "{input:'myInput', dag: {myProcessor: ['myOutput', 'myQueryOutput'], mySecondProcessor: ['myQueryOutput']}})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.start('myTask')", (result -> {
+            assertEquals(TaskStatus.SUCCEEDED.toString(), result.next().get("status"));
+        }));
+
+        executeInTransaction("MATCH (n:Lesson)-[r:HAS_ANNOTATED_TEXT]->(:AnnotatedText) RETURN count(r) AS c", (result -> {
+            assertEquals(10L, (long) result.next().get("c"));
+        }));
+        executeInTransaction("MATCH (n:Lesson) WHERE n.tagCount > 0 AND n.annotations = 2 RETURN count(n) AS c", (result -> {
+            assertEquals(10L, (long) result.next().get("c"));
+        }));
+
+        Map<String, Long> itemsIn = new HashMap<>();
+        executeInTransaction("CALL ga.nlp.workflow.task.metrics('myTask')", (result -> {
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                itemsIn.put((String) row.get("name"), (Long) row.get("itemsIn"));
+            }
+        }));
+        assertEquals(10L, (long) itemsIn.get("myInput"));
+        assertEquals(10L, (long) itemsIn.get("myProcessor"));
+        assertEquals(10L, (long) itemsIn.get("mySecondProcessor"));
+        assertEquals(10L, (long) itemsIn.get("myOutput"));
+        assertEquals(20L, (long) itemsIn.get("myQueryOutput"));
+
+        executeInTransaction("CALL ga.nlp.workflow.task.status('myTask')", (result -> {
+            Map<String, Object> checkpoint = (Map<String, Object>) result.next().get("checkpoint");
+            assertEquals(10L, ((Number) checkpoint.get("processed")).longValue());
+        }));
+    }
+
+    @Test
+    public void testWorkflowTaskMovesFailedEntriesToDeadLetters() {
+        clearDb();
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Lesson) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS), emptyConsumer());
+
+        executeInTransaction("CALL ga.nlp.workflow.input.create('myInput', "
+                + "'com.graphaware.nlp.workflow.input.QueryBasedWorkflowInput', "
+                + "{query: 'MATCH (n:Lesson) WHERE {lastKey} IS NULL OR id(n) > {lastKey} RETURN n.text AS text, id(n) AS id ORDER BY id LIMIT {pageSize}', "
+                + "pageSize: 3})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createTextProcessor('myProcessor', { pipeline: 'tokenizer'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createStoreAnnotationOutput('myOutput')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.create('myTask', 'com.graphaware.nlp.workflow.task.WorkflowTask', {input:'myInput', processor:'myProcessor', output:'myOutput'})", emptyConsumer());
+
+        StubTextProcessor.failOn("#Brexit");
+        try {
+            executeInTransaction("CALL ga.nlp.workflow.task.start('myTask')", (result -> {
+                Map<String, Object> next = result.next();
+                assertEquals(TaskStatus.SUCCEEDED.toString(), next.get("status"));
+                assertEquals(2L, next.get("deadLetters"));
+            }));
+        } finally {
+            StubTextProcessor.failOn(null);
+        }
+
+        executeInTransaction("MATCH (n)-[r:HAS_ANNOTATED_TEXT]->() RETURN count(r) AS c", (result -> {
+            assertEquals(8L, (long) result.next().get("c"));
+        }));
+        List<Map<String, Object>> deadLetters = new ArrayList<>();
+        executeInTransaction("CALL ga.nlp.workflow.task.deadLetters('myTask')", (result -> {
+            while (result.hasNext()) {
+                deadLetters.add(result.next());
+            }
+        }));
+        assertEquals(2, deadLetters.size());
+        for (Map<String, Object> deadLetter : deadLetters) {
+            assertEquals("processor", deadLetter.get("stage"));
+            assertEquals("myProcessor", deadLetter.get("item"));
+            assertEquals(1L, deadLetter.get("attempts"));
+        }
+        executeInTransaction("CALL ga.nlp.workflow.task.status('myTask')", (result -> {
+            Map<String, Object> checkpoint = (Map<String, Object>) result.next().get("checkpoint");
+            assertEquals(10L, ((Number) checkpoint.get("processed")).longValue());
+        }));
+
+        executeInTransaction("CALL ga.nlp.workflow.task.replay('myTask')", (result -> {
+            Map<String, Object> next = result.next();
+            assertEquals(TaskStatus.SUCCEEDED.toString(), next.get("status"));
+            assertEquals(0L, next.get("deadLetters"));
+        }));
+        executeInTransaction("MATCH (n)-[r:HAS_ANNOTATED_TEXT]->() RETURN count(r) AS c", (result -> {
+            assertEquals(10L, (long) result.next().get("c"));
+        }));
+        executeInTransaction("CALL ga.nlp.workflow.task.deadLetters('myTask')", (result -> {
+            assertFalse(result.hasNext());
+        }));
+    }
+
+    @Test
+    public void testWorkflowTaskWithJsonLinesFileInput() throws IOException {
+        clearDb();
+        Path file = Files.createTempFile("lessons", ".jsonl");
+        file.toFile().deleteOnExit();
+        ObjectMapper mapper = new ObjectMapper();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < SHORT_TEXTS.size(); i++) {
+            Map<String, Object> line = new HashMap<>();
+            line.put("uuid", "lesson-" + i);
+            line.put("body", SHORT_TEXTS.get(i));
+            lines.add(mapper.writeValueAsString(line));
+        }
+        Files.write(file, lines.subList(0, 6), StandardCharsets.UTF_8);
+
+        executeInTransaction("CALL ga.nlp.workflow.createFileInput('myInput', {path: {path}, idField: 'uuid', textField: 'body', bufferSize: 1024})",
+                Collections.singletonMap("path", file.toString()), emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createTextProcessor('myProcessor', { pipeline: 'tokenizer'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createStoreAnnotationOutput('myOutput')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.create('myTask', 'com.graphaware.nlp.workflow.task.WorkflowTask', {input:'myInput', processor:'myProcessor', output:'myOutput'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.start('myTask')", (result -> {
+            Map<String, Object> next = result.next();
+            assertEquals(TaskStatus.SUCCEEDED.toString(), next.get("status"));
+            Map<String, Object> progress = (Map<String, Object>) next.get("progress");
+            assertEquals(6L, progress.get("entries"));
+            assertEquals(file.getFileName() + "@" + Files.size(file), progress.get("lastKey"));
+        }));
+
+        Files.write(file, lines.subList(6, lines.size()), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        executeInTransaction("CALL ga.nlp.workflow.task.resume('myTask')", (result -> {
+            Map<String, Object> progress = (Map<String, Object>) result.next().get("progress");
+            assertEquals(4L, progress.get("entries"));
+        }));
+
+        executeInTransaction("MATCH (n:AnnotatedText) RETURN collect(n.id) AS ids", (result -> {
+            List<Object> ids = (List<Object>) result.next().get("ids");
+            assertEquals(10, ids.size());
+            assertTrue(ids.contains("lesson-0"));
+            assertTrue(ids.contains("lesson-9"));
+        }));
+    }
+
+    @Test
+    public void testWorkflowTaskWithDocumentInput() throws Exception {
+        clearDb();
+        Path directory = Files.createTempDirectory("documents");
+        directory.toFile().deleteOnExit();
+        Files.copy(Paths.get(getClass().getClassLoader().getResource("import/blogpost.pdf").toURI()), directory.resolve("blogpost.pdf"));
+        Files.copy(Paths.get(getClass().getClassLoader().getResource("vui.docx").toURI()), directory.resolve("vui.docx"));
+        Files.write(directory.resolve("broken.pdf"), "not a pdf".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("notes.txt"), "not a document".getBytes(StandardCharsets.UTF_8));
+        for (File file : directory.toFile().listFiles()) {
+            file.deleteOnExit();
+        }
+
+        executeInTransaction("CALL ga.nlp.workflow.createDocumentInput('myInput', {path: {path}, threadNumber: 2, queueSize: 1})",
+                Collections.singletonMap("path", directory.toString()), emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createTextProcessor('myProcessor', { pipeline: 'tokenizer'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.createStoreAnnotationOutput('myOutput')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.create('myTask', 'com.graphaware.nlp.workflow.task.WorkflowTask', {input:'myInput', processor:'myProcessor', output:'myOutput'})", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.workflow.task.start('myTask')", (result -> {
+            Map<String, Object> next = result.next();
+            assertEquals(TaskStatus.SUCCEEDED.toString(), next.get("status"));
+            Map<String, Object> progress = (Map<String, Object>) next.get("progress");
+            assertEquals(2L, progress.get("entries"));
+            assertEquals(2L, progress.get("documents"));
+            assertEquals(1L, progress.get("skipped"));
+        }));
+
+        executeInTransaction("MATCH (n:AnnotatedText) RETURN collect(n.id) AS ids", (result -> {
+            List<Object> ids = (List<Object>) result.next().get("ids");
+            assertEquals(2, ids.size());
+            assertTrue(ids.contains("blogpost.pdf"));
+            assertTrue(ids.contains("vui.docx"));
+        }));
+    }
+
     @Test
     public void testWorkflowTaskWithShortcutsDSLAndNoDocuments() {
         clearDb();
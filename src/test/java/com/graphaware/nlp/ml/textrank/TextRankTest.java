@@ -16,6 +16,11 @@
 package com.graphaware.nlp.ml.textrank;
 
 import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.ml.pagerank.CoOccurrenceItem;
+import com.graphaware.nlp.persistence.persisters.AnnotatedTextPersister;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -161,6 +166,135 @@ public class TextRankTest extends NLPIntegrationTest {
         executeInTransaction("MATCH (n:AnnotatedText) CALL ga.nlp.ml.textRank({annotatedText:n}) YIELD result RETURN count(*)", emptyConsumer());
     }
 
+    @Test
+    public void testCooccurrencesAreBuiltWithinTheWindowAndTheSentences() {
+        executeInTransaction("CALL ga.nlp.config.setting.set('textRankNativeCooccurrences', true)", emptyConsumer());
+        createStubPipelineAndSetDefault("default");
+        executeInTransaction("CREATE (n:Document) SET n.text = 'alpha bravo charlie delta. echo foxtrot golf' WITH n " +
+                "CALL ga.nlp.annotate({text: n.text, id: id(n), checkLanguage: false}) YIELD result MERGE (n)-[:HAS_ANNOTATED_TEXT]->(result)", emptyConsumer());
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Map<String, Long> tags = new HashMap<>();
+            getDatabase().execute("MATCH (t:Tag) RETURN t.value AS value, id(t) AS id")
+                    .forEachRemaining(row -> tags.put((String) row.get("value"), (Long) row.get("id")));
+            Node annotatedText = (Node) getDatabase().execute("MATCH (a:AnnotatedText) RETURN a").next().get("a");
+            TextRank.Builder builder = new TextRank.Builder(getDatabase(), getNLPManager().getConfiguration())
+                    .setStopwords("+,charlie")
+                    .setAdmittedPOSs(Collections.singletonList("TESTVB"))
+                    .setForbiddenNEs(new ArrayList<>())
+                    .setCooccurrenceWindow(3);
+
+            Map<Long, Map<Long, CoOccurrenceItem>> bySentence = builder.respectSentences(true).build().createCooccurrences(annotatedText, false);
+            assertTrue(bySentence.get(tags.get("alpha")).containsKey(tags.get("bravo")));
+            assertTrue(bySentence.get(tags.get("alpha")).containsKey(tags.get("delta")));
+            assertTrue(bySentence.get(tags.get("delta")).containsKey(tags.get("alpha")));
+            assertTrue(bySentence.get(tags.get("echo")).containsKey(tags.get("golf")));
+            assertFalse(bySentence.containsKey(tags.get("charlie")));
+            assertFalse(bySentence.get(tags.get("delta")).containsKey(tags.get("echo")));
+            assertFalse(bySentence.get(tags.get("alpha")).containsKey(tags.get("echo")));
+
+            Map<Long, Map<Long, CoOccurrenceItem>> acrossSentences = builder.respectSentences(false).build().createCooccurrences(annotatedText, false);
+            assertTrue(acrossSentences.get(tags.get("delta")).containsKey(tags.get("echo")));
+            assertTrue(acrossSentences.get(tags.get("bravo")).containsKey(tags.get("echo")));
+            assertFalse(acrossSentences.get(tags.get("alpha")).containsKey(tags.get("echo")));
+            tx.success();
+        }
+    }
+
+    @Test
+    public void testNativeCooccurrencesMatchTheQueriesWithTheDefaultWindow() {
+        createStubPipelineAndSetDefault("default");
+        executeInTransaction("CREATE (n:Document) SET n.text = {p0} WITH n " +
+                "CALL ga.nlp.annotate({text: n.text, id: id(n), checkLanguage: false}) YIELD result MERGE (n)-[:HAS_ANNOTATED_TEXT]->(result)", buildSeqParameters(TEXT1), emptyConsumer());
+
+        // the stub offsets are relative to the sentences, so only the sentences keep the tags in document order
+        Map<Long, Map<Long, CoOccurrenceItem>> fromQueries = createCooccurrences(false);
+        Map<Long, Map<Long, CoOccurrenceItem>> fromNative = createCooccurrences(true);
+        assertFalse(fromQueries.isEmpty());
+        assertEquals(fromQueries.keySet(), fromNative.keySet());
+        fromQueries.forEach((source, destinations) -> {
+            assertEquals(destinations.keySet(), fromNative.get(source).keySet());
+            destinations.forEach((destination, item) -> assertEquals(item.getCount(), fromNative.get(source).get(destination).getCount(), 0.0));
+        });
+    }
+
+    private Map<Long, Map<Long, CoOccurrenceItem>> createCooccurrences(boolean nativeCooccurrences) {
+        executeInTransaction("CALL ga.nlp.config.setting.set('textRankNativeCooccurrences', {p0})", buildSeqParameters(nativeCooccurrences), emptyConsumer());
+        try (Transaction tx = getDatabase().beginTx()) {
+            Node annotatedText = (Node) getDatabase().execute("MATCH (a:AnnotatedText) RETURN a").next().get("a");
+            Map<Long, Map<Long, CoOccurrenceItem>> cooccurrences = new TextRank.Builder(getDatabase(), getNLPManager().getConfiguration())
+                    .setAdmittedPOSs(Collections.singletonList("TESTVB"))
+                    .setForbiddenNEs(new ArrayList<>())
+                    .respectSentences(true)
+                    .build()
+                    .createCooccurrences(annotatedText, false);
+            tx.success();
+
+            return cooccurrences;
+        }
+    }
+
+    @Test
+    public void testCooccurrencesOfTextsMixingLeanAndNodeSentences() {
+        executeInTransaction("CALL ga.nlp.config.setting.set('textRankNativeCooccurrences', false)", emptyConsumer());
+        AnnotatedTextPersister persister = (AnnotatedTextPersister) getNLPManager().getPersister(AnnotatedText.class);
+        try (Transaction tx = getDatabase().beginTx()) {
+            persister.persist(createAnnotatedText("alpha bravo charlie. delta echo foxtrot"), "doc", "1", false);
+            tx.success();
+        }
+        // only the edited sentence is rewritten, in lean mode
+        try (Transaction tx = getDatabase().beginTx()) {
+            persister.persistIncrementally(createAnnotatedText("alpha bravo charlie. delta echo golf"), "doc", "2", true);
+            tx.success();
+        }
+        executeInTransaction("MATCH (s:Sentence) RETURN s.sentenceNumber AS number, exists(s.occurrenceTags) AS lean ORDER BY number", (result -> {
+            assertFalse((Boolean) result.next().get("lean"));
+            assertTrue((Boolean) result.next().get("lean"));
+        }));
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Map<String, Long> tags = new HashMap<>();
+            getDatabase().execute("MATCH (t:Tag) RETURN t.value AS value, id(t) AS id")
+                    .forEachRemaining(row -> tags.put((String) row.get("value"), (Long) row.get("id")));
+            Node annotatedText = (Node) getDatabase().execute("MATCH (a:AnnotatedText) RETURN a").next().get("a");
+            TextRank.Builder builder = new TextRank.Builder(getDatabase(), getNLPManager().getConfiguration())
+                    .setAdmittedPOSs(Collections.singletonList("TESTVB"))
+                    .setForbiddenNEs(new ArrayList<>());
+
+            Map<Long, Map<Long, CoOccurrenceItem>> bySentence = builder.respectSentences(true).build().createCooccurrences(annotatedText, false);
+            assertTrue(bySentence.get(tags.get("alpha")).containsKey(tags.get("bravo")));
+            assertTrue(bySentence.get(tags.get("delta")).containsKey(tags.get("echo")));
+            assertTrue(bySentence.get(tags.get("echo")).containsKey(tags.get("golf")));
+            assertFalse(bySentence.get(tags.get("charlie")).containsKey(tags.get("delta")));
+
+            Map<Long, Map<Long, CoOccurrenceItem>> acrossSentences = builder.respectSentences(false).build().createCooccurrences(annotatedText, false);
+            assertTrue(acrossSentences.get(tags.get("charlie")).containsKey(tags.get("delta")));
+            assertTrue(acrossSentences.get(tags.get("echo")).containsKey(tags.get("golf")));
+            tx.success();
+        }
+    }
+
+    private AnnotatedText createAnnotatedText(String text) {
+        AnnotatedText annotatedText = new AnnotatedText();
+        annotatedText.setText(text);
+        int sentenceNumber = 0;
+        int sentenceBegin = 0;
+        for (String s : text.split("\\. ")) {
+            Sentence sentence = new Sentence(s, sentenceNumber++);
+            int begin = sentenceBegin;
+            for (String token : s.split(" ")) {
+                Tag tag = new Tag(token, "en");
+                tag.setPos(Collections.singletonList("TESTVB"));
+                sentence.addTagOccurrence(begin, begin + token.length(), token, sentence.addTag(tag));
+                begin += token.length() + 1;
+            }
+            sentenceBegin += s.length() + 2;
+            annotatedText.addSentence(sentence);
+        }
+
+        return annotatedText;
+    }
+
     @Test
     public void testCreate() throws Exception {
         createGraph("exported.cypher");
@@ -2,18 +2,33 @@ package com.graphaware.nlp.persistence;
 
 import com.graphaware.nlp.NLPIntegrationTest;
 import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Phrase;
 import com.graphaware.nlp.domain.Sentence;
 import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.domain.TypedDependency;
+import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.persistence.persisters.AnnotatedTextPersister;
 import com.graphaware.nlp.processor.TextProcessor;
 import com.graphaware.nlp.stub.StubTextProcessor;
 import com.graphaware.nlp.util.TestNLPGraph;
 import org.junit.Before;
 import org.junit.Test;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransientFailureException;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
@@ -47,6 +62,38 @@ public class AnnotatedTextPersistenceTest extends NLPIntegrationTest {
         test.assertTagWithValueHasPos("reports", "NNS");
     }
 
+    @Test
+    public void testTagIsNotRewrittenWhenItBringsNothingNew() {
+        clearDb();
+        String text = "The reports of the engineering team were accurate.";
+        TestNLPGraph test = new TestNLPGraph(getDatabase());
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor(text, "reports", "NNS"), "test-a", "1");
+            tx.success();
+        }
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor(text, "reports", "NNS"), "test-b", "2");
+            tx.success();
+        }
+        assertEquals("1", getTagProperty("reports_en", "lastTxId"));
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextFor(text, "reports", "VBZ"), "test-c", "3");
+            tx.success();
+        }
+        assertEquals("3", getTagProperty("reports_en", "lastTxId"));
+        test.assertTagWithValueHasPos("reports", "NNS");
+        test.assertTagWithValueHasPos("reports", "VBZ");
+    }
+
+    private Object getTagProperty(String id, String property) {
+        try (Transaction tx = getDatabase().beginTx()) {
+            Object value = getDatabase().findNode(Label.label("Tag"), "id", id).getProperty(property);
+            tx.success();
+            return value;
+        }
+    }
+
     @Test
     public void testAnnotatedTextWithSameTagInSameTextGotDifferentPOS() {
         clearDb();
@@ -112,6 +159,330 @@ public class AnnotatedTextPersistenceTest extends NLPIntegrationTest {
         }));
     }
 
+    @Test
+    public void testTypedDependenciesAreStoredBetweenTagOccurrencesOfTheSameSentence() {
+        clearDb();
+        AnnotatedText annotatedText = new AnnotatedText();
+        Sentence sentence = new Sentence("John loves Mary", 0);
+        sentence.addTagOccurrence(0, 4, "John", sentence.addTag(new Tag("John", "en")), Collections.singletonList("t1"));
+        sentence.addTagOccurrence(5, 10, "loves", sentence.addTag(new Tag("love", "en")), Collections.singletonList("t2"));
+        sentence.addTagOccurrence(11, 15, "Mary", sentence.addTag(new Tag("Mary", "en")), Collections.singletonList("t3"));
+        sentence.addTypedDependency(new TypedDependency("t2", "t2", "root", null));
+        sentence.addTypedDependency(new TypedDependency("t2", "t1", "nsubj", null));
+        sentence.addTypedDependency(new TypedDependency("t2", "t3", "dobj", null));
+        sentence.addTypedDependency(new TypedDependency("t2", "t9", "dobj", null));
+        annotatedText.addSentence(sentence);
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(annotatedText, "test", "1");
+            tx.success();
+        }
+        executeInTransaction("MATCH (s:TagOccurrence)-[:NSUBJ]->(o:TagOccurrence) RETURN s.value AS source, o.value AS target", (result -> {
+            assertTrue(result.hasNext());
+            Map<String, Object> row = result.next();
+            assertEquals("loves", row.get("source"));
+            assertEquals("John", row.get("target"));
+        }));
+        executeInTransaction("MATCH (:TagOccurrence)-[r:DOBJ]->(:TagOccurrence) RETURN count(r) AS c", (result -> {
+            assertEquals(1L, result.next().get("c"));
+        }));
+        executeInTransaction("MATCH (n:TagOccurrence:Root) RETURN n.value AS value", (result -> {
+            assertTrue(result.hasNext());
+            assertEquals("loves", result.next().get("value"));
+        }));
+    }
+
+    @Test
+    public void testIncrementalPersistRewritesOnlyChangedSentences() {
+        clearDb();
+        AnnotatedTextPersister persister = getNLPManager().getPersister(AnnotatedText.class);
+        try (Transaction tx = getDatabase().beginTx()) {
+            persister.persist(createAnnotatedTextFor("First sentence here. Second one. Third sentence", "one", "CD"), "doc", "1");
+            tx.success();
+        }
+        Map<Integer, Long> before = getSentenceNodeIds("doc");
+        assertEquals(3, before.size());
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            persister.persistIncrementally(createAnnotatedTextFor("First sentence here. Second one changed", "one", "CD"), "doc", "2");
+            tx.success();
+        }
+        Map<Integer, Long> after = getSentenceNodeIds("doc");
+        assertEquals(2, after.size());
+        assertEquals(before.get(0), after.get(0));
+        assertNotEquals(before.get(1), after.get(1));
+
+        executeInTransaction("MATCH (n:Sentence) RETURN count(n) AS c", (result -> {
+            assertEquals(2L, result.next().get("c"));
+        }));
+        executeInTransaction("MATCH (n:TagOccurrence) RETURN count(n) AS c", (result -> {
+            assertEquals(7L, result.next().get("c"));
+        }));
+        executeInTransaction("MATCH (:AnnotatedText {id: 'doc'})-[:FIRST_SENTENCE]->(s)-[:NEXT_SENTENCE]->(n) RETURN s.sentenceNumber AS first, n.sentenceNumber AS next", (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals(0, row.get("first"));
+            assertEquals(1, row.get("next"));
+            assertFalse(result.hasNext());
+        }));
+    }
+
+    @Test
+    public void testLeanOccurrencesAreStoredOnTheSentenceNode() {
+        clearDb();
+        AnnotatedText annotatedText = new AnnotatedText();
+        Sentence sentence = new Sentence("John loves Mary", 0);
+        sentence.addTagOccurrence(0, 4, "John", sentence.addTag(new Tag("John", "en")), Collections.singletonList("t1"));
+        sentence.addTagOccurrence(5, 10, "loves", sentence.addTag(new Tag("love", "en")), Collections.singletonList("t2"));
+        sentence.addTagOccurrence(11, 15, "Mary", sentence.addTag(new Tag("Mary", "en")), Collections.singletonList("t3"));
+        sentence.addTypedDependency(new TypedDependency("t2", "t2", "root", null));
+        sentence.addTypedDependency(new TypedDependency("t2", "t1", "nsubj", null));
+        annotatedText.addSentence(sentence);
+        try (Transaction tx = getDatabase().beginTx()) {
+            ((AnnotatedTextPersister) getNLPManager().getPersister(AnnotatedText.class)).persist(annotatedText, "lean", "1", true);
+            tx.success();
+        }
+
+        executeInTransaction("MATCH (n:TagOccurrence) RETURN count(n) AS c", (result -> {
+            assertEquals(0L, result.next().get("c"));
+        }));
+        executeInTransaction("MATCH (s:Sentence)-[:HAS_TAG]->(t:Tag) RETURN count(t) AS c", (result -> {
+            assertEquals(3L, result.next().get("c"));
+        }));
+        executeInTransaction("MATCH (s:Sentence) UNWIND ga.nlp.sentence.occurrences(s) AS o RETURN o.value AS value, o.begin AS begin, o.tag.value AS tag", (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals("John", row.get("value"));
+            assertEquals(0, ((Number) row.get("begin")).intValue());
+            row = result.next();
+            assertEquals("loves", row.get("value"));
+            assertEquals("love", row.get("tag"));
+            assertEquals("Mary", result.next().get("value"));
+            assertFalse(result.hasNext());
+        }));
+        executeInTransaction("MATCH (s:Sentence) UNWIND ga.nlp.sentence.dependencies(s) AS d WITH d WHERE d.type = 'NSUBJ' RETURN d.source.value AS source, d.target.value AS target", (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals("loves", row.get("source"));
+            assertEquals("John", row.get("target"));
+        }));
+        executeInTransaction("MATCH (s:Sentence) UNWIND ga.nlp.sentence.occurrences(s) AS o RETURN ga.nlp.tagForOccurrence(o).value AS tag", (result -> {
+            assertEquals("John", result.next().get("tag"));
+            assertEquals("love", result.next().get("tag"));
+        }));
+    }
+
+    @Test
+    public void testLeanOccurrencesDoNotTrustReusedTagNodeIds() {
+        clearDb();
+        AnnotatedText annotatedText = new AnnotatedText();
+        Sentence sentence = new Sentence("John loves Mary", 0);
+        sentence.addTagOccurrence(0, 4, "John", sentence.addTag(new Tag("John", "en")), Collections.singletonList("t1"));
+        sentence.addTagOccurrence(5, 10, "loves", sentence.addTag(new Tag("love", "en")), Collections.singletonList("t2"));
+        annotatedText.addSentence(sentence);
+        try (Transaction tx = getDatabase().beginTx()) {
+            ((AnnotatedTextPersister) getNLPManager().getPersister(AnnotatedText.class)).persist(annotatedText, "lean", "1", true);
+            tx.success();
+        }
+
+        // the stored node ids now point to nodes which are not the tags, as after a delete and a reuse of the ids
+        executeInTransaction("MATCH (s:Sentence), (a:AnnotatedText) SET s.occurrenceTags = [id(a), id(s)]", emptyConsumer());
+        executeInTransaction("MATCH (s:Sentence) UNWIND ga.nlp.sentence.occurrences(s) AS o RETURN o.tag.value AS tag", (result -> {
+            assertEquals("John", result.next().get("tag"));
+            assertEquals("love", result.next().get("tag"));
+            assertFalse(result.hasNext());
+        }));
+    }
+
+    @Test
+    public void testAnnotatedTextIsRehydratedFromSnapshot() {
+        clearDb();
+        AnnotatedText annotatedText = new AnnotatedText();
+        Sentence sentence = new Sentence("John loves Mary", 0);
+        Tag john = new Tag("John", "en");
+        john.setNe(Collections.singletonList("PERSON"));
+        sentence.addTagOccurrence(0, 4, "John", sentence.addTag(john), Collections.singletonList("t1"));
+        sentence.addTagOccurrence(5, 10, "loves", sentence.addTag(new Tag("love", "en")), Collections.singletonList("t2"));
+        sentence.addTagOccurrence(11, 15, "Mary", sentence.addTag(new Tag("Mary", "en")), Collections.singletonList("t3"));
+        sentence.addTypedDependency(new TypedDependency("t2", "t1", "nsubj", null));
+        sentence.addPhraseOccurrence(0, 15, new Phrase("John loves Mary", "S"));
+        annotatedText.addSentence(sentence);
+        PipelineSpecification pipelineSpecification = new PipelineSpecification("snapshot", StubTextProcessor.class.getName());
+        pipelineSpecification.setSnapshot(true);
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().processAnnotationPersist("snap", "John loves Mary", annotatedText, pipelineSpecification);
+            tx.success();
+        }
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Node node = getDatabase().findNode(Label.label("AnnotatedText"), "id", "snap");
+            assertTrue(node.hasProperty("snapshot"));
+            AnnotatedText rehydrated = (AnnotatedText) getNLPManager().getPersister(AnnotatedText.class).fromNode(node);
+            assertEquals("John loves Mary", rehydrated.getText());
+            assertEquals(1, rehydrated.getSentences().size());
+            Sentence stored = rehydrated.getSentences().get(0);
+            assertEquals(3, stored.getTags().size());
+            assertEquals("John", stored.getTag("John").getLemma());
+            assertEquals(Collections.singletonList("PERSON"), stored.getTag("John").getNeAsList());
+            assertEquals("Mary", stored.getTagOccurrence(11).getLemma());
+            assertEquals(Collections.singletonList("t2"), stored.getTagOccurrences().get(5).get(0).getPartIds());
+            assertEquals("nsubj", stored.getTypedDependencies().get(0).getName());
+            assertNull(stored.getTypedDependencies().get(0).getSpecific());
+            assertEquals("S", stored.getPhraseOccurrence(0, 15).getType());
+            tx.success();
+        }
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Node node = getDatabase().findNode(Label.label("AnnotatedText"), "id", "snap");
+            getNLPManager().applySentiment(node, StubTextProcessor.class.getName());
+            AnnotatedText rehydrated = (AnnotatedText) getNLPManager().getPersister(AnnotatedText.class).fromNode(node);
+            assertEquals(4, rehydrated.getSentences().get(0).getSentiment());
+            tx.success();
+        }
+        executeInTransaction("MATCH (n:TagOccurrence) RETURN count(n) AS c", (result -> {
+            assertEquals(3L, result.next().get("c"));
+        }));
+        executeInTransaction("MATCH (:AnnotatedText)-[r:CONTAINS_SENTENCE]->() RETURN count(r) AS c", (result -> {
+            assertEquals(1L, result.next().get("c"));
+        }));
+    }
+
+    @Test
+    public void testParallelIngestionCreatesNoDuplicateTagsAndPhrases() throws Exception {
+        clearDb();
+        executeInTransaction("CALL ga.nlp.createSchema", emptyConsumer());
+        int threads = 16;
+        int documentsPerThread = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < documentsPerThread; i++) {
+                    String text = "Document " + thread + "-" + i + " shares the words alpha beta gamma delta. All the writers share this sentence.";
+                    storeRetryingOnTransientFailure(text, "doc-" + thread + "-" + i);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(120, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        TestNLPGraph test = new TestNLPGraph(getDatabase());
+        test.assertAnnotatedTextNodesCount(threads * documentsPerThread);
+        executeInTransaction("MATCH (t:Tag) WITH t.id AS id, count(*) AS c WHERE c > 1 RETURN count(id) AS duplicates", (result -> {
+            assertEquals(0L, result.next().get("duplicates"));
+        }));
+        executeInTransaction("MATCH (p:Phrase) WITH p.value AS value, count(*) AS c WHERE c > 1 RETURN count(value) AS duplicates", (result -> {
+            assertEquals(0L, result.next().get("duplicates"));
+        }));
+        test.assertTagWithValueExist("alpha");
+    }
+
+    @Test
+    public void testRolledBackAnnotationLeavesNoSharedNodes() {
+        clearDb();
+        executeInTransaction("CALL ga.nlp.createSchema", emptyConsumer());
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().annotateTextAndPersist("Rolled back words. Nothing stays", "doc", StubTextProcessor.class.getName(), TextProcessor.DEFAULT_PIPELINE, false, false);
+            tx.failure();
+        }
+
+        executeInTransaction("MATCH (n) WHERE n:Tag OR n:Phrase OR n:AnnotatedText RETURN count(n) AS c", (result -> {
+            assertEquals(0L, result.next().get("c"));
+        }));
+    }
+
+    private void storeRetryingOnTransientFailure(String text, String id) {
+        for (int attempt = 0; ; attempt++) {
+            try (Transaction tx = getDatabase().beginTx()) {
+                getNLPManager().annotateTextAndPersist(text, id, StubTextProcessor.class.getName(), TextProcessor.DEFAULT_PIPELINE, false, false);
+                tx.success();
+                return;
+            } catch (TransientFailureException e) {
+                if (attempt >= 10) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalPersistShiftsTheOffsetsOfMovedSentences() {
+        clearDb();
+        AnnotatedTextPersister persister = getNLPManager().getPersister(AnnotatedText.class);
+        try (Transaction tx = getDatabase().beginTx()) {
+            persister.persist(createAnnotatedTextWithOffsets("Alpha beta. Gamma delta. Epsilon zeta"), "doc", "1");
+            tx.success();
+        }
+        Map<Integer, Long> before = getSentenceNodeIds("doc");
+
+        String edited = "Alpha beta is longer now. Omicron. Gamma delta. Epsilon zeta";
+        try (Transaction tx = getDatabase().beginTx()) {
+            persister.persistIncrementally(createAnnotatedTextWithOffsets(edited), "doc", "2");
+            tx.success();
+        }
+        Map<Integer, Long> after = getSentenceNodeIds("doc");
+        assertEquals(4, after.size());
+        assertNotEquals(before.get(0), after.get(0));
+        assertEquals(before.get(1), after.get(2));
+        assertEquals(before.get(2), after.get(3));
+
+        executeInTransaction("MATCH (s:Sentence)-[:SENTENCE_TAG_OCCURRENCE]->(to) WHERE id(s) = {id} RETURN to.value AS value, to.startPosition AS start, to.endPosition AS end",
+                Collections.singletonMap("id", after.get(2)), (result -> {
+            int count = 0;
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                String value = (String) row.get("value");
+                assertEquals(edited.indexOf(value), ((Number) row.get("start")).intValue());
+                assertEquals(edited.indexOf(value) + value.length(), ((Number) row.get("end")).intValue());
+                count++;
+            }
+            assertEquals(2, count);
+        }));
+        executeInTransaction("MATCH (s:Sentence) WHERE id(s) = {id} RETURN s.sentenceNumber AS number, s.id AS sentenceId",
+                Collections.singletonMap("id", after.get(3)), (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals(3, row.get("number"));
+            assertEquals("doc_3", row.get("sentenceId"));
+        }));
+    }
+
+    private Map<Integer, Long> getSentenceNodeIds(String id) {
+        Map<Integer, Long> ids = new HashMap<>();
+        executeInTransaction("MATCH (:AnnotatedText {id: {id}})-[:CONTAINS_SENTENCE]->(s) RETURN s.sentenceNumber AS number, id(s) AS id",
+                Collections.singletonMap("id", id), (result -> {
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                ids.put((Integer) row.get("number"), (Long) row.get("id"));
+            }
+        }));
+
+        return ids;
+    }
+
+    private AnnotatedText createAnnotatedTextWithOffsets(String text) {
+        AnnotatedText annotatedText = new AnnotatedText();
+        annotatedText.setText(text);
+        int sentenceNumber = 0;
+        int sentenceBegin = 0;
+        for (String s : text.split("\\.")) {
+            Sentence sentence = new Sentence(s, sentenceNumber++);
+            int begin = sentenceBegin;
+            for (String token : s.split(" ")) {
+                if (!token.isEmpty()) {
+                    sentence.addTagOccurrence(begin, begin + token.length(), token, sentence.addTag(new Tag(token, "en")));
+                }
+                begin += token.length() + 1;
+            }
+            sentenceBegin += s.length() + 1;
+            annotatedText.addSentence(sentence);
+        }
+
+        return annotatedText;
+    }
+
     private AnnotatedText createAnnotatedTextFor(String text, String expectedTokenForPOS, String expectedPOS) {
         AnnotatedText annotatedText = new AnnotatedText();
         annotatedText.setText(text);
@@ -0,0 +1,88 @@
+package com.graphaware.nlp.persistence.export;
+
+import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.domain.TypedDependency;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AnnotatedTextCsvExporterTest extends NLPIntegrationTest {
+
+    @Test
+    public void testTagsAreDeduplicatedAcrossDocuments() throws IOException {
+        File directory = Files.createTempDirectory("nlp-export").toFile();
+        AnnotatedTextCsvExporter exporter = new AnnotatedTextCsvExporter(directory, getNLPManager().getConfiguration());
+        exporter.export("doc-1", createAnnotatedText("John loves Mary", "NNP"));
+        exporter.export("doc-2", createAnnotatedText("Mary loves John", "NN"));
+        exporter.close();
+
+        assertEquals(2L, exporter.getDocuments());
+        assertEquals(3L, exporter.getTags());
+
+        List<String> tags = readLines(directory, "tags.csv");
+        assertEquals(4, tags.size());
+        assertTrue(tags.get(0).startsWith(":ID(Tag),id,language,value,pos:string[],ne:string[]"));
+        assertTrue(tags.stream().anyMatch(line -> line.startsWith("\"John_en\"") && line.contains("\"NNP;NN\"")));
+
+        assertEquals(3, readLines(directory, "annotated-texts.csv").size());
+        assertEquals(7, readLines(directory, "tag-occurrences.csv").size());
+        List<String> dependencies = readLines(directory, "dependencies.csv");
+        assertEquals(4, dependencies.size());
+        assertTrue(dependencies.stream().anyMatch(line -> line.contains(",\"NSUBJ\",")));
+        assertTrue(readLines(directory, "tag-occurrences.csv").stream().anyMatch(line -> line.endsWith("\"TagOccurrence;Root\"")));
+        assertTrue(exporter.getImportCommand("graph.db").contains("--nodes=" + new File(directory, "tags.csv").getAbsolutePath()));
+    }
+
+    @Test
+    public void testDuplicateDocumentIdsAreRejected() throws IOException {
+        File directory = Files.createTempDirectory("nlp-export").toFile();
+        AnnotatedTextCsvExporter exporter = new AnnotatedTextCsvExporter(directory, getNLPManager().getConfiguration());
+        exporter.export("doc-1", createAnnotatedText("John loves Mary", "NNP"));
+        try {
+            exporter.export("doc-1", createAnnotatedText("Mary loves John", "NN"));
+            fail("A duplicate id should be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("doc-1"));
+        } finally {
+            exporter.close();
+        }
+        assertEquals(1L, exporter.getDocuments());
+        assertEquals(2, readLines(directory, "annotated-texts.csv").size());
+    }
+
+    private AnnotatedText createAnnotatedText(String text, String pos) {
+        AnnotatedText annotatedText = new AnnotatedText();
+        annotatedText.setText(text);
+        Sentence sentence = new Sentence(text, 0);
+        String[] tokens = text.split(" ");
+        int begin = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            Tag tag = new Tag(tokens[i], "en");
+            tag.setPos(Collections.singletonList(pos));
+            sentence.addTagOccurrence(begin, begin + tokens[i].length(), tokens[i], sentence.addTag(tag), Collections.singletonList("t" + i));
+            begin += tokens[i].length() + 1;
+        }
+        sentence.addTypedDependency(new TypedDependency("t1", "t1", "root", null));
+        if (annotatedText.getText().startsWith("John")) {
+            sentence.addTypedDependency(new TypedDependency("t1", "t0", "nsubj", null));
+        }
+        annotatedText.addSentence(sentence);
+
+        return annotatedText;
+    }
+
+    private List<String> readLines(File directory, String file) throws IOException {
+        return Files.readAllLines(new File(directory, file).toPath(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package com.graphaware.nlp.processor;
+
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Phrase;
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.domain.TagOccurrence;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TextChunkerTest {
+
+    private static final String TEXT = "The first paragraph has two sentences. This is the second one.\n\n"
+            + "The second paragraph is a bit longer than the first one! It also has two sentences.\n\n"
+            + "The last paragraph is short.";
+
+    @Test
+    public void testChunksCoverTheTextAndEndOnParagraphs() {
+        List<TextChunker.Chunk> chunks = TextChunker.split(TEXT, 100);
+        StringBuilder rebuilt = new StringBuilder();
+        for (TextChunker.Chunk chunk : chunks) {
+            assertEquals(rebuilt.length(), chunk.getBegin());
+            assertTrue(chunk.getText().length() <= 100);
+            rebuilt.append(chunk.getText());
+        }
+        assertEquals(TEXT, rebuilt.toString());
+        assertEquals(3, chunks.size());
+        assertTrue(chunks.get(0).getText().endsWith("second one.\n\n"));
+    }
+
+    @Test
+    public void testChunksEndOnSentencesWithoutParagraphs() {
+        String text = TEXT.replace("\n\n", " ");
+        List<TextChunker.Chunk> chunks = TextChunker.split(text, 80);
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            assertTrue(chunks.get(i).getText().matches("(?s).*[.!?]$"));
+        }
+        assertEquals(1, TextChunker.split(text, text.length()).size());
+    }
+
+    @Test
+    public void testMergeShiftsOffsetsAndNumbersSentences() {
+        List<TextChunker.Chunk> chunks = Arrays.asList(new TextChunker.Chunk(0, "Hello world."), new TextChunker.Chunk(13, "Hello again."));
+        AnnotatedText merged = TextChunker.merge(chunks, Arrays.asList(annotate("Hello world."), annotate("Hello again.")), 5);
+
+        List<Sentence> sentences = merged.getSentencesSorted();
+        assertEquals(2, sentences.size());
+        assertEquals(5, sentences.get(0).getSentenceNumber());
+        assertEquals(6, sentences.get(1).getSentenceNumber());
+        assertEquals("Hello", sentences.get(1).getTagOccurrence(13).getLemma());
+        assertNull(sentences.get(1).getTagOccurrence(0));
+        TagOccurrence occurrence = sentences.get(1).getTagOccurrences().get(19).get(0);
+        assertEquals(25, occurrence.getSpan().second().intValue());
+        assertNotNull(sentences.get(1).getPhraseOccurrence(13, 25));
+        assertEquals(4, merged.getNumTerms());
+    }
+
+    private AnnotatedText annotate(String text) {
+        AnnotatedText annotatedText = new AnnotatedText();
+        Sentence sentence = new Sentence(text, 0);
+        String[] words = text.substring(0, text.length() - 1).split(" ");
+        sentence.addTagOccurrence(0, words[0].length(), words[0], sentence.addTag(new Tag(words[0], "en")));
+        sentence.addTagOccurrence(words[0].length() + 1, text.length(), words[1], sentence.addTag(new Tag(words[1], "en")));
+        sentence.addPhraseOccurrence(0, text.length(), new Phrase(text));
+        annotatedText.addSentence(sentence);
+        annotatedText.setNumTerms(2);
+
+        return annotatedText;
+    }
+}
@@ -14,10 +14,19 @@ import java.util.*;
 @NLPTextProcessor(name = "StubTextProcessor")
 public class StubTextProcessor extends AbstractTextProcessor {
 
+    private static volatile String failOn;
+
     private String lastPipelineUsed = "";
 
     private final Map<String, Object> pipelines = new HashMap<>();
 
+    /**
+     * Makes annotateText fail for the texts containing the given value, none if null.
+     */
+    public static void failOn(String value) {
+        failOn = value;
+    }
+
     @Override
     public void init() {
 
@@ -51,6 +60,10 @@ public class StubTextProcessor extends AbstractTextProcessor {
 
     @Override
     public AnnotatedText annotateText(String text, String lang, PipelineSpecification pipelineSpecification) {
+        String failing = failOn;
+        if (failing != null && text.contains(failing)) {
+            throw new RuntimeException("Stub failure on " + failing);
+        }
         this.lastPipelineUsed = pipelineSpecification.getName();
         AnnotatedText annotatedText = new AnnotatedText();
         String[] sentencesSplit = text.split("\\.");